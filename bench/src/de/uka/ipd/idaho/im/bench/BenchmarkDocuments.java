@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 2006-, IPD Boehm, Universitaet Karlsruhe (TH) / KIT, by Guido Sautter
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Universitaet Karlsruhe (TH) / KIT nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY UNIVERSITAET KARLSRUHE (TH) / KIT AND CONTRIBUTORS 
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uka.ipd.idaho.im.bench;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.util.Random;
+
+import de.uka.ipd.idaho.im.ImDocument;
+import de.uka.ipd.idaho.im.util.ImDocumentGenerator;
+
+/**
+ * Factory for the synthetic input data of the benchmarks, i.e., documents,
+ * page images, and PDF files. All data is generated from fixed random seeds,
+ * so repeated benchmark runs work on identical input, without requiring any
+ * actual (and potentially proprietary) documents.
+ * 
+ * @author sautter
+ */
+public class BenchmarkDocuments {
+	
+	/** width of generated pages (A4 at 300 DPI) */
+	public static final int PAGE_WIDTH = 2480;
+	
+	/** height of generated pages (A4 at 300 DPI) */
+	public static final int PAGE_HEIGHT = 3508;
+	
+	/** resolution of generated pages */
+	public static final int PAGE_DPI = 300;
+	
+	/** annotation types generated in documents */
+	public static final String[] ANNOTATION_TYPES = {"emphasis", "date", "taxonomicName", "bibRefCitation"};
+	
+	private static final String[] syllables = {"an", "ber", "con", "di", "el", "fa", "gen", "hu", "in", "lo", "mus", "nor", "or", "pa", "qua", "ri", "sta", "tur", "um", "ve"};
+	
+	private static final int wordHeight = 40;
+	private static final int lineHeight = 60;
+	private static final int wordsPerLine = 10;
+	private static final int linesPerBlock = 8;
+	
+	/**
+	 * Create a synthetic document via <code>ImDocumentGenerator</code>. Each
+	 * page has its words arranged in lines and blocks in a single column,
+	 * with lines, blocks, paragraphs, and the column marked as regions, and
+	 * all words form a single text stream. Annotations of the types listed in
+	 * <code>ANNOTATION_TYPES</code> span one to five words. Page images are
+	 * plain white, held in memory.
+	 * @param pageCount the number of pages
+	 * @param wordsPerPage the number of words per page
+	 * @param annotsPerPage the number of annotations per page
+	 * @param seed the seed for the random word strings
+	 * @return the document
+	 */
+	public static ImDocument createDocument(int pageCount, int wordsPerPage, int annotsPerPage, long seed) {
+		ImDocumentGenerator gen = new ImDocumentGenerator();
+		gen.setPageSize(PAGE_WIDTH, PAGE_HEIGHT, PAGE_DPI);
+		gen.setPageCount(pageCount);
+		gen.setWordsPerPage(wordsPerPage);
+		gen.setWordsPerLine(wordsPerLine);
+		gen.setLinesPerBlock(linesPerBlock);
+		gen.setPageHeaders(false);
+		for (int t = 0; t < ANNOTATION_TYPES.length; t++)
+			gen.addAnnotationType(ANNOTATION_TYPES[t], ((annotsPerPage + ANNOTATION_TYPES.length - 1 - t) / ANNOTATION_TYPES.length), 5);
+		gen.setSeed(seed);
+		return gen.generateDocument("BenchmarkDoc" + pageCount + "x" + wordsPerPage);
+	}
+	
+	private static String createWordString(Random rand) {
+		StringBuffer word = new StringBuffer();
+		for (int s = (1 + rand.nextInt(3)); s > 0; s--)
+			word.append(syllables[rand.nextInt(syllables.length)]);
+		return word.toString();
+	}
+	
+	/**
+	 * Create a synthetic page image resembling a page of text, i.e., with
+	 * rows of dark word blobs of varying width arranged in blocks on a white
+	 * background.
+	 * @param width the width of the image
+	 * @param height the height of the image
+	 * @param seed the seed for the random word widths
+	 * @return the image
+	 */
+	public static BufferedImage createPageImage(int width, int height, long seed) {
+		Random rand = new Random(seed);
+		BufferedImage bi = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+		Graphics2D gr = bi.createGraphics();
+		gr.setColor(Color.WHITE);
+		gr.fillRect(0, 0, width, height);
+		gr.setColor(Color.BLACK);
+		int pageMargin = (width / 12);
+		for (int top = pageMargin, line = 0; (top + wordHeight) < (height - pageMargin); top += lineHeight, line++) {
+			if ((line % linesPerBlock) == (linesPerBlock - 1))
+				continue;
+			for (int left = pageMargin; left < (width - pageMargin);) {
+				int ww = (40 + rand.nextInt(200));
+				if ((left + ww) > (width - pageMargin))
+					break;
+				gr.fillRect(left, (top + 8), ww, (wordHeight - 16));
+				left += (ww + 20);
+			}
+		}
+		gr.dispose();
+		return bi;
+	}
+	
+	/**
+	 * Create a synthetic PDF file consisting of page dictionaries, each with
+	 * an uncompressed content stream.
+	 * @param pageCount the number of pages
+	 * @return the bytes of the PDF file
+	 */
+	public static byte[] createPdf(int pageCount) {
+		ByteArrayOutputStream pdf = new ByteArrayOutputStream();
+		StringBuffer buf = new StringBuffer("%PDF-1.4\n");
+		buf.append("1 0 obj\n<< /Type /Catalog /Pages 2 0 R >>\nendobj\n");
+		buf.append("2 0 obj\n<< /Type /Pages /Count " + pageCount + " /Kids [");
+		for (int p = 0; p < pageCount; p++)
+			buf.append(" " + (4 + (p * 2)) + " 0 R");
+		buf.append(" ] >>\nendobj\n");
+		buf.append("3 0 obj\n<< /Type /Font /Subtype /Type1 /BaseFont /Times-Roman >>\nendobj\n");
+		Random rand = new Random(pageCount);
+		for (int p = 0; p < pageCount; p++) {
+			int pageObjId = (4 + (p * 2));
+			StringBuffer content = new StringBuffer("BT\n/F1 10 Tf\n");
+			for (int l = 0; l < 50; l++) {
+				content.append("72 " + (750 - (l * 13)) + " Td\n(");
+				for (int w = 0; w < wordsPerLine; w++)
+					content.append(createWordString(rand) + " ");
+				content.append(") Tj\n");
+			}
+			content.append("ET\n");
+			buf.append(pageObjId + " 0 obj\n<< /Type /Page /Parent 2 0 R /MediaBox [0 0 595 842] /Resources << /Font << /F1 3 0 R >> >> /Contents " + (pageObjId + 1) + " 0 R >>\nendobj\n");
+			buf.append((pageObjId + 1) + " 0 obj\n<< /Length " + content.length() + " >>\nstream\n" + content + "\nendstream\nendobj\n");
+		}
+		buf.append("trailer\n<< /Root 1 0 R /Size " + (4 + (pageCount * 2)) + " >>\n%%EOF\n");
+		for (int c = 0; c < buf.length(); c++)
+			pdf.write(buf.charAt(c));
+		return pdf.toByteArray();
+	}
+}
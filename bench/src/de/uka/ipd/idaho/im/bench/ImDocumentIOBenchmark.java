@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2006-, IPD Boehm, Universitaet Karlsruhe (TH) / KIT, by Guido Sautter
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Universitaet Karlsruhe (TH) / KIT nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY UNIVERSITAET KARLSRUHE (TH) / KIT AND CONTRIBUTORS 
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uka.ipd.idaho.im.bench;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.uka.ipd.idaho.im.ImAnnotation;
+import de.uka.ipd.idaho.im.ImDocument;
+import de.uka.ipd.idaho.im.ImPage;
+import de.uka.ipd.idaho.im.ImRegion;
+import de.uka.ipd.idaho.im.ImWord;
+import de.uka.ipd.idaho.im.util.ImDocumentGenerator;
+import de.uka.ipd.idaho.im.util.ImDocumentIO;
+
+/**
+ * Benchmarks for storing and loading Image Markup documents in the different
+ * storage modes of <code>ImDocumentIO</code>. Documents are stored to and
+ * loaded from memory to factor out disk speed. The full save benchmark also
+ * computes the UUIDs of all words, regions, and annotations of a freshly
+ * loaded document, as exports with object IDs do.
+ * 
+ * @author sautter
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ImDocumentIOBenchmark {
+	
+	@Param({"CSV", "TSV", "TSV_ADAPTIVE"})
+	public String storageMode;
+	
+	@Param({"20", "200"})
+	public int pageCount;
+	
+	@Param({"500"})
+	public int wordsPerPage;
+	
+	private ImDocument doc;
+	private long storageFlags;
+	private byte[] docBytes;
+	
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		this.doc = BenchmarkDocuments.createDocument(this.pageCount, this.wordsPerPage, 40, 4711);
+		this.storageFlags = ImDocumentGenerator.getStorageFlags(this.storageMode);
+		ByteArrayOutputStream docOut = new ByteArrayOutputStream();
+		ImDocumentIO.storeDocument(this.doc, docOut, this.storageFlags);
+		this.docBytes = docOut.toByteArray();
+	}
+	
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		this.doc.dispose();
+	}
+	
+	@Benchmark
+	public int store() throws IOException {
+		ByteArrayOutputStream docOut = new ByteArrayOutputStream(this.docBytes.length);
+		ImDocumentIO.storeDocument(this.doc, docOut, this.storageFlags);
+		return docOut.size();
+	}
+	
+	@Benchmark
+	public int load() throws IOException {
+		ImDocument doc = ImDocumentIO.loadDocument(new ByteArrayInputStream(this.docBytes));
+		int pageCount = doc.getPageCount();
+		doc.dispose();
+		return pageCount;
+	}
+	
+	@Benchmark
+	public int storeWithUuids(FreshDocument fresh) throws IOException {
+		int uuidHash = 0;
+		ImPage[] pages = fresh.doc.getPages();
+		for (int p = 0; p < pages.length; p++) {
+			ImWord[] words = pages[p].getWords();
+			for (int w = 0; w < words.length; w++)
+				uuidHash ^= words[w].getUUID().hashCode();
+			ImRegion[] regions = pages[p].getRegions();
+			for (int r = 0; r < regions.length; r++)
+				uuidHash ^= regions[r].getUUID().hashCode();
+		}
+		ImAnnotation[] annots = fresh.doc.getAnnotations();
+		for (int a = 0; a < annots.length; a++)
+			uuidHash ^= annots[a].getUUID().hashCode();
+		ByteArrayOutputStream docOut = new ByteArrayOutputStream(this.docBytes.length);
+		ImDocumentIO.storeDocument(fresh.doc, docOut, this.storageFlags);
+		return (docOut.size() ^ uuidHash);
+	}
+	
+	/**
+	 * A freshly loaded copy of the benchmark document for every invocation,
+	 * so no object has its UUID cached from a previous one.
+	 */
+	@State(Scope.Thread)
+	public static class FreshDocument {
+		ImDocument doc;
+		
+		@Setup(Level.Invocation)
+		public void setUp(ImDocumentIOBenchmark bench) throws IOException {
+			this.doc = ImDocumentIO.loadDocument(new ByteArrayInputStream(bench.docBytes));
+		}
+		
+		@TearDown(Level.Invocation)
+		public void tearDown() {
+			this.doc.dispose();
+		}
+	}
+}
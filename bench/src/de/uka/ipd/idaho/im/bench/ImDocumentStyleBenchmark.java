@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2006-, IPD Boehm, Universitaet Karlsruhe (TH) / KIT, by Guido Sautter
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Universitaet Karlsruhe (TH) / KIT nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY UNIVERSITAET KARLSRUHE (TH) / KIT AND CONTRIBUTORS 
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uka.ipd.idaho.im.bench;
+
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.uka.ipd.idaho.gamta.util.DocumentStyle;
+import de.uka.ipd.idaho.gamta.util.DocumentStyle.PropertiesData;
+import de.uka.ipd.idaho.gamta.util.imaging.BoundingBox;
+import de.uka.ipd.idaho.im.util.ImDocumentStyle;
+
+/**
+ * Benchmarks for DPI scaled property lookups in document styles, as done in
+ * the inner loops of page structure analysis. The cached variants look up
+ * properties from a subset of a document style wrapping a data object, which
+ * keeps compiled values. The uncached variants look up the same properties
+ * from a subset of a plain document style, which parses and scales values on
+ * every lookup. The threaded variants run lookups from several threads at
+ * once, as parallel page analysis does.
+ * 
+ * @author sautter
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ImDocumentStyleBenchmark {
+	
+	@Param({"300"})
+	public int dpi;
+	
+	private static final String[] intKeys = {
+		"columnMargin",
+		"blockMargin",
+		"lineMargin",
+		"minColumnWidth",
+		"minBlockHeight",
+		"notThere",
+	};
+	private static final String[] boxKeys = {
+		"contentArea",
+		"pageNumber.area",
+		"notThere",
+	};
+	
+	private ImDocumentStyle cachedLayout;
+	private ImDocumentStyle uncachedLayout;
+	private int lookup = 0;
+	
+	@Setup(Level.Trial)
+	public void setUp() {
+		Properties props = new Properties();
+		props.setProperty("layout.columnMargin", "12");
+		props.setProperty("layout.blockMargin", "8");
+		props.setProperty("layout.lineMargin", "3");
+		props.setProperty("layout.minColumnWidth", "144");
+		props.setProperty("layout.minBlockHeight", "10");
+		props.setProperty("layout.contentArea", "[36,576,36,756]");
+		props.setProperty("layout.pageNumber.area", "[36,576,756,792]");
+		this.cachedLayout = new ImDocumentStyle(new PropertiesData(props)).getImSubset("layout");
+		this.uncachedLayout = new ImDocumentStyle(new DocumentStyle(new PropertiesData(props)), "layout");
+	}
+	
+	private int nextLookup() {
+		this.lookup = ((this.lookup + 1) & 0x7FFFFFFF);
+		return this.lookup;
+	}
+	
+	@Benchmark
+	public int intPropertyCached() {
+		return this.cachedLayout.getIntProperty(intKeys[this.nextLookup() % intKeys.length], -1, this.dpi);
+	}
+	
+	@Benchmark
+	public int intPropertyUncached() {
+		return this.uncachedLayout.getIntProperty(intKeys[this.nextLookup() % intKeys.length], -1, this.dpi);
+	}
+	
+	@Benchmark
+	public BoundingBox boxPropertyCached() {
+		return this.cachedLayout.getBoxProperty(boxKeys[this.nextLookup() % boxKeys.length], null, this.dpi);
+	}
+	
+	@Benchmark
+	public BoundingBox boxPropertyUncached() {
+		return this.uncachedLayout.getBoxProperty(boxKeys[this.nextLookup() % boxKeys.length], null, this.dpi);
+	}
+	
+	@Benchmark
+	@Threads(4)
+	public int intPropertyCachedThreaded() {
+		return this.cachedLayout.getIntProperty(intKeys[this.nextLookup() % intKeys.length], -1, this.dpi);
+	}
+	
+	@Benchmark
+	@Threads(4)
+	public int intPropertyUncachedThreaded() {
+		return this.uncachedLayout.getIntProperty(intKeys[this.nextLookup() % intKeys.length], -1, this.dpi);
+	}
+}
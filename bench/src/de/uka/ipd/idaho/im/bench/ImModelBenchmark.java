@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) 2006-, IPD Boehm, Universitaet Karlsruhe (TH) / KIT, by Guido Sautter
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Universitaet Karlsruhe (TH) / KIT nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY UNIVERSITAET KARLSRUHE (TH) / KIT AND CONTRIBUTORS 
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uka.ipd.idaho.im.bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.uka.ipd.idaho.gamta.util.imaging.BoundingBox;
+import de.uka.ipd.idaho.im.ImAnnotation;
+import de.uka.ipd.idaho.im.ImDocument;
+import de.uka.ipd.idaho.im.ImPage;
+import de.uka.ipd.idaho.im.ImRegion;
+import de.uka.ipd.idaho.im.ImWord;
+import de.uka.ipd.idaho.im.gamta.ImTokenSequence;
+
+/**
+ * Benchmarks for the spatial and annotation queries of the Image Markup
+ * document model, and for offset lookups in token sequence wrappers. Each
+ * invocation runs a single query, cycling through a fixed set of query
+ * boxes and words, respectively.
+ * 
+ * @author sautter
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ImModelBenchmark {
+	
+	@Param({"10", "100"})
+	public int pageCount;
+	
+	@Param({"500"})
+	public int wordsPerPage;
+	
+	@Param({"20"})
+	public int annotsPerPage;
+	
+	@Param({"false", "true"})
+	public boolean compactWords;
+	
+	private static final int queryCount = 256;
+	
+	private ImDocument doc;
+	private ImPage[] pages;
+	private BoundingBox[] queryBoxes;
+	private ImWord[] queryWords;
+	private ImTokenSequence tokens;
+	private int[] queryOffsets;
+	private int query = 0;
+	
+	@Setup(Level.Trial)
+	public void setUp() {
+		this.doc = BenchmarkDocuments.createDocument(this.pageCount, this.wordsPerPage, this.annotsPerPage, 4711);
+		this.doc.setCompactWordStorage(this.compactWords);
+		this.pages = this.doc.getPages();
+		Random rand = new Random(42);
+		this.queryBoxes = new BoundingBox[queryCount];
+		for (int q = 0; q < queryCount; q++) {
+			int left = rand.nextInt(BenchmarkDocuments.PAGE_WIDTH / 2);
+			int top = rand.nextInt(BenchmarkDocuments.PAGE_HEIGHT / 2);
+			this.queryBoxes[q] = new BoundingBox(left, (left + 100 + rand.nextInt(BenchmarkDocuments.PAGE_WIDTH / 2)), top, (top + 100 + rand.nextInt(BenchmarkDocuments.PAGE_HEIGHT / 2)));
+		}
+		this.queryWords = new ImWord[queryCount];
+		for (int q = 0; q < queryCount; q++) {
+			ImWord[] pageWords = this.pages[rand.nextInt(this.pages.length)].getWords();
+			this.queryWords[q] = pageWords[rand.nextInt(pageWords.length)];
+		}
+		ImWord[] firstPageWords = this.pages[0].getWords();
+		ImWord[] lastPageWords = this.pages[this.pages.length - 1].getWords();
+		this.tokens = new ImTokenSequence(firstPageWords[0], lastPageWords[lastPageWords.length - 1]);
+		this.queryOffsets = new int[queryCount];
+		for (int q = 0; q < queryCount; q++)
+			this.queryOffsets[q] = rand.nextInt(this.tokens.length());
+	}
+	
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		this.doc.dispose();
+	}
+	
+	private int nextQuery() {
+		this.query = ((this.query + 1) % queryCount);
+		return this.query;
+	}
+	
+	@Benchmark
+	public ImWord[] getWordsInside() {
+		int q = this.nextQuery();
+		return this.pages[q % this.pages.length].getWordsInside(this.queryBoxes[q]);
+	}
+	
+	@Benchmark
+	public ImRegion[] getRegionsInside() {
+		int q = this.nextQuery();
+		return this.pages[q % this.pages.length].getRegionsInside(this.queryBoxes[q], false);
+	}
+	
+	@Benchmark
+	public ImRegion[] getRegionsInsideFuzzy() {
+		int q = this.nextQuery();
+		return this.pages[q % this.pages.length].getRegionsInside(this.queryBoxes[q], true);
+	}
+	
+	@Benchmark
+	public ImAnnotation[] getAnnotationsByType() {
+		int q = this.nextQuery();
+		return this.doc.getAnnotations(BenchmarkDocuments.ANNOTATION_TYPES[q % BenchmarkDocuments.ANNOTATION_TYPES.length]);
+	}
+	
+	@Benchmark
+	public ImAnnotation[] getAnnotationsByPage() {
+		int q = this.nextQuery();
+		return this.doc.getAnnotations(q % this.pages.length);
+	}
+	
+	@Benchmark
+	public ImAnnotation[] getAnnotationsSpanning() {
+		return this.doc.getAnnotationsSpanning(this.queryWords[this.nextQuery()]);
+	}
+	
+	@Benchmark
+	public ImAnnotation[] getAnnotationsOverlapping() {
+		return this.doc.getAnnotationsOverlapping(this.queryWords[this.nextQuery()]);
+	}
+	
+	@Benchmark
+	public ImWord tokenSequenceWordAtOffset() {
+		return this.tokens.wordAtOffset(this.queryOffsets[this.nextQuery()]);
+	}
+	
+	@Benchmark
+	public char tokenSequenceCharAt() {
+		return this.tokens.charAt(this.queryOffsets[this.nextQuery()]);
+	}
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2006-, IPD Boehm, Universitaet Karlsruhe (TH) / KIT, by Guido Sautter
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Universitaet Karlsruhe (TH) / KIT nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY UNIVERSITAET KARLSRUHE (TH) / KIT AND CONTRIBUTORS 
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uka.ipd.idaho.im.bench;
+
+import de.uka.ipd.idaho.im.ImDocument;
+import de.uka.ipd.idaho.im.ImPage;
+import de.uka.ipd.idaho.im.ImWord;
+
+/**
+ * Measurement of the heap footprint of words in regular and in compact word
+ * storage. Heap usage is not something JMH measures, so this is a plain main
+ * class, to run via 'java -cp dist/ImageMarkupBenchmarks.jar' with this class
+ * name and optionally the page count and the number of words per page as
+ * arguments. The output lists retained heap per word, as well as the time
+ * for a full pass over all words of the document, which in compact storage
+ * includes materializing the word handles. Documents have no annotations,
+ * as the latter keep their first and last words alive as objects.
+ * 
+ * @author sautter
+ */
+public class ImWordMemoryBenchmark {
+	
+	/**
+	 * @param args page count and words per page (optional)
+	 */
+	public static void main(String[] args) throws Exception {
+		int pageCount = ((args.length < 1) ? 500 : Integer.parseInt(args[0]));
+		int wordsPerPage = ((args.length < 2) ? 500 : Integer.parseInt(args[1]));
+		
+		//	measure baseline
+		long emptyHeap = getUsedHeap();
+		
+		//	measure document with regular word objects
+		ImDocument doc = BenchmarkDocuments.createDocument(pageCount, wordsPerPage, 0, 4711);
+		int wordCount = doc.getWordCount();
+		long regularHeap = (getUsedHeap() - emptyHeap);
+		long regularPassTime = timeWordPass(doc);
+		
+		//	switch to compact storage and measure again
+		doc.setCompactWordStorage(true);
+		long compactHeap = (getUsedHeap() - emptyHeap);
+		long compactPassTime = timeWordPass(doc);
+		
+		//	measure regions only, for reference
+		ImDocument noWordDoc = BenchmarkDocuments.createDocument(pageCount, 0, 0, 4711);
+		long noWordHeap = (getUsedHeap() - emptyHeap - compactHeap);
+		noWordDoc.dispose();
+		
+		System.out.println("Document with " + pageCount + " pages, " + wordCount + " words:");
+		System.out.println(" - regular words: " + (regularHeap / 1024) + "KB, " + ((regularHeap - noWordHeap) / wordCount) + " bytes per word, full word pass in " + regularPassTime + "ms");
+		System.out.println(" - compact words: " + (compactHeap / 1024) + "KB, " + ((compactHeap - noWordHeap) / wordCount) + " bytes per word, full word pass in " + compactPassTime + "ms");
+		doc.dispose();
+	}
+	
+	private static long timeWordPass(ImDocument doc) {
+		long start = System.currentTimeMillis();
+		ImPage[] pages = doc.getPages();
+		int chars = 0;
+		for (int p = 0; p < pages.length; p++) {
+			ImWord[] words = pages[p].getWords();
+			for (int w = 0; w < words.length; w++)
+				chars += words[w].getString().length();
+		}
+		if (chars < 0)
+			System.out.println("Cannot happen"); // keep the JIT from dropping the loop
+		return (System.currentTimeMillis() - start);
+	}
+	
+	private static long getUsedHeap() throws InterruptedException {
+		Runtime rt = Runtime.getRuntime();
+		long used = Long.MAX_VALUE;
+		for (int r = 0; r < 4; r++) {
+			System.gc();
+			Thread.sleep(100);
+			used = Math.min(used, (rt.totalMemory() - rt.freeMemory()));
+		}
+		return used;
+	}
+}
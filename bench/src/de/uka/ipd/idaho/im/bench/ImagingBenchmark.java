@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2006-, IPD Boehm, Universitaet Karlsruhe (TH) / KIT, by Guido Sautter
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Universitaet Karlsruhe (TH) / KIT nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY UNIVERSITAET KARLSRUHE (TH) / KIT AND CONTRIBUTORS 
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uka.ipd.idaho.im.bench;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.uka.ipd.idaho.gamta.util.ProgressMonitor;
+import de.uka.ipd.idaho.im.analysis.Imaging;
+import de.uka.ipd.idaho.im.analysis.Imaging.AnalysisImage;
+import de.uka.ipd.idaho.im.analysis.Imaging.ImagePartRectangle;
+
+/**
+ * Benchmarks for the page image analysis primitives in <code>Imaging</code>,
+ * working on synthetic text-like page images.
+ * 
+ * @author sautter
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ImagingBenchmark {
+	
+	@Param({"1240", "2480"})
+	public int width;
+	
+	private AnalysisImage ai;
+	private ImagePartRectangle contentBox;
+	private BufferedImage scanImage;
+	private AnalysisImage scanAi;
+	
+	@Setup(Level.Trial)
+	public void setUp() {
+		int height = ((this.width * BenchmarkDocuments.PAGE_HEIGHT) / BenchmarkDocuments.PAGE_WIDTH);
+		BufferedImage bi = BenchmarkDocuments.createPageImage(this.width, height, 4711);
+		this.ai = Imaging.wrapImage(bi, null);
+		this.contentBox = Imaging.getContentBox(this.ai);
+		
+		//	blur a copy of the page to get a gray scale scan for the correction benchmarks
+		AnalysisImage scanAi = Imaging.wrapImage(copyImage(bi), null);
+		Imaging.gaussBlur(scanAi, 1);
+		this.scanImage = scanAi.getImage();
+	}
+	
+	@Setup(Level.Invocation)
+	public void setUpScan() {
+		this.scanAi = Imaging.wrapImage(copyImage(this.scanImage), null);
+	}
+	
+	private static BufferedImage copyImage(BufferedImage bi) {
+		BufferedImage cbi = new BufferedImage(bi.getWidth(), bi.getHeight(), bi.getType());
+		cbi.setData(bi.getData());
+		return cbi;
+	}
+	
+	@Benchmark
+	public int[][] getRegionColoring() {
+		return Imaging.getRegionColoring(this.ai, ((byte) 64), false);
+	}
+	
+	@Benchmark
+	public int[][] getRegionColoringDiagonal() {
+		return Imaging.getRegionColoring(this.ai, ((byte) 64), true);
+	}
+	
+	@Benchmark
+	public ImagePartRectangle[] splitIntoRows() {
+		return Imaging.splitIntoRows(this.contentBox);
+	}
+	
+	@Benchmark
+	public ImagePartRectangle[] splitIntoColumns() {
+		return Imaging.splitIntoColumns(this.contentBox);
+	}
+	
+	@Benchmark
+	public BufferedImage correctImage() {
+		return Imaging.correctImage(this.scanAi, 300, Imaging.ALL_OPTIONS, ProgressMonitor.dummy).getImage();
+	}
+	
+	@Benchmark
+	public BufferedImage correctImageNoRotation() {
+		return Imaging.correctImage(this.scanAi, 300, (Imaging.ALL_OPTIONS & ~(Imaging.CORRECT_ROTATION | Imaging.CORRECT_SKEW)), ProgressMonitor.dummy).getImage();
+	}
+}
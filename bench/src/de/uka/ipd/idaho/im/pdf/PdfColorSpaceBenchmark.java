@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2006-, IPD Boehm, Universitaet Karlsruhe (TH) / KIT, by Guido Sautter
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Universitaet Karlsruhe (TH) / KIT nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY UNIVERSITAET KARLSRUHE (TH) / KIT AND CONTRIBUTORS 
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uka.ipd.idaho.im.pdf;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.uka.ipd.idaho.im.pdf.PdfParser.PStream;
+
+/**
+ * Benchmark for decoding four component bitmaps into page images, working on
+ * synthetic scan-like Letter size CMYK bitmaps, both in the DeviceCMYK color
+ * space and in a DeviceN color space with the CMYK process colorants, whose
+ * tint transform is a PostScript function. This benchmark resides in the PDF
+ * package because bitmap decoding is not public API.
+ * 
+ * @author sautter
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(value = 1, jvmArgs = {"-Xmx2g"})
+public class PdfColorSpaceBenchmark {
+	
+	@Param({"300", "600"})
+	public int dpi;
+	
+	@Param({"DeviceCMYK", "DeviceN"})
+	public String colorSpace;
+	
+	private byte[] data;
+	private Map params;
+	private Object csObj;
+	private Map objects;
+	
+	@Setup(Level.Trial)
+	public void setUp() {
+		int width = ((this.dpi * 85) / 10);
+		int height = (this.dpi * 11);
+		this.data = createCmykScan(width, height, 4711);
+		
+		this.params = new HashMap();
+		this.params.put("Width", new Integer(width));
+		this.params.put("Height", new Integer(height));
+		this.params.put("BitsPerComponent", new Integer(8));
+		this.objects = new HashMap();
+		
+		if ("DeviceN".equals(this.colorSpace)) {
+			Map ttParams = new HashMap();
+			ttParams.put("FunctionType", new Integer(4));
+			List domainRange = new ArrayList();
+			for (int c = 0; c < 4; c++) {
+				domainRange.add(new Integer(0));
+				domainRange.add(new Integer(1));
+			}
+			ttParams.put("Domain", domainRange);
+			ttParams.put("Range", domainRange);
+			PStream tintTransform = new PStream(ttParams, "{ }".getBytes());
+			this.csObj = new ArrayList(Arrays.asList(new Object[] {"DeviceN", new ArrayList(Arrays.asList(new Object[] {"Cyan", "Magenta", "Yellow", "Black"})), "DeviceCMYK", tintTransform}));
+		}
+		else this.csObj = this.colorSpace;
+	}
+	
+	/* Create a scan-like CMYK bitmap: white paper with a slight color cast,
+	 * dark text-like bars, and a colored image area, plus sensor noise */
+	private static byte[] createCmykScan(int width, int height, long seed) {
+		Random rnd = new Random(seed);
+		byte[] data = new byte[width * height * 4];
+		for (int r = 0; r < height; r++) {
+			boolean textRow = (((r / 20) % 3) != 0);
+			for (int c = 0; c < width; c++) {
+				int cyan = 8;
+				int magenta = 6;
+				int yellow = 14;
+				int black = 0;
+				if ((r > (height / 2)) && (r < ((height * 3) / 4)) && (c > (width / 4)) && (c < ((width * 3) / 4))) {
+					cyan = ((c * 255) / width);
+					magenta = ((r * 255) / height);
+					yellow = 128;
+				}
+				else if (textRow && ((c / 9) % 4) != 0)
+					black = 230;
+				int offset = (((r * width) + c) * 4);
+				data[offset] = ((byte) noise(cyan, rnd));
+				data[offset + 1] = ((byte) noise(magenta, rnd));
+				data[offset + 2] = ((byte) noise(yellow, rnd));
+				data[offset + 3] = ((byte) noise(black, rnd));
+			}
+		}
+		return data;
+	}
+	private static int noise(int value, Random rnd) {
+		return Math.max(0, Math.min(255, (value + rnd.nextInt(5) - 2)));
+	}
+	
+	@Benchmark
+	public BufferedImage decodeBitmap() throws IOException {
+		return PdfUtils.decodeBitmap(this.data, this.params, null, this.csObj, null, this.objects, false, false, false);
+	}
+}
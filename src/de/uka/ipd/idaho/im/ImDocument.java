@@ -41,7 +41,6 @@ import java.util.Properties;
 import java.util.TreeMap;
 import java.util.TreeSet;
 
-import de.uka.ipd.idaho.easyIO.util.RandomByteSource;
 import de.uka.ipd.idaho.gamta.AttributeUtils;
 import de.uka.ipd.idaho.gamta.defaultImplementation.AbstractAttributed;
 import de.uka.ipd.idaho.gamta.util.CountingSet;
@@ -50,6 +49,7 @@ import de.uka.ipd.idaho.gamta.util.imaging.PageImage;
 import de.uka.ipd.idaho.gamta.util.imaging.PageImageInputStream;
 import de.uka.ipd.idaho.gamta.util.imaging.PageImageSource;
 import de.uka.ipd.idaho.gamta.util.imaging.PageImageStore;
+import de.uka.ipd.idaho.im.util.ImMetrics;
 import de.uka.ipd.idaho.im.util.ImUtils;
 
 /**
@@ -722,6 +722,7 @@ public class ImDocument extends AbstractAttributed implements ImObject {
 	
 	/** the UUID of the document */
 	public final String docId;
+	private String normDocId = null;
 	
 	/** the orientation of the text in the images contained in the document, determining the reading order of words */
 	public final ComponentOrientation orientation;
@@ -766,6 +767,11 @@ public class ImDocument extends AbstractAttributed implements ImObject {
 	private PageImageSource pageImageSource = null;
 	private PageImageStore pageImageStore = null;
 	
+	private boolean disposed = false;
+	private ImMetrics.MetricsRecorder liveRecorder; // recorder that counted us as live, so disposal decrements exactly where creation incremented
+	
+	private boolean compactWordStorage = false;
+	
 	/** Constructor
 	 * @param docId the ID of the document
 	 */
@@ -783,6 +789,10 @@ public class ImDocument extends AbstractAttributed implements ImObject {
 		if (orientation == null)
 			orientation = ComponentOrientation.getOrientation(Locale.US);
 		this.orientation = orientation;
+		ImMetrics.count("ImDocument.created");
+		this.liveRecorder = ImMetrics.getRecorder();
+		if (this.liveRecorder != null)
+			this.liveRecorder.count("ImDocument.live", 1);
 	}
 	
 	/**
@@ -842,6 +852,17 @@ public class ImDocument extends AbstractAttributed implements ImObject {
 	 * this method.
 	 */
 	public void dispose() {
+		ImMetrics.MetricsRecorder liveRecorder = null;
+		synchronized (this) {
+			if (!this.disposed) {
+				this.disposed = true;
+				ImMetrics.count("ImDocument.disposed");
+				liveRecorder = this.liveRecorder;
+				this.liveRecorder = null;
+			}
+		}
+		if (liveRecorder != null)
+			liveRecorder.count("ImDocument.live", -1);
 		if (this.listeners != null)
 			this.listeners.clear();
 		this.listeners = null;
@@ -918,6 +939,12 @@ public class ImDocument extends AbstractAttributed implements ImObject {
 		return this.docId;
 	}
 	
+	String getNormalizedDocId() {
+		if (this.normDocId == null)
+			this.normDocId = UuidHelper.getNormalizedDocId(this.docId);
+		return this.normDocId;
+	}
+	
 	/* (non-Javadoc)
 	 * @see de.uka.ipd.idaho.gamta.defaultImplementation.AbstractAttributed#setAttribute(java.lang.String, java.lang.Object)
 	 */
@@ -2149,8 +2176,36 @@ public class ImDocument extends AbstractAttributed implements ImObject {
 		if (TRACK_INSTANCES) this.accessHistory.accessed();
 		if (docLocalUID.equals(localUid))
 			return this;
-		else return ((ImObject) this.objectsByLocalUID.get(localUid));
+		ImObject obj = ((ImObject) this.objectsByLocalUID.get(localUid));
+		if ((obj == null) && this.compactWordStorage)
+			obj = this.getStoredWordByLocalUID(localUid);
+		return obj;
+	}
+	
+	/* words in compact storage are not indexed by their local UIDs, as that
+	 * would keep their handles alive, so we decode page ID and bounding box
+	 * from the UID and look up the word in its page */
+	private ImWord getStoredWordByLocalUID(String localUid) {
+		if ((localUid == null) || (localUid.length() != 32))
+			return null;
+		if (!localUid.startsWith(wordTypeLocalUidPrefix))
+			return null;
+		try {
+			ImPage page = this.getPage(Integer.parseInt(localUid.substring(8, 12), 16));
+			if (page == null)
+				return null;
+			int left = Integer.parseInt(localUid.substring(16, 20), 16);
+			int top = Integer.parseInt(localUid.substring(20, 24), 16);
+			int right = Integer.parseInt(localUid.substring(24, 28), 16);
+			int bottom = Integer.parseInt(localUid.substring(28, 32), 16);
+			ImWord word = page.getWord(new BoundingBox(left, right, top, bottom));
+			return (((word != null) && localUid.equals(word.getLocalUID())) ? word : null);
+		}
+		catch (NumberFormatException nfe) {
+			return null;
+		}
 	}
+	private static final String wordTypeLocalUidPrefix = UuidHelper.getLocalUID(ImWord.WORD_ANNOTATION_TYPE, 0, 0, 0, 0, 0, 0).substring(0, 8);
 	
 	/**
 	 * Retrieve an object associated with the document by its UUID. The
@@ -2160,7 +2215,7 @@ public class ImDocument extends AbstractAttributed implements ImObject {
 	 */
 	public ImObject getObjectByUUID(String uuid) {
 		if (TRACK_INSTANCES) this.accessHistory.accessed();
-		String luid = RandomByteSource.getHexXor(uuid, this.docId);
+		String luid = UuidHelper.getHexXor(uuid, this.docId);
 		return this.getObjectByLocalUID(luid);
 	}
 	
@@ -2202,6 +2257,72 @@ public class ImDocument extends AbstractAttributed implements ImObject {
 		return this.wordCount;
 	}
 	
+	/**
+	 * Test whether or not the words of this document are in compact storage.
+	 * @return true if words are in compact storage
+	 * @see #setCompactWordStorage(boolean)
+	 */
+	public boolean isCompactWordStorage() {
+		return this.compactWordStorage;
+	}
+	
+	/**
+	 * Switch compact word storage on or off. In compact storage, the data of
+	 * the words in each page lives in parallel arrays, with font names and
+	 * text stream types shared, and text stream links held as page IDs and
+	 * array indexes instead of object references. <code>ImWord</code>
+	 * objects then are handles materialized on demand from the arrays, which
+	 * become garbage once client code lets go of them, vastly reducing the
+	 * memory footprint of documents with millions of words. As long as client
+	 * code holds on to a word, any retrieval of that word returns the very
+	 * same object, so identity comparisons keep working. Words with generic
+	 * attributes are kept as objects in any case, as the arrays cannot store
+	 * these attributes. Switching on compact storage is possible at any time,
+	 * e.g. after loading a document, and it also applies to pages and words
+	 * added later. Switching it off again turns all words back into regular
+	 * objects.
+	 * @param compact use compact word storage?
+	 */
+	public synchronized void setCompactWordStorage(boolean compact) {
+		if (compact == this.compactWordStorage)
+			return;
+		ImPage[] pages = this.getPages();
+		ImWord[][] pageWords = new ImWord[pages.length][];
+		if (compact) {
+			for (int p = 0; p < pages.length; p++)
+				pageWords[p] = pages[p].storeWords();
+			for (int p = 0; p < pages.length; p++) {
+				for (int w = 0; w < pageWords[p].length; w++)
+					pageWords[p][w].storeLinks(); // can only do this once all pages have their words stored
+			}
+			synchronized (this.objectsByLocalUID) {
+				for (int p = 0; p < pages.length; p++) {
+					for (int w = 0; w < pageWords[p].length; w++)
+						this.objectsByLocalUID.remove(pageWords[p][w].getLocalUID());
+				}
+			}
+		}
+		else {
+			for (int p = 0; p < pages.length; p++) {
+				pageWords[p] = pages[p].getWords();
+				for (int w = 0; w < pageWords[p].length; w++)
+					pageWords[p][w].fetchLinks(); // need to do this while all words are still in storage
+			}
+			for (int p = 0; p < pages.length; p++)
+				pages[p].releaseWords(pageWords[p]);
+			synchronized (this.objectsByLocalUID) {
+				for (int p = 0; p < pages.length; p++) {
+					for (int w = 0; w < pageWords[p].length; w++)
+						this.objectsByLocalUID.put(pageWords[p][w].getLocalUID(), pageWords[p][w]);
+				}
+			}
+		}
+		this.compactWordStorage = compact;
+		this.textStreamHeads = null;
+		this.textStreamTails = null;
+		this.textStreamModCount++;
+	}
+	
 	void invalidateTextStreamEnds() {
 		this.textStreamHeads = null;
 		this.textStreamTails = null;
@@ -2310,8 +2431,10 @@ public class ImDocument extends AbstractAttributed implements ImObject {
 			this.wordCount = -1;
 		}
 		else this.regionTypesClean = false;
-		synchronized (this.objectsByLocalUID) {
-			this.objectsByLocalUID.put(region.getLocalUID(), region);
+		if (!(region instanceof ImWord) || (((ImWord) region).store == null)) /* stored words are looked up in their pages */ {
+			synchronized (this.objectsByLocalUID) {
+				this.objectsByLocalUID.put(region.getLocalUID(), region);
+			}
 		}
 		if (this.listeners == null)
 			return;
@@ -2326,8 +2449,10 @@ public class ImDocument extends AbstractAttributed implements ImObject {
 			this.wordCount = -1;
 		}
 		else this.regionTypesClean = false;
-		synchronized (this.objectsByLocalUID) {
-			this.objectsByLocalUID.remove(region.getLocalUID());
+		if (!(region instanceof ImWord) || (((ImWord) region).store == null)) /* stored words are looked up in their pages */ {
+			synchronized (this.objectsByLocalUID) {
+				this.objectsByLocalUID.remove(region.getLocalUID());
+			}
 		}
 		if (this.listeners == null)
 			return;
@@ -131,17 +131,18 @@ public interface ImObject extends Attributed, ImagingConstants {
 		public static String getLocalUID(String type, int firstPageId, int lastPageId, int left, int top, int right, int bottom) {
 			//	THIS IS BETTER, AS FIRST TOP LEFT AND LAST BOTTOM RIGHT ARE JUST AS UNIQUE,
 			//	BUT ARE INSENSITIVE TO SPLITTING AND MERGING OF WORDS
-			return (""
-					// 4 byte of type hash
-					+ asHex(type.hashCode(), 4)
-					// 2 + 2 bytes of page IDs
-					+ asHex(firstPageId, 2) + asHex(lastPageId, 2)
-					// 2 * 4 bytes of bounding boxes (left top of first word, right bottom of last word)
-					+ asHex(left, 2)
-					+ asHex(top, 2)
-					+ asHex(right, 2)
-					+ asHex(bottom, 2)
-				);
+			char[] luid = new char[32];
+			// 4 byte of type hash
+			putHex(type.hashCode(), 4, luid, 0);
+			// 2 + 2 bytes of page IDs
+			putHex(firstPageId, 2, luid, 8);
+			putHex(lastPageId, 2, luid, 12);
+			// 2 * 4 bytes of bounding boxes (left top of first word, right bottom of last word)
+			putHex(left, 2, luid, 16);
+			putHex(top, 2, luid, 20);
+			putHex(right, 2, luid, 24);
+			putHex(bottom, 2, luid, 28);
+			return new String(luid);
 		}
 		
 		/**
@@ -152,7 +153,7 @@ public interface ImObject extends Attributed, ImagingConstants {
 		 */
 		public static String getUUID(ImObject obj) {
 			ImDocument doc = obj.getDocument();
-			return ((doc == null) ? null : getUUID(obj, doc.docId));
+			return ((doc == null) ? null : getHexXor(obj.getLocalUID(), doc.getNormalizedDocId()));
 		}
 		
 		/**
@@ -162,17 +163,42 @@ public interface ImObject extends Attributed, ImagingConstants {
 		 * @return the UUID of the argument object
 		 */
 		public static String getUUID(ImObject obj, String docId) {
-			if ((docId.length() == 32) && docId.matches("[0-9A-Fa-f]++"))
-				docId = docId.toUpperCase();
-			else {
-				docId = (""
-						+ asHex(docId.hashCode(), 4)
-						+ asHex(docId.hashCode(), 4)
-						+ asHex(docId.hashCode(), 4)
-						+ asHex(docId.hashCode(), 4)
-					);
+			ImDocument doc = obj.getDocument();
+			if ((doc != null) && doc.docId.equals(docId))
+				return getHexXor(obj.getLocalUID(), doc.getNormalizedDocId());
+			return getHexXor(obj.getLocalUID(), getNormalizedDocId(docId));
+		}
+		
+		/* normalize a document ID to the 32 HEX digits UUIDs are XORed with
+		 * (documents hold on to the result, so this runs once per document) */
+		static String getNormalizedDocId(String docId) {
+			if ((docId.length() == 32) && isHex(docId))
+				return docId.toUpperCase();
+			char[] ndi = new char[32];
+			for (int q = 0; q < 4; q++)
+				putHex(docId.hashCode(), 4, ndi, (q * 8));
+			return new String(ndi);
+		}
+		
+		/**
+		 * XOR two HEX strings digit by digit, as a (much) faster equivalent of
+		 * <code>RandomByteSource.getHexXor()</code>. The shorter of the two
+		 * argument strings is padded with zeros at its end. The result is in
+		 * upper case.
+		 * @param hex1 the first HEX string
+		 * @param hex2 the second HEX string
+		 * @return the XOR of the two argument strings
+		 */
+		public static String getHexXor(String hex1, String hex2) {
+			char[] xor = new char[Math.max(hex1.length(), hex2.length())];
+			for (int c = 0; c < xor.length; c++) {
+				int h1 = ((c < hex1.length()) ? hexValue(hex1.charAt(c)) : 0);
+				int h2 = ((c < hex2.length()) ? hexValue(hex2.charAt(c)) : 0);
+				if ((h1 == -1) || (h2 == -1))
+					return RandomByteSource.getHexXor(hex1, hex2); // leave error handling to original implementation
+				xor[c] = hexDigits[h1 ^ h2];
 			}
-			return RandomByteSource.getHexXor(obj.getLocalUID(), docId);
+			return new String(xor);
 		}
 		
 		/**
@@ -185,16 +211,36 @@ public interface ImObject extends Attributed, ImagingConstants {
 		 * @return the HEX representation of the required bytes
 		 */
 		static String asHex(int i, int bytes) {
-			StringBuffer hex = new StringBuffer();
-			while (bytes != 0) {
-				hex.insert(0, hexDigits.charAt(i & 0xF));
-				i >>>= 4;
-				hex.insert(0, hexDigits.charAt(i & 0xF));
+			char[] hex = new char[bytes * 2];
+			putHex(i, bytes, hex, 0);
+			return new String(hex);
+		}
+		
+		private static void putHex(int i, int bytes, char[] hex, int offset) {
+			for (int h = ((offset + (bytes * 2)) - 1); h >= offset; h--) {
+				hex[h] = hexDigits[i & 0xF];
 				i >>>= 4;
-				bytes--;
 			}
-			return hex.toString();
 		}
-		private static final String hexDigits = "0123456789ABCDEF";
+		
+		private static boolean isHex(String str) {
+			for (int c = 0; c < str.length(); c++) {
+				if (hexValue(str.charAt(c)) == -1)
+					return false;
+			}
+			return true;
+		}
+		
+		private static int hexValue(char ch) {
+			if (('0' <= ch) && (ch <= '9'))
+				return (ch - '0');
+			else if (('A' <= ch) && (ch <= 'F'))
+				return (ch - 'A' + 10);
+			else if (('a' <= ch) && (ch <= 'f'))
+				return (ch - 'a' + 10);
+			else return -1;
+		}
+		
+		private static final char[] hexDigits = "0123456789ABCDEF".toCharArray();
 	}
 }
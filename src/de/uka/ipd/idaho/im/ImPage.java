@@ -28,6 +28,8 @@
 package de.uka.ipd.idaho.im;
 
 import java.io.IOException;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
 import java.util.Arrays;
 import java.util.Comparator;
 import java.util.HashMap;
@@ -211,6 +213,12 @@ public class ImPage extends ImRegion {
 			this.contained.clear();
 			this.removed.clear();
 		}
+		void release() {
+			this.words = new ImWord[128];
+			this.wordCount = 0;
+			this.contained = new HashSet(); // clearing would retain the hash tables
+			this.removed = new HashSet();
+		}
 		ImWord[] toWordArray() {
 			this.ensureSorted();
 			return Arrays.copyOfRange(this.words, 0, this.wordCount);
@@ -330,6 +338,313 @@ public class ImPage extends ImRegion {
 		}
 	}
 	
+	/* Compact storage for the words of a page, keeping word data in parallel
+	 * arrays instead of one object graph per word. The ImWord objects of the
+	 * stored words are mere handles, materialized on demand and referenced
+	 * only weakly, so they become garbage once client code lets go of them.
+	 * While a handle is alive, it remains the only object representing its
+	 * word, so identity comparisons keep working. Text stream links are held
+	 * as page ID and slot pairs, so materializing a word does not pull its
+	 * whole text stream into memory. Handles whose state cannot go into the
+	 * arrays (generic attributes, links to words outside any store) are
+	 * pinned, i.e., referenced strongly. */
+	static class WordStore {
+		private static final int FREE_SLOT = Integer.MIN_VALUE;
+		
+		private static class WordRef extends WeakReference {
+			final WordStore store;
+			final int slot;
+			WordRef(ImWord word, WordStore store, int slot) {
+				super(word, collectedHandles);
+				this.store = store;
+				this.slot = slot;
+			}
+		}
+		
+		/* shared by all pages, so references to collected handles go away on
+		 * the next access to any page, rather than lingering in pages that
+		 * are not accessed again (callers must not hold any storage lock) */
+		private static final ReferenceQueue collectedHandles = new ReferenceQueue();
+		private static void releaseCollectedHandles() {
+			for (WordRef ref; (ref = ((WordRef) collectedHandles.poll())) != null;)
+				synchronized (ref.store) {
+					if ((ref.store.handles != null) && (ref.store.handles[ref.slot] == ref))
+						ref.store.handles[ref.slot] = null;
+				}
+		}
+		
+		final ImPage page;
+		
+		int[] lefts;
+		int[] rights;
+		int[] tops;
+		int[] bottoms;
+		int[] baselines;
+		int[] fontSizes;
+		byte[] flags;
+		char[] nextRelations;
+		String[] strings;
+		String[] fontNames; // interned
+		String[] fontCharCodes;
+		String[] textStreamIds; // shared by all words in a text stream
+		String[] textStreamTypes; // interned
+		int[] textStreamPoss;
+		int[] prevPageIds;
+		int[] prevSlots;
+		int[] nextPageIds;
+		int[] nextSlots;
+		
+		private WordRef[] handles;
+		private HashMap pinnedHandles = null;
+		
+		private int slotCount = 0;
+		private int[] freeSlots = new int[8];
+		private int freeSlotCount = 0;
+		private int wordCount = 0;
+		private int[] sortedSlots = null;
+		
+		WordStore(ImPage page) {
+			this.page = page;
+			this.setCapacity(64);
+		}
+		
+		private void setCapacity(int capacity) {
+			this.lefts = Arrays.copyOf(((this.lefts == null) ? new int[0] : this.lefts), capacity);
+			this.rights = Arrays.copyOf(((this.rights == null) ? new int[0] : this.rights), capacity);
+			this.tops = Arrays.copyOf(((this.tops == null) ? new int[0] : this.tops), capacity);
+			this.bottoms = Arrays.copyOf(((this.bottoms == null) ? new int[0] : this.bottoms), capacity);
+			this.baselines = Arrays.copyOf(((this.baselines == null) ? new int[0] : this.baselines), capacity);
+			this.fontSizes = Arrays.copyOf(((this.fontSizes == null) ? new int[0] : this.fontSizes), capacity);
+			this.flags = Arrays.copyOf(((this.flags == null) ? new byte[0] : this.flags), capacity);
+			this.nextRelations = Arrays.copyOf(((this.nextRelations == null) ? new char[0] : this.nextRelations), capacity);
+			this.strings = Arrays.copyOf(((this.strings == null) ? new String[0] : this.strings), capacity);
+			this.fontNames = Arrays.copyOf(((this.fontNames == null) ? new String[0] : this.fontNames), capacity);
+			this.fontCharCodes = Arrays.copyOf(((this.fontCharCodes == null) ? new String[0] : this.fontCharCodes), capacity);
+			this.textStreamIds = Arrays.copyOf(((this.textStreamIds == null) ? new String[0] : this.textStreamIds), capacity);
+			this.textStreamTypes = Arrays.copyOf(((this.textStreamTypes == null) ? new String[0] : this.textStreamTypes), capacity);
+			this.textStreamPoss = Arrays.copyOf(((this.textStreamPoss == null) ? new int[0] : this.textStreamPoss), capacity);
+			this.prevPageIds = Arrays.copyOf(((this.prevPageIds == null) ? new int[0] : this.prevPageIds), capacity);
+			this.prevSlots = Arrays.copyOf(((this.prevSlots == null) ? new int[0] : this.prevSlots), capacity);
+			this.nextPageIds = Arrays.copyOf(((this.nextPageIds == null) ? new int[0] : this.nextPageIds), capacity);
+			this.nextSlots = Arrays.copyOf(((this.nextSlots == null) ? new int[0] : this.nextSlots), capacity);
+			this.handles = Arrays.copyOf(((this.handles == null) ? new WordRef[0] : this.handles), capacity);
+		}
+		
+		synchronized int addWord(ImWord word) {
+			int slot;
+			if (this.freeSlotCount != 0)
+				slot = this.freeSlots[--this.freeSlotCount];
+			else {
+				if (this.slotCount == this.lefts.length)
+					this.setCapacity(this.lefts.length * 2);
+				slot = this.slotCount++;
+			}
+			this.lefts[slot] = word.bounds.left;
+			this.rights[slot] = word.bounds.right;
+			this.tops[slot] = word.bounds.top;
+			this.bottoms[slot] = word.bounds.bottom;
+			this.prevPageIds[slot] = -1;
+			this.nextPageIds[slot] = -1;
+			this.handles[slot] = new WordRef(word, this, slot);
+			this.wordCount++;
+			this.sortedSlots = null;
+			return slot;
+		}
+		
+		synchronized void removeWord(int slot) {
+			this.lefts[slot] = FREE_SLOT;
+			this.strings[slot] = null;
+			this.fontNames[slot] = null;
+			this.fontCharCodes[slot] = null;
+			this.textStreamIds[slot] = null;
+			this.textStreamTypes[slot] = null;
+			this.prevPageIds[slot] = -1;
+			this.nextPageIds[slot] = -1;
+			this.handles[slot] = null;
+			if (this.pinnedHandles != null)
+				this.pinnedHandles.remove(new Integer(slot));
+			if (this.freeSlotCount == this.freeSlots.length)
+				this.freeSlots = Arrays.copyOf(this.freeSlots, (this.freeSlots.length * 2));
+			this.freeSlots[this.freeSlotCount++] = slot;
+			this.wordCount--;
+			this.sortedSlots = null;
+		}
+		
+		synchronized void pin(int slot, ImWord word) {
+			if (this.pinnedHandles == null)
+				this.pinnedHandles = new HashMap();
+			this.pinnedHandles.put(new Integer(slot), word);
+		}
+		
+		ImWord getWord(int slot) {
+			releaseCollectedHandles();
+			synchronized (this) {
+				return this.materializeWord(slot);
+			}
+		}
+		
+		private ImWord materializeWord(int slot) {
+			if (this.lefts[slot] == FREE_SLOT)
+				return null;
+			ImWord word = ((this.handles[slot] == null) ? null : ((ImWord) this.handles[slot].get()));
+			if (word == null) {
+				word = new ImWord(this, slot);
+				this.handles[slot] = new WordRef(word, this, slot);
+			}
+			return word;
+		}
+		
+		synchronized void setPreviousWord(int slot, int prevPageId, int prevSlot) {
+			this.prevPageIds[slot] = prevPageId;
+			this.prevSlots[slot] = prevSlot;
+		}
+		
+		synchronized void setNextWord(int slot, int nextPageId, int nextSlot) {
+			this.nextPageIds[slot] = nextPageId;
+			this.nextSlots[slot] = nextSlot;
+		}
+		
+		ImWord getPreviousWord(int slot) {
+			int prevPageId;
+			int prevSlot;
+			synchronized (this) {
+				prevPageId = this.prevPageIds[slot];
+				prevSlot = this.prevSlots[slot];
+			}
+			return this.getLinkedWord(prevPageId, prevSlot);
+		}
+		
+		ImWord getNextWord(int slot) {
+			int nextPageId;
+			int nextSlot;
+			synchronized (this) {
+				nextPageId = this.nextPageIds[slot];
+				nextSlot = this.nextSlots[slot];
+			}
+			return this.getLinkedWord(nextPageId, nextSlot);
+		}
+		
+		private ImWord getLinkedWord(int pageId, int slot) {
+			if (pageId == -1)
+				return null;
+			ImPage page = ((pageId == this.page.pageId) ? this.page : this.page.getDocument().getPage(pageId));
+			if ((page == null) || (page.wordStore == null))
+				return null;
+			return page.wordStore.getWord(slot);
+		}
+		
+		int size() {
+			return this.wordCount;
+		}
+		
+		ImWord[] getWords() {
+			releaseCollectedHandles();
+			synchronized (this) {
+				return this.materializeWords();
+			}
+		}
+		
+		private ImWord[] materializeWords() {
+			if (this.sortedSlots != null) {
+				ImWord[] words = new ImWord[this.sortedSlots.length];
+				for (int w = 0; w < this.sortedSlots.length; w++)
+					words[w] = this.materializeWord(this.sortedSlots[w]);
+				return words;
+			}
+			ImWord[] words = new ImWord[this.wordCount];
+			for (int s = 0, w = 0; s < this.slotCount; s++) {
+				if (this.lefts[s] != FREE_SLOT)
+					words[w++] = this.materializeWord(s);
+			}
+			Arrays.sort(words, this.page.wordOrder);
+			this.sortedSlots = new int[words.length];
+			for (int w = 0; w < words.length; w++)
+				this.sortedSlots[w] = words[w].storeSlot;
+			return words;
+		}
+		
+		private void ensureSorted() {
+			if (this.sortedSlots == null)
+				this.materializeWords(); // sorting requires the handles, which then become garbage right away
+		}
+		
+		ImWord findWord(BoundingBox bounds) {
+			releaseCollectedHandles();
+			synchronized (this) {
+				for (int s = 0; s < this.slotCount; s++) {
+					if ((this.lefts[s] == bounds.left) && (this.rights[s] == bounds.right) && (this.tops[s] == bounds.top) && (this.bottoms[s] == bounds.bottom))
+						return this.materializeWord(s);
+				}
+				return null;
+			}
+		}
+		
+		ImWord getWordAt(int x, int y) {
+			releaseCollectedHandles();
+			synchronized (this) {
+				this.ensureSorted();
+				for (int w = 0; w < this.sortedSlots.length; w++) {
+					int s = this.sortedSlots[w];
+					if ((this.lefts[s] <= x) && (x < this.rights[s]) && (this.tops[s] <= y) && (y < this.bottoms[s]))
+						return this.materializeWord(s);
+				}
+				return null;
+			}
+		}
+		
+		ImWord[] getWordsInside(BoundingBox box) {
+			releaseCollectedHandles();
+			synchronized (this) {
+				return this.materializeWordsInside(box);
+			}
+		}
+		
+		private ImWord[] materializeWordsInside(BoundingBox box) {
+			this.ensureSorted();
+			ImWord[] words = new ImWord[16];
+			int wordCount = 0;
+			for (int w = 0; w < this.sortedSlots.length; w++) {
+				int s = this.sortedSlots[w];
+				int centerX = ((this.lefts[s] + this.rights[s]) / 2);
+				int centerY = ((this.tops[s] + this.bottoms[s]) / 2);
+				if ((centerX < box.left) || (centerX >= box.right) || (centerY < box.top) || (centerY >= box.bottom))
+					continue;
+				if (wordCount == words.length)
+					words = Arrays.copyOf(words, (words.length * 2));
+				words[wordCount++] = this.materializeWord(s);
+			}
+			return Arrays.copyOf(words, wordCount);
+		}
+		
+		synchronized void clear() {
+			this.lefts = null;
+			this.rights = null;
+			this.tops = null;
+			this.bottoms = null;
+			this.baselines = null;
+			this.fontSizes = null;
+			this.flags = null;
+			this.nextRelations = null;
+			this.strings = null;
+			this.fontNames = null;
+			this.fontCharCodes = null;
+			this.textStreamIds = null;
+			this.textStreamTypes = null;
+			this.textStreamPoss = null;
+			this.prevPageIds = null;
+			this.prevSlots = null;
+			this.nextPageIds = null;
+			this.nextSlots = null;
+			this.handles = null;
+			this.pinnedHandles = null;
+			this.slotCount = 0;
+			this.freeSlotCount = 0;
+			this.wordCount = 0;
+			this.sortedSlots = null;
+			this.setCapacity(64);
+		}
+	}
+	
 	/* sort regions by area, as this
 	 * (a) reflects region nesting and
 	 * (b) gives a total order independent of position for disjoint or intersecting regions
@@ -361,6 +676,7 @@ public class ImPage extends ImRegion {
 	private Comparator wordOrder;
 	private HashMap wordsByBounds = new HashMap();
 	private WordIndex wordsByPoints = null;
+	WordStore wordStore = null; // only in compact word storage mode
 	private ImWord[] textStreamHeads = null;
 	private ImWord[] textStreamTails = null;
 	
@@ -380,6 +696,8 @@ public class ImPage extends ImRegion {
 		this.wordOrder = ImWord.getComparator(doc.orientation);
 //		this.wordsByPoints = new WordIndex((this.bounds.right - this.bounds.left), (this.bounds.bottom - this.bounds.top));
 		this.regionOrder = sizeRegionOrder;
+		if (doc.isCompactWordStorage())
+			this.wordStore = new WordStore(this);
 		doc.addPage(this);
 	}
 	
@@ -425,6 +743,46 @@ public class ImPage extends ImRegion {
 			this.wordsByBounds.clear();
 			if (this.wordsByPoints != null)
 				this.wordsByPoints.clear();
+			if (this.wordStore != null)
+				this.wordStore.clear();
+		}
+	}
+	
+	/**
+	 * Move the words of the page into compact storage. The returned words are
+	 * the handles of the stored words, with their text stream links still to
+	 * be moved into the storage once all pages have their words stored.
+	 * @return an array holding the stored words
+	 */
+	ImWord[] storeWords() {
+		synchronized (this.words) {
+			ImWord[] words = this.words.toWordArray();
+			this.wordStore = new WordStore(this);
+			for (int w = 0; w < words.length; w++)
+				words[w].attachToStore(this.wordStore);
+			this.words.release();
+			this.wordsByBounds = new HashMap(); // clearing would retain the hash table
+			if (this.wordsByPoints != null)
+				this.wordsByPoints.clear();
+			this.wordsByPoints = null;
+			return words;
+		}
+	}
+	
+	/**
+	 * Move the words of the page out of compact storage and back into regular
+	 * objects. The argument words have to be all the words of the page, with
+	 * their text stream links already resolved from the storage.
+	 * @param words the words to release
+	 */
+	void releaseWords(ImWord[] words) {
+		synchronized (this.words) {
+			for (int w = 0; w < words.length; w++) {
+				words[w].releaseStore();
+				this.words.addWord(words[w]);
+				this.wordsByBounds.put(words[w].bounds.toString(), words[w]);
+			}
+			this.wordStore = null;
 		}
 	}
 	
@@ -521,10 +879,18 @@ public class ImPage extends ImRegion {
 		if (word.pageId != this.pageId)
 			throw new IllegalArgumentException("Page ID mismatch, " + word.pageId + " != " + this.pageId);
 		synchronized (this.words) {
-			this.words.addWord(word);
-			this.wordsByBounds.put(word.bounds.toString(), word);
-			if (this.wordsByPoints != null)
-				this.wordsByPoints.addWord(word);
+			if (this.wordStore != null) {
+				if (word.store == this.wordStore)
+					return; // added before
+				word.attachToStore(this.wordStore);
+				word.storeLinks();
+			}
+			else {
+				this.words.addWord(word);
+				this.wordsByBounds.put(word.bounds.toString(), word);
+				if (this.wordsByPoints != null)
+					this.wordsByPoints.addWord(word);
+			}
 		}
 		word.setPage(this);
 		this.getDocument().notifyRegionAdded(word);
@@ -567,10 +933,14 @@ public class ImPage extends ImRegion {
 		
 		//	remove word
 		synchronized (this.words) {
-			if (this.wordsByPoints != null)
-				this.wordsByPoints.removeWord(word);
-			this.wordsByBounds.remove(word.bounds.toString());
-			this.words.removeWord(word);
+			if ((this.wordStore != null) && (word.store == this.wordStore))
+				word.detachFromStore();
+			else {
+				if (this.wordsByPoints != null)
+					this.wordsByPoints.removeWord(word);
+				this.wordsByBounds.remove(word.bounds.toString());
+				this.words.removeWord(word);
+			}
 		}
 		
 		//	detach word & notify listeners
@@ -597,6 +967,16 @@ public class ImPage extends ImRegion {
 	 * @return the word with the given bounding box
 	 */
 	public ImWord getWord(String bounds) {
+		if (this.wordStore != null) {
+			BoundingBox wordBounds;
+			try {
+				wordBounds = BoundingBox.parse(bounds);
+			}
+			catch (IllegalArgumentException iae) {
+				return null;
+			}
+			return ((wordBounds == null) ? null : this.wordStore.findWord(wordBounds));
+		}
 		return ((ImWord) this.wordsByBounds.get(bounds));
 	}
 	
@@ -608,6 +988,8 @@ public class ImPage extends ImRegion {
 	 * @return the word at the argument point
 	 */
 	public ImWord getWordAt(int x, int y) {
+		if (this.wordStore != null)
+			return this.wordStore.getWordAt(x, y);
 		synchronized (this.words) {
 			if (this.wordsByPoints == null) /* need to check synchronously, as otherwise half empty index might get used */ {
 				this.wordsByPoints = new WordIndex((this.bounds.right - this.bounds.left), (this.bounds.bottom - this.bounds.top));
@@ -633,6 +1015,8 @@ TODO Try switching point access support for IM words in page to single array:
 	 * @return the number of words
 	 */
 	public int getWordCount() {
+		if (this.wordStore != null)
+			return this.wordStore.size();
 		return this.words.size();
 	}
 	
@@ -641,6 +1025,8 @@ TODO Try switching point access support for IM words in page to single array:
 	 * @return an array holding the words
 	 */
 	public ImWord[] getWords() {
+		if (this.wordStore != null)
+			return this.wordStore.getWords();
 		return this.words.toWordArray();
 	}
 	
@@ -658,6 +1044,8 @@ TODO Try switching point access support for IM words in page to single array:
 	 * @return an array holding the words lying inside the argument box
 	 */
 	public ImWord[] getWordsInside(BoundingBox box) {
+		if (this.wordStore != null)
+			return this.wordStore.getWordsInside(box);
 		ImWordCollectorList wi = new ImWordCollectorList();
 		for (int w = 0; w < this.words.size(); w++) {
 			ImWord imw = this.words.getWord(w);
@@ -724,8 +1112,9 @@ TODO Try switching point access support for IM words in page to single array:
 			return;
 		ImWordCollectorList tshs = new ImWordCollectorList();
 		ImWordCollectorList tsts = new ImWordCollectorList();
-		for (int w = 0; w < this.words.size(); w++) {
-			ImWord imw = this.words.getWord(w);
+		ImWord[] words = this.getWords();
+		for (int w = 0; w < words.length; w++) {
+			ImWord imw = words[w];
 			if ((imw.getPreviousWord() == null) || (imw.getPreviousWord().pageId != imw.pageId) || (imw.getPreviousWord().getPage() == null))
 				tshs.addWord(imw);
 			if ((imw.getNextWord() == null) || (imw.getNextWord().pageId != imw.pageId) || (imw.getNextWord().getPage() == null))
@@ -941,8 +1330,13 @@ TODO Try switching point access support for IM words in page to single array:
 		if (ImDocument.TRACK_INSTANCES && (doc != null)) doc.accessed();
 		if (type == null)
 			return this.regions.toRegionArray();
-		else if (WORD_ANNOTATION_TYPE.equals(type))
+		else if (WORD_ANNOTATION_TYPE.equals(type)) {
+			if (this.wordStore != null) {
+				ImWord[] words = this.wordStore.getWords();
+				return Arrays.copyOf(words, words.length, ImRegion[].class);
+			}
 			return this.words.toRegionArray();
+		}
 		ImPageRegionList imrs = this.getRegionList(type, false);
 		return ((imrs == null) ? new ImRegion[0] : imrs.toRegionArray());
 	}
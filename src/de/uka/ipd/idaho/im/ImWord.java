@@ -37,6 +37,7 @@ import java.awt.geom.AffineTransform;
 import java.util.Arrays;
 import java.util.Comparator;
 
+import de.uka.ipd.idaho.gamta.Attributed;
 import de.uka.ipd.idaho.gamta.Gamta;
 import de.uka.ipd.idaho.gamta.util.constants.LiteratureConstants;
 import de.uka.ipd.idaho.gamta.util.imaging.BoundingBox;
@@ -426,6 +427,9 @@ public class ImWord extends ImRegion implements ImAnnotation {
 	private int textStreamPos = 0; // position within text stream, absolute
 	private String textStreamType = TEXT_STREAM_TYPE_MAIN_TEXT; // type of the text stream the word belongs to
 	
+	ImPage.WordStore store = null; // compact storage of page, if word is handle for stored data
+	int storeSlot = -1; // index of word data in compact storage
+	
 	/** Constructor (automatically adds the word to the argument page; if this
 	 * is undesired for whatever reason, one of the constructors taking a
 	 * document and a page ID as arguments has to be used instead)
@@ -471,6 +475,130 @@ public class ImWord extends ImRegion implements ImAnnotation {
 		this.textStreamId = this.getLocalID();
 	}
 	
+	/* Constructor for handles of words in compact storage, materializing the
+	 * word from the data in the storage arrays (the storage holds the lock) */
+	ImWord(ImPage.WordStore store, int slot) {
+		super(store.page.getDocument(), store.page.pageId, new BoundingBox(store.lefts[slot], store.rights[slot], store.tops[slot], store.bottoms[slot]), WORD_ANNOTATION_TYPE);
+		this.centerX = ((this.bounds.left + this.bounds.right) / 2);
+		this.centerY = ((this.bounds.top + this.bounds.bottom) / 2);
+		this.baseline = store.baselines[slot];
+		this.string = store.strings[slot];
+		this.fontName = store.fontNames[slot];
+		this.fontSize = store.fontSizes[slot];
+		this.fontCharCodes = store.fontCharCodes[slot];
+		this.flags = store.flags[slot];
+		this.nextRelation = store.nextRelations[slot];
+		this.textStreamId = store.textStreamIds[slot];
+		this.textStreamPos = store.textStreamPoss[slot];
+		this.textStreamType = store.textStreamTypes[slot];
+		this.store = store;
+		this.storeSlot = slot;
+		this.setPage(store.page);
+	}
+	
+	/* Move the word data into the argument compact storage, turning the word
+	 * into a handle; text stream links stay in place until storeLinks() */
+	void attachToStore(ImPage.WordStore store) {
+		this.storeSlot = store.addWord(this);
+		this.store = store;
+		this.storeState();
+		if (super.getAttributeNames().length != 0)
+			store.pin(this.storeSlot, this); // storage arrays have no room for generic attributes
+	}
+	
+	/* Move the text stream links into the compact storage, as far as they
+	 * point to words that are in compact storage themselves */
+	void storeLinks() {
+		this.setPrev(this.prevWord);
+		this.setNext(this.nextWord);
+	}
+	
+	/* Resolve the text stream links from the compact storage into the fields
+	 * proper, as preparation for releasing the word from the storage */
+	void fetchLinks() {
+		ImWord prevWord = this.getPrev();
+		ImWord nextWord = this.getNext();
+		this.prevWord = prevWord;
+		this.nextWord = nextWord;
+	}
+	
+	/* Turn a handle back into a regular word (after fetchLinks()) */
+	void releaseStore() {
+		this.store = null;
+		this.storeSlot = -1;
+	}
+	
+	/* Take the word out of compact storage, e.g. on removal from its page */
+	void detachFromStore() {
+		this.fetchLinks();
+		this.store.removeWord(this.storeSlot);
+		this.releaseStore();
+	}
+	
+	private void storeState() {
+		ImPage.WordStore store = this.store;
+		if (store == null)
+			return;
+		synchronized (store) {
+			if (this.fontName != store.fontNames[this.storeSlot])
+				this.fontName = ((this.fontName == null) ? null : this.fontName.intern()); // share font names between stored words
+			if (this.textStreamType != store.textStreamTypes[this.storeSlot])
+				this.textStreamType = ((this.textStreamType == null) ? null : this.textStreamType.intern()); // share text stream types between stored words
+			store.baselines[this.storeSlot] = this.baseline;
+			store.strings[this.storeSlot] = this.string;
+			store.fontNames[this.storeSlot] = this.fontName;
+			store.fontSizes[this.storeSlot] = this.fontSize;
+			store.fontCharCodes[this.storeSlot] = this.fontCharCodes;
+			store.flags[this.storeSlot] = ((byte) this.flags);
+			store.nextRelations[this.storeSlot] = this.nextRelation;
+			store.textStreamIds[this.storeSlot] = this.textStreamId;
+			store.textStreamPoss[this.storeSlot] = this.textStreamPos;
+			store.textStreamTypes[this.storeSlot] = this.textStreamType;
+		}
+	}
+	
+	private ImWord getPrev() {
+		if ((this.prevWord != null) || (this.store == null))
+			return this.prevWord;
+		return this.store.getPreviousWord(this.storeSlot);
+	}
+	
+	private void setPrev(ImWord prevWord) {
+		if (this.store == null)
+			this.prevWord = prevWord;
+		else if ((prevWord != null) && (prevWord.store != null)) {
+			this.prevWord = null;
+			this.store.setPreviousWord(this.storeSlot, prevWord.pageId, prevWord.storeSlot);
+		}
+		else {
+			this.prevWord = prevWord;
+			this.store.setPreviousWord(this.storeSlot, -1, -1);
+			if (prevWord != null)
+				this.store.pin(this.storeSlot, this); // need to hold on to link to word outside compact storage
+		}
+	}
+	
+	private ImWord getNext() {
+		if ((this.nextWord != null) || (this.store == null))
+			return this.nextWord;
+		return this.store.getNextWord(this.storeSlot);
+	}
+	
+	private void setNext(ImWord nextWord) {
+		if (this.store == null)
+			this.nextWord = nextWord;
+		else if ((nextWord != null) && (nextWord.store != null)) {
+			this.nextWord = null;
+			this.store.setNextWord(this.storeSlot, nextWord.pageId, nextWord.storeSlot);
+		}
+		else {
+			this.nextWord = nextWord;
+			this.store.setNextWord(this.storeSlot, -1, -1);
+			if (nextWord != null)
+				this.store.pin(this.storeSlot, this); // need to hold on to link to word outside compact storage
+		}
+	}
+	
 	/* (non-Javadoc)
 	 * @see de.uka.ipd.idaho.im.ImAnnotation#getFirstWord()
 	 */
@@ -680,7 +808,7 @@ public class ImWord extends ImRegion implements ImAnnotation {
 	 * @return the previous image word
 	 */
 	public ImWord getPreviousWord() {
-		return this.prevWord;
+		return this.getPrev();
 	}
 	
 	/**
@@ -690,52 +818,55 @@ public class ImWord extends ImRegion implements ImAnnotation {
 	 * @param prevWord the new previous image word
 	 */
 	public void setPreviousWord(ImWord prevWord) {
-		if (prevWord == this.prevWord)
+		if (prevWord == this.getPrev())
 			return;
 		if (prevWord == this)
 			throw new IllegalArgumentException("Cannot set predecessor of '" + this.getString() + "' (page " + this.pageId + ") to self.");
 		else if ((prevWord != null) && (prevWord.textStreamId.equals(this.textStreamId)) && (this.pageId == prevWord.pageId) && (this.textStreamPos < prevWord.textStreamPos))
 			throw new IllegalArgumentException("Cannot set predecessor of '" + this.getString() + "' (page " + this.pageId + " at " + this.bounds + ") to successor '" + prevWord.getString() + "' (page " + prevWord.pageId + " at " + prevWord.bounds + ").");
-		final ImWord oldPrev = this.prevWord;
+		final ImWord oldPrev = this.getPrev();
 		final String oldType = ((oldPrev != null) ? null : this.textStreamType);
-		final ImWord prevOldNext = ((prevWord == null) ? null : prevWord.nextWord);
-		this.prevWord = prevWord;
+		final ImWord prevOldNext = ((prevWord == null) ? null : prevWord.getNext());
+		this.setPrev(prevWord);
 		invalidatePageTextStreamEnds(this);
-		if (this.prevWord != null) {
-			this.prevWord.nextWord = this;
-			invalidatePageTextStreamEnds(this.prevWord);
+		if (this.getPrev() != null) {
+			this.getPrev().setNext(this);
+			invalidatePageTextStreamEnds(this.getPrev());
 		}
 		if (prevOldNext != null) {
-			prevOldNext.prevWord = null;
+			prevOldNext.setPrev(null);
 			invalidatePageTextStreamEnds(prevOldNext);
 		}
 		if (oldPrev != null) {
-			oldPrev.nextWord = null;
+			oldPrev.setNext(null);
 			invalidatePageTextStreamEnds(oldPrev);
 		}
 		
-		if (this.prevWord == null) {
+		if (this.getPrev() == null) {
 			this.textStreamId = this.getLocalID();
 			this.textStreamPos = 0;
 		}
 		else {
-			this.textStreamId = this.prevWord.textStreamId;
-			this.textStreamPos = (this.prevWord.textStreamPos + 1);
-			this.textStreamType = this.prevWord.textStreamType;
+			this.textStreamId = this.getPrev().textStreamId;
+			this.textStreamPos = (this.getPrev().textStreamPos + 1);
+			this.textStreamType = this.getPrev().textStreamType;
 		}
+		this.storeState();
 		
-		propagateTextStreamProperties(this.nextWord, this, (this.textStreamPos + 1), this.textStreamId, this.textStreamType);
+		propagateTextStreamProperties(this.getNext(), this, (this.textStreamPos + 1), this.textStreamId, this.textStreamType);
 		
 		if (prevOldNext != null) {
 			prevOldNext.textStreamId = prevOldNext.getLocalID();
 			prevOldNext.textStreamPos = 0;
-			propagateTextStreamProperties(prevOldNext.nextWord, prevOldNext, (prevOldNext.textStreamPos + 1), prevOldNext.textStreamId, prevOldNext.textStreamType);
-			for (ImWord imw = prevOldNext.nextWord; imw != null; imw = imw.nextWord) {
+			prevOldNext.storeState();
+			propagateTextStreamProperties(prevOldNext.getNext(), prevOldNext, (prevOldNext.textStreamPos + 1), prevOldNext.textStreamId, prevOldNext.textStreamType);
+			for (ImWord imw = prevOldNext.getNext(); imw != null; imw = imw.getNext()) {
 				if (imw == prevOldNext)
 					break; // cycle breaker safety
-				imw.textStreamPos = (imw.prevWord.textStreamPos + 1);
+				imw.textStreamPos = (imw.getPrev().textStreamPos + 1);
 				imw.textStreamId = prevOldNext.textStreamId;
 				imw.textStreamType = prevOldNext.textStreamType;
+				imw.storeState();
 			}
 		}
 		
@@ -746,11 +877,11 @@ public class ImWord extends ImRegion implements ImAnnotation {
 			this.notifyAttributeChanged(TEXT_STREAM_TYPE_ATTRIBUTE, true, this.textStreamType, oldType);
 			
 //			this.getDocument().notifyAttributeChanged(this, PREVIOUS_WORD_ATTRIBUTE, oldPrev);
-			this.notifyAttributeChanged(PREVIOUS_WORD_ATTRIBUTE, false, this.prevWord, oldPrev);
+			this.notifyAttributeChanged(PREVIOUS_WORD_ATTRIBUTE, false, this.getPrev(), oldPrev);
 			
 			if (prevOldNext != null)
 //				this.getDocument().notifyAttributeChanged(prevOldNext, PREVIOUS_WORD_ATTRIBUTE, this.prevWord);
-				prevOldNext.notifyAttributeChanged(PREVIOUS_WORD_ATTRIBUTE, true, prevOldNext.prevWord, this.prevWord);
+				prevOldNext.notifyAttributeChanged(PREVIOUS_WORD_ATTRIBUTE, true, prevOldNext.getPrev(), this.getPrev());
 //		}
 	}
 	
@@ -760,7 +891,7 @@ public class ImWord extends ImRegion implements ImAnnotation {
 	 * @return the next image word
 	 */
 	public ImWord getNextWord() {
-		return this.nextWord;
+		return this.getNext();
 	}
 	
 	/**
@@ -770,36 +901,37 @@ public class ImWord extends ImRegion implements ImAnnotation {
 	 * @param nextWord the new next image word
 	 */
 	public void setNextWord(ImWord nextWord) {
-		if (nextWord == this.nextWord)
+		if (nextWord == this.getNext())
 			return;
 		if (nextWord == this)
 			throw new IllegalArgumentException("Cannot set successor of '" + this.getString() + "' (page " + this.pageId + ") to self.");
 		else if ((nextWord != null) && (nextWord.textStreamId.equals(this.textStreamId)) && (this.pageId == nextWord.pageId) && (nextWord.textStreamPos < this.textStreamPos))
 			throw new IllegalArgumentException("Cannot set successor of '" + this.getString() + "' (page " + this.pageId + " at " + this.bounds + ") to predecessor '" + nextWord.getString() + "' (page " + nextWord.pageId + " at " + nextWord.bounds + ").");
-		final ImWord oldNext = this.nextWord;
-		final ImWord nextOldPrev = ((nextWord == null) ? null : nextWord.prevWord);
+		final ImWord oldNext = this.getNext();
+		final ImWord nextOldPrev = ((nextWord == null) ? null : nextWord.getPrev());
 		final String nextOldType = (((nextWord == null) || (nextOldPrev != null)) ? null : nextWord.getTextStreamType());
-		this.nextWord = nextWord;
+		this.setNext(nextWord);
 		invalidatePageTextStreamEnds(this);
-		if (this.nextWord != null) {
-			this.nextWord.prevWord = this;
-			invalidatePageTextStreamEnds(this.nextWord);
+		if (this.getNext() != null) {
+			this.getNext().setPrev(this);
+			invalidatePageTextStreamEnds(this.getNext());
 		}
 		if (oldNext != null) {
-			oldNext.prevWord = null;
+			oldNext.setPrev(null);
 			invalidatePageTextStreamEnds(oldNext);
 		}
 		if (nextOldPrev != null) {
-			nextOldPrev.nextWord = null;
+			nextOldPrev.setNext(null);
 			invalidatePageTextStreamEnds(nextOldPrev);
 		}
-		if (this.nextWord != null)
-			propagateTextStreamProperties(this.nextWord, this, (this.textStreamPos + 1), this.textStreamId, this.textStreamType);
+		if (this.getNext() != null)
+			propagateTextStreamProperties(this.getNext(), this, (this.textStreamPos + 1), this.textStreamId, this.textStreamType);
 		
 		if (oldNext != null) {
 			oldNext.textStreamId = oldNext.getLocalID();
 			oldNext.textStreamPos = 0;
-			propagateTextStreamProperties(oldNext.nextWord, oldNext, (oldNext.textStreamPos + 1), oldNext.textStreamId, oldNext.textStreamType);
+			oldNext.storeState();
+			propagateTextStreamProperties(oldNext.getNext(), oldNext, (oldNext.textStreamPos + 1), oldNext.textStreamId, oldNext.textStreamType);
 		}
 		
 		//	TODO centralize attribute notification
@@ -810,21 +942,22 @@ public class ImWord extends ImRegion implements ImAnnotation {
 				nextWord.notifyAttributeChanged(TEXT_STREAM_TYPE_ATTRIBUTE, true, nextWord.textStreamType, nextOldType);
 			
 //			this.getDocument().notifyAttributeChanged(this, NEXT_WORD_ATTRIBUTE, oldNext);
-			this.notifyAttributeChanged(NEXT_WORD_ATTRIBUTE, false, this.nextWord, oldNext);
+			this.notifyAttributeChanged(NEXT_WORD_ATTRIBUTE, false, this.getNext(), oldNext);
 			
 			if (nextOldPrev != null)
 //				this.getDocument().notifyAttributeChanged(nextOldPrev, NEXT_WORD_ATTRIBUTE, this.nextWord);
-				nextOldPrev.notifyAttributeChanged(NEXT_WORD_ATTRIBUTE, true, nextOldPrev.nextWord, this.nextWord);
+				nextOldPrev.notifyAttributeChanged(NEXT_WORD_ATTRIBUTE, true, nextOldPrev.getNext(), this.getNext());
 //		}
 	}
 	
 	private static void propagateTextStreamProperties(ImWord fromWord, ImWord stopWord, int textStreamPos, String textStreamId, String textStreamType) {
-		for (ImWord imw = fromWord; imw != null; imw = imw.nextWord) {
+		for (ImWord imw = fromWord; imw != null; imw = imw.getNext()) {
 			if (imw == stopWord)
 				break; // cycle breaker safety
 			imw.textStreamPos = textStreamPos++;
 			imw.textStreamId = textStreamId;
 			imw.textStreamType = textStreamType;
+			imw.storeState();
 		}
 	}
 	
@@ -841,7 +974,7 @@ public class ImWord extends ImRegion implements ImAnnotation {
 	 * @return the relation to the previous word
 	 */
 	public char getPreviousRelation() {
-		return ((this.prevWord == null) ? NEXT_RELATION_PARAGRAPH_END : this.prevWord.getNextRelation());
+		return ((this.getPrev() == null) ? NEXT_RELATION_PARAGRAPH_END : this.getPrev().getNextRelation());
 	}
 	
 	/**
@@ -852,7 +985,7 @@ public class ImWord extends ImRegion implements ImAnnotation {
 	 * @return the relation to the next word
 	 */
 	public char getNextRelation() {
-		return ((this.nextWord == null) ? NEXT_RELATION_PARAGRAPH_END : this.nextRelation);
+		return ((this.getNext() == null) ? NEXT_RELATION_PARAGRAPH_END : this.nextRelation);
 	}
 	
 	/**
@@ -936,9 +1069,9 @@ public class ImWord extends ImRegion implements ImAnnotation {
 		else if (BOUNDING_BOX_ATTRIBUTE.equals(name))
 			return this.bounds;
 		else if (PREVIOUS_WORD_ATTRIBUTE.equals(name))
-			return ((this.prevWord == null) ? def : this.prevWord);
+			return ((this.getPrev() == null) ? def : this.getPrev());
 		else if (NEXT_WORD_ATTRIBUTE.equals(name))
-			return ((this.nextWord == null) ? def : this.nextWord);
+			return ((this.getNext() == null) ? def : this.getNext());
 		else if (NEXT_RELATION_ATTRIBUTE.equals(name))
 			return ("" + this.getNextRelation());
 		else if (PREVIOUS_RELATION_ATTRIBUTE.equals(name))
@@ -973,9 +1106,9 @@ public class ImWord extends ImRegion implements ImAnnotation {
 		else if (BOUNDING_BOX_ATTRIBUTE.equals(name))
 			return true;
 		else if (PREVIOUS_WORD_ATTRIBUTE.equals(name))
-			return (this.prevWord != null);
+			return (this.getPrev() != null);
 		else if (NEXT_WORD_ATTRIBUTE.equals(name))
-			return (this.nextWord != null);
+			return (this.getNext() != null);
 		else if (PREVIOUS_RELATION_ATTRIBUTE.equals(name))
 			return true;
 		else if (NEXT_RELATION_ATTRIBUTE.equals(name))
@@ -1023,8 +1156,8 @@ public class ImWord extends ImRegion implements ImAnnotation {
 		}
 		else if (PREVIOUS_RELATION_ATTRIBUTE.equals(name)) {
 			String oldPrevRelation = ("" + this.getPreviousRelation());
-			if ((value != null) && (value.toString().length() == 1) && (this.prevWord != null))
-				this.prevWord.setNextRelation(value.toString().charAt(0));
+			if ((value != null) && (value.toString().length() == 1) && (this.getPrev() != null))
+				this.getPrev().setNextRelation(value.toString().charAt(0));
 			return oldPrevRelation;
 		}
 		else if (PREVIOUS_WORD_ATTRIBUTE.equals(name) && ((value == null) || (value instanceof ImWord))) {
@@ -1033,14 +1166,14 @@ public class ImWord extends ImRegion implements ImAnnotation {
 			return oldPrev;
 		}
 		else if (PREVIOUS_WORD_ATTRIBUTE.equals(name))
-			return this.prevWord;
+			return this.getPrev();
 		else if (NEXT_WORD_ATTRIBUTE.equals(name) && ((value == null) || (value instanceof ImWord))) {
 			ImWord oldNext = this.getNextWord();
 			this.setNextWord((ImWord) value);
 			return oldNext;
 		}
 		else if (NEXT_WORD_ATTRIBUTE.equals(name))
-			return this.nextWord;
+			return this.getNext();
 		else if (BASELINE_ATTRIBUTE.equals(name)) {
 			String oldBaseline = ((this.baseline == -1) ? null : ("" + this.baseline));
 			this.setBaseline((value == null) ? null : value.toString());
@@ -1090,10 +1223,25 @@ public class ImWord extends ImRegion implements ImAnnotation {
 			this.notifyAttributeChanged(ITALICS_ATTRIBUTE, true, Boolean.toString((this.flags & FONT_PROP_ITALICS) != 0), oldItalics);
 			return oldItalics;
 		}
-		else return super.setAttribute(name, value);
+		else {
+			Object oldValue = super.setAttribute(name, value);
+			if ((this.store != null) && (value != null))
+				this.store.pin(this.storeSlot, this); // storage arrays have no room for generic attributes
+			return oldValue;
+		}
+	}
+	
+	/* (non-Javadoc)
+	 * @see de.uka.ipd.idaho.gamta.defaultImplementation.AbstractAttributed#copyAttributes(de.uka.ipd.idaho.gamta.Attributed)
+	 */
+	public void copyAttributes(Attributed source) {
+		super.copyAttributes(source);
+		if (this.store != null)
+			this.store.pin(this.storeSlot, this); // storage arrays have no room for generic attributes
 	}
 	
 	private void notifyAttributeChanged(String name, boolean checkForChange, Object newValue, Object oldValue) {
+		this.storeState(); // every built-in attribute change comes through here
 		if (this.getPage() == null)
 			return; // we're detached
 		if (checkForChange && ((oldValue == null) ? (newValue == null) : oldValue.equals(newValue)))
@@ -1111,10 +1259,10 @@ public class ImWord extends ImRegion implements ImAnnotation {
 	 */
 	public ImWord getTextStreamHead(boolean inPage) {
 		ImWord imw = this;
-		while (imw.prevWord != null) {
-			if (inPage && (imw.pageId != imw.prevWord.pageId))
+		while (imw.getPrev() != null) {
+			if (inPage && (imw.pageId != imw.getPrev().pageId))
 				break;
-			else imw = imw.prevWord;
+			else imw = imw.getPrev();
 		}
 		return imw;
 	}
@@ -1164,10 +1312,14 @@ public class ImWord extends ImRegion implements ImAnnotation {
 		this.textStreamType = textStreamType;
 		
 		if (!oldTextStreamType.equals(textStreamType)) {
-			for (ImWord imw = this.prevWord; imw != null; imw = imw.prevWord)
+			for (ImWord imw = this.getPrev(); imw != null; imw = imw.getPrev()) {
 				imw.textStreamType = textStreamType;
-			for (ImWord imw = this.nextWord; imw != null; imw = imw.nextWord)
+				imw.storeState();
+			}
+			for (ImWord imw = this.getNext(); imw != null; imw = imw.getNext()) {
 				imw.textStreamType = textStreamType;
+				imw.storeState();
+			}
 			this.notifyAttributeChanged(TEXT_STREAM_TYPE_ATTRIBUTE, false, this.textStreamType, oldTextStreamType);
 		}
 		
@@ -1234,7 +1386,7 @@ public class ImWord extends ImRegion implements ImAnnotation {
 	public String toString() {
 		if (this.string == null)
 			return "";
-		if ((NEXT_RELATION_CONTINUE == this.nextRelation) || (this.nextWord == null) || ((this.nextWord.string != null) && !Gamta.insertSpace(this.string, this.nextWord.string)))
+		if ((NEXT_RELATION_CONTINUE == this.nextRelation) || (this.getNext() == null) || ((this.getNext().string != null) && !Gamta.insertSpace(this.string, this.getNext().string)))
 			return this.string;
 		if ((NEXT_RELATION_SEPARATE == this.nextRelation) || (NEXT_RELATION_PARAGRAPH_END == this.nextRelation))
 			return (this.string + " ");
@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2006-, IPD Boehm, Universitaet Karlsruhe (TH) / KIT, by Guido Sautter
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Universitaet Karlsruhe (TH) / KIT nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY UNIVERSITAET KARLSRUHE (TH) / KIT AND CONTRIBUTORS 
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uka.ipd.idaho.im.analysis;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.util.Arrays;
+
+import javax.imageio.ImageIO;
+
+import de.uka.ipd.idaho.gamta.util.ProgressMonitor;
+import de.uka.ipd.idaho.im.analysis.Imaging.AnalysisImage;
+
+/**
+ * Compares the output of scan correction between two builds. On first run,
+ * this test stores the brightness of each corrected page image in a
+ * reference folder; on subsequent runs, it compares the brightness of the
+ * corrected page images to the stored references pixel by pixel. Run once
+ * with the build before a change to Imaging.correctImage() and once with the
+ * build after it.
+ * 
+ * @author sautter
+ */
+public class CorrectImageDiffTest {
+	
+	/**
+	 * @param args the page image folder, the reference folder, and
+	 *            optionally the resolution of the page images (defaults to
+	 *            300 DPI)
+	 */
+	public static void main(String[] args) throws Exception {
+		File imageFolder = new File((args.length < 1) ? "E:/Testdaten/PdfExtract/CorrectImage" : args[0]);
+		File referenceFolder = new File((args.length < 2) ? "E:/Testdaten/PdfExtract/CorrectImage/reference" : args[1]);
+		int dpi = ((args.length < 3) ? 300 : Integer.parseInt(args[2]));
+		referenceFolder.mkdirs();
+		
+		File[] imageFiles = imageFolder.listFiles();
+		Arrays.sort(imageFiles);
+		int stored = 0;
+		int compared = 0;
+		int different = 0;
+		for (int f = 0; f < imageFiles.length; f++) {
+			String imageName = imageFiles[f].getName().toLowerCase();
+			if (!imageName.endsWith(".png") && !imageName.endsWith(".jpg") && !imageName.endsWith(".tif"))
+				continue;
+			BufferedImage bi = ImageIO.read(imageFiles[f]);
+			if (bi == null)
+				continue;
+			
+			//	correct image
+			AnalysisImage ai = Imaging.wrapImage(bi, null);
+			long start = System.currentTimeMillis();
+			ai = Imaging.correctImage(ai, dpi, ProgressMonitor.dummy);
+			long time = (System.currentTimeMillis() - start);
+			byte[][] brightness = ai.getBrightness();
+			
+			//	store reference on first run
+			File referenceFile = new File(referenceFolder, (imageFiles[f].getName() + ".brightness"));
+			if (!referenceFile.exists()) {
+				DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(referenceFile)));
+				out.writeInt(brightness.length);
+				out.writeInt((brightness.length == 0) ? 0 : brightness[0].length);
+				for (int c = 0; c < brightness.length; c++)
+					out.write(brightness[c]);
+				out.close();
+				System.out.println(imageFiles[f].getName() + ": reference stored, corrected in " + time + "ms");
+				stored++;
+				continue;
+			}
+			
+			//	compare to reference
+			DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(referenceFile)));
+			int width = in.readInt();
+			int height = in.readInt();
+			if ((width != brightness.length) || ((width != 0) && (height != brightness[0].length))) {
+				System.out.println(imageFiles[f].getName() + ": size mismatch, " + brightness.length + "x" + ((brightness.length == 0) ? 0 : brightness[0].length) + " vs. " + width + "x" + height + " in reference");
+				in.close();
+				compared++;
+				different++;
+				continue;
+			}
+			int diffPixels = 0;
+			int maxDiff = 0;
+			byte[] refColumn = new byte[height];
+			for (int c = 0; c < width; c++) {
+				in.readFully(refColumn);
+				for (int r = 0; r < height; r++) {
+					if (refColumn[r] == brightness[c][r])
+						continue;
+					diffPixels++;
+					maxDiff = Math.max(maxDiff, Math.abs(refColumn[r] - brightness[c][r]));
+				}
+			}
+			in.close();
+			System.out.println(imageFiles[f].getName() + ": " + diffPixels + " of " + (width * height) + " pixels differ" + ((diffPixels == 0) ? "" : (", by up to " + maxDiff)) + ", corrected in " + time + "ms");
+			compared++;
+			if (diffPixels != 0)
+				different++;
+		}
+		System.out.println("Stored " + stored + " references, compared " + compared + " images, " + different + " with differences");
+	}
+}
@@ -34,8 +34,12 @@ import java.awt.Graphics2D;
 import java.awt.geom.AffineTransform;
 import java.awt.geom.Point2D;
 import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.WritableRaster;
 import java.io.File;
 import java.io.IOException;
+import java.lang.ref.SoftReference;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -52,9 +56,12 @@ import java.util.Map.Entry;
 
 import javax.imageio.ImageIO;
 
+import de.uka.ipd.idaho.gamta.util.ParallelJobRunner;
+import de.uka.ipd.idaho.gamta.util.ParallelJobRunner.ParallelFor;
 import de.uka.ipd.idaho.gamta.util.ProgressMonitor;
 import de.uka.ipd.idaho.gamta.util.imaging.BoundingBox;
 import de.uka.ipd.idaho.im.pdf.PdfExtractor;
+import de.uka.ipd.idaho.im.util.ImMetrics;
 import de.uka.ipd.idaho.im.utilities.ImageDisplayDialog;
 import de.uka.ipd.idaho.stringUtils.csvHandler.StringTupel;
 
@@ -114,9 +121,12 @@ public class Imaging {
 			AnalysisImage ai = ((cacheKey == null) ? null : ((AnalysisImage) analysisImageCache.get(cacheKey)));
 			if (ai == null) {
 				ai = new AnalysisImage(image, backgroundImage, textImage);
-				if (cacheKey != null)
+				if (cacheKey != null) {
 					analysisImageCache.put(cacheKey, ai);
+					ImMetrics.count("Imaging.analysisImageCache.misses");
+				}
 			}
+			else ImMetrics.count("Imaging.analysisImageCache.hits");
 			return ai;
 		}
 	}
@@ -146,6 +156,9 @@ public class Imaging {
 		BufferedImage backgroundImage;
 		BufferedImage textImage;
 		private byte[][] brightness;
+		private boolean imageOutdated = false;
+		private volatile int brightnessModCount = 0;
+		private SoftReference brightnessSums = null;
 		private double rotatedBy = 0;
 		AnalysisImage(BufferedImage image, BufferedImage backgroundImage, BufferedImage textImage) {
 			this(image, backgroundImage, textImage, null);
@@ -157,14 +170,56 @@ public class Imaging {
 			this.brightness = brightnesses;
 		}
 		public BufferedImage getImage() {
+			this.syncImage();
 			return this.image;
 		}
 		void setImage(BufferedImage image, BufferedImage backgroundImage, BufferedImage textImage) {
 			this.image = image;
 			this.brightness = null;
+			this.imageOutdated = false;
+			this.brightnessModCount++;
 //			this.fftCache.clear();
 		}
 		
+		/**
+		 * Indicate that the brightness array was modified and has to be
+		 * written back to the wrapped image. The write-back happens in bulk
+		 * on the next call to <code>getImage()</code> or
+		 * <code>syncImage()</code>, so a sequence of corrections working on
+		 * the brightness array only pays for it once.
+		 */
+		void brightnessModified() {
+			this.imageOutdated = true;
+			this.brightnessModCount++;
+		}
+		
+		/**
+		 * Indicate that client code modified the array returned by
+		 * <code>getBrightness()</code> for analysis purposes, e.g. to blank
+		 * out some areas. This discards any data derived from the brightness
+		 * values, like the sums used for splitting image part rectangles into
+		 * rows and columns. Unlike modifications made by the methods of
+		 * <code>Imaging</code>, these modifications are not written back to
+		 * the wrapped image.
+		 */
+		public void brightnessEdited() {
+			this.brightnessModCount++;
+		}
+		
+		/**
+		 * Write any pending modifications of the brightness array back to the
+		 * wrapped image. Code accessing the pixels of the wrapped image
+		 * directly has to call this method first.
+		 */
+		synchronized void syncImage() {
+			if (!this.imageOutdated)
+				return;
+			long start = ImMetrics.startTime();
+			writeBrightness(this.image, this.brightness);
+			this.imageOutdated = false;
+			ImMetrics.time("Imaging.writeBrightness", start);
+		}
+		
 		/**
 		 * Retrieve the angle (in radiants) an image was rotated by during
 		 * correction. If the image was never passed to the
@@ -187,17 +242,57 @@ public class Imaging {
 		 */
 		public byte[][] getBrightness() {
 			if (this.brightness == null) {
-				this.brightness = new byte[this.image.getWidth()][this.image.getHeight()];
-				int rgb;
+				byte[][] brightness = new byte[this.image.getWidth()][this.image.getHeight()];
+				int[] rgbs = new int[this.image.getHeight()];
 				for (int c = 0; c < this.image.getWidth(); c++) {
-					for (int r = 0; r < this.image.getHeight(); r++) {
-						rgb = this.image.getRGB(c, r);
-						this.brightness[c][r] = getByteBrightness(rgb);
-					}
+					this.image.getRGB(c, 0, 1, rgbs.length, rgbs, 0, 1);
+					for (int r = 0; r < rgbs.length; r++)
+						brightness[c][r] = getByteBrightness(rgbs[r]);
 				}
+				this.brightness = brightness; // publish only when complete, as page analysis reads from multiple threads
 			}
 			return this.brightness;
 		}
+		
+		/**
+		 * Retrieve the summed-area table of the brightness values of the
+		 * wrapped image. Like the brightness array, the outer dimension is the
+		 * columns, the inner dimension the rows; the entry at
+		 * <code>[c][r]</code> holds the sum of the brightness values of all
+		 * pixels left of column <code>c</code> and above row <code>r</code>.
+		 * This facilitates computing the brightness sum of any rectangular
+		 * area in constant time. The table is computed on the first request
+		 * and then retained until memory runs short. It is checked against
+		 * the brightness array and modification count it was computed from on
+		 * every request, so replacing the brightness array or any of the
+		 * modification notifications makes it recompute automatically. Sums
+		 * wrap around in very large images, but sums of any area up to 16
+		 * million pixels remain exact.
+		 * @return the summed-area table of the brightness values
+		 */
+		int[][] getBrightnessSums() {
+			byte[][] brightness = this.getBrightness();
+			int modCount = this.brightnessModCount;
+			BrightnessSums bs = ((this.brightnessSums == null) ? null : ((BrightnessSums) this.brightnessSums.get()));
+			if ((bs == null) || (bs.brightness != brightness) || (bs.modCount != modCount)) {
+				long start = ImMetrics.startTime();
+				int height = ((brightness.length == 0) ? 0 : brightness[0].length);
+				int[][] sums = new int[brightness.length + 1][];
+				sums[0] = new int[height + 1];
+				for (int c = 0; c < brightness.length; c++) {
+					sums[c+1] = new int[height + 1];
+					int colSum = 0;
+					for (int r = 0; r < height; r++) {
+						colSum += brightness[c][r];
+						sums[c+1][r+1] = (sums[c][r+1] + colSum);
+					}
+				}
+				bs = new BrightnessSums(brightness, modCount, sums);
+				this.brightnessSums = new SoftReference(bs);
+				ImMetrics.time("Imaging.brightnessSums", start);
+			}
+			return bs.sums;
+		}
 //		
 //		/**
 //		 * Retrieve the FFT of the wrapped image. Having the image repeated
@@ -245,6 +340,17 @@ public class Imaging {
 //		}
 	}
 	
+	private static class BrightnessSums {
+		final byte[][] brightness;
+		final int modCount;
+		final int[][] sums;
+		BrightnessSums(byte[][] brightness, int modCount, int[][] sums) {
+			this.brightness = brightness;
+			this.modCount = modCount;
+			this.sums = sums;
+		}
+	}
+	
 	/**
 	 * View-based representation of a rectangular sub image of an AnalysisImage.
 	 * 
@@ -311,7 +417,7 @@ public class Imaging {
 			if ((this.leftCol == 0) && (this.topRow == 0) && (this.rightCol == this.ai.image.getWidth()) && (this.bottomRow == this.ai.image.getHeight()))
 				return this.ai;
 			return new AnalysisImage(
-					this.ai.image.getSubimage(this.leftCol, this.topRow, (this.rightCol - this.leftCol), (this.bottomRow - this.topRow)),
+					this.ai.getImage().getSubimage(this.leftCol, this.topRow, (this.rightCol - this.leftCol), (this.bottomRow - this.topRow)),
 					((this.ai.backgroundImage == null) ? null : this.ai.backgroundImage.getSubimage(this.leftCol, this.topRow, (this.rightCol - this.leftCol), (this.bottomRow - this.topRow))),
 					((this.ai.textImage == null) ? null : this.ai.textImage.getSubimage(this.leftCol, this.topRow, (this.rightCol - this.leftCol), (this.bottomRow - this.topRow)))
 			);
@@ -365,6 +471,75 @@ public class Imaging {
 		return ((byte) ((lMax + lMin) / 2)); // return average
 	}
 	
+	//	sum of brightness values in columns [l, r) and rows [t, b), read from summed-area table
+	private static int getBrightnessSum(int[][] brightnessSums, int l, int r, int t, int b) {
+		return (brightnessSums[r][b] - brightnessSums[l][b] - brightnessSums[r][t] + brightnessSums[l][t]);
+	}
+	
+	//	gray RGB values of the 128 brightness levels, for writing brightness arrays back to images
+	private static final int[] brightnessRgbs = new int[128];
+	static {
+		for (int b = 0; b < brightnessRgbs.length; b++)
+			brightnessRgbs[b] = Color.HSBtoRGB(0, 0, (((float) b) / 127));
+	}
+	
+	/**
+	 * Write a brightness array back to an image, one column at a time. Data
+	 * elements for the 128 brightness levels are computed via the image's
+	 * color model only once, and then go into the raster in bulk, which has
+	 * the very same effect as setting the RGB value of each individual pixel.
+	 * @param image the image to write to
+	 * @param brightness the brightness array to write
+	 */
+	static void writeBrightness(BufferedImage image, byte[][] brightness) {
+		if ((brightness == null) || (brightness.length == 0))
+			return;
+		int height = brightness[0].length;
+		WritableRaster raster = image.getRaster();
+		ColorModel cm = image.getColorModel();
+		int dataElements = raster.getNumDataElements();
+		
+		//	byte rasters (gray, binary, and most color images)
+		if (raster.getTransferType() == DataBuffer.TYPE_BYTE) {
+			byte[][] levelData = new byte[brightnessRgbs.length][];
+			for (int b = 0; b < brightnessRgbs.length; b++)
+				levelData[b] = ((byte[]) cm.getDataElements(brightnessRgbs[b], null));
+			byte[] colData = new byte[height * dataElements];
+			for (int c = 0; c < brightness.length; c++) {
+				if (dataElements == 1) {
+					for (int r = 0; r < height; r++)
+						colData[r] = levelData[brightness[c][r]][0];
+				}
+				else for (int r = 0; r < height; r++)
+					System.arraycopy(levelData[brightness[c][r]], 0, colData, (r * dataElements), dataElements);
+				raster.setDataElements(c, 0, 1, height, colData);
+			}
+		}
+		
+		//	int rasters (packed RGB images)
+		else if (raster.getTransferType() == DataBuffer.TYPE_INT) {
+			int[][] levelData = new int[brightnessRgbs.length][];
+			for (int b = 0; b < brightnessRgbs.length; b++)
+				levelData[b] = ((int[]) cm.getDataElements(brightnessRgbs[b], null));
+			int[] colData = new int[height * dataElements];
+			for (int c = 0; c < brightness.length; c++) {
+				for (int r = 0; r < height; r++)
+					System.arraycopy(levelData[brightness[c][r]], 0, colData, (r * dataElements), dataElements);
+				raster.setDataElements(c, 0, 1, height, colData);
+			}
+		}
+		
+		//	anything else, go through RGB
+		else {
+			int[] colRgbs = new int[height];
+			for (int c = 0; c < brightness.length; c++) {
+				for (int r = 0; r < height; r++)
+					colRgbs[r] = brightnessRgbs[brightness[c][r]];
+				image.setRGB(c, 0, 1, height, colRgbs, 0, 1);
+			}
+		}
+	}
+	
 	/** control flag switching on or off check for and inversion of extremely dark page images */
 	public static final int INVERT_WHITE_ON_BLACK = 0x0001;
 	
@@ -471,6 +646,15 @@ public class Imaging {
 		//	prepare image for enhancement
 		boolean changed;
 		
+		/* Steps run as separate passes over the brightness array, as each one
+		 * but the final unfainting depends on either a global statistic of the
+		 * output of the step before it (average brightness for inversion and
+		 * white balance, contrast histogram, region coloring, FFT), or on a
+		 * neighborhood of dpi/10 pixels (background estimation), which leaves
+		 * nothing to gain from fusing them into tiles with halos. Inside each
+		 * pass, columns are spread across cores, and the image proper is only
+		 * written back where a step reads pixels (FFT, rotation). */
+		
 		//	check for white on black
 		if ((flags & INVERT_WHITE_ON_BLACK) != 0) {
 			changed = false;
@@ -490,7 +674,7 @@ public class Imaging {
 		//	do the fuzzy stuff only to gray scale images
 		if (isGrayScale) {
 			
-			//	measure blurriness
+			//	measure blurriness (no use doing this for binary images)
 			int contrast = measureContrast(ai);
 			pm.setInfo("   - image found non-binary, contrast is " + contrast);
 			if (contrast < 16)
@@ -585,16 +769,31 @@ public class Imaging {
 		
 		//	reverse any fainting effects on pixels that were not cleaned up
 		if (faintingDiffs != null) {
-			byte[][] brightness = ai.getBrightness();
-			for (int c = 0; c < brightness.length; c++)
+			final byte[][] brightness = ai.getBrightness();
+			final byte[][] fFaintingDiffs = faintingDiffs;
+			
+			//	no background image to update, we can spread columns across cores
+			if (ai.backgroundImage == null)
+				ParallelJobRunner.runParallelFor(new ParallelFor() {
+					public void doFor(int c) throws Exception {
+						for (int r = 0; r < brightness[c].length; r++) {
+							if (brightness[c][r] == 127)
+								continue; // eliminated
+							brightness[c][r] = ((byte) Math.max(0, (brightness[c][r] - fFaintingDiffs[c][r])));
+						}
+					}
+				}, brightness.length, getMaxCores(brightness));
+			
+			//	update background image alongside brightness (we cannot write individual pixels concurrently)
+			else for (int c = 0; c < brightness.length; c++)
 				for (int r = 0; r < brightness[c].length; r++) {
 					if (brightness[c][r] == 127)
 						continue; // eliminated
 					brightness[c][r] = ((byte) Math.max(0, (brightness[c][r] - faintingDiffs[c][r])));
-					ai.image.setRGB(c, r, Color.HSBtoRGB(0, 0, (((float) brightness[c][r]) / 127)));
-					if ((ai.backgroundImage != null) && (96 < brightness[c][r]))
-						ai.backgroundImage.setRGB(c, r, Color.HSBtoRGB(0, 0, (((float) brightness[c][r]) / 127)));
+					if (96 < brightness[c][r])
+						ai.backgroundImage.setRGB(c, r, brightnessRgbs[brightness[c][r]]);
 				}
+			ai.brightnessModified();
 			pm.setInfo("   - image unfainted");
 		}
 		
@@ -654,24 +853,21 @@ public class Imaging {
 		
 		int[] brightnessCounts = new int[16];
 		Arrays.fill(brightnessCounts, 0);
+		int nonZeroBrightnessCounts = 0;
 		for (int c = 0; c < brightness.length; c++) {
 			for (int r = 0; r < brightness[c].length; r++) {
 				int bci = ((brightness[c][r] * brightnessCounts.length) / 128);
 				while (bci >= brightnessCounts.length)
 					bci--;
-				brightnessCounts[bci]++;
+				if (brightnessCounts[bci]++ != 0)
+					continue;
+				nonZeroBrightnessCounts++;
+				if (nonZeroBrightnessCounts > 2)
+					return true; // no need to look any further, only binary images need a full pass
 			}
 		}
 		
-		int nonZeroBrightnessCounts = 0;
-		for (int b = 0; b < brightnessCounts.length; b++) {
-			if (brightnessCounts[b] == 0)
-				continue;
-			nonZeroBrightnessCounts++;
-			if (nonZeroBrightnessCounts > 2)
-				return true;
-		}
-		return (nonZeroBrightnessCounts > 2);
+		return false;
 	}
 	
 	/**
@@ -706,6 +902,10 @@ public class Imaging {
 //		for (int d = (brightnessDiffCounts.length - 1); d >= 0; d--)
 //			System.out.println("  " + d + ": " + brightnessDiffCounts[d]);
 		
+		return getContrast(brightnessDiffCounts, brightnessDiffCount);
+	}
+	
+	private static int getContrast(int[] brightnessDiffCounts, int brightnessDiffCount) {
 		int brightnessDiffsCounted = 0;
 		for (int d = (brightnessDiffCounts.length - 1); d >= 0; d--) {
 			brightnessDiffsCounted += brightnessDiffCounts[d];
@@ -716,6 +916,11 @@ public class Imaging {
 		return 0;
 	}
 	
+	private static final int minParallelPixelCount = (512 * 512);
+	private static int getMaxCores(byte[][] brightness) {
+		return ((((brightness.length == 0) ? 0 : (brightness.length * brightness[0].length)) < minParallelPixelCount) ? 1 : -1);
+	}
+	
 	private static final int white = Color.WHITE.getRGB();
 	
 	/**
@@ -730,16 +935,20 @@ public class Imaging {
 		byte brightness = computeAverageBrightness(ai);
 		if (brightness > threshold)
 			return false;
+		ai.syncImage(); // we're inverting the actual colors, not only the brightness
 		float[] hsb = null;
-		int rgb;
-		for (int c = 0; c < ai.image.getWidth(); c++)
-			for (int r = 0; r < ai.image.getHeight(); r++) {
-				rgb = ai.image.getRGB(c, r);
+		int[] rgbs = new int[ai.image.getHeight()];
+		for (int c = 0; c < ai.image.getWidth(); c++) {
+			ai.image.getRGB(c, 0, 1, rgbs.length, rgbs, 0, 1);
+			for (int r = 0; r < rgbs.length; r++) {
 				ai.brightness[c][r] = ((byte) (127 - ai.brightness[c][r]));
-				hsb = Color.RGBtoHSB(((rgb >> 16) & 0xFF), ((rgb >> 8) & 0xFF), ((rgb >> 0) & 0xFF), hsb);
-				ai.image.setRGB(c, r, Color.HSBtoRGB(hsb [0], hsb[1], (1 - hsb[2])));
-				//	no use applying this to background or text images
+				hsb = Color.RGBtoHSB(((rgbs[r] >> 16) & 0xFF), ((rgbs[r] >> 8) & 0xFF), ((rgbs[r] >> 0) & 0xFF), hsb);
+				rgbs[r] = Color.HSBtoRGB(hsb [0], hsb[1], (1 - hsb[2]));
 			}
+			ai.image.setRGB(c, 0, 1, rgbs.length, rgbs, 0, 1);
+			//	no use applying this to background or text images
+		}
+		ai.brightnessEdited();
 		return true;
 	}
 	
@@ -815,22 +1024,18 @@ public class Imaging {
 			gaussBlur2D(brightness, hRadius, sharpEdge);
 		else gaussBlur(brightness, hRadius, vRadius, sharpEdge);
 		
-		//	update image
-		for (int c = 0; c < brightness.length; c++)
-			for (int r = 0; r < brightness[c].length; r++) {
-				ai.image.setRGB(c, r, Color.HSBtoRGB(0, 0, (((float) brightness[c][r]) / 127)));
-				//	no use applying this to background or text images, not even for line drawings, etc.
-			}
+		//	update image (no use applying this to background or text images, not even for line drawings, etc.)
+		ai.brightnessModified();
 		
 		//	finally ...
 		return true;
 	}
 	
-	private static void gaussBlur2D(byte[][] brightness, int radius, boolean sharpEdge) {
+	private static void gaussBlur2D(final byte[][] brightness, int radius, boolean sharpEdge) {
 		
 		//	compute one dimensional kernel
-		int kernelRadius = (radius * (sharpEdge ? 1 : 3));
-		double[] kernel = new double[kernelRadius + 1 + kernelRadius];
+		final int kernelRadius = (radius * (sharpEdge ? 1 : 3));
+		final double[] kernel = new double[kernelRadius + 1 + kernelRadius];
 		double kernelSum = 0;
 		for (int k = -kernelRadius; k <= kernelRadius; k++) {
 			kernel[k + kernelRadius] = (1 / Math.sqrt(2 * Math.PI * radius * radius)) * Math.pow(Math.E, -(((double) (k * k)) / (2 * radius * radius)));
@@ -840,44 +1045,48 @@ public class Imaging {
 			kernel[k + kernelRadius] /= kernelSum;
 		
 		//	build intermediate brightness array
-		float[][] iBrightness = new float[brightness.length][brightness[0].length];
+		final float[][] iBrightness = new float[brightness.length][brightness[0].length];
 		
-		//	apply kernel across rows
-		for (int c = 0; c < brightness.length; c++) {
-			for (int r = 0; r < brightness[c].length; r++) {
-				double brightnessSum = 0;
-				for (int k = -kernelRadius; k <= kernelRadius; k++) {
-					int l = (c + k);
-					if (l < 0)
-						l = 0;
-					else if (l > (brightness.length-1))
-						l = (brightness.length-1);
-					brightnessSum += (kernel[k + kernelRadius] * brightness[l][r]);
+		//	apply kernel across rows (columns of result are independent, so we can spread them across cores)
+		ParallelJobRunner.runParallelFor(new ParallelFor() {
+			public void doFor(int c) throws Exception {
+				for (int r = 0; r < brightness[c].length; r++) {
+					double brightnessSum = 0;
+					for (int k = -kernelRadius; k <= kernelRadius; k++) {
+						int l = (c + k);
+						if (l < 0)
+							l = 0;
+						else if (l > (brightness.length-1))
+							l = (brightness.length-1);
+						brightnessSum += (kernel[k + kernelRadius] * brightness[l][r]);
+					}
+					iBrightness[c][r] = ((float) brightnessSum);
 				}
-				iBrightness[c][r] = ((float) brightnessSum);
 			}
-		}
+		}, brightness.length, getMaxCores(brightness));
 		
 		//	apply kernel down columns
-		for (int c = 0; c < iBrightness.length; c++) {
-			for (int r = 0; r < iBrightness[c].length; r++) {
-				double iBrightnessSum = 0;
-				for (int k = -kernelRadius; k <= kernelRadius; k++) {
-					int l = (r + k);
-					if (l < 0)
-						l = 0;
-					else if (l > (iBrightness[c].length-1))
-						l = (iBrightness[c].length-1);
-					iBrightnessSum += (kernel[k + kernelRadius] * iBrightness[c][l]);
+		ParallelJobRunner.runParallelFor(new ParallelFor() {
+			public void doFor(int c) throws Exception {
+				for (int r = 0; r < iBrightness[c].length; r++) {
+					double iBrightnessSum = 0;
+					for (int k = -kernelRadius; k <= kernelRadius; k++) {
+						int l = (r + k);
+						if (l < 0)
+							l = 0;
+						else if (l > (iBrightness[c].length-1))
+							l = (iBrightness[c].length-1);
+						iBrightnessSum += (kernel[k + kernelRadius] * iBrightness[c][l]);
+					}
+					int b = ((int) Math.round(iBrightnessSum));
+					if (b < 0)
+						b = 0;
+					else if (b > 127)
+						b = 127;
+					brightness[c][r] = ((byte) b);
 				}
-				int b = ((int) Math.round(iBrightnessSum));
-				if (b < 0)
-					b = 0;
-				else if (b > 127)
-					b = 127;
-				brightness[c][r] = ((byte) b);
 			}
-		}
+		}, iBrightness.length, getMaxCores(brightness));
 	}
 	
 	private static void gaussBlur(byte[][] brightness, int hRadius, int vRadius, boolean sharpEdge) {
@@ -887,11 +1096,11 @@ public class Imaging {
 			gaussBlur1D(brightness, vRadius, sharpEdge, false);
 	}
 	
-	private static void gaussBlur1D(byte[][] brightness, int radius, boolean sharpEdge, boolean blurRows) {
+	private static void gaussBlur1D(final byte[][] brightness, int radius, boolean sharpEdge, final boolean blurRows) {
 		
 		//	compute one dimensional kernel
-		int kernelRadius = (radius * (sharpEdge ? 1 : 3));
-		double[] kernel = new double[kernelRadius + 1 + kernelRadius];
+		final int kernelRadius = (radius * (sharpEdge ? 1 : 3));
+		final double[] kernel = new double[kernelRadius + 1 + kernelRadius];
 		double kernelSum = 0;
 		for (int k = -kernelRadius; k <= kernelRadius; k++) {
 			kernel[k + kernelRadius] = (1 / Math.sqrt(2 * Math.PI * radius * radius)) * Math.pow(Math.E, -(((double) (k * k)) / (2 * radius * radius)));
@@ -901,40 +1110,42 @@ public class Imaging {
 			kernel[k + kernelRadius] /= kernelSum;
 		
 		//	build intermediate brightness array
-		float[][] iBrightness = new float[brightness.length][brightness[0].length];
+		final float[][] iBrightness = new float[brightness.length][brightness[0].length];
 		
-		//	apply kernel across rows
-		if (blurRows)
-			for (int c = 0; c < brightness.length; c++) {
-				for (int r = 0; r < brightness[c].length; r++) {
+		//	apply kernel across rows or down columns (columns of result are independent, so we can spread them across cores)
+		ParallelJobRunner.runParallelFor(new ParallelFor() {
+			public void doFor(int c) throws Exception {
+				
+				//	apply kernel across rows
+				if (blurRows)
+					for (int r = 0; r < brightness[c].length; r++) {
+						double brightnessSum = 0;
+						for (int k = -kernelRadius; k <= kernelRadius; k++) {
+							int l = (c + k);
+							if (l < 0)
+								l = 0;
+							else if (l > (brightness.length-1))
+								l = (brightness.length-1);
+							brightnessSum += (kernel[k + kernelRadius] * brightness[l][r]);
+						}
+						iBrightness[c][r] = ((float) brightnessSum);
+					}
+				
+				//	apply kernel down columns
+				else for (int r = 0; r < iBrightness[c].length; r++) {
 					double brightnessSum = 0;
 					for (int k = -kernelRadius; k <= kernelRadius; k++) {
-						int l = (c + k);
+						int l = (r + k);
 						if (l < 0)
 							l = 0;
-						else if (l > (brightness.length-1))
-							l = (brightness.length-1);
-						brightnessSum += (kernel[k + kernelRadius] * brightness[l][r]);
+						else if (l > (iBrightness[c].length-1))
+							l = (iBrightness[c].length-1);
+						brightnessSum += (kernel[k + kernelRadius] * brightness[c][l]);
 					}
 					iBrightness[c][r] = ((float) brightnessSum);
 				}
 			}
-		
-		//	apply kernel down columns
-		else for (int c = 0; c < iBrightness.length; c++) {
-			for (int r = 0; r < iBrightness[c].length; r++) {
-				double brightnessSum = 0;
-				for (int k = -kernelRadius; k <= kernelRadius; k++) {
-					int l = (r + k);
-					if (l < 0)
-						l = 0;
-					else if (l > (iBrightness[c].length-1))
-						l = (iBrightness[c].length-1);
-					brightnessSum += (kernel[k + kernelRadius] * brightness[c][l]);
-				}
-				iBrightness[c][r] = ((float) brightnessSum);
-			}
-		}
+		}, brightness.length, getMaxCores(brightness));
 		
 		//	write result back to image
 		for (int c = 0; c < iBrightness.length; c++) {
@@ -980,10 +1191,10 @@ public class Imaging {
 		//	TODO use gradient following area coloring !!!
 		
 		//	get brightness array
-		byte[][] brightness = ai.getBrightness();
+		final byte[][] brightness = ai.getBrightness();
 		
 		//	copy and blur brightness array
-		byte[][] workingBrightness = new byte[brightness.length][brightness[0].length];
+		final byte[][] workingBrightness = new byte[brightness.length][brightness[0].length];
 		for (int c = 0; c < brightness.length; c++)
 			System.arraycopy(brightness[c], 0, workingBrightness[c], 0, brightness[c].length);
 		gaussBlur2D(workingBrightness, (dpi / 10), false);
@@ -1003,7 +1214,7 @@ public class Imaging {
 		
 		//	TODO use area coloring to level gradients if activated
 		if (levelGradients) {
-			int[][] areaColors = getAreaColoring(ai, 1, false);
+			final int[][] areaColors = getAreaColoring(ai, 1, false);
 //			BufferedImage rcbi = new BufferedImage(bi.getWidth(), bi.getHeight(), BufferedImage.TYPE_INT_ARGB);
 //			for (int c = 0; c < rcbi.getWidth(); c++)
 //				for (int r = 0; r < rcbi.getHeight(); r++) {
@@ -1028,13 +1239,13 @@ public class Imaging {
 //					areaBrightnessDiffSums[areaColors[c][r]] += (brightness[c][r] - workingBrightness[c][r]);
 					areaWorkingBrightnessSums[areaColors[c][r]] += workingBrightness[c][r];
 				}
-			byte[] areaBrightnesses = new byte[maxAreaColor+1];
+			final byte[] areaBrightnesses = new byte[maxAreaColor+1];
 			byte minAreaBrightness = 127;
 			byte maxAreaBrightness = 0;
 //			byte[] areaBrightnessDiffs = new byte[maxAreaColor+1];
 //			byte minAreaBrightnessDiff = 127;
 //			byte maxAreaBrightnessDiff = 0;
-			byte[] areaWorkingBrightnesses = new byte[maxAreaColor+1];
+			final byte[] areaWorkingBrightnesses = new byte[maxAreaColor+1];
 			byte minAreaWorkingBrightness = 127;
 			byte maxAreaWorkingBrightness = 0;
 			for (int a = 1; a < areaSizes.length; a++) {
@@ -1069,41 +1280,52 @@ public class Imaging {
 ////					rbdbi.setRGB(c, r, rgb);
 //				}
 //			idd.addImage(rbdbi, "Area Brightness Diffs");
-			for (int c = 0; c < brightness.length; c++)
-				for (int r = 0; r < brightness[c].length; r++) {
-					byte wb = areaWorkingBrightnesses[areaColors[c][r]];
-					if (wb == 0)
-						continue;
-					byte pb = areaBrightnesses[areaColors[c][r]];
-					int rb = ((pb * 127) / wb);
-					if (rb > 127)
-						rb = 127;
-					int faintingDiff = (rb - brightness[c][r]);
-					brightness[c][r] = ((byte) rb);
-					workingBrightness[c][r] = ((byte) faintingDiff);
+			ParallelJobRunner.runParallelFor(new ParallelFor() {
+				public void doFor(int c) throws Exception {
+					for (int r = 0; r < brightness[c].length; r++) {
+						byte wb = areaWorkingBrightnesses[areaColors[c][r]];
+						if (wb == 0)
+							continue;
+						byte pb = areaBrightnesses[areaColors[c][r]];
+						int rb = ((pb * 127) / wb);
+						if (rb > 127)
+							rb = 127;
+						int faintingDiff = (rb - brightness[c][r]);
+						brightness[c][r] = ((byte) rb);
+						workingBrightness[c][r] = ((byte) faintingDiff);
+					}
 				}
+			}, brightness.length, getMaxCores(brightness));
 		}
 		
 		//	otherwise, scale brightness to use background as white
-		else for (int c = 0; c < brightness.length; c++)
-			for (int r = 0; r < brightness[c].length; r++) {
-				if (workingBrightness[c][r] == 0)
-					continue;
-				int b = ((brightness[c][r] * 127) / workingBrightness[c][r]);
-				if (b > 127)
-					b = 127;
-				int faintingDiff = (b - brightness[c][r]);
-				brightness[c][r] = ((byte) b);
-				workingBrightness[c][r] = ((byte) faintingDiff);
+		else ParallelJobRunner.runParallelFor(new ParallelFor() {
+			public void doFor(int c) throws Exception {
+				for (int r = 0; r < brightness[c].length; r++) {
+					if (workingBrightness[c][r] == 0)
+						continue;
+					int b = ((brightness[c][r] * 127) / workingBrightness[c][r]);
+					if (b > 127)
+						b = 127;
+					int faintingDiff = (b - brightness[c][r]);
+					brightness[c][r] = ((byte) b);
+					workingBrightness[c][r] = ((byte) faintingDiff);
+				}
 			}
+		}, brightness.length, getMaxCores(brightness));
 		
-		//	update image
-		for (int c = 0; c < brightness.length; c++)
-			for (int r = 0; r < brightness[c].length; r++) {
-				ai.image.setRGB(c, r, ((brightness[c][r] == 127) ? backgroundEliminated : Color.HSBtoRGB(0, 0, (((float) brightness[c][r]) / 127))));
-				if ((ai.backgroundImage != null) && (96 < brightness[c][r]) /* making sure not to transfer text to background image */)
-					ai.backgroundImage.setRGB(c, r, ((brightness[c][r] == 127) ? backgroundEliminated : Color.HSBtoRGB(0, 0, (((float) brightness[c][r]) / 127))));
-			}
+		//	update image (marking eliminated background right away if debugging)
+		ai.brightnessModified();
+		if (DEBUG_CLEANUP || (ai.backgroundImage != null)) {
+			BufferedImage image = (DEBUG_CLEANUP ? ai.getImage() : null);
+			for (int c = 0; c < brightness.length; c++)
+				for (int r = 0; r < brightness[c].length; r++) {
+					if ((image != null) && (brightness[c][r] == 127))
+						image.setRGB(c, r, backgroundEliminated);
+					if ((ai.backgroundImage != null) && (96 < brightness[c][r]) /* making sure not to transfer text to background image */)
+						ai.backgroundImage.setRGB(c, r, ((brightness[c][r] == 127) ? backgroundEliminated : brightnessRgbs[brightness[c][r]]));
+				}
+		}
 		
 		//	return brightness delta
 		return workingBrightness;
@@ -1116,17 +1338,21 @@ public class Imaging {
 	 */
 	public static boolean whitenWhite(AnalysisImage ai) {
 		byte avgBrightness = computeAverageBrightness(ai);
+		//	no need for writing individual pixels if whole image is up for write-back anyway (unless we're marking balanced pixels for debugging)
+		BufferedImage image = ((ai.imageOutdated && !DEBUG_CLEANUP) ? null : ai.getImage());
 		for (int c = 0; c < ai.image.getWidth(); c++)
 			for (int r = 0; r < ai.image.getHeight(); r++) {
 				if (ai.brightness[c][r] == 127)
 					continue;
 				if (ai.brightness[c][r] >= avgBrightness) {
 					ai.brightness[c][r] = 127;
-					ai.image.setRGB(c, r, whiteBalanced);
+					if (image != null)
+						image.setRGB(c, r, whiteBalanced);
 					if (ai.backgroundImage != null)
 						ai.backgroundImage.setRGB(c, r, whiteBalanced);
 				}
 			}
+		ai.brightnessEdited();
 		return true;
 	}
 	
@@ -1153,6 +1379,11 @@ public class Imaging {
 	public static byte computeAverageBrightness(ImagePartRectangle rect) {
 		if ((rect.rightCol <= rect.leftCol) || (rect.bottomRow <= rect.topRow))
 			return 0;
+		int area = ((rect.rightCol - rect.leftCol) * (rect.bottomRow - rect.topRow));
+		if (area <= (Integer.MAX_VALUE / 127)) {
+			int[][] brightnessSums = rect.ai.getBrightnessSums();
+			return ((byte) (getBrightnessSum(brightnessSums, rect.leftCol, rect.rightCol, rect.topRow, rect.bottomRow) / area));
+		}
 		byte[][] brightness = rect.ai.getBrightness();
 		long brightnessSum = 0; 
 		for (int c = rect.leftCol; c < rect.rightCol; c++) {
@@ -1431,63 +1662,322 @@ public class Imaging {
 //		}
 //	}
 	public static int[][] getRegionColoring(AnalysisImage ai, byte brightnessThreshold, boolean includeDiagonal) {
+		return getRegionColoring(ai, brightnessThreshold, includeDiagonal, false).regionColors;
+	}
+	
+	/**
+	 * Compute the region coloring of an image, alongside the size and bounding
+	 * box of each region. The region coloring proper is the same as the one
+	 * computed by <code>getRegionColoring()</code>, and the statistics come
+	 * at very little extra cost.
+	 * @param ai the image to analyze
+	 * @param brightnessThreshold the white threshold
+	 * @param includeDiagonal consider diagonally adjacent pixels connected?
+	 * @return the region coloring, with region statistics
+	 * @see de.uka.ipd.idaho.im.analysis.Imaging#getRegionColoring(AnalysisImage, byte, boolean)
+	 */
+	public static RegionColoring getRegionColoringWithStats(AnalysisImage ai, byte brightnessThreshold, boolean includeDiagonal) {
+		return getRegionColoring(ai, brightnessThreshold, includeDiagonal, true);
+	}
+	
+	/**
+	 * The region or area coloring of an image, together with the size and
+	 * bounding box of each region. All statistics arrays are indexed by the
+	 * region color, with index 0 unused, as 0 indicates the absence of any
+	 * region.
+	 * 
+	 * @author sautter
+	 */
+	public static class RegionColoring {
+		
+		/** the region colors, indexed by column and row, like brightness */
+		public final int[][] regionColors;
+		
+		/** the number of regions, i.e., the highest region color */
+		public final int regionCount;
+		
+		/** the number of pixels in each region */
+		public final int[] regionSizes;
+		
+		/** the left-most column of each region */
+		public final int[] regionMinCols;
+		
+		/** the right-most column of each region */
+		public final int[] regionMaxCols;
+		
+		/** the top-most row of each region */
+		public final int[] regionMinRows;
+		
+		/** the bottom-most row of each region */
+		public final int[] regionMaxRows;
+		
+		RegionColoring(int[][] regionColors, int regionCount, int[] regionSizes, int[] regionMinCols, int[] regionMaxCols, int[] regionMinRows, int[] regionMaxRows) {
+			this.regionColors = regionColors;
+			this.regionCount = regionCount;
+			this.regionSizes = regionSizes;
+			this.regionMinCols = regionMinCols;
+			this.regionMaxCols = regionMaxCols;
+			this.regionMinRows = regionMinRows;
+			this.regionMaxRows = regionMaxRows;
+		}
+	}
+	
+	/**
+	 * A binarized image, with its pixels packed into the bits of an array of
+	 * longs, 64 pixels per long, row by row, so two such images can be
+	 * compared 64 pixels at a time, counting set pixels via bit counts. Each
+	 * row starts at a new long, and the bits past the right edge of the image
+	 * are always unset. Pixels outside the image count as unset as well.
+	 * 
+	 * @author sautter
+	 */
+	public static class BinaryImage {
+		
+		/** the width of the image */
+		public final int width;
+		
+		/** the height of the image */
+		public final int height;
+		
+		private final int rowLength;
+		private final long[] bits;
+		
+		/**
+		 * Constructor creating an image with all pixels unset.
+		 * @param width the width of the image
+		 * @param height the height of the image
+		 */
+		public BinaryImage(int width, int height) {
+			this.width = width;
+			this.height = height;
+			this.rowLength = ((width + 63) >>> 6);
+			this.bits = new long[this.rowLength * height];
+		}
+		
+		/**
+		 * Check whether or not a pixel is set.
+		 * @param col the column of the pixel
+		 * @param row the row of the pixel
+		 * @return true if the pixel is set
+		 */
+		public boolean isSet(int col, int row) {
+			if ((col < 0) || (this.width <= col) || (row < 0) || (this.height <= row))
+				return false;
+			return ((this.bits[(row * this.rowLength) + (col >>> 6)] & (1L << (col & 63))) != 0);
+		}
+		
+		/**
+		 * Set a pixel. Pixels outside the image are ignored.
+		 * @param col the column of the pixel
+		 * @param row the row of the pixel
+		 */
+		public void set(int col, int row) {
+			if ((col < 0) || (this.width <= col) || (row < 0) || (this.height <= row))
+				return;
+			this.bits[(row * this.rowLength) + (col >>> 6)] |= (1L << (col & 63));
+		}
+		
+		/**
+		 * Count the pixels set in the image.
+		 * @return the number of set pixels
+		 */
+		public int countSet() {
+			int set = 0;
+			for (int b = 0; b < this.bits.length; b++)
+				set += Long.bitCount(this.bits[b]);
+			return set;
+		}
+		
+		/**
+		 * Count the pixels set in both this image and the argument one, with
+		 * the two images aligned at their top left corners.
+		 * @param bi the image to compare to
+		 * @return the number of pixels set in both images
+		 */
+		public int countOverlap(BinaryImage bi) {
+			int rowLength = Math.min(this.rowLength, bi.rowLength);
+			int height = Math.min(this.height, bi.height);
+			int overlap = 0;
+			for (int r = 0; r < height; r++) {
+				int tOffset = (r * this.rowLength);
+				int bOffset = (r * bi.rowLength);
+				for (int l = 0; l < rowLength; l++)
+					overlap += Long.bitCount(this.bits[tOffset + l] & bi.bits[bOffset + l]);
+			}
+			return overlap;
+		}
+		
+		/**
+		 * Count the pixels set in exactly one of this image and the argument
+		 * one, with the two images aligned at their top left corners. This is
+		 * the Hamming distance between the two images.
+		 * @param bi the image to compare to
+		 * @return the number of pixels set in only one of the images
+		 */
+		public int countDifference(BinaryImage bi) {
+			return (this.countSet() + bi.countSet() - (this.countOverlap(bi) * 2));
+		}
+		
+		/**
+		 * Sample an area of the image into a new image of the argument size,
+		 * mapping each pixel of the result to the pixel at the proportional
+		 * position in the area, i.e., to column
+		 * <code>left + ((col * width) / toWidth)</code> and row
+		 * <code>top + ((row * height) / toHeight)</code>. The area may extend
+		 * beyond the edges of this image, with any pixels outside the image
+		 * unset in the result. If the area is empty, so is the result.
+		 * @param left the left edge of the area
+		 * @param top the top edge of the area
+		 * @param width the width of the area
+		 * @param height the height of the area
+		 * @param toWidth the width of the result image
+		 * @param toHeight the height of the result image
+		 * @return the sampled image
+		 */
+		public BinaryImage getScaledArea(int left, int top, int width, int height, int toWidth, int toHeight) {
+			BinaryImage sbi = new BinaryImage(toWidth, toHeight);
+			if ((width < 1) || (height < 1))
+				return sbi;
+			
+			//	compute source columns only once
+			int[] cols = null;
+			if (width != toWidth) {
+				cols = new int[toWidth];
+				for (int c = 0; c < toWidth; c++)
+					cols[c] = (left + ((c * width) / toWidth));
+			}
+			
+			//	sample rows
+			int lRow = -1;
+			for (int r = 0; r < toHeight; r++) {
+				int row = (top + ((r * height) / toHeight));
+				int sOffset = (r * sbi.rowLength);
+				if ((row < 0) || (this.height <= row))
+					continue; // outside image, nothing to set
+				
+				//	same source row as last time, copy result
+				if ((r != 0) && (row == lRow)) {
+					System.arraycopy(sbi.bits, (sOffset - sbi.rowLength), sbi.bits, sOffset, sbi.rowLength);
+					continue;
+				}
+				lRow = row;
+				
+				//	same width, copy bits 64 at a time
+				if (cols == null) {
+					for (int l = 0; l < sbi.rowLength; l++)
+						sbi.bits[sOffset + l] = this.getBits(row, (left + (l << 6)));
+					if ((toWidth & 63) != 0)
+						sbi.bits[sOffset + sbi.rowLength - 1] &= ((1L << (toWidth & 63)) - 1);
+				}
+				
+				//	different width, go pixel by pixel (unless source row is empty)
+				else {
+					int tOffset = (row * this.rowLength);
+					boolean rowEmpty = true;
+					for (int l = 0; rowEmpty && (l < this.rowLength); l++)
+						rowEmpty = (this.bits[tOffset + l] == 0);
+					if (rowEmpty)
+						continue;
+					for (int c = 0; c < toWidth; c++) {
+						int col = cols[c];
+						if ((col < 0) || (this.width <= col))
+							continue;
+						if ((this.bits[tOffset + (col >>> 6)] & (1L << (col & 63))) != 0)
+							sbi.bits[sOffset + (c >>> 6)] |= (1L << (c & 63));
+					}
+				}
+			}
+			
+			//	finally ...
+			return sbi;
+		}
+		
+		//	get the 64 pixels of a row starting at some column, with pixels outside the image unset
+		private long getBits(int row, int col) {
+			if ((col <= -64) || (this.width <= col))
+				return 0;
+			if (col < 0)
+				return (this.getBits(row, 0) << -col);
+			int offset = ((row * this.rowLength) + (col >>> 6));
+			int shift = (col & 63);
+			if (shift == 0)
+				return this.bits[offset];
+			long bits = (this.bits[offset] >>> shift);
+			if (((col >>> 6) + 1) < this.rowLength)
+				bits |= (this.bits[offset + 1] << (64 - shift));
+			return bits;
+		}
+		
+		/**
+		 * Estimate the number of bytes the image occupies in memory.
+		 * @return the estimated size of the image in bytes
+		 */
+		public long getByteSize() {
+			return ((((long) this.bits.length) * 8) + 32);
+		}
+		
+		/**
+		 * Binarize a brightness array, setting every pixel darker than the
+		 * argument threshold.
+		 * @param brightness the brightness array, indexed by column and row
+		 * @param threshold the brightness threshold
+		 * @return the binarized image
+		 */
+		public static BinaryImage binarize(byte[][] brightness, byte threshold) {
+			BinaryImage bi = new BinaryImage(brightness.length, ((brightness.length == 0) ? 0 : brightness[0].length));
+			for (int c = 0; c < brightness.length; c++) {
+				long bit = (1L << (c & 63));
+				int l = (c >>> 6);
+				for (int r = 0; r < brightness[c].length; r++) {
+					if (brightness[c][r] < threshold)
+						bi.bits[(r * bi.rowLength) + l] |= bit;
+				}
+			}
+			return bi;
+		}
+	}
+	
+	private static RegionColoring getRegionColoring(AnalysisImage ai, byte brightnessThreshold, boolean includeDiagonal, boolean computeStats) {
 		byte[][] brightness = ai.getBrightness();
 		if (brightness.length == 0)
-			return new int[0][0];
+			return new RegionColoring(new int[0][0], 0, new int[1], new int[1], new int[1], new int[1], new int[1]);
+		
+		/* first pass: assign provisional colors in the same column-major order
+		 * the colors come out in, merging the colors of connected pixels from
+		 * the current and preceding column via union-find */
 		int[][] regionColors = new int[brightness.length][brightness[0].length];
-		for (int c = 0; c < regionColors.length; c++)
-			Arrays.fill(regionColors[c], 0);
-		int currentRegionColor = 1;
+		RegionColorSets colorSets = new RegionColorSets();
 		for (int c = 0; c < brightness.length; c++) {
-			for (int r = 0; r < brightness[c].length; r++)
-				if (addPointToRegion(c, r, brightness, brightnessThreshold, regionColors, currentRegionColor)) {
-					int rs = colorRegion(brightness, regionColors, c, r, currentRegionColor, brightnessThreshold, includeDiagonal);
-					if (DEBUG_REGION_COLORING) System.out.println("Region " + currentRegionColor + " is sized " + rs);
-					currentRegionColor++;
+			int[] colors = regionColors[c];
+			int[] lColors = ((c == 0) ? null : regionColors[c-1]);
+			for (int r = 0; r < colors.length; r++) {
+				if (!isRegionPoint(brightness[c][r], brightnessThreshold))
+					continue;
+				int color = 0;
+				if (r != 0)
+					color = colorSets.union(color, colors[r-1]);
+				if (lColors != null) {
+					color = colorSets.union(color, lColors[r]);
+					if (includeDiagonal) {
+						if (r != 0)
+							color = colorSets.union(color, lColors[r-1]);
+						if ((r+1) < lColors.length)
+							color = colorSets.union(color, lColors[r+1]);
+					}
 				}
-				//	TODO assemble region size distribution, use it to estimate font size, and use estimate for cleanup thresholds
-		}
-		return regionColors;
-	}
-	private static int colorRegion(byte[][] brightness, int[][] regionColors, int sc, int sr, int regionColor, byte brightnessThreshold, boolean includeDiagonal) {
-		PointBuffer regionPoints = new PointBuffer();
-		regionPoints.add(sc, sr);
-		for (int p = 0; p < regionPoints.size(); p++) {
-			int pc = regionPoints.cAt(p);
-			int pr = regionPoints.rAt(p);
-			if (addPointToRegion((pc-1), pr, brightness, brightnessThreshold, regionColors, regionColor))
-				regionPoints.add((pc-1), pr);
-			if (addPointToRegion((pc+1), pr, brightness, brightnessThreshold, regionColors, regionColor))
-				regionPoints.add((pc+1), pr);
-			if (addPointToRegion(pc, (pr-1), brightness, brightnessThreshold, regionColors, regionColor))
-				regionPoints.add(pc, (pr-1));
-			if (addPointToRegion(pc, (pr+1), brightness, brightnessThreshold, regionColors, regionColor))
-				regionPoints.add(pc, (pr+1));
-			if (includeDiagonal) {
-				if (addPointToRegion((pc-1), (pr-1), brightness, brightnessThreshold, regionColors, regionColor))
-					regionPoints.add((pc-1), (pr-1));
-				if (addPointToRegion((pc-1), (pr+1), brightness, brightnessThreshold, regionColors, regionColor))
-					regionPoints.add((pc-1), (pr+1));
-				if (addPointToRegion((pc+1), (pr-1), brightness, brightnessThreshold, regionColors, regionColor))
-					regionPoints.add((pc+1), (pr-1));
-				if (addPointToRegion((pc+1), (pr+1), brightness, brightnessThreshold, regionColors, regionColor))
-					regionPoints.add((pc+1), (pr+1));
+				colors[r] = ((color == 0) ? colorSets.add() : color);
 			}
 		}
-		return regionPoints.size();
+		
+		//	second pass: resolve and number regions in order of occurrence
+		return colorSets.resolve(regionColors, computeStats, "Region");
 	}
-	private static boolean addPointToRegion(int pc, int pr, byte[][] brightness, int brightnessThreshold, int[][] regionColors, int regionColor) {
-		if ((pc == -1) || (pr == -1))
-			return false;
-		if ((pc == brightness.length) || (pr == brightness[pc].length))
-			return false;
-		if ((0 < brightnessThreshold) && (brightnessThreshold <= brightness[pc][pr]))
-			return false;
-		if ((brightnessThreshold < 0) && (brightness[pc][pr] <= -brightnessThreshold))
+	
+	private static boolean isRegionPoint(byte b, byte brightnessThreshold) {
+		if ((0 < brightnessThreshold) && (brightnessThreshold <= b))
 			return false;
-		if (regionColors[pc][pr] != 0)
+		if ((brightnessThreshold < 0) && (b <= -brightnessThreshold))
 			return false;
-		regionColors[pc][pr] = regionColor;
 		return true;
 	}
 	
@@ -1514,64 +2004,116 @@ public class Imaging {
 		byte[][] brightness = ai.getBrightness();
 		if (brightness.length == 0)
 			return new int[0][0];
+		
+		//	first pass: assign provisional colors, merging the colors of adjacent pixels of similar brightness
 		int[][] areaColors = new int[brightness.length][brightness[0].length];
-		for (int c = 0; c < areaColors.length; c++)
-			Arrays.fill(areaColors[c], 0);
-		int currentAreaColor = 1;
-		for (int c = 0; c < brightness.length; c++)
-			for (int r = 0; r < brightness[c].length; r++) {
-				if (areaColors[c][r] != 0)
-					continue;
-				int as = colorArea(brightness, areaColors, c, r, currentAreaColor, maxDiff, includeDiagonal);
-				if (DEBUG_REGION_COLORING) System.out.println("Area " + currentAreaColor + " is sized " + as);
-				currentAreaColor++;
-				//	TODO assemble area size distribution, use it to estimate font size, and use estimate for cleanup thresholds
+		RegionColorSets colorSets = new RegionColorSets();
+		for (int c = 0; c < brightness.length; c++) {
+			int[] colors = areaColors[c];
+			int[] lColors = ((c == 0) ? null : areaColors[c-1]);
+			byte[] bs = brightness[c];
+			byte[] lBs = ((c == 0) ? null : brightness[c-1]);
+			for (int r = 0; r < colors.length; r++) {
+				int color = 0;
+				if ((r != 0) && isAreaContinuation(bs[r], bs[r-1], maxDiff))
+					color = colorSets.union(color, colors[r-1]);
+				if (lColors != null) {
+					if (isAreaContinuation(bs[r], lBs[r], maxDiff))
+						color = colorSets.union(color, lColors[r]);
+					if (includeDiagonal) {
+						if ((r != 0) && isAreaContinuation(bs[r], lBs[r-1], maxDiff))
+							color = colorSets.union(color, lColors[r-1]);
+						if (((r+1) < lColors.length) && isAreaContinuation(bs[r], lBs[r+1], maxDiff))
+							color = colorSets.union(color, lColors[r+1]);
+					}
+				}
+				colors[r] = ((color == 0) ? colorSets.add() : color);
 			}
-		return areaColors;
+		}
+		
+		//	second pass: resolve and number areas in order of occurrence
+		return colorSets.resolve(areaColors, false, "Area").regionColors;
 	}
-	private static int colorArea(byte[][] brightness, int[][] areaColors, int sc, int sr, int areaColor, int maxDiff, boolean includeDiagonal) {
-		areaColors[sc][sr] = areaColor;
-		
-		PointBuffer areaPoints = new PointBuffer();
-		areaPoints.add(sc, sr);
-		for (int p = 0; p < areaPoints.size(); p++) {
-			int pc = areaPoints.cAt(p);
-			int pr = areaPoints.rAt(p);
-			
-			if (addPointToArea((pc-1), pr, brightness[pc][pr], brightness, maxDiff, areaColors, areaColor))
-				areaPoints.add((pc-1), pr);
-			if (addPointToArea((pc+1), pr, brightness[pc][pr], brightness, maxDiff, areaColors, areaColor))
-				areaPoints.add((pc+1), pr);
-			if (addPointToArea(pc, (pr-1), brightness[pc][pr], brightness, maxDiff, areaColors, areaColor))
-				areaPoints.add(pc, (pr-1));
-			if (addPointToArea(pc, (pr+1), brightness[pc][pr], brightness, maxDiff, areaColors, areaColor))
-				areaPoints.add(pc, (pr+1));
-			if (includeDiagonal) {
-				if (addPointToArea((pc-1), (pr-1), brightness[pc][pr], brightness, maxDiff, areaColors, areaColor))
-					areaPoints.add((pc-1), (pr-1));
-				if (addPointToArea((pc-1), (pr+1), brightness[pc][pr], brightness, maxDiff, areaColors, areaColor))
-					areaPoints.add((pc-1), (pr+1));
-				if (addPointToArea((pc+1), (pr-1), brightness[pc][pr], brightness, maxDiff, areaColors, areaColor))
-					areaPoints.add((pc+1), (pr-1));
-				if (addPointToArea((pc+1), (pr+1), brightness[pc][pr], brightness, maxDiff, areaColors, areaColor))
-					areaPoints.add((pc+1), (pr+1));
+	
+	private static boolean isAreaContinuation(byte b, byte nb, int maxDiff) {
+		int bDiff = (nb - b);
+		return ((-maxDiff <= bDiff) && (bDiff <= maxDiff));
+	}
+	
+	/* union-find forest over provisional region colors, with each color
+	 * pointing to a smaller (or the same) color of the same region */
+	private static class RegionColorSets {
+		private int[] parents = new int[256];
+		private int size = 1; // color 0 means no region
+		int add() {
+			if (this.size == this.parents.length)
+				this.parents = Arrays.copyOf(this.parents, (this.parents.length * 2));
+			this.parents[this.size] = this.size;
+			return this.size++;
+		}
+		int find(int color) {
+			int root = color;
+			while (this.parents[root] != root)
+				root = this.parents[root];
+			while (this.parents[color] != root) {
+				int parent = this.parents[color];
+				this.parents[color] = root; // compress path
+				color = parent;
 			}
+			return root;
 		}
-		return areaPoints.size();
-	}
-	private static boolean addPointToArea(int pc, int pr, byte b, byte[][] brightness, int maxDiff, int[][] areaColors, int areaColor) {
-		if ((pc == -1) || (pr == -1))
-			return false;
-		if ((pc == brightness.length) || (pr == brightness[pc].length))
-			return false;
-		if (areaColors[pc][pr] != 0)
-			return false;
-		int bDiff = (brightness[pc][pr] - b);
-		if ((-maxDiff <= bDiff) && (bDiff <= maxDiff)) {
-			areaColors[pc][pr] = areaColor;
-			return true;
+		int union(int color, int nColor) {
+			if (nColor == 0)
+				return color;
+			if (color == 0)
+				return nColor;
+			int root = this.find(color);
+			int nRoot = this.find(nColor);
+			if (root < nRoot)
+				this.parents[nRoot] = root;
+			else if (nRoot < root)
+				this.parents[root] = nRoot;
+			return color;
+		}
+		RegionColoring resolve(int[][] regionColors, boolean computeStats, String debugLabel) {
+			int[] finalColors = new int[this.size];
+			int regionCount = 0;
+			int[] regionSizes = (computeStats ? new int[this.size] : null);
+			int[] regionMinCols = (computeStats ? new int[this.size] : null);
+			int[] regionMaxCols = (computeStats ? new int[this.size] : null);
+			int[] regionMinRows = (computeStats ? new int[this.size] : null);
+			int[] regionMaxRows = (computeStats ? new int[this.size] : null);
+			for (int c = 0; c < regionColors.length; c++) {
+				int[] colors = regionColors[c];
+				for (int r = 0; r < colors.length; r++) {
+					if (colors[r] == 0)
+						continue;
+					int root = this.find(colors[r]);
+					if (finalColors[root] == 0) {
+						finalColors[root] = ++regionCount;
+						if (computeStats) {
+							regionMinCols[regionCount] = c;
+							regionMinRows[regionCount] = r;
+							regionMaxRows[regionCount] = r;
+						}
+					}
+					int color = finalColors[root];
+					colors[r] = color;
+					if (computeStats) {
+						regionSizes[color]++;
+						regionMaxCols[color] = c; // we're traversing left to right
+						if (r < regionMinRows[color])
+							regionMinRows[color] = r;
+						if (regionMaxRows[color] < r)
+							regionMaxRows[color] = r;
+					}
+				}
+			}
+			if (DEBUG_REGION_COLORING) System.out.println(debugLabel + " coloring resolved " + (this.size - 1) + " provisional colors to " + regionCount + " regions");
+			if (computeStats)
+				return new RegionColoring(regionColors, regionCount, Arrays.copyOf(regionSizes, (regionCount + 1)), Arrays.copyOf(regionMinCols, (regionCount + 1)), Arrays.copyOf(regionMaxCols, (regionCount + 1)), Arrays.copyOf(regionMinRows, (regionCount + 1)), Arrays.copyOf(regionMaxRows, (regionCount + 1)));
+			else return new RegionColoring(regionColors, regionCount, null, null, null, null, null);
 		}
-		else return false;
 	}
 	
 	private static class PointBuffer {
@@ -1601,6 +2143,8 @@ public class Imaging {
 		byte[][] brightness = ai.getBrightness();
 		if (brightness.length == 0)
 			return changed;
+		//	no need for writing individual pixels if whole image is up for write-back anyway (unless we're marking removed regions for debugging)
+		BufferedImage image = ((ai.imageOutdated && !DEBUG_CLEANUP) ? null : ai.getImage());
 		
 		int[][] regionCodes = getRegionColoring(ai, ((byte) 127), isBinary);
 		int regionCodeCount = 0;
@@ -1691,7 +2235,8 @@ public class Imaging {
 							if (regionCodes[cc][cr] != regionCode)
 								continue;
 							ai.brightness[cc][cr] = 127;
-							ai.image.setRGB(cc, cr, tooFaint);
+							if (image != null)
+								image.setRGB(cc, cr, tooFaint);
 							if (ai.backgroundImage != null)
 								ai.backgroundImage.setRGB(cc, cr, tooFaint);
 							regionCodes[cc][cr] = 0;
@@ -1825,7 +2370,8 @@ public class Imaging {
 							if (regionCodes[cc][cr] != regionCode)
 								continue;
 							ai.brightness[cc][cr] = 127;
-							ai.image.setRGB(cc, cr, tooSmallOrBig);
+							if (image != null)
+								image.setRGB(cc, cr, tooSmallOrBig);
 							if (ai.backgroundImage != null)
 								ai.backgroundImage.setRGB(cc, cr, tooSmallOrBig);
 							regionCodes[cc][cr] = 0;
@@ -1953,7 +2499,8 @@ public class Imaging {
 						if (regionCodes[cc][cr] != -regionCode)
 							continue;
 						ai.brightness[cc][cr] = 127;
-						ai.image.setRGB(cc, cr, tooSmallForStandalone);
+						if (image != null)
+							image.setRGB(cc, cr, tooSmallForStandalone);
 						if (ai.backgroundImage != null)
 							ai.backgroundImage.setRGB(cc, cr, tooSmallForStandalone);
 						regionCodes[cc][cr] = 0;
@@ -1961,6 +2508,8 @@ public class Imaging {
 					}
 			}
 		
+		if (changed)
+			ai.brightnessEdited();
 		return changed;
 	}
 	private static final boolean DEBUG_FEATHERDUST = false;
@@ -2253,14 +2802,10 @@ public class Imaging {
 		if ((rect.bottomRow <= rect.topRow) || (rect.rightCol <= rect.leftCol))
 			return rect;
 		
-		byte[][] brightness = rect.ai.getBrightness();
+		int[][] brightnessSums = rect.ai.getBrightnessSums();
 		byte[] colBrightnesses = new byte[rect.rightCol - rect.leftCol];
-		for (int c = rect.leftCol; c < rect.rightCol; c++) {
-			int brightnessSum = 0;
-			for (int r = rect.topRow; r < rect.bottomRow; r++)
-				brightnessSum += brightness[c][r];
-			colBrightnesses[c - rect.leftCol] = ((byte) (brightnessSum / (rect.bottomRow - rect.topRow)));
-		}
+		for (int c = rect.leftCol; c < rect.rightCol; c++)
+			colBrightnesses[c - rect.leftCol] = ((byte) (getBrightnessSum(brightnessSums, c, (c+1), rect.topRow, rect.bottomRow) / (rect.bottomRow - rect.topRow)));
 		
 		byte colBrightnessPivot = 127;//getPivot(colBrightnesses, offset);
 		int minCol = -1;
@@ -2293,14 +2838,10 @@ public class Imaging {
 		if ((rect.bottomRow <= rect.topRow) || (rect.rightCol <= rect.leftCol))
 			return rect;
 		
-		byte[][] brightness = rect.ai.getBrightness();
+		int[][] brightnessSums = rect.ai.getBrightnessSums();
 		byte[] rowBrightnesses = new byte[rect.bottomRow - rect.topRow];
-		for (int r = rect.topRow; r < rect.bottomRow; r++) {
-			int brightnessSum = 0; 
-			for (int c = rect.leftCol; c < rect.rightCol; c++)
-				brightnessSum += brightness[c][r];
-			rowBrightnesses[r - rect.topRow] = ((byte) (brightnessSum / (rect.rightCol - rect.leftCol)));
-		}
+		for (int r = rect.topRow; r < rect.bottomRow; r++)
+			rowBrightnesses[r - rect.topRow] = ((byte) (getBrightnessSum(brightnessSums, rect.leftCol, rect.rightCol, r, (r+1)) / (rect.rightCol - rect.leftCol)));
 		
 		byte rowBrightnessPivot = 127;//getPivot(rowBrightnesses, offset);
 		
@@ -2386,27 +2927,40 @@ public class Imaging {
 			else offsets[o] = ((((offsets.length - o - 1) * -maxOffset) + (offsets.length / 2)) / offsets.length);
 		}
 		
-		byte[][] brightness = rect.ai.getBrightness();
 		byte[] colBrightnesses = new byte[rect.rightCol - rect.leftCol];
-		byte[] sColBrightnesses = new byte[rect.rightCol - rect.leftCol];
-		for (int c = rect.leftCol; c < rect.rightCol; c++) {
-			int brightnessSum = 0;
-			byte minBrightness = 127;
-			int sBrightnessSum = 0;
-			byte sMinBrightness = 127;
-			int sc;
-			byte sb;
-			for (int r = rect.topRow; r < rect.bottomRow; r++) {
-				brightnessSum += brightness[c][r];
-				minBrightness = ((byte) Math.min(minBrightness, brightness[c][r]));
-//				sc = c - offsets[r - rect.topRow]; // WRONG: we have to subtract the offset so positive angles correspond to shearing top of rectangle rightward
-				sc = c + offsets[r - rect.topRow]; // RIGHT: we have to add the offset so positive angles correspond to shearing top of rectangle rightward
-				sb = (((rect.leftCol <= sc) && (sc < rect.rightCol)) ? brightness[sc][r] : 127);
-				sBrightnessSum += sb;
-				sMinBrightness = ((byte) Math.min(sMinBrightness, sb));
+		byte[] sColBrightnesses;
+		
+		//	vertical split, column profile comes straight from brightness sums
+		if (maxOffset == 0) {
+			int[][] brightnessSums = rect.ai.getBrightnessSums();
+			for (int c = rect.leftCol; c < rect.rightCol; c++)
+				colBrightnesses[c - rect.leftCol] = ((byte) (getBrightnessSum(brightnessSums, c, (c+1), rect.topRow, rect.bottomRow) / (rect.bottomRow - rect.topRow)));
+			sColBrightnesses = colBrightnesses;
+		}
+		
+		//	sheared split, need to go pixel by pixel
+		else {
+			byte[][] brightness = rect.ai.getBrightness();
+			sColBrightnesses = new byte[rect.rightCol - rect.leftCol];
+			for (int c = rect.leftCol; c < rect.rightCol; c++) {
+				int brightnessSum = 0;
+				byte minBrightness = 127;
+				int sBrightnessSum = 0;
+				byte sMinBrightness = 127;
+				int sc;
+				byte sb;
+				for (int r = rect.topRow; r < rect.bottomRow; r++) {
+					brightnessSum += brightness[c][r];
+					minBrightness = ((byte) Math.min(minBrightness, brightness[c][r]));
+	//				sc = c - offsets[r - rect.topRow]; // WRONG: we have to subtract the offset so positive angles correspond to shearing top of rectangle rightward
+					sc = c + offsets[r - rect.topRow]; // RIGHT: we have to add the offset so positive angles correspond to shearing top of rectangle rightward
+					sb = (((rect.leftCol <= sc) && (sc < rect.rightCol)) ? brightness[sc][r] : 127);
+					sBrightnessSum += sb;
+					sMinBrightness = ((byte) Math.min(sMinBrightness, sb));
+				}
+				colBrightnesses[c - rect.leftCol] = ((byte) (brightnessSum / (rect.bottomRow - rect.topRow)));
+				sColBrightnesses[c - rect.leftCol] = ((byte) (sBrightnessSum / (rect.bottomRow - rect.topRow)));
 			}
-			colBrightnesses[c - rect.leftCol] = ((byte) (brightnessSum / (rect.bottomRow - rect.topRow)));
-			sColBrightnesses[c - rect.leftCol] = ((byte) (sBrightnessSum / (rect.bottomRow - rect.topRow)));
 		}
 		
 		ArrayList rects = new ArrayList();
@@ -2847,18 +3401,29 @@ public class Imaging {
 			else offsets[o] = (((o * maxOffset) - (offsets.length / 2)) / offsets.length);
 		}
 		
-		byte[][] brightness = rect.ai.getBrightness();
 		byte[] rowBrightnesses = new byte[rect.bottomRow - rect.topRow];
-		for (int r = rect.topRow; r < rect.bottomRow; r++) {
-			int brightnessSum = 0;
-			int or;
-			byte b;
-			for (int c = rect.leftCol; c < rect.rightCol; c++) {
-				or = r + offsets[c - rect.leftCol];
-				b = (((rect.topRow <= or) && (or < rect.bottomRow)) ? brightness[c][or] : 127);
-				brightnessSum += b;
+		
+		//	horizontal split, row profile comes straight from brightness sums
+		if (maxOffset == 0) {
+			int[][] brightnessSums = rect.ai.getBrightnessSums();
+			for (int r = rect.topRow; r < rect.bottomRow; r++)
+				rowBrightnesses[r - rect.topRow] = ((byte) (getBrightnessSum(brightnessSums, rect.leftCol, rect.rightCol, r, (r+1)) / (rect.rightCol - rect.leftCol)));
+		}
+		
+		//	skewed split, need to go pixel by pixel
+		else {
+			byte[][] brightness = rect.ai.getBrightness();
+			for (int r = rect.topRow; r < rect.bottomRow; r++) {
+				int brightnessSum = 0;
+				int or;
+				byte b;
+				for (int c = rect.leftCol; c < rect.rightCol; c++) {
+					or = r + offsets[c - rect.leftCol];
+					b = (((rect.topRow <= or) && (or < rect.bottomRow)) ? brightness[c][or] : 127);
+					brightnessSum += b;
+				}
+				rowBrightnesses[r - rect.topRow] = ((byte) (brightnessSum / (rect.rightCol - rect.leftCol)));
 			}
-			rowBrightnesses[r - rect.topRow] = ((byte) (brightnessSum / (rect.rightCol - rect.leftCol)));
 		}
 		
 		ArrayList rects = new ArrayList();
@@ -2970,6 +3535,7 @@ public class Imaging {
 	}
 	
 	private static final int fftCacheSize = 128;
+	private static final int minParallelFftSize = (512 * 512);
 	private static Map fftCache = Collections.synchronizedMap(new LinkedHashMap(128, 0.9f, true) {
 		protected boolean removeEldestEntry(Entry eldest) {
 			return (this.size() > fftCacheSize);
@@ -3009,44 +3575,61 @@ public class Imaging {
 		agg = Math.max(agg, ((iw + tdimx - 1) / tdimx));
 		agg = Math.max(agg, ((ih + tdimy - 1) / tdimy));
 		
-		Complex[][] ytrans = new Complex[tdimy][]; // first dimension is vertical here
-		Complex[] row;
+		//	sample image, reading pixel rows in bulk, and transform rows (first dimension is horizontal in result arrays)
+		final double[][] fftRe = new double[tdimx][tdimy];
+		final double[][] fftIm = new double[tdimx][tdimy];
+		int[][] rgbRows = new int[agg][iw];
+		double[] rowRe = new double[tdimx];
+		double[] rowIm = new double[tdimx];
 		int ix;
-		int iy;
-//		float[] hsb = new float[3];
 		float bs;
 		int rgb;
 		int wrgb = Color.WHITE.getRGB();
 		for (int y = 0; y < tdimy; y++) {
-			row = new Complex[tdimx];
+			int iy = (y * agg);
+			for (int ay = 0; ay < agg; ay++) {
+				if (repeatImage)
+					image.getRGB(0, ((iy + ay) % ih), iw, 1, rgbRows[ay], 0, iw);
+				else if (ay != 0)
+					rgbRows[ay] = rgbRows[0]; // we're only ever using the row proper in this mode
+				else if (y < ih)
+					image.getRGB(0, y, iw, 1, rgbRows[ay], 0, iw);
+			}
 			for (int x = 0; x < tdimx; x++) {
 				ix = (x * agg);
-				iy = (y * agg);
 				bs = 0;
 				for (int ax = 0; ax < agg; ax++) {
 					for (int ay = 0; ay < agg; ay++) {
-						if (repeatImage)
-							rgb = image.getRGB(((ix + ax) % iw), ((iy + ay) % ih));
-						else rgb = ((y < ih) ? image.getRGB(((ix + ax) % iw), y) : wrgb);
-//						hsb = new Color(rgb).getColorComponents(hsb);
-//						bs += hsb[2];
+						if (repeatImage || (y < ih))
+							rgb = rgbRows[ay][(ix + ax) % iw];
+						else rgb = wrgb;
 						bs += (((float) getByteBrightness(rgb)) / 128);
 					}
 				}
-				row[x] = new Complex((bs / (agg * agg)), 0);
+				rowRe[x] = (bs / (agg * agg));
+				rowIm[x] = 0;
+			}
+			computeFft(rowRe, rowIm);
+			for (int x = 0; x < tdimx; x++) {
+				fftRe[x][y] = rowRe[x];
+				fftIm[x][y] = rowIm[x];
 			}
-			ytrans[y] = computeFft(row);
 		}
 		
-		Complex[] col;
-		fft = new Complex[tdimx][];
+		//	transform columns in place (in parallel for large transforms)
+		ParallelJobRunner.runParallelFor(new ParallelFor() {
+			public void doFor(int x) throws Exception {
+				computeFft(fftRe[x], fftIm[x]);
+			}
+		}, tdimx, (((tdimx * tdimy) < minParallelFftSize) ? 1 : -1));
+		fftRe[0][0] = 0; // exclude DC
+		fftIm[0][0] = 0;
+		
+		//	wrap result
+		fft = new Complex[tdimx][tdimy];
 		for (int x = 0; x < tdimx; x++) {
-			col = new Complex[tdimy];
 			for (int y = 0; y < tdimy; y++)
-				col[y] = ytrans[y][x];
-			fft[x] = computeFft(col);
-			if (x == 0)
-				fft[0][0] = new Complex(0, 0); // exclude DC
+				fft[x][y] = new Complex(fftRe[x][y], fftIm[x][y]);
 		}
 		
 		fftCache.put(cacheKey, fft);
@@ -3175,7 +3758,7 @@ public class Imaging {
 		if (0 < granularity) {
 			if (fft == null) {
 //				fft = ai.getFft();
-				BufferedImage fftImage = ((ai.textImage == null) ? ai.image : ai.textImage);
+				BufferedImage fftImage = ((ai.textImage == null) ? ai.getImage() : ai.textImage);
 				int fftDim = 64;
 				int fftSize = Math.min(256, Math.max(fftImage.getWidth(), fftImage.getHeight()));
 				while (fftDim < fftSize)
@@ -3207,7 +3790,7 @@ public class Imaging {
 //			else return false;
 			if ((pageRotationAngle < maxPageRotationCorrectionAngle) && (Math.abs(pageRotationAngle) > ((Math.PI / 180) * granularity))) {
 //				analysisImage.setImage(rotateImage(analysisImage.getImage(), -pageRotationAngle, exOcrWordBounds));
-				BufferedImage image = rotateImage(ai.image, -pageRotationAngle, exOcrWordBounds);
+				BufferedImage image = rotateImage(ai.getImage(), -pageRotationAngle, exOcrWordBounds);
 				BufferedImage backgroundImage = ((ai.backgroundImage == null) ? null : rotateImage(ai.backgroundImage, -pageRotationAngle, null));
 				BufferedImage textImage = ((ai.textImage == null) ? null : rotateImage(ai.textImage, -pageRotationAngle, null));
 				ai.setImage(image, backgroundImage, textImage);
@@ -3291,7 +3874,7 @@ public class Imaging {
 		System.out.println("Page rotation angle by block line focusing is " + (((float) ((int) (blockRotationAngle * 100))) / 100) + "");
 		if (Math.abs(blockRotationAngle) > blockRotationAngleStep) {
 //			analysisImage.setImage(rotateImage(analysisImage.getImage(), ((Math.PI / 180) * -blockRotationAngle), exOcrWordBounds));
-			BufferedImage image = rotateImage(ai.image, ((Math.PI / 180) * -blockRotationAngle), exOcrWordBounds);
+			BufferedImage image = rotateImage(ai.getImage(), ((Math.PI / 180) * -blockRotationAngle), exOcrWordBounds);
 			BufferedImage backgroundImage = ((ai.backgroundImage == null) ? null : rotateImage(ai.backgroundImage, ((Math.PI / 180) * -blockRotationAngle), null));
 			BufferedImage textImage = ((ai.textImage == null) ? null : rotateImage(ai.textImage, ((Math.PI / 180) * -blockRotationAngle), null));
 			ai.setImage(image, backgroundImage, textImage);
@@ -3598,39 +4181,90 @@ public class Imaging {
 	 * @return the Fourier transform of the argument vector
 	 */
 	public static Complex[] computeFft(Complex[] x) {
-		int N = x.length;
-
-		// base case
-		if (N == 1)
-			return new Complex[] {x[0]};
-
-		// radix 2 Cooley-Tukey FFT
-		if (N % 2 != 0)
-			throw new RuntimeException("N is not a power of 2");
-
-		// fft of even terms
-		Complex[] even = new Complex[N/2];
-		for (int k = 0; k < N/2; k++)
-			even[k] = x[2*k];
-		Complex[] q = computeFft(even);
-
-		// fft of odd terms
-		Complex[] odd  = even;  // reuse the array
-		for (int k = 0; k < N/2; k++)
-			odd[k] = x[2*k + 1];
-		Complex[] r = computeFft(odd);
-
-		// combine
-		Complex[] y = new Complex[N];
-		for (int k = 0; k < N/2; k++) {
-			double kth = -2 * k * Math.PI / N;
-			Complex wk = new Complex(Math.cos(kth), Math.sin(kth));
-			y[k]	   = q[k].plus(wk.times(r[k]));
-			y[k + N/2] = q[k].minus(wk.times(r[k]));
+		double[] re = new double[x.length];
+		double[] im = new double[x.length];
+		for (int k = 0; k < x.length; k++) {
+			re[k] = x[k].re;
+			im[k] = x[k].im;
 		}
+		computeFft(re, im);
+		Complex[] y = new Complex[x.length];
+		for (int k = 0; k < y.length; k++)
+			y[k] = new Complex(re[k], im[k]);
 		return y;
 	}
 	
+	/**
+	 * Compute the FFT of complex vector in place, assuming its length is a
+	 * power of 2. The two argument arrays hold the real and imaginary parts of
+	 * the vector, respectively, and have to be of the same length.
+	 * @param re the real parts of the vector to transform
+	 * @param im the imaginary parts of the vector to transform
+	 */
+	public static void computeFft(double[] re, double[] im) {
+		int N = re.length;
+		if (N != im.length)
+			throw new IllegalArgumentException("Real and imaginary parts differ in length");
+		if (N < 2)
+			return;
+		if ((N & (N-1)) != 0)
+			throw new RuntimeException("N is not a power of 2");
+		
+		//	bring vector into bit reversed order
+		for (int i = 1, j = 0; i < N; i++) {
+			int bit = (N >> 1);
+			for (; (j & bit) != 0; bit >>= 1)
+				j ^= bit;
+			j ^= bit;
+			if (i < j) {
+				double t = re[i];
+				re[i] = re[j];
+				re[j] = t;
+				t = im[i];
+				im[i] = im[j];
+				im[j] = t;
+			}
+		}
+		
+		//	radix 2 Cooley-Tukey butterflies, bottom up
+		double[][] twiddles = getFftTwiddles(N);
+		double[] cos = twiddles[0];
+		double[] sin = twiddles[1];
+		for (int len = 2; len <= N; len <<= 1) {
+			int half = (len >> 1);
+			int step = (N / len);
+			for (int i = 0; i < N; i += len)
+				for (int k = 0; k < half; k++) {
+					double wRe = cos[k * step];
+					double wIm = sin[k * step];
+					int e = (i + k);
+					int o = (e + half);
+					double tRe = ((wRe * re[o]) - (wIm * im[o]));
+					double tIm = ((wRe * im[o]) + (wIm * re[o]));
+					re[o] = (re[e] - tRe);
+					im[o] = (im[e] - tIm);
+					re[e] = (re[e] + tRe);
+					im[e] = (im[e] + tIm);
+				}
+		}
+	}
+	
+	private static double[][] getFftTwiddles(int N) {
+		Integer key = new Integer(N);
+		double[][] twiddles = ((double[][]) fftTwiddleCache.get(key));
+		if (twiddles == null) {
+			twiddles = new double[2][N/2];
+			for (int k = 0; k < N/2; k++) {
+				double kth = -2 * k * Math.PI / N;
+				twiddles[0][k] = Math.cos(kth);
+				twiddles[1][k] = Math.sin(kth);
+			}
+			fftTwiddleCache.put(key, twiddles);
+		}
+		return twiddles;
+	}
+	private static Map fftTwiddleCache = Collections.synchronizedMap(new HashMap());
+	
 	/**
 	 * Object representing a complex number, including basic functionality
 	 * revolving around complex numbers.
@@ -3823,11 +4457,11 @@ public class Imaging {
 						else if (b < 0)
 							b = 0;
 						brightness[c][r] = ((byte) b);
-						ai.image.setRGB(c, r, Color.HSBtoRGB(0, 0, (((float) brightness[c][r]) / 127)));
 						if (ai.backgroundImage != null)
-							ai.backgroundImage.setRGB(c, r, Color.HSBtoRGB(0, 0, (((float) brightness[c][r]) / 127)));
+							ai.backgroundImage.setRGB(c, r, brightnessRgbs[brightness[c][r]]);
 					}
 			}
+		ai.brightnessModified();
 		
 		//	finally ...
 		return true;
@@ -4332,22 +4966,22 @@ public class Imaging {
 		
 		//	eliminate background
 		eliminateBackground(ai, dpi);
-		BufferedImage bebi = cloneImage(bi);
+		BufferedImage bebi = cloneImage(ai.getImage());
 		BufferedImage bebirc = getRegionImage(ai, 127);
 		
 		//	whiten remainder
 		whitenWhite(ai);
-		BufferedImage wbi = cloneImage(bi);
+		BufferedImage wbi = cloneImage(ai.getImage());
 		BufferedImage wbirc = getRegionImage(ai, 127);
 		
 		//	enhance contrast
 		enhanceContrast(ai, dpi, 128);
-		BufferedImage cbi = cloneImage(bi);
+		BufferedImage cbi = cloneImage(ai.getImage());
 		BufferedImage cbirc = getRegionImage(ai, 127);
 		
 		//	smooth image
 		gaussBlur(ai, (dpi / 36), (dpi / 144), true);
-		BufferedImage bbi = cloneImage(bi);
+		BufferedImage bbi = cloneImage(ai.getImage());
 		BufferedImage bbirc = getRegionImage(ai, 127);
 		
 		//	make each region as dark as its darkest spot
@@ -4369,25 +5003,27 @@ public class Imaging {
 			for (int r = 0; r < regionCodes[c].length; r++)
 				if (regionCodes[c][r] != 0) {
 					brightness[c][r] = minRegionBrightness[regionCodes[c][r]-1];
-					ai.image.setRGB(c, r, Color.HSBtoRGB(0, 0, (((float) brightness[c][r]) / 127)));
 				}
 			}
+		ai.brightnessModified();
 		
 		//	eliminate light regions
 		whitenWhite(ai);
-		BufferedImage dbi = cloneImage(bi);
+		BufferedImage dbi = cloneImage(ai.getImage());
 		BufferedImage dbirc = getRegionImage(ai, 127);
 		
 		//	AND-combine result image with original image
 		brightness = ai.getBrightness();
+		ai.syncImage();
 		for (int c = 0; c < brightness.length; c++) {
 			for (int r = 0; r < brightness[c].length; r++)
 //				ai.image.setRGB(c, r, ((brightness[c][r] == 127) ? white : obi.getRGB(c, r)));
 				ai.image.setRGB(c, r, ((brightness[c][r] == 127) ? white : bebi.getRGB(c, r)));
 		}
 		ai.brightness = null;
+		ai.brightnessEdited();
 		gaussBlur(ai, 1, true);
-		BufferedImage acbi = cloneImage(bi);
+		BufferedImage acbi = cloneImage(ai.getImage());
 		BufferedImage acbirc = getRegionImage(ai, 127);
 		
 		//	enhance contrast
@@ -52,6 +52,7 @@ import de.uka.ipd.idaho.im.util.ImDocumentIO;
 import de.uka.ipd.idaho.im.util.ImDocumentStyle;
 import de.uka.ipd.idaho.im.util.ImUtils;
 import de.uka.ipd.idaho.im.util.LinePattern;
+import de.uka.ipd.idaho.im.util.LinePatternSet;
 
 /**
  * Function library for analyzing the structure of text blocks in pages,
@@ -3308,35 +3309,30 @@ TODO Left-aligned vs. justified distinction:
 		private static String[] getPatternParagraphStarts(LineMetrics[] lines, char alignment, LinePattern[] splitLinePatterns) {
 			String[] isParagraphStartLine = new String[lines.length];
 			Arrays.fill(isParagraphStartLine, null);
+			
+			//	determine applicable patterns
+			boolean[] isCandidate = new boolean[splitLinePatterns.length];
+			boolean gotCandidate = false;
 			for (int p = 0; p < splitLinePatterns.length; p++) {
-				
-				//	check alignment
-				if (!splitLinePatterns[p].matchesParagraphOrientation(BlockLayout.getTextOrientation(alignment)))
+				isCandidate[p] = isPatternApplicable(splitLinePatterns[p], lines, alignment);
+				gotCandidate = (gotCandidate || isCandidate[p]);
+			}
+			if (!gotCandidate)
+				return isParagraphStartLine;
+			
+			//	match all applicable patterns against each line in one go, sharing line strings and font tests
+			LinePatternSet splitLinePatternSet = new LinePatternSet(splitLinePatterns);
+			boolean[][] lineMatches = new boolean[lines.length][];
+			for (int l = 0; l < lines.length; l++)
+				lineMatches[l] = splitLinePatternSet.matches(lines[l].words, isCandidate);
+			
+			//	apply matches pattern by pattern
+			for (int p = 0; p < splitLinePatterns.length; p++) {
+				if (!isCandidate[p])
 					continue;
 				
-				//	check block size
-				String maxBlockLines = splitLinePatterns[p].getParameter("MBL");
-				if (maxBlockLines != null) try {
-					if (Integer.parseInt(maxBlockLines) < lines.length)
-						continue;
-				} catch (NumberFormatException nfe) {}
-				
-				//	check page ID
-				String minPageId = splitLinePatterns[p].getParameter("MINPID");
-				if (minPageId != null) try {
-					if (lines[0].line.pageId < Integer.parseInt(minPageId))
-						continue;
-				} catch (NumberFormatException nfe) {}
-				String maxPageId = splitLinePatterns[p].getParameter("MAXPID");
-				if (maxPageId != null) try {
-					if (Integer.parseInt(maxPageId) < lines[0].line.pageId)
-						continue;
-				} catch (NumberFormatException nfe) {}
-				
 				//	get split direction and pattern reason
 				String splitDirection = splitLinePatterns[p].getParameter("SD");
-				if ((splitDirection == null) || (splitDirection.length() == 0))
-					continue;
 				boolean splitAbove = (splitDirection.indexOf('A') != -1);
 				boolean splitBelow = (splitDirection.indexOf('B') != -1);
 				String reason = splitLinePatterns[p].getParameter("R");
@@ -3345,19 +3341,7 @@ TODO Left-aligned vs. justified distinction:
 				
 				//	assess lines
 				for (int l = 0; l < lines.length; l++) {
-					
-					//	check font size
-					if (!splitLinePatterns[p].matchesFontSize(lines[l].words))
-						continue;
-					
-					//	check font properties
-					if (!splitLinePatterns[p].matchesStartFontProperties(lines[l].words))
-						continue;
-					if (!splitLinePatterns[p].matchesFontProperties(lines[l].words))
-						continue;
-					
-					//	check pattern proper
-					if (!splitLinePatterns[p].matchesString(lines[l].words))
+					if (!lineMatches[l][p])
 						continue;
 					
 					//	we have a match ==> paragraph starts
@@ -3376,6 +3360,36 @@ TODO Left-aligned vs. justified distinction:
 			return isParagraphStartLine;
 		}
 		
+		private static boolean isPatternApplicable(LinePattern splitLinePattern, LineMetrics[] lines, char alignment) {
+			
+			//	check alignment
+			if (!splitLinePattern.matchesParagraphOrientation(BlockLayout.getTextOrientation(alignment)))
+				return false;
+			
+			//	check block size
+			String maxBlockLines = splitLinePattern.getParameter("MBL");
+			if (maxBlockLines != null) try {
+				if (Integer.parseInt(maxBlockLines) < lines.length)
+					return false;
+			} catch (NumberFormatException nfe) {}
+			
+			//	check page ID
+			String minPageId = splitLinePattern.getParameter("MINPID");
+			if (minPageId != null) try {
+				if (lines[0].line.pageId < Integer.parseInt(minPageId))
+					return false;
+			} catch (NumberFormatException nfe) {}
+			String maxPageId = splitLinePattern.getParameter("MAXPID");
+			if (maxPageId != null) try {
+				if (Integer.parseInt(maxPageId) < lines[0].line.pageId)
+					return false;
+			} catch (NumberFormatException nfe) {}
+			
+			//	check split direction
+			String splitDirection = splitLinePattern.getParameter("SD");
+			return ((splitDirection != null) && (splitDirection.length() != 0));
+		}
+		
 		private static int addParagraphStartLineArrays(boolean[] isParagraphStartLine, boolean[] setParagraphStartLine, String[] paragraphStartLineEvidence, String evidence) {
 			int newParagraphStartLines = 0;
 			for (int l = 0; l < isParagraphStartLine.length; l++)
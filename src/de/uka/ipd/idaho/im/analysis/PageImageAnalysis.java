@@ -51,6 +51,8 @@ import de.uka.ipd.idaho.gamta.TokenSequence;
 import de.uka.ipd.idaho.gamta.Tokenizer;
 import de.uka.ipd.idaho.gamta.util.CountingSet;
 import de.uka.ipd.idaho.gamta.util.DocumentStyle.PropertiesData;
+import de.uka.ipd.idaho.gamta.util.ParallelJobRunner;
+import de.uka.ipd.idaho.gamta.util.ParallelJobRunner.ParallelFor;
 import de.uka.ipd.idaho.gamta.util.ProgressMonitor;
 import de.uka.ipd.idaho.gamta.util.imaging.BoundingBox;
 import de.uka.ipd.idaho.gamta.util.imaging.ImagingConstants;
@@ -362,7 +364,25 @@ public class PageImageAnalysis implements ImagingConstants {
 	 * @return the root region, representing the whole page
 	 */
 	public static Region getPageRegion(AnalysisImage ai, int dpi, boolean filterImageBlocks, ProgressMonitor pm) {
-		return getPageRegion(ai, dpi, null, -1, filterImageBlocks, pm);
+		return getPageRegion(ai, dpi, null, -1, filterImageBlocks, 1, pm);
+	}
+	
+	/**
+	 * Analyze the structure of a document page, i.e., chop it into sub regions
+	 * and text blocks. Sibling sub regions are analyzed in parallel, using up
+	 * to the argument number of cores; the resulting region tree is the same
+	 * as with a single core.
+	 * @param ai the page image to analyze
+	 * @param dpi the resolution of the underlying page image
+	 * @param filterImageBlocks filter out blocks that are likely to be images
+	 *            rather than text? (safe to switch off for born-digital page
+	 *            images)
+	 * @param maxCores the maximum number of cores to use (-1 means all)
+	 * @param pm a monitor object for reporting progress, e.g. to a UI
+	 * @return the root region, representing the whole page
+	 */
+	public static Region getPageRegion(AnalysisImage ai, int dpi, boolean filterImageBlocks, int maxCores, ProgressMonitor pm) {
+		return getPageRegion(ai, dpi, null, -1, filterImageBlocks, maxCores, pm);
 	}
 	
 	/**
@@ -381,13 +401,35 @@ public class PageImageAnalysis implements ImagingConstants {
 	 * @return the root region, representing the whole page
 	 */
 	public static Region getPageRegion(AnalysisImage ai, int dpi, BoundingBox[] columnAreas, int minColumnWidth, boolean filterImageBlocks, ProgressMonitor pm) {
+		return getPageRegion(ai, dpi, columnAreas, minColumnWidth, filterImageBlocks, 1, pm);
+	}
+	
+	/**
+	 * Analyze the structure of a document page, i.e., chop it into sub regions
+	 * and text blocks. Sibling sub regions are analyzed in parallel, using up
+	 * to the argument number of cores; the resulting region tree is the same
+	 * as with a single core.
+	 * @param ai the page image to analyze
+	 * @param dpi the resolution of the underlying page image
+	 * @param columnAreas an array of bounding boxes marking the areas where
+	 *            text columns are located, preventing column splits inside
+	 *            each individual area
+	 * @param minColumnWidth the minimum width for a column after a split
+	 * @param filterImageBlocks filter out blocks that are likely to be images
+	 *            rather than text? (safe to switch off for born-digital page
+	 *            images)
+	 * @param maxCores the maximum number of cores to use (-1 means all)
+	 * @param pm a monitor object for reporting progress, e.g. to a UI
+	 * @return the root region, representing the whole page
+	 */
+	public static Region getPageRegion(AnalysisImage ai, int dpi, BoundingBox[] columnAreas, int minColumnWidth, boolean filterImageBlocks, int maxCores, ProgressMonitor pm) {
 		ImagePartRectangle pageBounds = Imaging.getContentBox(ai);
 //		int minHorizontalBlockMargin = (dpi / 15); // TODO find out if this makes sense (will turn out in the long haul only, though)
 		int minHorizontalBlockMargin = (dpi / 10); // TODO find out if this makes sense (will turn out in the long haul only, though)
 //		int minHorizontalBlockMargin = (dpi / 8); // TODO find out if this makes sense (will turn out in the long haul only, though)
 //		int minVerticalBlockMargin = (dpi / 15); // TODO find out if this makes sense (will turn out in the long haul only, though)
 		int minVerticalBlockMargin = (dpi / 10); // TODO find out if this makes sense (will turn out in the long haul only, though)
-		return getPageRegion(pageBounds, minHorizontalBlockMargin, minVerticalBlockMargin, columnAreas, minColumnWidth, dpi, filterImageBlocks, pm);
+		return getPageRegion(pageBounds, minHorizontalBlockMargin, minVerticalBlockMargin, columnAreas, minColumnWidth, dpi, filterImageBlocks, maxCores, pm);
 	}
 	
 	/**
@@ -437,11 +479,42 @@ public class PageImageAnalysis implements ImagingConstants {
 	 * @return the root region, representing the whole page
 	 */
 	public static Region getPageRegion(AnalysisImage ai, int dpi, int minHorizontalBlockMargin, int minVerticalBlockMargin, BoundingBox[] columnAreas, int minColumnWidth, boolean filterImageBlocks, ProgressMonitor pm) {
+		return getPageRegion(ai, dpi, minHorizontalBlockMargin, minVerticalBlockMargin, columnAreas, minColumnWidth, filterImageBlocks, 1, pm);
+	}
+	
+	/**
+	 * Analyze the structure of a document page, i.e., chop it into sub regions
+	 * and text blocks. The argument minimum margins are used as they are, i.e.,
+	 * as absolute values without further scaling. It is the responsibility of
+	 * client code to specify values appropriate for the given DPI number.
+	 * Sibling sub regions are analyzed in parallel, using up to the argument
+	 * number of cores; the resulting region tree is the same as with a single
+	 * core.
+	 * @param ai the page image to analyze
+	 * @param dpi the resolution of the underlying page image
+	 * @param minHorizontalBlockMargin the minimum number of white pixels to
+	 *            the left and right of a text block (the margin between two
+	 *            text columns)
+	 * @param minVerticalBlockMargin the minimum number of white pixels above
+	 *            and below a text block (the margin between two text blocks in
+	 *            the same column)
+	 * @param columnAreas an array of bounding boxes marking the areas where
+	 *            text columns are located, preventing column splits inside
+	 *            each individual area
+	 * @param minColumnWidth the minimum width for a column after a split
+	 * @param filterImageBlocks filter out blocks that are likely to be images
+	 *            rather than text? (safe to switch off for born-digital page
+	 *            images)
+	 * @param maxCores the maximum number of cores to use (-1 means all)
+	 * @param pm a monitor object for reporting progress, e.g. to a UI
+	 * @return the root region, representing the whole page
+	 */
+	public static Region getPageRegion(AnalysisImage ai, int dpi, int minHorizontalBlockMargin, int minVerticalBlockMargin, BoundingBox[] columnAreas, int minColumnWidth, boolean filterImageBlocks, int maxCores, ProgressMonitor pm) {
 		ImagePartRectangle pageBounds = Imaging.getContentBox(ai);
-		return getPageRegion(pageBounds, minHorizontalBlockMargin, minVerticalBlockMargin, columnAreas, minColumnWidth, dpi, filterImageBlocks, pm);
+		return getPageRegion(pageBounds, minHorizontalBlockMargin, minVerticalBlockMargin, columnAreas, minColumnWidth, dpi, filterImageBlocks, maxCores, pm);
 	}
 	
-	private static Region getPageRegion(ImagePartRectangle pageBounds, int minHorizontalBlockMargin, int minVerticalBlockMargin, BoundingBox[] columnAreas, int minColumnWidth, int dpi, boolean filterImageBlocks, ProgressMonitor pm) {
+	private static Region getPageRegion(ImagePartRectangle pageBounds, int minHorizontalBlockMargin, int minVerticalBlockMargin, BoundingBox[] columnAreas, int minColumnWidth, int dpi, boolean filterImageBlocks, int maxCores, ProgressMonitor pm) {
 		
 		//	create block comprising whole page
 		Region page = new Region(pageBounds, false, null);
@@ -449,8 +522,13 @@ public class PageImageAnalysis implements ImagingConstants {
 		//	visualize splitting
 		ImageDisplayDialog idd = null;//new ImageDisplayDialog("Page split step by step");
 		
+		//	compute brightness sums up front if working in parallel, so threads don't all do it at once
+		if ((maxCores != 1) && (idd == null))
+			pageBounds.ai.getBrightnessSums();
+		else maxCores = 1;
+		
 		//	fill in region tree
-		fillInSubRegions(idd, "", page, minHorizontalBlockMargin, minVerticalBlockMargin, columnAreas, minColumnWidth, dpi, filterImageBlocks, pm);
+		fillInSubRegions(idd, "", page, minHorizontalBlockMargin, minVerticalBlockMargin, columnAreas, minColumnWidth, dpi, filterImageBlocks, maxCores, pm);
 		
 		//	show split
 		if (idd != null) {
@@ -464,8 +542,8 @@ public class PageImageAnalysis implements ImagingConstants {
 	}
 	
 	private static final float capitalIHeightWidthRatio = (((float) 8) / 2); // the height/width ratio of a capital I is usually lower in serif fonts, but we want to have some safety margin
-	private static void fillInSubRegions(ImageDisplayDialog idd, String indent, Region region, int minHorizontalBlockMargin, int minVerticalBlockMargin, BoundingBox[] columnAreas, int minColumnWidth, int dpi, boolean filterImageBlocks, ProgressMonitor pm) {
-		if (minHorizontalBlockMargin != 1) {
+	private static void fillInSubRegions(final ImageDisplayDialog idd, final String indent, final Region region, final int minHorizontalBlockMargin, final int minVerticalBlockMargin, final BoundingBox[] columnAreas, final int minColumnWidth, final int dpi, final boolean filterImageBlocks, int maxCores, final ProgressMonitor pm) {
+		if ((idd != null) && (minHorizontalBlockMargin != 1)) {
 			System.out.println("Splitting " + (region.isColumn ? "column" : "block") + " " + region.getBoundingBox());
 			if (columnAreas != null) {
 				System.out.println("Column areas are:");
@@ -488,7 +566,7 @@ public class PageImageAnalysis implements ImagingConstants {
 			for (int c = 0; c < subRegionsCandidates.length; c++) {
 				double shearDegrees = (((double) (c - (subRegionsCandidates.length / 2))) / 10);
 				subRegionsCandidates[c] = Imaging.splitIntoColumns(region.bounds, minHorizontalBlockMargin, shearDegrees, true);
-				if (minHorizontalBlockMargin != 1)
+				if ((idd != null) && (minHorizontalBlockMargin != 1))
 					System.out.println(" - got " + subRegionsCandidates[c].length + " columns at margin " + minHorizontalBlockMargin + ", split angle " + shearDegrees);
 			}
 			subRegions = subRegionsCandidates[subRegionsCandidates.length / 2];
@@ -497,7 +575,7 @@ public class PageImageAnalysis implements ImagingConstants {
 					subRegions = subRegionsCandidates[c];
 			}
 		}
-		if (minHorizontalBlockMargin != 1) {
+		if ((idd != null) && (minHorizontalBlockMargin != 1)) {
 			System.out.println(" - got " + subRegions.length + " sub regions");
 			if ((idd != null) && (subRegions.length > 1)) {
 				BufferedImage pi = region.bounds.ai.getImage();
@@ -556,7 +634,8 @@ public class PageImageAnalysis implements ImagingConstants {
 					idd.addImage(bi, (idd.getImageCount() + "." + indent + " After column area based repair of " + region.bounds));
 				}
 				subRegions = ((ImagePartRectangle[]) subRegionList.toArray(new ImagePartRectangle[subRegionList.size()]));
-				System.out.println(" - got " + subRegions.length + " sub regions after column repair");
+				if (idd != null)
+					System.out.println(" - got " + subRegions.length + " sub regions after column repair");
 			}
 		}
 		
@@ -652,7 +731,8 @@ public class PageImageAnalysis implements ImagingConstants {
 					idd.addImage(bi, (idd.getImageCount() + "." + indent + " After column width based repair of " + region.bounds));
 				}
 				subRegions = ((ImagePartRectangle[]) subRegionList.toArray(new ImagePartRectangle[subRegionList.size()]));
-				System.out.println(" - got " + subRegions.length + " sub regions after column repair");
+				if (idd != null)
+					System.out.println(" - got " + subRegions.length + " sub regions after column repair");
 			}
 		}
 		
@@ -660,7 +740,7 @@ public class PageImageAnalysis implements ImagingConstants {
 		for (int r = 0; r < subRegions.length; r++) {
 			subRegions[r] = Imaging.narrowLeftAndRight(subRegions[r]);
 			subRegions[r] = Imaging.narrowTopAndBottom(subRegions[r]);
-			if (minHorizontalBlockMargin != 1) {
+			if ((idd != null) && (minHorizontalBlockMargin != 1)) {
 				byte avgBrightness = Imaging.computeAverageBrightness(subRegions[r]);
 				System.out.println("   - " + new BoundingBox(subRegions[r].leftCol, subRegions[r].rightCol, subRegions[r].topRow, subRegions[r].bottomRow) + ", avg brightness is " + avgBrightness);
 			}
@@ -673,67 +753,29 @@ public class PageImageAnalysis implements ImagingConstants {
 			return;
 		}
 		
-		//	search for further splits
-		for (int r = 0; r < subRegions.length; r++) {
-			
-			//	check empty regions
-			if (subRegions[r].isEmpty())
-				continue;
-			
-			//	create sub region
-			Region subRegion = new Region(subRegions[r], !region.isColumn, region);
-			
-			//	analyze sub region recursively
-			fillInSubRegions(idd, (indent + "  "), subRegion, minHorizontalBlockMargin, minVerticalBlockMargin, columnAreas, minColumnWidth, dpi, filterImageBlocks, pm);
-			
-			//	this sub region is not atomic, but has no sub regions worth retaining either, so forget about it
-			if (!subRegion.isAtomic() && (subRegion.getSubRegionCount() == 0))
-				continue;
-			
-			//	atomic and more than an inch in either direction, check brightness if required
-			if (filterImageBlocks && subRegion.isAtomic() && ((subRegion.bounds.bottomRow - subRegion.bounds.topRow) > dpi) && ((subRegion.bounds.rightCol - subRegion.bounds.leftCol) > dpi)) {
-				byte avgBrightness = Imaging.computeAverageBrightness(subRegions[r]);
-				if (avgBrightness <= 96) {
-					subRegion.setImage();
-					region.addSubRegion(subRegion);
-					continue;
+		//	search for further splits, analyzing sibling sub regions in parallel if we have more than one core to spare (handing down cores only as long as there is just a single sub region)
+		final ImagePartRectangle[] fSubRegions = subRegions;
+		final Region[] retainSubRegions = new Region[subRegions.length];
+		if ((maxCores == 1) || (subRegions.length < 2)) {
+			for (int r = 0; r < subRegions.length; r++)
+				retainSubRegions[r] = fillInSubRegion(idd, indent, region, subRegions[r], minHorizontalBlockMargin, minVerticalBlockMargin, columnAreas, minColumnWidth, dpi, filterImageBlocks, maxCores, pm);
+		}
+		else {
+			ParallelFor pf = new ParallelFor() {
+				public void doFor(int r) throws Exception {
+					retainSubRegions[r] = fillInSubRegion(idd, indent, region, fSubRegions[r], minHorizontalBlockMargin, minVerticalBlockMargin, columnAreas, minColumnWidth, dpi, filterImageBlocks, 1, pm);
 				}
-			}
-			
-			//	what remains of this sub region is less than on fifteenth of an inch (5 pt font size) high, and thus very unlikely to be text
-			if ((subRegion.bounds.bottomRow - subRegion.bounds.topRow) < (dpi / 15))
+			};
+			ParallelJobRunner.runParallelFor(pf, subRegions.length, maxCores);
+			checkException(pf);
+		}
+		
+		//	store sub regions worth retaining in original order
+		for (int r = 0; r < retainSubRegions.length; r++) {
+			Region subRegion = retainSubRegions[r];
+			if (subRegion == null)
 				continue;
 			
-			//	this sub region is too tall (higher than 72pt font size) to be a single line, and narrower than one inch, and thus very unlikely to be text if no line splits exist
-			if (((subRegion.bounds.bottomRow - subRegion.bounds.topRow) > dpi) && ((subRegion.bounds.rightCol - subRegion.bounds.leftCol) < dpi)) {
-				ImagePartRectangle[] lines = Imaging.splitIntoRows(subRegions[r]);
-				if (lines.length < 2) {
-					if ((subRegion.bounds.rightCol - subRegion.bounds.leftCol) > (dpi / 2)) {
-						subRegion.setImage();
-						region.addSubRegion(subRegion);
-					}
-					continue;
-				}
-			}
-			
-			//	this sub region might be a single character with a large (up to 72 pt) font size, but is too narrow even for a capital I, and thus is very unlikely to be text
-			float heightWidthRatio = (((float) (subRegion.bounds.bottomRow - subRegion.bounds.topRow)) / (subRegion.bounds.rightCol - subRegion.bounds.leftCol));
-			if (((subRegion.bounds.bottomRow - subRegion.bounds.topRow) <= dpi) && (heightWidthRatio > capitalIHeightWidthRatio)) {
-				ImagePartRectangle[] lines = Imaging.splitIntoRows(subRegions[r]);
-				if (lines.length < 2)
-					continue;
-			}
-			
-			//	slice and dice atomic region with 1 pixel margin and see if anything meaningful remains
-			if (subRegion.isAtomic() && (minHorizontalBlockMargin > 1) && (minVerticalBlockMargin > 1)) {
-				ImagePartRectangle testRegionBounds = new ImagePartRectangle(subRegion.bounds.ai);
-				Imaging.copyBounds(subRegion.bounds, testRegionBounds);
-				Region testRegion = new Region(testRegionBounds, true, null);
-				fillInSubRegions(idd, (indent + "  "), testRegion, 1, 1, null, -1, dpi, true, pm);
-				if (!testRegion.isAtomic() && (testRegion.getSubRegionCount() == 0))
-					continue;
-			}
-			
 			//	block with single child-column (column cannot be atomic, as otherwise block would be atomic and have no children) (scenario can happen if some artifact column is eliminated) ==> add child-blocks of child-column instead of block itself
 			if (!subRegion.isColumn && (subRegion.getSubRegionCount() == 1)) {
 				Region onlyChildColumn = subRegion.getSubRegion(0);
@@ -943,7 +985,7 @@ public class PageImageAnalysis implements ImagingConstants {
 				Region mergedSubRegion = new Region(Imaging.getHull(subRegionBounds), !region.isColumn, region);
 				
 				//	re-get sub structure (easier than copying)
-				fillInSubRegions(idd, (indent + "  "), mergedSubRegion, minHorizontalBlockMargin, minVerticalBlockMargin, columnAreas, dpi, minColumnWidth, filterImageBlocks, pm);
+				fillInSubRegions(idd, (indent + "  "), mergedSubRegion, minHorizontalBlockMargin, minVerticalBlockMargin, columnAreas, dpi, minColumnWidth, filterImageBlocks, 1, pm);
 				
 				//	does the merged sub region have as many columns as the original sub regions?
 				if (mergedSubRegion.getSubRegionCount() < Math.max(topSubRegion.getSubRegionCount(), bottomSubRegion.getSubRegionCount())) {
@@ -979,6 +1021,78 @@ public class PageImageAnalysis implements ImagingConstants {
 		}
 	}
 	
+	private static Region fillInSubRegion(ImageDisplayDialog idd, String indent, Region region, ImagePartRectangle subRegionBounds, int minHorizontalBlockMargin, int minVerticalBlockMargin, BoundingBox[] columnAreas, int minColumnWidth, int dpi, boolean filterImageBlocks, int maxCores, ProgressMonitor pm) {
+		
+		//	check empty regions
+		if (subRegionBounds.isEmpty())
+			return null;
+		
+		//	create sub region
+		Region subRegion = new Region(subRegionBounds, !region.isColumn, region);
+		
+		//	analyze sub region recursively
+		fillInSubRegions(idd, (indent + "  "), subRegion, minHorizontalBlockMargin, minVerticalBlockMargin, columnAreas, minColumnWidth, dpi, filterImageBlocks, maxCores, pm);
+		
+		//	this sub region is not atomic, but has no sub regions worth retaining either, so forget about it
+		if (!subRegion.isAtomic() && (subRegion.getSubRegionCount() == 0))
+			return null;
+		
+		//	atomic and more than an inch in either direction, check brightness if required
+		if (filterImageBlocks && subRegion.isAtomic() && ((subRegion.bounds.bottomRow - subRegion.bounds.topRow) > dpi) && ((subRegion.bounds.rightCol - subRegion.bounds.leftCol) > dpi)) {
+			byte avgBrightness = Imaging.computeAverageBrightness(subRegionBounds);
+			if (avgBrightness <= 96) {
+				subRegion.setImage();
+				return subRegion;
+			}
+		}
+		
+		//	what remains of this sub region is less than on fifteenth of an inch (5 pt font size) high, and thus very unlikely to be text
+		if ((subRegion.bounds.bottomRow - subRegion.bounds.topRow) < (dpi / 15))
+			return null;
+		
+		//	this sub region is too tall (higher than 72pt font size) to be a single line, and narrower than one inch, and thus very unlikely to be text if no line splits exist
+		if (((subRegion.bounds.bottomRow - subRegion.bounds.topRow) > dpi) && ((subRegion.bounds.rightCol - subRegion.bounds.leftCol) < dpi)) {
+			ImagePartRectangle[] lines = Imaging.splitIntoRows(subRegionBounds);
+			if (lines.length < 2) {
+				if ((subRegion.bounds.rightCol - subRegion.bounds.leftCol) > (dpi / 2)) {
+					subRegion.setImage();
+					return subRegion;
+				}
+				return null;
+			}
+		}
+		
+		//	this sub region might be a single character with a large (up to 72 pt) font size, but is too narrow even for a capital I, and thus is very unlikely to be text
+		float heightWidthRatio = (((float) (subRegion.bounds.bottomRow - subRegion.bounds.topRow)) / (subRegion.bounds.rightCol - subRegion.bounds.leftCol));
+		if (((subRegion.bounds.bottomRow - subRegion.bounds.topRow) <= dpi) && (heightWidthRatio > capitalIHeightWidthRatio)) {
+			ImagePartRectangle[] lines = Imaging.splitIntoRows(subRegionBounds);
+			if (lines.length < 2)
+				return null;
+		}
+		
+		//	slice and dice atomic region with 1 pixel margin and see if anything meaningful remains
+		if (subRegion.isAtomic() && (minHorizontalBlockMargin > 1) && (minVerticalBlockMargin > 1)) {
+			ImagePartRectangle testRegionBounds = new ImagePartRectangle(subRegion.bounds.ai);
+			Imaging.copyBounds(subRegion.bounds, testRegionBounds);
+			Region testRegion = new Region(testRegionBounds, true, null);
+			fillInSubRegions(idd, (indent + "  "), testRegion, 1, 1, null, -1, dpi, true, maxCores, pm);
+			if (!testRegion.isAtomic() && (testRegion.getSubRegionCount() == 0))
+				return null;
+		}
+		
+		//	this one's worth retaining
+		return subRegion;
+	}
+	
+	private static void checkException(ParallelFor pf) {
+		Exception error = pf.getException();
+		if (error == null)
+			return;
+		if (error instanceof RuntimeException)
+			throw ((RuntimeException) error);
+		else throw new RuntimeException(error);
+	}
+	
 	private static boolean areTopBottom(Region topRegion, Region bottomRegion) {
 		
 		//	regions off to left or right of one another
@@ -1603,11 +1717,67 @@ public class PageImageAnalysis implements ImagingConstants {
 	 * @param pm a monitor object for reporting progress, e.g. to a UI
 	 */
 	public static void getBlockStructure(Region region, int dpi, BoundingBox[] existingWords, ProgressMonitor pm) {
+		getBlockStructure(region, dpi, existingWords, 1, pm);
+	}
+	
+	/**
+	 * Analyze the inner structure of a single text block, represented as an
+	 * atomic region. The block object representing the inner structure of the
+	 * argument region can be retrieved via the getBlock() method. The lines of
+	 * the block are split into words in parallel, using up to the argument
+	 * number of cores.
+	 * @param region the text block to analyze
+	 * @param dpi the resolution of the underlying page image
+	 * @param existingWords bounding boxes of words already known to be in the
+	 *            block
+	 * @param maxCores the maximum number of cores to use (-1 means all)
+	 * @param pm a monitor object for reporting progress, e.g. to a UI
+	 */
+	public static void getBlockStructure(Region region, int dpi, BoundingBox[] existingWords, int maxCores, ProgressMonitor pm) {
 		Block block = new Block(region.bounds);
-		getBlockStructure(block, dpi, existingWords, pm);
+		getBlockStructure(block, dpi, existingWords, maxCores, pm);
 		region.setBlock(block);
 	}
 	
+	/**
+	 * Analyze the inner structure of all text blocks in a region tree, i.e.,
+	 * of all its atomic descendant regions that are not images. The block
+	 * objects representing the inner structure of the individual regions can
+	 * be retrieved via their getBlock() method. The blocks are analyzed in
+	 * parallel, using up to the argument number of cores. Each block is
+	 * stored with its region, so the result does not depend on the order the
+	 * blocks are analyzed in.
+	 * @param region the root of the region tree to analyze
+	 * @param dpi the resolution of the underlying page image
+	 * @param existingWords bounding boxes of words already known to be in the
+	 *            page
+	 * @param maxCores the maximum number of cores to use (-1 means all)
+	 * @param pm a monitor object for reporting progress, e.g. to a UI
+	 */
+	public static void getBlockStructures(Region region, final int dpi, final BoundingBox[] existingWords, int maxCores, final ProgressMonitor pm) {
+		final Region[] blockRegions = getTextBlockRegions(region);
+		
+		//	single block, use cores on lines
+		if (blockRegions.length < 2) {
+			for (int b = 0; b < blockRegions.length; b++)
+				getBlockStructure(blockRegions[b], dpi, existingWords, maxCores, pm);
+			return;
+		}
+		
+		//	compute brightness sums up front if working in parallel, so threads don't all do it at once
+		if (maxCores != 1)
+			region.bounds.ai.getBrightnessSums();
+		
+		//	analyze blocks
+		ParallelFor pf = new ParallelFor() {
+			public void doFor(int b) throws Exception {
+				getBlockStructure(blockRegions[b], dpi, existingWords, 1, pm);
+			}
+		};
+		ParallelJobRunner.runParallelFor(pf, blockRegions.length, maxCores);
+		checkException(pf);
+	}
+	
 	/**
 	 * Analyze the inner structure of a single text block.
 	 * @param block the text block to analyze
@@ -1617,6 +1787,21 @@ public class PageImageAnalysis implements ImagingConstants {
 	 * @param pm a monitor object for reporting progress, e.g. to a UI
 	 */
 	public static void getBlockStructure(Block block, int dpi, BoundingBox[] existingWords, ProgressMonitor pm) {
+		getBlockStructure(block, dpi, existingWords, 1, pm);
+	}
+	
+	/**
+	 * Analyze the inner structure of a single text block. The lines of the
+	 * block are split into words in parallel, using up to the argument number
+	 * of cores.
+	 * @param block the text block to analyze
+	 * @param dpi the resolution of the underlying page image
+	 * @param existingWords bounding boxes of words already known to be in the
+	 *            block
+	 * @param maxCores the maximum number of cores to use (-1 means all)
+	 * @param pm a monitor object for reporting progress, e.g. to a UI
+	 */
+	public static void getBlockStructure(Block block, int dpi, BoundingBox[] existingWords, int maxCores, ProgressMonitor pm) {
 		
 		//	compute margin thresholds
 		int minVerticalBlockMargin = (dpi / 10); // TODO find out if this makes sense (will turn out in the long haul only, though)
@@ -1625,7 +1810,7 @@ public class PageImageAnalysis implements ImagingConstants {
 		
 		//	find text lines and words
 		if (existingWords == null)
-			getBlockStructure(block, dpi, minVerticalBlockMargin, minLineMargin, minWordMargin, pm);
+			getBlockStructure(block, dpi, minVerticalBlockMargin, minLineMargin, minWordMargin, maxCores, pm);
 		else getBlockStructure(block, existingWords, pm);
 		
 		//	catch empty blocks larger than half an inch in both dimensions, might be (to-parse) table 
@@ -1663,7 +1848,7 @@ public class PageImageAnalysis implements ImagingConstants {
 		
 		//	find text lines and words
 		if (existingWords == null)
-			getBlockStructure(block, dpi, minVerticalBlockMargin, minLineMargin, minWordMargin, pm);
+			getBlockStructure(block, dpi, minVerticalBlockMargin, minLineMargin, minWordMargin, 1, pm);
 		else getBlockStructure(block, existingWords, pm);
 		
 		//	catch empty blocks larger than half an inch in both dimensions, might be (to-parse) table 
@@ -1881,7 +2066,7 @@ public class PageImageAnalysis implements ImagingConstants {
 		int minWordMargin = (dpi / 30); // TODOne_above find out if this makes sense (will turn out in the long haul only, though)
 		int minVerticalBlockMargin = minWordMargin; // using same as word margin here, as we already know we have a coherent table
 		if (existingWords == null)
-			getBlockStructure(tBlock, dpi, minVerticalBlockMargin, 1, minWordMargin, pm);
+			getBlockStructure(tBlock, dpi, minVerticalBlockMargin, 1, minWordMargin, 1, pm);
 		else getBlockStructure(tBlock, existingWords, pm);
 		
 		//	adjust table content back to original table block boundaries, and wrap lines in cells
@@ -2264,7 +2449,7 @@ public class PageImageAnalysis implements ImagingConstants {
 	
 	private static final int whiteRgb = Color.WHITE.getRGB();
 	
-	private static void getBlockStructure(Block block, int dpi, int minVerticalBlockMargin, int minLineMargin, int minWordMargin, ProgressMonitor pm) {
+	private static void getBlockStructure(Block block, final int dpi, int minVerticalBlockMargin, int minLineMargin, final int minWordMargin, int maxCores, final ProgressMonitor pm) {
 		pm.setInfo("   - doing block " + block.getBoundingBox().toString());
 		
 		double maxSplitSlopeAngle;
@@ -2373,59 +2558,70 @@ public class PageImageAnalysis implements ImagingConstants {
 			lostLine = null;
 		}
 		
-		//	split lines into words
-		for (int l = 0; l < block.lines.size(); l++) {
-			Line line = ((Line) block.lines.get(l));
-			pm.setInfo("     - doing line " + line.getBoundingBox().toString());
-			ImagePartRectangle[] lwBlocks = Imaging.splitIntoColumns(line.bounds, minWordMargin);
-			pm.setInfo("       - got " + lwBlocks.length + " raw words in line " + l + " at margin " + minWordMargin);
+		//	split lines into words (lines are independent of one another, so we can handle them in parallel)
+		final Line[] lines = ((Line[]) block.lines.toArray(new Line[block.lines.size()]));
+		ParallelFor pf = new ParallelFor() {
+			public void doFor(int l) throws Exception {
+				getLineWords(lines[l], l, dpi, minWordMargin, pm);
+			}
+		};
+		ParallelJobRunner.runParallelFor(pf, lines.length, maxCores);
+		checkException(pf);
+		
+		adjustWordsAndLines(block);
+	}
+	
+	private static void getLineWords(Line line, int l, int dpi, int minWordMargin, ProgressMonitor pm) {
+		pm.setInfo("     - doing line " + line.getBoundingBox().toString());
+		ImagePartRectangle[] lwBlocks = Imaging.splitIntoColumns(line.bounds, minWordMargin);
+		pm.setInfo("       - got " + lwBlocks.length + " raw words in line " + l + " at margin " + minWordMargin);
+		
+		//	split words at gaps at least twice as wide as word-local average, and at least half the global minimum margin
+		ArrayList lwBlockList = new ArrayList();
+		for (int w = 0; w < lwBlocks.length; w++)
+			lwBlockList.add(lwBlocks[w]);
+		
+		//	refresh line word blocks
+		if (lwBlocks.length < lwBlockList.size())
+			lwBlocks = ((ImagePartRectangle[]) lwBlockList.toArray(new ImagePartRectangle[lwBlockList.size()]));
+		
+		//	filter words
+		pm.setInfo("       - got " + lwBlocks.length + " words in line " + l);
+		boolean omittedFirst = false;
+		boolean omittedLast = false;
+		for (int w = 0; w < lwBlocks.length; w++) {
+			lwBlocks[w] = Imaging.narrowTopAndBottom(lwBlocks[w]);
+			int minWidth = (lwBlocks[w].rightCol - lwBlocks[w].leftCol);
+			int maxWidth = 0;
+			int minHeight = (lwBlocks[w].bottomRow - lwBlocks[w].topRow);
+			int maxHeight = 0;
 			
-			//	split words at gaps at least twice as wide as word-local average, and at least half the global minimum margin
-			ArrayList lwBlockList = new ArrayList();
-			for (int w = 0; w < lwBlocks.length; w++)
-				lwBlockList.add(lwBlocks[w]);
+			//	split into columns with margin 1, then determine minimum and maximum width, and apply horizontal filters to those
+			ImagePartRectangle[] vBlocks = Imaging.splitIntoColumns(lwBlocks[w], 1);
+			for (int v = 0; v < vBlocks.length; v++) {
+				vBlocks[v] = Imaging.narrowTopAndBottom(vBlocks[v]);
+				minWidth = Math.min(minWidth, (vBlocks[v].rightCol - vBlocks[v].leftCol));
+				maxWidth = Math.max(maxWidth, (vBlocks[v].rightCol - vBlocks[v].leftCol));
+			}
 			
-			//	refresh line word blocks
-			if (lwBlocks.length < lwBlockList.size())
-				lwBlocks = ((ImagePartRectangle[]) lwBlockList.toArray(new ImagePartRectangle[lwBlockList.size()]));
+			//	split into rows with margin 1, then determine minimum and maximum heigth, and apply vertical filters to those
+			ImagePartRectangle[] hBlocks = Imaging.splitIntoRows(lwBlocks[w], 1);
+			for (int h = 0; h < hBlocks.length; h++) {
+				hBlocks[h] = Imaging.narrowLeftAndRight(hBlocks[h]);
+				minHeight = Math.min(minHeight, (hBlocks[h].bottomRow - hBlocks[h].topRow));
+				maxHeight = Math.max(maxHeight, (hBlocks[h].bottomRow - hBlocks[h].topRow));
+			}
+			
+			//	sort out everything sized at most one hundredth of an inch in both dimensions
+			if ((maxWidth * maxHeight) <= ((dpi / 100) * (dpi / 100))) {
+				pm.setInfo("       --> stain omitted for size below " + (dpi / 100) + " x " + (dpi / 100));
+				if (w == 0)
+					omittedFirst = true;
+				omittedLast = true;
+				lwBlocks[w] = null;
+				continue;
+			}
 			
-			//	filter words
-			pm.setInfo("       - got " + lwBlocks.length + " words in line " + l);
-			boolean omittedFirst = false;
-			boolean omittedLast = false;
-			for (int w = 0; w < lwBlocks.length; w++) {
-				lwBlocks[w] = Imaging.narrowTopAndBottom(lwBlocks[w]);
-				int minWidth = (lwBlocks[w].rightCol - lwBlocks[w].leftCol);
-				int maxWidth = 0;
-				int minHeight = (lwBlocks[w].bottomRow - lwBlocks[w].topRow);
-				int maxHeight = 0;
-				
-				//	split into columns with margin 1, then determine minimum and maximum width, and apply horizontal filters to those
-				ImagePartRectangle[] vBlocks = Imaging.splitIntoColumns(lwBlocks[w], 1);
-				for (int v = 0; v < vBlocks.length; v++) {
-					vBlocks[v] = Imaging.narrowTopAndBottom(vBlocks[v]);
-					minWidth = Math.min(minWidth, (vBlocks[v].rightCol - vBlocks[v].leftCol));
-					maxWidth = Math.max(maxWidth, (vBlocks[v].rightCol - vBlocks[v].leftCol));
-				}
-				
-				//	split into rows with margin 1, then determine minimum and maximum heigth, and apply vertical filters to those
-				ImagePartRectangle[] hBlocks = Imaging.splitIntoRows(lwBlocks[w], 1);
-				for (int h = 0; h < hBlocks.length; h++) {
-					hBlocks[h] = Imaging.narrowLeftAndRight(hBlocks[h]);
-					minHeight = Math.min(minHeight, (hBlocks[h].bottomRow - hBlocks[h].topRow));
-					maxHeight = Math.max(maxHeight, (hBlocks[h].bottomRow - hBlocks[h].topRow));
-				}
-				
-				//	sort out everything sized at most one hundredth of an inch in both dimensions
-				if ((maxWidth * maxHeight) <= ((dpi / 100) * (dpi / 100))) {
-					pm.setInfo("       --> stain omitted for size below " + (dpi / 100) + " x " + (dpi / 100));
-					if (w == 0)
-						omittedFirst = true;
-					omittedLast = true;
-					lwBlocks[w] = null;
-					continue;
-				}
-				
 //				//	sort out everything larger than one inch in either dimension TODOne find out if this is safe ==> seems not so, as German compounds can be longer ...
 //				else if ((dpi < minWidth) || (dpi < minHeight)) {
 //					pm.setInfo("     - word omitted for massive size " + Math.max(minWidth, minHeight) + " exceeding " + dpi + " in either dimension");
@@ -2435,49 +2631,46 @@ public class PageImageAnalysis implements ImagingConstants {
 //					lwBlocks[w] = null;
 //					continue;
 //				}
-				//	sort out everything larger than two inches in either dimension TODOne SEEMS SO find out if this is safe now
-				else if (((dpi * 2) < minWidth) || ((dpi * 2) < minHeight)) {
-					pm.setInfo("       --> word omitted for massive size " + Math.max(minWidth, minHeight) + " exceeding " + (2*dpi) + " in either dimension");
-					if (w == 0)
-						omittedFirst = true;
-					omittedLast = true;
-					lwBlocks[w] = null;
-					continue;
-				}
-				
-				//	store word in line
-				omittedLast = false;
-				line.addWord(new Word(lwBlocks[w]));
-				pm.setInfo("       --> word added");
-			}
-			
-			//	catch empty lines
-			if (line.words.isEmpty())
+			//	sort out everything larger than two inches in either dimension TODOne SEEMS SO find out if this is safe now
+			else if (((dpi * 2) < minWidth) || ((dpi * 2) < minHeight)) {
+				pm.setInfo("       --> word omitted for massive size " + Math.max(minWidth, minHeight) + " exceeding " + (2*dpi) + " in either dimension");
+				if (w == 0)
+					omittedFirst = true;
+				omittedLast = true;
+				lwBlocks[w] = null;
 				continue;
-			pm.setInfo("       - got " + line.words.size() + " words in line " + l + ", ultimately");
-			
-			//	correct line bounds
-			if (omittedFirst || omittedLast) {
-				int left = line.bounds.rightCol;
-				int right = line.bounds.leftCol;
-				int top = line.bounds.bottomRow;
-				int bottom = line.bounds.topRow;
-				for (int w = 0; w < lwBlocks.length; w++) {
-					if (lwBlocks[w] == null)
-						continue;
-					left = Math.min(left, lwBlocks[w].leftCol);
-					right = Math.max(right, lwBlocks[w].rightCol);
-					top = Math.min(top, lwBlocks[w].topRow);
-					bottom = Math.max(bottom, lwBlocks[w].bottomRow);
-				}
-				line.bounds.leftCol = left;
-				line.bounds.rightCol = right;
-				line.bounds.topRow = top;
-				line.bounds.bottomRow = bottom;
 			}
+			
+			//	store word in line
+			omittedLast = false;
+			line.addWord(new Word(lwBlocks[w]));
+			pm.setInfo("       --> word added");
 		}
 		
-		adjustWordsAndLines(block);
+		//	catch empty lines
+		if (line.words.isEmpty())
+			return;
+		pm.setInfo("       - got " + line.words.size() + " words in line " + l + ", ultimately");
+		
+		//	correct line bounds
+		if (omittedFirst || omittedLast) {
+			int left = line.bounds.rightCol;
+			int right = line.bounds.leftCol;
+			int top = line.bounds.bottomRow;
+			int bottom = line.bounds.topRow;
+			for (int w = 0; w < lwBlocks.length; w++) {
+				if (lwBlocks[w] == null)
+					continue;
+				left = Math.min(left, lwBlocks[w].leftCol);
+				right = Math.max(right, lwBlocks[w].rightCol);
+				top = Math.min(top, lwBlocks[w].topRow);
+				bottom = Math.max(bottom, lwBlocks[w].bottomRow);
+			}
+			line.bounds.leftCol = left;
+			line.bounds.rightCol = right;
+			line.bounds.topRow = top;
+			line.bounds.bottomRow = bottom;
+		}
 	}
 	
 	private static int getBlockStructure(Block block, BoundingBox[] existingWords, ProgressMonitor pm) {
@@ -3367,6 +3560,19 @@ Literature ideas for bold:
 					this.pageRegionMaxY[pageRegionColors[c][r]] = Math.max(r, this.pageRegionMaxY[pageRegionColors[c][r]]);
 				}
 		}
+		
+		//	used for region colorings restored from cached arrays
+		PageRegionColoring(ImPage page, PageImage pageImage, byte threshold, int[][] pageRegionColors, int[] pageRegionSizes, int[] pageRegionMinX, int[] pageRegionMaxX, int[] pageRegionMinY, int[] pageRegionMaxY) {
+			this.page = page;
+			this.pageImage = pageImage;
+			this.threshold = threshold;
+			this.pageRegionColors = pageRegionColors;
+			this.pageRegionSizes = pageRegionSizes;
+			this.pageRegionMinX = pageRegionMinX;
+			this.pageRegionMaxX = pageRegionMaxX;
+			this.pageRegionMinY = pageRegionMinY;
+			this.pageRegionMaxY = pageRegionMaxY;
+		}
 	}
 	
 	/**
@@ -5731,6 +5937,15 @@ TODO Tame OCR adjustment to prevent errors like the one reported by Felipe:
 		pageWords.addAll(blockWords);
 	}
 	
+	private static Region[] getTextBlockRegions(Region theRegion) {
+		Region[] atomicRegions = getAtomicRegions(theRegion);
+		ArrayList blockRegions = new ArrayList();
+		for (int r = 0; r < atomicRegions.length; r++) {
+			if (!atomicRegions[r].isImage())
+				blockRegions.add(atomicRegions[r]);
+		}
+		return ((Region[]) blockRegions.toArray(new Region[blockRegions.size()]));
+	}
 	private static Region[] getAtomicRegions(Region theRegion) {
 		ArrayList regions = new ArrayList();
 		addAtomicRegions(theRegion, regions);
@@ -6612,6 +6827,8 @@ TODO Tame OCR adjustment to prevent errors like the one reported by Felipe:
 					adjacentLinePixelKillCount++;
 				}
 			}
+			if (adjacentLinePixelKillCount != 0)
+				lineAi.brightnessEdited();
 			if (DEBUG_BLOCK_ANALYSIS && (adjacentLinePixelKillCount != 0))
 				System.out.println(" - eliminated " + adjacentLinePixelKillCount + " pixels from adjacent lines");
 			blockLines[l].setRegions(lineAi);
@@ -238,6 +238,22 @@ public class PageImageConverter implements ImagingConstants, TableConstants {
 	 * @throws IOException
 	 */
 	public static int fillInTextBlockStructure(ImDocument doc, ProgressMonitor psm) throws IOException {
+		return fillInTextBlockStructure(doc, 1, psm);
+	}
+	
+	/**
+	 * Analyze the inner structure of text blocks in a document, i.e., lines and
+	 * words. The structure is stored in the block annotations of the argument
+	 * GAMTA document, replacing their original content. Pages are analyzed one
+	 * by one, each using up to the argument number of cores.
+	 * @param doc the document to store the structural information in
+	 * @param maxCores the maximum number of cores to use (-1 means all)
+	 * @param psm a monitor object for reporting progress, e.g. to a UI
+	 * @return the number of individual words found in the blocks of the
+	 *         argument document
+	 * @throws IOException
+	 */
+	public static int fillInTextBlockStructure(ImDocument doc, int maxCores, ProgressMonitor psm) throws IOException {
 		if (psm == null)
 			psm = ProgressMonitor.dummy;
 		
@@ -253,7 +269,7 @@ public class PageImageConverter implements ImagingConstants, TableConstants {
 				System.gc();
 			
 			//	analyze page structure
-			int pageWordCount = fillInTextBlockStructure(pages[p], null, psm);
+			int pageWordCount = fillInTextBlockStructure(pages[p], null, maxCores, psm);
 			psm.setInfo(" --> got " + pageWordCount + " words in total");
 			wordCount += pageWordCount;
 			
@@ -423,13 +439,31 @@ public class PageImageConverter implements ImagingConstants, TableConstants {
 	 * @throws IOException
 	 */
 	public static int fillInTextBlockStructure(ImPage page, BoundingBox[] existingWords, ProgressMonitor psm) throws IOException {
+		return fillInTextBlockStructure(page, existingWords, 1, psm);
+	}
+	
+	/**
+	 * Analyze the inner structure of text blocks in a document page, i.e.,
+	 * lines and words. The structure is stored in the block annotations of the
+	 * argument page, replacing its original content. If bounding boxes of words
+	 * are specified, the analysis is vastly simplified. If the page has no
+	 * blocks marked, its structure is analyzed using up to the argument number
+	 * of cores.
+	 * @param page the page whose blocks to analyze
+	 * @param existingWords bounding boxes of existing words
+	 * @param maxCores the maximum number of cores to use (-1 means all)
+	 * @param psm a monitor object for reporting progress, e.g. to a UI
+	 * @return the number of individual words found in the blocks of the page
+	 * @throws IOException
+	 */
+	public static int fillInTextBlockStructure(ImPage page, BoundingBox[] existingWords, int maxCores, ProgressMonitor psm) throws IOException {
 		String pageImageName = ((String) page.getAttribute(IMAGE_NAME_ATTRIBUTE));
 		PageImage pageImage = ((pageImageName == null) ? null : PageImage.getPageImage(pageImageName));
 		if (pageImage == null) {
 			((psm == null) ? ProgressMonitor.dummy : psm).setInfo(" --> page image not found");
 			return 0;
 		}
-		return fillInTextBlockStructure(page, existingWords, psm, pageImage);
+		return fillInTextBlockStructure(page, existingWords, maxCores, psm, pageImage.image, pageImage.currentDpi);
 	}
 	
 	/**
@@ -445,7 +479,7 @@ public class PageImageConverter implements ImagingConstants, TableConstants {
 	 * @throws IOException
 	 */
 	public static int fillInTextBlockStructure(ImPage page, BoundingBox[] existingWords, ProgressMonitor psm, PageImage pageImage) throws IOException {
-		return fillInTextBlockStructure(page, existingWords, psm, pageImage.image, pageImage.currentDpi);
+		return fillInTextBlockStructure(page, existingWords, 1, psm, pageImage.image, pageImage.currentDpi);
 	}
 	
 	/**
@@ -464,6 +498,27 @@ public class PageImageConverter implements ImagingConstants, TableConstants {
 	 * @throws IOException
 	 */
 	public static int fillInTextBlockStructure(ImPage page, BoundingBox[] existingWords, ProgressMonitor psm, BufferedImage pageImage, int imageDpi) throws IOException {
+		return fillInTextBlockStructure(page, existingWords, 1, psm, pageImage, imageDpi);
+	}
+	
+	/**
+	 * Analyze the inner structure of text blocks in a document page, i.e.,
+	 * lines and words. The structure is stored in the block annotations of the
+	 * argument page, replacing its original content. If bounding boxes of words
+	 * are specified, the analysis is vastly simplified. If the page has no
+	 * blocks marked, its structure is analyzed using up to the argument number
+	 * of cores. All images wrapped for analysis via the Imaging.wrapImage()
+	 * method are cached as with the key '&lt;imageHashCode&gt;-&lt;imageDpi&gt;'.
+	 * @param page the page whose blocks to analyze
+	 * @param existingWords bounding boxes of existing words
+	 * @param maxCores the maximum number of cores to use (-1 means all)
+	 * @param psm a monitor object for reporting progress, e.g. to a UI
+	 * @param pageImage the image of the page
+	 * @param imageDpi the resolution of the page image
+	 * @return the number of individual words found in the blocks of the page
+	 * @throws IOException
+	 */
+	public static int fillInTextBlockStructure(ImPage page, BoundingBox[] existingWords, int maxCores, ProgressMonitor psm, BufferedImage pageImage, int imageDpi) throws IOException {
 		if (psm == null)
 			psm = ProgressMonitor.dummy;
 		
@@ -493,7 +548,8 @@ public class PageImageConverter implements ImagingConstants, TableConstants {
 		//	no blocks marked so far, analyze page structure first
 		if ((blocks.length == 0) && (tables.length == 0)) {
 			psm.setInfo(" - no blocks found, analyzing page structure");
-			Region thePage = PageImageAnalysis.getPageRegion(ai, analysisDpi, true, psm);
+			Region thePage = PageImageAnalysis.getPageRegion(ai, analysisDpi, true, maxCores, psm);
+			PageImageAnalysis.getBlockStructures(thePage, analysisDpi, existingWords, maxCores, psm);
 			wordCount = appendRegionStructure(page, thePage, analysisDpi, imageDpi, psm, existingWords);
 		}
 		
@@ -525,9 +581,12 @@ public class PageImageConverter implements ImagingConstants, TableConstants {
 		//	atomic region ==> block, do further analysis
 		if (theRegion.isAtomic) {
 			
-			//	analyze block structure
-			Block theBlock = new Block(theRegion.bounds);
-			PageImageAnalysis.getBlockStructure(theBlock, analysisDpi, existingWords, psm);
+			//	analyze block structure (unless done before)
+			Block theBlock = theRegion.getBlock();
+			if (theBlock == null) {
+				theBlock = new Block(theRegion.bounds);
+				PageImageAnalysis.getBlockStructure(theBlock, analysisDpi, existingWords, psm);
+			}
 			
 			//	set block type
 			block.setType(theBlock.isTable() ? TABLE_ANNOTATION_TYPE : BLOCK_ANNOTATION_TYPE);
@@ -35,7 +35,12 @@ import java.awt.RenderingHints;
 import java.awt.font.FontRenderContext;
 import java.awt.font.LineMetrics;
 import java.awt.font.TextLayout;
+import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -45,7 +50,12 @@ import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.Map;
+import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Adler32;
 
 import javax.swing.ImageIcon;
 import javax.swing.JOptionPane;
@@ -64,9 +74,11 @@ import de.uka.ipd.idaho.im.ImPage;
 import de.uka.ipd.idaho.im.ImRegion;
 import de.uka.ipd.idaho.im.ImWord;
 import de.uka.ipd.idaho.im.analysis.Imaging.AnalysisImage;
+import de.uka.ipd.idaho.im.analysis.Imaging.BinaryImage;
 import de.uka.ipd.idaho.im.analysis.Imaging.ImagePartRectangle;
 import de.uka.ipd.idaho.im.analysis.PageImageAnalysis.PageRegionColoring;
 import de.uka.ipd.idaho.im.util.ImFontUtils;
+import de.uka.ipd.idaho.im.util.ImMetrics;
 import de.uka.ipd.idaho.im.util.ImUtils;
 
 /**
@@ -117,7 +129,18 @@ public class WordImageAnalysis {
 	 * @param measureFontSize approximate the font sizes of words (based upon
 	 *            line height and scan resolution)
 	 */
-	public static void analyzeFontMetrics(ImDocument doc, boolean useMultipleCores, ProgressMonitor pm, final boolean assessBold, final boolean assessItalics, final boolean measureFontSize) {
+	public static void analyzeFontMetrics(ImDocument doc, boolean useMultipleCores, ProgressMonitor pm, boolean assessBold, boolean assessItalics, boolean measureFontSize) {
+		try {
+			doAnalyzeFontMetrics(doc, useMultipleCores, pm, assessBold, assessItalics, measureFontSize);
+		}
+		
+		//	clean up extracted word images and region colorings (rendered word images do not belong to the document, so we keep them)
+		finally {
+			WordImageCache.getSharedCache().removeDocument(doc.docId);
+		}
+	}
+	
+	private static void doAnalyzeFontMetrics(ImDocument doc, boolean useMultipleCores, ProgressMonitor pm, final boolean assessBold, final boolean assessItalics, final boolean measureFontSize) {
 		final SynchronizedProgressMonitor spm = ((pm instanceof SynchronizedProgressMonitor) ? ((SynchronizedProgressMonitor) pm) : new SynchronizedProgressMonitor(pm));
 		
 		//	check if we're actually supposed to do anything
@@ -134,8 +157,8 @@ public class WordImageAnalysis {
 		spm.setBaseProgress(0);
 		spm.setMaxProgress(50);
 		final ImPage[] pages = doc.getPages();
-		final Map wordImageCache = Collections.synchronizedMap(new HashMap());
-		final Map renderedMatchesByWords = Collections.synchronizedMap(new HashMap());
+		final Map wordImageCache = WordImageCache.getSharedCache();
+		final Map renderedMatchesByWords = new ConcurrentHashMap();
 		ParallelJobRunner.runParallelFor(new ParallelFor() {
 			public void doFor(int p) throws Exception {
 				
@@ -381,8 +404,8 @@ public class WordImageAnalysis {
 		pm.setStep("Extracting word images");
 		pm.setBaseProgress(0);
 		pm.setMaxProgress(50);
-		final Map wordImageCache = Collections.synchronizedMap(new HashMap());
-		final Map renderedMatchesByWords = Collections.synchronizedMap(new HashMap());
+		final Map wordImageCache = WordImageCache.getSharedCache();
+		final Map renderedMatchesByWords = new ConcurrentHashMap();
 		
 		//	get word images for current page
 		WordImage[] regionWordImages = getWordImages(region);
@@ -822,7 +845,7 @@ Also use x-height for line height grouping:
 	private static final int wordImageMargin = 10;
 	private static BufferedImage getWordMatchImage(WordImageMatch wim) {
 		BufferedImage bi = new BufferedImage(
-				(wim.scanned.img.getWidth() + wordImageMargin + wim.rendered.img.getWidth() + wordImageMargin + wim.matchData.length),
+				(wim.scanned.img.getWidth() + wordImageMargin + wim.rendered.img.getWidth() + wordImageMargin + wim.matchWidth),
 				(Math.max(wim.scanned.img.getHeight(), wim.rendered.img.getHeight()) + wordImageMargin + Math.max(wim.scanned.img.getHeight(), wim.rendered.img.getHeight())),
 				BufferedImage.TYPE_INT_RGB
 			);
@@ -837,14 +860,15 @@ Also use x-height for line height grouping:
 		if (0 < wim.rendered.baseline)
 			g.drawLine((wim.scanned.img.getWidth() + wordImageMargin), wim.rendered.baseline, ((wim.scanned.img.getWidth() + wordImageMargin) + wim.rendered.img.getWidth()), wim.rendered.baseline);
 		
-		for (int x = 0; x < wim.matchData.length; x++) {
-			for (int y = 0; y < wim.matchData[x].length; y++) {
+		byte[][] matchData = wim.getMatchData();
+		for (int x = 0; x < matchData.length; x++) {
+			for (int y = 0; y < matchData[x].length; y++) {
 				Color c = null;
-				if (wim.matchData[x][y] == WordImageAnalysis.WORD_IMAGE_MATCH_MATCHED)
+				if (matchData[x][y] == WordImageAnalysis.WORD_IMAGE_MATCH_MATCHED)
 					c = Color.BLACK;
-				else if (wim.matchData[x][y] == WordImageAnalysis.WORD_IMAGE_MATCH_SCANNED_ONLY)
+				else if (matchData[x][y] == WordImageAnalysis.WORD_IMAGE_MATCH_SCANNED_ONLY)
 					c = Color.GREEN;
-				else if (wim.matchData[x][y] == WordImageAnalysis.WORD_IMAGE_MATCH_RENDERED_ONLY)
+				else if (matchData[x][y] == WordImageAnalysis.WORD_IMAGE_MATCH_RENDERED_ONLY)
 					c = Color.RED;
 				if (c != null)
 					bi.setRGB(
@@ -1057,9 +1081,9 @@ Also use x-height for line height grouping:
 			
 			//	measure scanned and rendered pixel counts
 			this.scannedPixelSum += (wim.matched + wim.scannedOnly);
-			this.scannedAreaSum += ((wim.matchData.length - Math.max(0, -wim.leftShift) - Math.max(0, -wim.leftShift)) * (wim.matchData[0].length - Math.max(0, -wim.topShift) - Math.max(0, -wim.bottomShift)));
+			this.scannedAreaSum += ((wim.matchWidth - Math.max(0, -wim.leftShift) - Math.max(0, -wim.leftShift)) * (wim.matchHeight - Math.max(0, -wim.topShift) - Math.max(0, -wim.bottomShift)));
 			this.renderedPixelSum += (wim.matched + wim.renderedOnly);
-			this.renderedAreaSum += ((wim.matchData.length - Math.max(0, wim.leftShift) - Math.max(0, wim.leftShift)) * (wim.matchData[0].length - Math.max(0, wim.topShift) - Math.max(0, wim.bottomShift)));
+			this.renderedAreaSum += ((wim.matchWidth - Math.max(0, wim.leftShift) - Math.max(0, wim.leftShift)) * (wim.matchHeight - Math.max(0, wim.topShift) - Math.max(0, wim.bottomShift)));
 			
 			//	count out lengths of horizontal pixel rows to measure stem width
 			CountingSet stemWidths = new CountingSet(new TreeMap());
@@ -1105,8 +1129,8 @@ Also use x-height for line height grouping:
 	}
 	
 	private static float getWeightRelation(WordImageMatch wim) {
-		float scannedWeight = (((float) (wim.matched + wim.scannedOnly)) / ((wim.matchData.length - Math.max(0, -wim.leftShift) - Math.max(0, -wim.leftShift)) * (wim.matchData[0].length - Math.max(0, -wim.topShift) - Math.max(0, -wim.bottomShift))));
-		float renderedWeight = (((float) (wim.matched + wim.renderedOnly)) / ((wim.matchData.length - Math.max(0, wim.leftShift) - Math.max(0, wim.leftShift)) * (wim.matchData[0].length - Math.max(0, wim.topShift) - Math.max(0, wim.bottomShift))));
+		float scannedWeight = (((float) (wim.matched + wim.scannedOnly)) / ((wim.matchWidth - Math.max(0, -wim.leftShift) - Math.max(0, -wim.leftShift)) * (wim.matchHeight - Math.max(0, -wim.topShift) - Math.max(0, -wim.bottomShift))));
+		float renderedWeight = (((float) (wim.matched + wim.renderedOnly)) / ((wim.matchWidth - Math.max(0, wim.leftShift) - Math.max(0, wim.leftShift)) * (wim.matchHeight - Math.max(0, wim.topShift) - Math.max(0, wim.bottomShift))));
 		return (scannedWeight / renderedWeight);
 	}
 	
@@ -1319,6 +1343,8 @@ Also use x-height for line height grouping:
 		public final int[] rowBrightnessHist;
 		/** the number of non-white pixels in the word image */
 		public final int pixelCount;
+		/** the binarized word image, with the non-white pixels set */
+		public final BinaryImage bitmap;
 		
 		/**
 		 * Constructor
@@ -1346,7 +1372,7 @@ Also use x-height for line height grouping:
 		
 		//	used for rendered words
 		WordImage(String str, boolean isItalics, String fontName, int fontStyle, int fontSize, BufferedImage img, int baseline) {
-			this(null, -1, str, isItalics, fontName, fontStyle, fontSize, Imaging.wrapImage(img, (str + "-" + fontName + "-" + fontSize + "-" + fontStyle)), baseline);
+			this(null, -1, str, isItalics, fontName, fontStyle, fontSize, Imaging.wrapImage(img, null), baseline);
 		}
 		
 		//	the one that ends up doing the actual work
@@ -1371,11 +1397,13 @@ Also use x-height for line height grouping:
 			Arrays.fill(this.colBrightnessHist, 0);
 			this.rowBrightnessHist = new int[(this.brightness.length == 0) ? 0 : this.brightness[0].length];
 			Arrays.fill(this.rowBrightnessHist, 0);
+			this.bitmap = new BinaryImage(this.colBrightnessHist.length, this.rowBrightnessHist.length);
 			for (int c = 0; c < this.brightness.length; c++) {
 				for (int r = 0; r < this.brightness[c].length; r++)
 					if (this.brightness[c][r] < 80) {
 						this.colBrightnessHist[c]++;
 						this.rowBrightnessHist[r]++;
+						this.bitmap.set(c, r);
 						pixelCount++;
 					}
 			}
@@ -1383,6 +1411,404 @@ Also use x-height for line height grouping:
 		}
 	}
 	
+	/**
+	 * A cache for word images, both extracted from page images and rendered
+	 * from word strings, as well as for region colorings of page images, from
+	 * which word images are extracted. The methods of
+	 * <code>WordImageAnalysis</code> store these values only in the form of
+	 * their arrays, without any references to pages, words, or page images,
+	 * so the cache does not keep whole documents in memory, and the sizes of
+	 * the cached values are known exactly. Other than a plain map, the cache is
+	 * bounded by the estimated number of bytes its values occupy in memory,
+	 * rather than by the number of entries, as both word images and region
+	 * colorings vary in size to a great extent. If adding a value makes the
+	 * cache exceed its maximum size, it evicts values that have not been
+	 * accessed for a while. The cache is thread safe, and accessing it does
+	 * not block any other threads, so it can be shared between threads
+	 * working on different pages of a document. It also keeps statistics on
+	 * hits, misses, and evictions, which it further reports to
+	 * <code>ImMetrics</code>.<br/>
+	 * The shared instance of this class is used by the static methods of
+	 * <code>WordImageAnalysis</code> by default. Client code can hand it to
+	 * methods that take a cache as an argument as well, or create an instance
+	 * of its own, which it can then pass around wherever a <code>Map</code>
+	 * is expected for caching word images.
+	 * 
+	 * @author sautter
+	 */
+	public static class WordImageCache extends AbstractMap {
+		private static class CacheEntry {
+			final Object key;
+			Object value;
+			final long bytes;
+			volatile boolean accessed = false;
+			CacheEntry(Object key, Object value, long bytes) {
+				this.key = key;
+				this.value = value;
+				this.bytes = bytes;
+			}
+		}
+		
+		private static final long cacheEntryBytes = 128; // cache entry proper, hash map node, and eviction queue node
+		
+		private final ConcurrentHashMap entries = new ConcurrentHashMap();
+		private final ConcurrentLinkedQueue evictionQueue = new ConcurrentLinkedQueue();
+		private volatile long maxBytes;
+		private final AtomicLong bytes = new AtomicLong(0);
+		private final AtomicLong hits = new AtomicLong(0);
+		private final AtomicLong misses = new AtomicLong(0);
+		private final AtomicLong evictions = new AtomicLong(0);
+		
+		/**
+		 * Constructor
+		 * @param maxBytes the maximum number of bytes the cached values may
+		 *            occupy in memory
+		 */
+		public WordImageCache(long maxBytes) {
+			this.maxBytes = maxBytes;
+		}
+		
+		/**
+		 * Retrieve the maximum number of bytes the cached values may occupy in
+		 * memory.
+		 * @return the maximum size of the cache in bytes
+		 */
+		public long getMaxByteSize() {
+			return this.maxBytes;
+		}
+		
+		/**
+		 * Set the maximum number of bytes the cached values may occupy in
+		 * memory. If the cache currently exceeds the argument size, values
+		 * are evicted right away.
+		 * @param maxBytes the maximum size of the cache in bytes
+		 */
+		public void setMaxByteSize(long maxBytes) {
+			this.maxBytes = maxBytes;
+			this.evict();
+		}
+		
+		/**
+		 * Retrieve the estimated number of bytes the cached values currently
+		 * occupy in memory.
+		 * @return the current size of the cache in bytes
+		 */
+		public long getByteSize() {
+			return this.bytes.get();
+		}
+		
+		/**
+		 * Retrieve the number of lookups that found a cached value.
+		 * @return the number of cache hits
+		 */
+		public long getHitCount() {
+			return this.hits.get();
+		}
+		
+		/**
+		 * Retrieve the number of lookups that did not find a cached value.
+		 * @return the number of cache misses
+		 */
+		public long getMissCount() {
+			return this.misses.get();
+		}
+		
+		/**
+		 * Retrieve the number of values evicted to keep the cache inside its
+		 * maximum size.
+		 * @return the number of evictions
+		 */
+		public long getEvictionCount() {
+			return this.evictions.get();
+		}
+		
+		/**
+		 * Reset the hit, miss, and eviction counters to 0.
+		 */
+		public void resetStatistics() {
+			this.hits.set(0);
+			this.misses.set(0);
+			this.evictions.set(0);
+		}
+		
+		public Object get(Object key) {
+			CacheEntry ce = ((key == null) ? null : ((CacheEntry) this.entries.get(key)));
+			Object value = ((ce == null) ? null : ce.value);
+			if (value == null) {
+				this.misses.incrementAndGet();
+				ImMetrics.count("WordImageAnalysis.wordImageCache.misses");
+			}
+			else {
+				ce.accessed = true;
+				this.hits.incrementAndGet();
+				ImMetrics.count("WordImageAnalysis.wordImageCache.hits");
+			}
+			return value;
+		}
+		
+		public boolean containsKey(Object key) {
+			return ((key != null) && this.entries.containsKey(key));
+		}
+		
+		public Object put(Object key, Object value) {
+			if ((key == null) || (value == null))
+				return null;
+			
+			//	don't let a single value take up more than half of the cache
+			long entryBytes = (estimateByteSize(key) + estimateByteSize(value) + cacheEntryBytes);
+			if ((entryBytes * 2) > this.maxBytes) {
+				ImMetrics.count("WordImageAnalysis.wordImageCache.oversized");
+				return this.remove(key);
+			}
+			
+			//	store value, and account for any value it replaces
+			CacheEntry ce = new CacheEntry(key, value, entryBytes);
+			this.bytes.addAndGet(entryBytes);
+			CacheEntry oce = ((CacheEntry) this.entries.put(key, ce));
+			this.evictionQueue.offer(ce);
+			Object oldValue = null;
+			if (oce != null) {
+				oldValue = oce.value;
+				oce.value = null;
+				this.bytes.addAndGet(-oce.bytes);
+			}
+			
+			//	make room if required
+			this.evict();
+			return oldValue;
+		}
+		
+		public Object remove(Object key) {
+			CacheEntry ce = ((key == null) ? null : ((CacheEntry) this.entries.remove(key)));
+			if (ce == null)
+				return null;
+			Object value = ce.value;
+			ce.value = null;
+			this.bytes.addAndGet(-ce.bytes);
+			return value;
+		}
+		
+		/* We evict values in the order they were added, but give those that
+		 * were accessed since their last turn a second chance, i.e., we go
+		 * around the clock. Queued entries whose value was replaced or removed
+		 * in the meantime simply drop out of the queue when their turn comes. */
+		private void evict() {
+			while (this.bytes.get() > this.maxBytes) {
+				CacheEntry ce = ((CacheEntry) this.evictionQueue.poll());
+				if (ce == null)
+					break;
+				if (ce.value == null)
+					continue;
+				if (ce.accessed) {
+					ce.accessed = false;
+					this.evictionQueue.offer(ce);
+				}
+				else if (this.entries.remove(ce.key, ce)) {
+					ce.value = null;
+					this.bytes.addAndGet(-ce.bytes);
+					this.evictions.incrementAndGet();
+					ImMetrics.count("WordImageAnalysis.wordImageCache.evictions");
+				}
+			}
+		}
+		
+		/**
+		 * Remove all values pertaining to a given document from the cache.
+		 * This works for the values cached by the methods of
+		 * <code>WordImageAnalysis</code>, whose cache keys start with the ID
+		 * of the document the value belongs to. Rendered word images do not
+		 * belong to any specific document and are thus retained.
+		 * @param docId the ID of the document whose values to remove
+		 */
+		public void removeDocument(String docId) {
+			String keyPrefix = (docId + ".");
+			for (Iterator kit = this.entries.keySet().iterator(); kit.hasNext();) {
+				Object key = kit.next();
+				if ((key instanceof String) && ((String) key).startsWith(keyPrefix))
+					this.remove(key);
+			}
+		}
+		
+		public int size() {
+			return this.entries.size();
+		}
+		
+		public void clear() {
+			for (Iterator kit = this.entries.keySet().iterator(); kit.hasNext();)
+				this.remove(kit.next());
+			this.evictionQueue.clear();
+		}
+		
+		public Set entrySet() {
+			LinkedHashMap entrySet = new LinkedHashMap();
+			for (Iterator eit = this.entries.values().iterator(); eit.hasNext();) {
+				CacheEntry ce = ((CacheEntry) eit.next());
+				Object value = ce.value;
+				if (value != null)
+					entrySet.put(ce.key, value);
+			}
+			return Collections.unmodifiableMap(entrySet).entrySet();
+		}
+		
+		/**
+		 * Estimate the number of bytes an object occupies in memory. This
+		 * method is aware of the cached forms of word images and region
+		 * colorings, of strings, and of (nested) arrays of primitive types,
+		 * and counts any other objects with a flat 64 bytes.
+		 * @param value the object to estimate the size of
+		 * @return the estimated number of bytes the argument object occupies
+		 */
+		public static long estimateByteSize(Object value) {
+			if (value instanceof CachedWordImage)
+				return ((CachedWordImage) value).getByteSize();
+			else if (value instanceof CachedRegionColoring)
+				return ((CachedRegionColoring) value).getByteSize();
+			else if (value instanceof String)
+				return (40 + (((long) ((String) value).length()) * 2));
+			else if (value instanceof byte[])
+				return (16 + ((long) ((byte[]) value).length));
+			else if (value instanceof short[])
+				return (16 + (((long) ((short[]) value).length) * 2));
+			else if (value instanceof int[])
+				return (16 + (((long) ((int[]) value).length) * 4));
+			else if (value instanceof long[])
+				return (16 + (((long) ((long[]) value).length) * 8));
+			else if (value instanceof Object[]) {
+				Object[] values = ((Object[]) value);
+				long bytes = (16 + (((long) values.length) * 4));
+				for (int v = 0; v < values.length; v++) {
+					if (values[v] != null)
+						bytes += estimateByteSize(values[v]);
+				}
+				return bytes;
+			}
+			else return 64;
+		}
+		
+		/**
+		 * Retrieve the cache shared by the static methods of
+		 * <code>WordImageAnalysis</code> by default. Its maximum size defaults
+		 * to an eighth of the maximum heap size, but at most 256 MB.
+		 * @return the shared word image cache
+		 */
+		public static WordImageCache getSharedCache() {
+			return sharedWordImageCache;
+		}
+		private static final WordImageCache sharedWordImageCache = new WordImageCache(Math.min((256 * 1024 * 1024), (Runtime.getRuntime().maxMemory() / 8)));
+		
+		/**
+		 * Compute a checksum over the pixels of an image, for using the image
+		 * content as part of cache keys. Using the checksum rather than the
+		 * identity of an image object makes cache keys independent of whether
+		 * or not a page image is loaded anew for every request.
+		 * @param image the image to compute the checksum for
+		 * @return the checksum
+		 */
+		public static long getImageChecksum(BufferedImage image) {
+			DataBuffer db = image.getRaster().getDataBuffer();
+			if ((db instanceof DataBufferByte) && (db.getNumBanks() == 1)) {
+				Adler32 checksum = new Adler32();
+				checksum.update(((DataBufferByte) db).getData());
+				return checksum.getValue();
+			}
+			long checksum = 1;
+			if ((db instanceof DataBufferInt) && (db.getNumBanks() == 1)) {
+				int[] data = ((DataBufferInt) db).getData();
+				for (int i = 0; i < data.length; i++)
+					checksum = ((checksum * 31) + data[i]);
+			}
+			else for (int r = 0; r < image.getHeight(); r++) {
+				for (int c = 0; c < image.getWidth(); c++)
+					checksum = ((checksum * 31) + image.getRGB(c, r));
+			}
+			return checksum;
+		}
+	}
+	
+	/* The cached form of a word image, holding only the pixels and the
+	 * parameters required for re-creating it, be it around the current
+	 * instance of the word it was extracted for, or from the rendering
+	 * parameters. Re-creating the brightness array, histograms, and bitmap
+	 * from the pixels is cheap in comparison to extracting or rendering. */
+	private static class CachedWordImage {
+		final int width;
+		final int height;
+		final int imageType;
+		final Object imageData;
+		final int baseline;
+		final String str; // null for word images extracted from page images
+		final boolean isItalics;
+		final String fontName;
+		final int fontStyle;
+		final int fontSize;
+		CachedWordImage(WordImage wi) {
+			this.width = wi.img.getWidth();
+			this.height = wi.img.getHeight();
+			this.imageType = wi.img.getType();
+			this.imageData = wi.img.getRaster().getDataElements(0, 0, this.width, this.height, null);
+			this.baseline = wi.baseline;
+			this.str = ((wi.word == null) ? wi.str : null);
+			this.isItalics = wi.isItalics;
+			this.fontName = ((wi.word == null) ? wi.fontName : null);
+			this.fontStyle = wi.fontStyle;
+			this.fontSize = wi.fontSize;
+		}
+		BufferedImage getImage() {
+			BufferedImage img = new BufferedImage(this.width, this.height, this.imageType);
+			img.getRaster().setDataElements(0, 0, this.width, this.height, this.imageData);
+			return img;
+		}
+		WordImage getWordImage(ImWord word, int pageImageDpi) {
+			return new WordImage(this.getImage(), word, this.baseline, pageImageDpi);
+		}
+		WordImage getWordImage() {
+			return new WordImage(this.str, this.isItalics, this.fontName, this.fontStyle, this.fontSize, this.getImage(), this.baseline);
+		}
+		long getByteSize() {
+			long bytes = (64 + WordImageCache.estimateByteSize(this.imageData));
+			if (this.str != null)
+				bytes += WordImageCache.estimateByteSize(this.str);
+			if (this.fontName != null)
+				bytes += WordImageCache.estimateByteSize(this.fontName);
+			return bytes;
+		}
+	}
+	
+	/* The cached form of a page region coloring, holding only the arrays,
+	 * to be wrapped around the current instances of the page and the page
+	 * image on retrieval. */
+	private static class CachedRegionColoring {
+		final byte threshold;
+		final int[][] regionColors;
+		final int[] regionSizes;
+		final int[] regionMinX;
+		final int[] regionMaxX;
+		final int[] regionMinY;
+		final int[] regionMaxY;
+		CachedRegionColoring(PageRegionColoring prc) {
+			this.threshold = prc.threshold;
+			this.regionColors = prc.pageRegionColors;
+			this.regionSizes = prc.pageRegionSizes;
+			this.regionMinX = prc.pageRegionMinX;
+			this.regionMaxX = prc.pageRegionMaxX;
+			this.regionMinY = prc.pageRegionMinY;
+			this.regionMaxY = prc.pageRegionMaxY;
+		}
+		PageRegionColoring getRegionColoring(ImPage page, PageImage pageImage) {
+			return new PageRegionColoring(page, pageImage, this.threshold, this.regionColors, this.regionSizes, this.regionMinX, this.regionMaxX, this.regionMinY, this.regionMaxY);
+		}
+		long getByteSize() {
+			long bytes = 64;
+			bytes += WordImageCache.estimateByteSize(this.regionColors);
+			bytes += WordImageCache.estimateByteSize(this.regionSizes);
+			bytes += WordImageCache.estimateByteSize(this.regionMinX);
+			bytes += WordImageCache.estimateByteSize(this.regionMaxX);
+			bytes += WordImageCache.estimateByteSize(this.regionMinY);
+			bytes += WordImageCache.estimateByteSize(this.regionMaxY);
+			return bytes;
+		}
+	}
+	
 	/**
 	 * Extract the images for the words in a document page or region.
 	 * @param region the page to extract the word images for
@@ -1419,110 +1845,69 @@ Also use x-height for line height grouping:
 		ImWord[] regionWords = region.getWords();
 		if (regionWords.length == 0)
 			return new WordImage[0];
+		Arrays.sort(regionWords, ImUtils.topDownOrder);
 		ArrayList wordImages = new ArrayList();
 		
-		//	get and wrap page image only once
+		//	get page image only once
 		PageImage pageImage = region.getPageImage();
-		AnalysisImage pageAi = Imaging.wrapImage(pageImage.image, null);
 		
-		//	get region coloring of whole page
-		int[][] pageRegionCodes = Imaging.getRegionColoring(pageAi, ((byte) 96), false);
-		int regionCodeCount = 0;
-		for (int c = 0; c < pageRegionCodes.length; c++) {
-			for (int r = 0; r < pageRegionCodes[c].length; r++)
-				regionCodeCount = Math.max(regionCodeCount, pageRegionCodes[c][r]);
-		}
-		regionCodeCount++; // account for 0
-		int[] pageRegionSizes = new int[regionCodeCount];
-		Arrays.fill(pageRegionSizes, 0);
-		int[] pageRegionMinX = new int[regionCodeCount];
-		Arrays.fill(pageRegionMinX, pageImage.image.getWidth());
-		int[] pageRegionMaxX = new int[regionCodeCount];
-		Arrays.fill(pageRegionMaxX, 0);
-		int[] pageRegionMinY = new int[regionCodeCount];
-		Arrays.fill(pageRegionMinY, pageImage.image.getHeight());
-		int[] pageRegionMaxY = new int[regionCodeCount];
-		Arrays.fill(pageRegionMaxY, 0);
-		for (int c = 0; c < pageRegionCodes.length; c++)
-			for (int r = 0; r < pageRegionCodes[c].length; r++) {
-				if (pageRegionCodes[c][r] == 0)
+		//	get lines (for finding word baselines)
+		ImRegion[] regionLines = region.getRegions(ImRegion.LINE_ANNOTATION_TYPE);
+		ImRegion regionLine = null;
+		
+		//	check cache for word images (expansion to glyphs depends on surrounding words, so we only cache plain word images)
+		String pageCacheKey = getPageCacheKey(region.getDocument(), region.pageId, pageImage);
+		String[] wordCacheKeys = null;
+		WordImage[] cachedWordImages = null;
+		boolean wordImagesCached = false;
+		if (!expandToGlyphs) {
+			wordCacheKeys = new String[regionWords.length];
+			cachedWordImages = new WordImage[regionWords.length];
+			wordImagesCached = true;
+			for (int w = 0; w < regionWords.length; w++) {
+				if (!hasWordImage(regionWords[w]))
 					continue;
-				pageRegionSizes[pageRegionCodes[c][r]]++;
-				pageRegionMinX[pageRegionCodes[c][r]] = Math.min(c, pageRegionMinX[pageRegionCodes[c][r]]);
-				pageRegionMaxX[pageRegionCodes[c][r]] = Math.max(c, pageRegionMaxX[pageRegionCodes[c][r]]);
-				pageRegionMinY[pageRegionCodes[c][r]] = Math.min(r, pageRegionMinY[pageRegionCodes[c][r]]);
-				pageRegionMaxY[pageRegionCodes[c][r]] = Math.max(r, pageRegionMaxY[pageRegionCodes[c][r]]);
+				regionLine = getWordLine(regionWords[w], regionLines, regionLine);
+				wordCacheKeys[w] = (pageCacheKey + ".W." + regionWords[w].bounds + "." + getWordBaseline(regionWords[w], regionLine));
+				CachedWordImage cwi = ((CachedWordImage) wordImageCache.get(wordCacheKeys[w]));
+				if (cwi == null)
+					wordImagesCached = false;
+				else cachedWordImages[w] = cwi.getWordImage(regionWords[w], pageImage.currentDpi); // wrap around current word, whose string or italics property might have changed
 			}
-		System.out.println("Got " + regionCodeCount + " disjoint regions");
+			regionLine = null;
+		}
 		
-		//	assess how many words each region color occurs in (to prevent expanding words along characters mingled across words)
-		int[] pageRegionWordCounts = new int[regionCodeCount];
-		Arrays.fill(pageRegionWordCounts, 0);
-		for (int w = 0; w < regionWords.length; w++) {
-			
-			//	skip over artifacts
-			if (ImWord.TEXT_STREAM_TYPE_ARTIFACT.equals(regionWords[w].getTextStreamType()) || ImWord.TEXT_STREAM_TYPE_DELETED.equals(regionWords[w].getTextStreamType()))
-				continue;
-			
-			//	get original scanned word image for comparison
-			System.out.println("Assessing word '" + regionWords[w].getString() + "' at " + regionWords[w].bounds);
-			int wiMinX = Math.max(0, (regionWords[w].bounds.left - pageImage.leftEdge - 1));
-			int wiMinY = Math.max(0, (regionWords[w].bounds.top - pageImage.topEdge - 1));
-			int wiMaxX = Math.min(pageImage.image.getWidth(), (regionWords[w].bounds.right - pageImage.leftEdge + 1));
-			int wiMaxY = Math.min(pageImage.image.getHeight(), (regionWords[w].bounds.bottom - pageImage.topEdge + 1));
-			
-			//	count out region colors
-			CountingSet wordRegionColors = new CountingSet(new TreeMap());
-			for (int c = wiMinX; c < wiMaxX; c++)
-				for (int r = wiMinY; r < wiMaxY; r++) {
-					if (pageRegionCodes[c][r] != 0)
-						wordRegionColors.add(new Integer(pageRegionCodes[c][r]));
-				}
-			System.out.println(" ==> got " + wordRegionColors.elementCount() + " region colors occupying " + wordRegionColors.size() + " pixels");
-			System.out.println("     " + wordRegionColors);
-			
-			//	count word for region colors
-			for (Iterator wrcit = wordRegionColors.iterator(); wrcit.hasNext();) {
-				Integer wrc = ((Integer) wrcit.next());
-				pageRegionWordCounts[wrc.intValue()]++;
+		//	we have all the word images, no need for analyzing page image
+		if (wordImagesCached) {
+			for (int w = 0; w < regionWords.length; w++) {
+				if (cachedWordImages[w] != null)
+					wordImages.add(cachedWordImages[w]);
 			}
+			return ((WordImage[]) wordImages.toArray(new WordImage[wordImages.size()]));
 		}
 		
-		//	keep font site estimate to speed up adjustment
-		ImRegion[] regionLines = region.getRegions(ImRegion.LINE_ANNOTATION_TYPE);
-		ImRegion regionLine = null;
+		//	get region coloring of whole page
+		PageRegionColoring pageRegionColoring = getRegionColoring(region.getPage(), region.getDocument(), region.pageId, pageImage, pageCacheKey);
+		int[][] pageRegionCodes = pageRegionColoring.pageRegionColors;
+		int[] pageRegionSizes = pageRegionColoring.pageRegionSizes;
+		int[] pageRegionMinX = pageRegionColoring.pageRegionMinX;
+		int[] pageRegionMaxX = pageRegionColoring.pageRegionMaxX;
+		int[] pageRegionMinY = pageRegionColoring.pageRegionMinY;
+		int[] pageRegionMaxY = pageRegionColoring.pageRegionMaxY;
+		int regionCodeCount = pageRegionSizes.length;
+		System.out.println("Got " + regionCodeCount + " disjoint regions");
 		
-		//	assess how many lines each region color occurs in (to prevent expanding words along characters mingled across lines)
+		//	assess how many words and lines each region color occurs in (only required for expanding words to glyphs)
+		int[] pageRegionWordCounts = new int[regionCodeCount];
+		Arrays.fill(pageRegionWordCounts, 0);
 		int[] pageRegionLineCounts = new int[regionCodeCount];
 		Arrays.fill(pageRegionLineCounts, 0);
-		for (int l = 0; l < regionLines.length; l++) {
-			
-			//	get original scanned word image for comparison
-			System.out.println("Assessing line at " + regionLines[l].bounds);
-			int lMinX = Math.max(0, (regionLines[l].bounds.left - pageImage.leftEdge - 1));
-			int lMinY = Math.max(0, (regionLines[l].bounds.top - pageImage.topEdge - 1));
-			int lMaxX = Math.min(pageImage.image.getWidth(), (regionLines[l].bounds.right - pageImage.leftEdge + 1));
-			int lMaxY = Math.min(pageImage.image.getHeight(), (regionLines[l].bounds.bottom - pageImage.topEdge + 1));
-			
-			//	count out region colors
-			CountingSet lineRegionColors = new CountingSet(new TreeMap());
-			for (int c = lMinX; c < lMaxX; c++)
-				for (int r = lMinY; r < lMaxY; r++) {
-					if (pageRegionCodes[c][r] != 0)
-						lineRegionColors.add(new Integer(pageRegionCodes[c][r]));
-				}
-			System.out.println(" ==> got " + lineRegionColors.elementCount() + " region colors occupying " + lineRegionColors.size() + " pixels");
-			System.out.println("     " + lineRegionColors);
-			
-			//	count line for region colors
-			for (Iterator lrcit = lineRegionColors.iterator(); lrcit.hasNext();) {
-				Integer lrc = ((Integer) lrcit.next());
-				pageRegionLineCounts[lrc.intValue()]++;
-			}
+		if (expandToGlyphs) {
+			countWordRegionColors(regionWords, pageImage, pageRegionCodes, pageRegionWordCounts);
+			countLineRegionColors(regionLines, pageImage, pageRegionCodes, pageRegionLineCounts);
 		}
 		
 		//	check individual words
-		Arrays.sort(regionWords, ImUtils.topDownOrder);
 		for (int w = 0; w < regionWords.length; w++) {
 			
 			//	skip over artifacts
@@ -1537,17 +1922,13 @@ Also use x-height for line height grouping:
 			if (wordString.length() == 0)
 				continue;
 			
-			//	check if we are still in line
-			if ((regionLine != null) && !regionLine.bounds.includes(regionWords[w].bounds, true))
-				regionLine = null;
-			
 			//	find current line
-			if (regionLine == null) {
-				for (int l = 0; l < regionLines.length; l++)
-					if (regionLines[l].bounds.includes(regionWords[w].bounds, true)) {
-						regionLine = regionLines[l];
-						break;
-					}
+			regionLine = getWordLine(regionWords[w], regionLines, regionLine);
+			
+			//	use cached word image if we have one
+			if ((cachedWordImages != null) && (cachedWordImages[w] != null)) {
+				wordImages.add(cachedWordImages[w]);
+				continue;
 			}
 			
 			//	get original scanned word image for comparison
@@ -1630,25 +2011,139 @@ Also use x-height for line height grouping:
 					}
 			}
 			
-			//	compute baseline if possible (and adjust relative to scan cut-out)
-//			int wordBaseline = ((regionLine == null) ? -1 : Integer.parseInt((String) regionLine.getAttribute(ImWord.BASELINE_ATTRIBUTE, "-1")));
-			int wordBaseline = -1;
-			if ((wordBaseline == -1) && (regionLine != null))
-				wordBaseline = Integer.parseInt((String) regionLine.getAttribute(ImWord.BASELINE_ATTRIBUTE, "-1"));
-			if (wordBaseline == -1)
-				wordBaseline = Integer.parseInt((String) regionWords[w].getAttribute(ImWord.BASELINE_ATTRIBUTE, "-1"));
-			if (wordBaseline < regionWords[w].centerY)
-				wordBaseline = -1;
-			//else wordBaseline -= wiMinY;
+			//	compute baseline if possible
+			int wordBaseline = getWordBaseline(regionWords[w], regionLine);
 			
 			//	wrap and store word image
-			wordImages.add(new WordImage(wordImage, regionWords[w], wordBaseline, pageImage.currentDpi));
+			WordImage wi = new WordImage(wordImage, regionWords[w], wordBaseline, pageImage.currentDpi);
+			wordImages.add(wi);
+			
+			//	cache word image if possible
+			if ((wordCacheKeys != null) && (wordCacheKeys[w] != null))
+				wordImageCache.put(wordCacheKeys[w], new CachedWordImage(wi));
 		}
 		
 		//	finally ...
 		return ((WordImage[]) wordImages.toArray(new WordImage[wordImages.size()]));
 	}
 	private static final int whiteRgb = Color.WHITE.getRGB();
+	private static final WordImageCache wordImageCache = WordImageCache.getSharedCache();
+	
+	private static boolean hasWordImage(ImWord word) {
+		if (ImWord.TEXT_STREAM_TYPE_ARTIFACT.equals(word.getTextStreamType()) || ImWord.TEXT_STREAM_TYPE_DELETED.equals(word.getTextStreamType()))
+			return false;
+		String wordString = word.getString();
+		return ((wordString != null) && (wordString.trim().length() != 0));
+	}
+	
+	private static ImRegion getWordLine(ImWord word, ImRegion[] lines, ImRegion line) {
+		
+		//	check if we are still in line
+		if ((line != null) && line.bounds.includes(word.bounds, true))
+			return line;
+		
+		//	find current line
+		for (int l = 0; l < lines.length; l++) {
+			if (lines[l].bounds.includes(word.bounds, true))
+				return lines[l];
+		}
+		return null;
+	}
+	
+	private static int getWordBaseline(ImWord word, ImRegion line) {
+//		int wordBaseline = ((line == null) ? -1 : Integer.parseInt((String) line.getAttribute(ImWord.BASELINE_ATTRIBUTE, "-1")));
+		int wordBaseline = -1;
+		if ((wordBaseline == -1) && (line != null))
+			wordBaseline = Integer.parseInt((String) line.getAttribute(ImWord.BASELINE_ATTRIBUTE, "-1"));
+		if (wordBaseline == -1)
+			wordBaseline = Integer.parseInt((String) word.getAttribute(ImWord.BASELINE_ATTRIBUTE, "-1"));
+		if (wordBaseline < word.centerY)
+			wordBaseline = -1;
+		//else wordBaseline -= wiMinY;
+		return wordBaseline;
+	}
+	
+	private static void countWordRegionColors(ImWord[] regionWords, PageImage pageImage, int[][] pageRegionCodes, int[] pageRegionWordCounts) {
+		for (int w = 0; w < regionWords.length; w++) {
+			
+			//	skip over artifacts
+			if (ImWord.TEXT_STREAM_TYPE_ARTIFACT.equals(regionWords[w].getTextStreamType()) || ImWord.TEXT_STREAM_TYPE_DELETED.equals(regionWords[w].getTextStreamType()))
+				continue;
+			
+			//	get original scanned word image for comparison
+			System.out.println("Assessing word '" + regionWords[w].getString() + "' at " + regionWords[w].bounds);
+			int wiMinX = Math.max(0, (regionWords[w].bounds.left - pageImage.leftEdge - 1));
+			int wiMinY = Math.max(0, (regionWords[w].bounds.top - pageImage.topEdge - 1));
+			int wiMaxX = Math.min(pageImage.image.getWidth(), (regionWords[w].bounds.right - pageImage.leftEdge + 1));
+			int wiMaxY = Math.min(pageImage.image.getHeight(), (regionWords[w].bounds.bottom - pageImage.topEdge + 1));
+			
+			//	count out region colors
+			CountingSet wordRegionColors = new CountingSet(new TreeMap());
+			for (int c = wiMinX; c < wiMaxX; c++)
+				for (int r = wiMinY; r < wiMaxY; r++) {
+					if (pageRegionCodes[c][r] != 0)
+						wordRegionColors.add(new Integer(pageRegionCodes[c][r]));
+				}
+			System.out.println(" ==> got " + wordRegionColors.elementCount() + " region colors occupying " + wordRegionColors.size() + " pixels");
+			System.out.println("     " + wordRegionColors);
+			
+			//	count word for region colors
+			for (Iterator wrcit = wordRegionColors.iterator(); wrcit.hasNext();) {
+				Integer wrc = ((Integer) wrcit.next());
+				pageRegionWordCounts[wrc.intValue()]++;
+			}
+		}
+	}
+	
+	private static void countLineRegionColors(ImRegion[] regionLines, PageImage pageImage, int[][] pageRegionCodes, int[] pageRegionLineCounts) {
+		for (int l = 0; l < regionLines.length; l++) {
+			
+			//	get original scanned word image for comparison
+			System.out.println("Assessing line at " + regionLines[l].bounds);
+			int lMinX = Math.max(0, (regionLines[l].bounds.left - pageImage.leftEdge - 1));
+			int lMinY = Math.max(0, (regionLines[l].bounds.top - pageImage.topEdge - 1));
+			int lMaxX = Math.min(pageImage.image.getWidth(), (regionLines[l].bounds.right - pageImage.leftEdge + 1));
+			int lMaxY = Math.min(pageImage.image.getHeight(), (regionLines[l].bounds.bottom - pageImage.topEdge + 1));
+			
+			//	count out region colors
+			CountingSet lineRegionColors = new CountingSet(new TreeMap());
+			for (int c = lMinX; c < lMaxX; c++)
+				for (int r = lMinY; r < lMaxY; r++) {
+					if (pageRegionCodes[c][r] != 0)
+						lineRegionColors.add(new Integer(pageRegionCodes[c][r]));
+				}
+			System.out.println(" ==> got " + lineRegionColors.elementCount() + " region colors occupying " + lineRegionColors.size() + " pixels");
+			System.out.println("     " + lineRegionColors);
+			
+			//	count line for region colors
+			for (Iterator lrcit = lineRegionColors.iterator(); lrcit.hasNext();) {
+				Integer lrc = ((Integer) lrcit.next());
+				pageRegionLineCounts[lrc.intValue()]++;
+			}
+		}
+	}
+	
+	private static String getPageCacheKey(ImDocument doc, int pageId, PageImage pageImage) {
+		return (((doc == null) ? "" : doc.docId) + "." + pageId + "." + Long.toString(WordImageCache.getImageChecksum(pageImage.image), 16) + "." + pageImage.image.getWidth() + "x" + pageImage.image.getHeight() + "@" + pageImage.currentDpi + "+" + pageImage.leftEdge + "+" + pageImage.topEdge);
+	}
+	
+	private static PageRegionColoring getRegionColoring(ImPage page) {
+		PageImage pageImage = page.getImage();
+		return getRegionColoring(page, page.getDocument(), page.pageId, pageImage, getPageCacheKey(page.getDocument(), page.pageId, pageImage));
+	}
+	
+	private static PageRegionColoring getRegionColoring(ImPage page, ImDocument doc, int pageId, PageImage pageImage, String pageCacheKey) {
+		String cacheKey = (pageCacheKey + ".C96");
+		if ((page == null) && (doc != null))
+			page = doc.getPage(pageId);
+		CachedRegionColoring cachedRegionColoring = ((CachedRegionColoring) wordImageCache.get(cacheKey));
+		if (cachedRegionColoring != null)
+			return cachedRegionColoring.getRegionColoring(page, pageImage);
+		AnalysisImage pageAi = Imaging.wrapImage(pageImage.image, null);
+		PageRegionColoring regionColoring = new PageRegionColoring(page, pageImage, ((byte) 96), Imaging.getRegionColoring(pageAi, ((byte) 96), false));
+		wordImageCache.put(cacheKey, new CachedRegionColoring(regionColoring));
+		return regionColoring;
+	}
 	
 	private static void addWordImages(ImRegion line, ImWord[] lineWords, PageRegionColoring regionColors, ArrayList worrImages) {
 		
@@ -1806,12 +2301,12 @@ Also use x-height for line height grouping:
 		if (page == null)
 			return new WordConflict[0];
 		if (regionColoring == null)
-			regionColoring = PageImageAnalysis.getRegionColoring(page, ((byte) 96));
+			regionColoring = getRegionColoring(page);
 		if (lines == null) {
 			BoundingBox wordArea = ImLayoutObject.getAggregateBox(words);
 			lines = page.getRegionsInside(ImRegion.LINE_ANNOTATION_TYPE, wordArea, true);
 		}
-		return getWordConflicts(words, lines, page, page.getImage(), regionColoring.pageRegionColors, regionColoring.pageRegionSizes, regionColoring.pageRegionMinX, regionColoring.pageRegionMaxX, regionColoring.pageRegionMinY, regionColoring.pageRegionMaxY);
+		return getWordConflicts(words, lines, page, regionColoring.pageImage, regionColoring.pageRegionColors, regionColoring.pageRegionSizes, regionColoring.pageRegionMinX, regionColoring.pageRegionMaxX, regionColoring.pageRegionMinY, regionColoring.pageRegionMaxY);
 	}
 	private static WordConflict[] getWordConflicts(ImWord[] words, ImRegion[] lines, ImPage page, PageImage pageImage, int[][] pageRegionColors, int[] pageRegionSizes, int[] pageRegionMinX, int[] pageRegionMaxX, int[] pageRegionMinY, int[] pageRegionMaxY) {
 		
@@ -2111,8 +2606,8 @@ Also use x-height for line height grouping:
 		if (pageImage == null) {
 			ImDocument doc = words[0].getDocument();
 			ImPage page = doc.getPage(words[0].pageId);
-			pageImage = page.getImage();
-			PageRegionColoring regionColoring = PageImageAnalysis.getRegionColoring(page, ((byte) 96));
+			PageRegionColoring regionColoring = getRegionColoring(page);
+			pageImage = regionColoring.pageImage;
 			pageRegionColors = regionColoring.pageRegionColors;
 			pageRegionMinX = regionColoring.pageRegionMinX;
 			pageRegionMaxX = regionColoring.pageRegionMaxX;
@@ -2233,42 +2728,28 @@ Also use x-height for line height grouping:
 //		fontName = "Serif";
 		
 		//	adjust font size
+		int renderingFontStyle = (fontStyle - (isItalics ? Font.ITALIC : 0));
 		int fontSize;
-		Font renderingFont;
 		if (isFlatString(wordString)) {
 			fontSize = estimatedFontSize;
-//			renderingFont = new Font(fontName, fontStyle, Math.round(((float) (fontSize * pageImageDpi)) / 72));
-			renderingFont = new Font(fontName, (fontStyle - (isItalics ? Font.ITALIC : 0)), Math.round(((float) (fontSize * pageImageDpi)) / 72));
 			wordHasDescent = false;
 		}
 		else {
-			fontSize = estimatedFontSize;
-//			renderingFont = new Font(fontName, fontStyle, Math.round(((float) (fontSize * pageImageDpi)) / 72));
-			renderingFont = new Font(fontName, (fontStyle - (isItalics ? Font.ITALIC : 0)), Math.round(((float) (fontSize * pageImageDpi)) / 72));
-			TextLayout wtl = new TextLayout(wordString, renderingFont, fontRenderContext);
-			wordHasDescent = ((Math.abs(wtl.getBounds().getY()) * 10) < (Math.abs(wtl.getBounds().getHeight()) * 9));
-			while ((wtl.getBounds().getHeight() < (((wordHasDescent || (wordBaseline < 1)) ? wordBounds.bottom : (wordBaseline + 1)) - wordBounds.top)) || ((0 < wordBaseline) && (Math.abs(wtl.getBounds().getY()) < ((wordBaseline + 1) - wordBounds.top)))) {
-				fontSize++;
-//				renderingFont = new Font(fontName, fontStyle, Math.round(((float) (fontSize * pageImageDpi)) / 72));
-				renderingFont = new Font(fontName, (fontStyle - (isItalics ? Font.ITALIC : 0)), Math.round(((float) (fontSize * pageImageDpi)) / 72));
-				wtl = new TextLayout(wordString, renderingFont, fontRenderContext);
-			}
-			while (((((wordHasDescent || (wordBaseline < 1)) ? wordBounds.bottom : (wordBaseline + 1)) - wordBounds.top) < wtl.getBounds().getHeight()) || ((0 < wordBaseline) && (((wordBaseline + 1) - wordBounds.top) < Math.abs(wtl.getBounds().getY()))))  {
-				fontSize--;
-//				renderingFont = new Font(fontName, fontStyle, Math.round(((float) (fontSize * pageImageDpi)) / 72));
-				renderingFont = new Font(fontName, (fontStyle - (isItalics ? Font.ITALIC : 0)), Math.round(((float) (fontSize * pageImageDpi)) / 72));
-				wtl = new TextLayout(wordString, renderingFont, fontRenderContext);
-			}
-			estimatedFontSize = fontSize;
-		}
-		
-		//	check cache
+			Rectangle2D wtb = getWordLayout(wordString, fontName, renderingFontStyle, getFontPixelSize(estimatedFontSize, pageImageDpi)).getBounds();
+			wordHasDescent = ((Math.abs(wtb.getY()) * 10) < (Math.abs(wtb.getHeight()) * 9));
+			int height = (((wordHasDescent || (wordBaseline < 1)) ? wordBounds.bottom : (wordBaseline + 1)) - wordBounds.top);
+			int ascent = ((0 < wordBaseline) ? ((wordBaseline + 1) - wordBounds.top) : 0);
+			fontSize = fitFontSize(wordString, fontName, renderingFontStyle, estimatedFontSize, height, ascent, pageImageDpi);
+		}
+		Font renderingFont = getRenderingFont(fontName, renderingFontStyle, getFontPixelSize(fontSize, pageImageDpi));
+		
+		//	check cache (rendered image depends on word box size and baseline offset as well)
 		String cacheKey = null;
 		if (cache != null) {
-			cacheKey = (wordString + "[" + fontStyle + "-" + fontSize + "]");
-			WordImage wi = ((WordImage) cache.get(cacheKey));
-			if (wi != null)
-				return wi;
+			cacheKey = ("R:" + fontName + "-" + fontStyle + "-" + fontSize + "@" + pageImageDpi + "[" + (wordBounds.right - wordBounds.left) + "x" + (wordBounds.bottom - wordBounds.top) + "/" + ((wordBaseline < 1) ? -1 : (wordBaseline - wordBounds.top)) + "]" + wordString);
+			CachedWordImage cwi = ((CachedWordImage) cache.get(cacheKey));
+			if (cwi != null)
+				return cwi.getWordImage();
 		}
 		
 		//	render word string TODO use binary black & white index color model
@@ -2304,7 +2785,7 @@ Also use x-height for line height grouping:
 		
 		//	cache word image if possible
 		if (cache != null)
-			cache.put(cacheKey, wi);
+			cache.put(cacheKey, new CachedWordImage(wi));
 		
 		//	finally ...
 		return wi;
@@ -2313,6 +2794,149 @@ Also use x-height for line height grouping:
 	private static final int renderingSafetyMarginX = 16;
 	private static final int renderingSafetyMarginY = 8;
 	
+	/* Fitting the font size used to be a matter of growing or shrinking it
+	 * one point at a time, with a new font and text layout at each step.
+	 * Now, we first estimate the fitting font size from the vertical glyph
+	 * metrics of the word string at a reference size, which scale linearly
+	 * with the font size. Rendering only serves to verify that estimate, and
+	 * to adjust it by a point or two where hinting or rounding the pixel size
+	 * gets in the way. Assuming rendered bounds grow with the font size, the
+	 * result is the same as with stepping through all the sizes in between:
+	 * the smallest size reaching the target height and ascent (but no smaller
+	 * than the estimate), or, if that exceeds either target, the largest size
+	 * staying within both. */
+	private static int fitFontSize(String wordString, String fontName, int fontStyle, int estimatedFontSize, int height, int ascent, int pageImageDpi) {
+		
+		//	estimate smallest font size reaching and largest font size not exceeding target height and ascent
+		float[] wordMetrics = getFontMetricTable(fontName, fontStyle).getStringBounds(wordString);
+		float refHeight = (wordMetrics[1] - wordMetrics[0]);
+		float refAscent = -wordMetrics[0];
+		float minPixelSize = ((refHeight <= 0) ? 0 : ((height * FontMetricTable.referencePixelSize) / refHeight));
+		float maxPixelSize = minPixelSize;
+		if ((0 < ascent) && (0 < refAscent)) {
+			minPixelSize = Math.max(minPixelSize, ((ascent * FontMetricTable.referencePixelSize) / refAscent));
+			maxPixelSize = Math.min(maxPixelSize, ((ascent * FontMetricTable.referencePixelSize) / refAscent));
+		}
+		int minFontSize = ((refHeight <= 0) ? estimatedFontSize : Math.max(1, ((int) Math.ceil((minPixelSize * 72) / pageImageDpi))));
+		int maxFontSize = ((refHeight <= 0) ? estimatedFontSize : Math.max(1, ((int) Math.floor((maxPixelSize * 72) / pageImageDpi))));
+		
+		//	verify smallest font size reaching targets, and use estimated font size if larger
+		while ((1 < minFontSize) && isLargeEnough(wordString, fontName, fontStyle, (minFontSize - 1), height, ascent, pageImageDpi))
+			minFontSize--;
+		while (!isLargeEnough(wordString, fontName, fontStyle, minFontSize, height, ascent, pageImageDpi))
+			minFontSize++;
+		int fontSize = Math.max(estimatedFontSize, minFontSize);
+		if (isSmallEnough(wordString, fontName, fontStyle, fontSize, height, ascent, pageImageDpi))
+			return fontSize;
+		
+		//	verify largest font size not exceeding targets
+		maxFontSize = Math.min(maxFontSize, fontSize);
+		while (!isSmallEnough(wordString, fontName, fontStyle, maxFontSize, height, ascent, pageImageDpi))
+			maxFontSize--;
+		while ((maxFontSize < fontSize) && isSmallEnough(wordString, fontName, fontStyle, (maxFontSize + 1), height, ascent, pageImageDpi))
+			maxFontSize++;
+		return maxFontSize;
+	}
+	
+	private static boolean isLargeEnough(String wordString, String fontName, int fontStyle, int fontSize, int height, int ascent, int pageImageDpi) {
+		Rectangle2D wtb = getWordLayout(wordString, fontName, fontStyle, getFontPixelSize(fontSize, pageImageDpi)).getBounds();
+		return ((height <= wtb.getHeight()) && ((ascent < 1) || (ascent <= Math.abs(wtb.getY()))));
+	}
+	
+	private static boolean isSmallEnough(String wordString, String fontName, int fontStyle, int fontSize, int height, int ascent, int pageImageDpi) {
+		Rectangle2D wtb = getWordLayout(wordString, fontName, fontStyle, getFontPixelSize(fontSize, pageImageDpi)).getBounds();
+		return ((wtb.getHeight() <= height) && ((ascent < 1) || (Math.abs(wtb.getY()) <= ascent)));
+	}
+	
+	private static int getFontPixelSize(int fontSize, int pageImageDpi) {
+		return Math.round(((float) (fontSize * pageImageDpi)) / 72);
+	}
+	
+	private static Map renderingFontCache = Collections.synchronizedMap(new LinkedHashMap(128, 0.9f, true) {
+		protected boolean removeEldestEntry(Map.Entry eldest) {
+			return (this.size() > 256);
+		}
+	});
+	private static Font getRenderingFont(String fontName, int fontStyle, int fontPixelSize) {
+		String fontKey = (fontName + "-" + fontStyle + "-" + fontPixelSize);
+		Font font = ((Font) renderingFontCache.get(fontKey));
+		if (font == null) {
+			font = new Font(fontName, fontStyle, fontPixelSize);
+			renderingFontCache.put(fontKey, font);
+		}
+		return font;
+	}
+	
+	private static Map wordLayoutCache = Collections.synchronizedMap(new LinkedHashMap(1024, 0.9f, true) {
+		protected boolean removeEldestEntry(Map.Entry eldest) {
+			return (this.size() > 4096);
+		}
+	});
+	private static TextLayout getWordLayout(String wordString, String fontName, int fontStyle, int fontPixelSize) {
+		String layoutKey = (fontName + "-" + fontStyle + "-" + fontPixelSize + "-" + wordString);
+		TextLayout wtl = ((TextLayout) wordLayoutCache.get(layoutKey));
+		if (wtl == null) {
+			wtl = new TextLayout(wordString, getRenderingFont(fontName, fontStyle, fontPixelSize), fontRenderContext);
+			wtl.getBounds(); // compute bounds right away, while we're the only thread holding the layout
+			wordLayoutCache.put(layoutKey, wtl);
+		}
+		return wtl;
+	}
+	
+	private static Map fontMetricTables = Collections.synchronizedMap(new HashMap());
+	private static FontMetricTable getFontMetricTable(String fontName, int fontStyle) {
+		String fontKey = (fontName + "-" + fontStyle);
+		FontMetricTable fmt = ((FontMetricTable) fontMetricTables.get(fontKey));
+		if (fmt == null) {
+			fmt = new FontMetricTable(getRenderingFont(fontName, fontStyle, FontMetricTable.referencePixelSize));
+			fontMetricTables.put(fontKey, fmt);
+		}
+		return fmt;
+	}
+	
+	/**
+	 * Vertical glyph metrics of a font at a reference size, i.e., the top and
+	 * bottom of the visual bounds of each glyph relative to the baseline.
+	 * Metrics are measured on demand, one character at a time.
+	 * 
+	 * @author sautter
+	 */
+	private static class FontMetricTable {
+		static final int referencePixelSize = 100;
+		private final Font font;
+		private final HashMap charBounds = new HashMap();
+		FontMetricTable(Font font) {
+			this.font = font;
+		}
+		synchronized float[] getCharBounds(char ch) {
+			Character chKey = new Character(ch);
+			float[] bounds = ((float[]) this.charBounds.get(chKey));
+			if (bounds == null) {
+				Rectangle2D gb = this.font.createGlyphVector(fontRenderContext, ("" + ch)).getVisualBounds();
+				bounds = new float[2];
+				bounds[0] = ((float) gb.getMinY());
+				bounds[1] = ((float) gb.getMaxY());
+				this.charBounds.put(chKey, bounds);
+			}
+			return bounds;
+		}
+		float[] getStringBounds(String str) {
+			float[] bounds = {Float.MAX_VALUE, -Float.MAX_VALUE};
+			for (int c = 0; c < str.length(); c++) {
+				float[] chBounds = this.getCharBounds(str.charAt(c));
+				if (chBounds[0] == chBounds[1])
+					continue; // whitespace or the like
+				bounds[0] = Math.min(bounds[0], chBounds[0]);
+				bounds[1] = Math.max(bounds[1], chBounds[1]);
+			}
+			if (bounds[1] < bounds[0]) {
+				bounds[0] = 0;
+				bounds[1] = 0;
+			}
+			return bounds;
+		}
+	}
+	
 	private static boolean isFlatString(String str) {
 		for (int c = 0; c < str.length(); c++) {
 			if (".,:;_-~*+'`\"\u2012\u2013\u2014\u2015\u2212".indexOf(str.charAt(c)) == -1)
@@ -2350,8 +2974,14 @@ Also use x-height for line height grouping:
 		/** the shift of the bottom edge (negative: scan shifted inward, positive: rendering shifted inward) */
 		public final int bottomShift;
 		
-		/** the detailed match data */
-		public final byte[][] matchData;
+		/** the width of the match area */
+		public final int matchWidth;
+		/** the height of the match area */
+		public final int matchHeight;
+		
+		private final BinaryImage scannedBitmap;
+		private final BinaryImage renderedBitmap;
+		private byte[][] matchData = null;
 		
 		/** the number of matched pixels */
 		public final int matched;
@@ -2374,14 +3004,17 @@ Also use x-height for line height grouping:
 		/** matching similarity, adjusted for weight (number of non-white pixels) of matched images */
 		public final float waSim;
 		
-		WordImageMatch(WordImage scanned, WordImage rendered, int leftShift, int rightShift, int topShift, int bottomShift, byte[][] matchData, int matched, int scannedOnly, int renderedOnly) {
+		WordImageMatch(WordImage scanned, WordImage rendered, int leftShift, int rightShift, int topShift, int bottomShift, BinaryImage scannedBitmap, BinaryImage renderedBitmap, int matched, int scannedOnly, int renderedOnly) {
 			this.scanned = scanned;
 			this.rendered = rendered;
 			this.leftShift = leftShift;
 			this.rightShift = rightShift;
 			this.topShift = topShift;
 			this.bottomShift = bottomShift;
-			this.matchData = matchData;
+			this.matchWidth = scannedBitmap.width;
+			this.matchHeight = scannedBitmap.height;
+			this.scannedBitmap = scannedBitmap;
+			this.renderedBitmap = renderedBitmap;
 			this.matched = matched;
 			this.scannedOnly = scannedOnly;
 			this.renderedOnly = renderedOnly;
@@ -2407,6 +3040,40 @@ Also use x-height for line height grouping:
 			}
 		}
 		
+		/**
+		 * Retrieve the detailed match data, indexed by column and row of the
+		 * match area. The values are the <code>WORD_IMAGE_MATCH_</code>
+		 * constants. The array is only created on the first call to this
+		 * method, as matching as such works on the binarized word images.<br/>
+		 * This method replaces the former public <code>matchData</code> field.
+		 * That field cannot be kept alongside, as a final field would require
+		 * creating the array for every match, which is exactly the effort
+		 * matching on binarized word images saves. Client code reading the
+		 * field has to call this method instead, and use the
+		 * <code>matchWidth</code> and <code>matchHeight</code> fields if it
+		 * only needs the size of the match area.
+		 * @return the detailed match data
+		 */
+		public synchronized byte[][] getMatchData() {
+			if (this.matchData == null) {
+				byte[][] matchData = new byte[this.matchWidth][this.matchHeight];
+				for (int c = 0; c < this.matchWidth; c++)
+					for (int r = 0; r < this.matchHeight; r++) {
+						boolean s = this.scannedBitmap.isSet(c, r);
+						boolean m = this.renderedBitmap.isSet(c, r);
+						if (s && m)
+							matchData[c][r] = WORD_IMAGE_MATCH_MATCHED;
+						else if (s)
+							matchData[c][r] = WORD_IMAGE_MATCH_SCANNED_ONLY;
+						else if (m)
+							matchData[c][r] = WORD_IMAGE_MATCH_RENDERED_ONLY;
+						else matchData[c][r] = WORD_IMAGE_MATCH_NONE;
+					}
+				this.matchData = matchData;
+			}
+			return this.matchData;
+		}
+		
 		/* (non-Javadoc)
 		 * @see java.lang.Comparable#compareTo(java.lang.Object)
 		 */
@@ -2511,55 +3178,25 @@ Also use x-height for line height grouping:
 			}
 		}
 		
-		//	compute match
-		byte[][] mData = new byte[mWidth][mHeight];
-		int matched = 0;
-		int scannedOnly = 0;
-		int renderedOnly = 0;
-		for (int mCol = 0; mCol < mWidth; mCol++) {
-			int sCol = (sLeft + ((mCol * sWidth) / mWidth));
-			if (sCol < sLeft)
-				continue;
-			if (sRight <= sCol)
-				break;
-			int rCol = (rLeft + ((mCol * rWidth) / mWidth));
-			if (rCol < rLeft)
-				continue;
-			if (rRight <= rCol)
-				break;
-			
-			for (int mRow = 0; mRow < mHeight; mRow++) {
-				int sRow = (sTop + ((mRow * sHeight) / mHeight));
-				if (sRow < sTop)
-					continue;
-				if (sBottom <= sRow)
-					break;
-				int rRow = (rTop + ((mRow * rHeight) / mHeight));
-				if (rRow < rTop)
-					continue;
-				if (rBottom <= rRow)
-					break;
-				
-				byte sb = (((0 <= sCol) && (sCol < scanned.brightness.length) && (0 <= sRow) && (sRow < scanned.brightness[sCol].length)) ? scanned.brightness[sCol][sRow] : ((byte) 127));
-				byte rb = (((0 <= rCol) && (rCol < rendered.brightness.length) && (0 <= rRow) && (rRow < rendered.brightness[rCol].length)) ? rendered.brightness[rCol][rRow] : ((byte) 127));
-				if ((sb < 80) && (rb < 80)) {
-					matched++;
-					mData[mCol][mRow] = WORD_IMAGE_MATCH_MATCHED;
-				}
-				else if (sb < 80) {
-					scannedOnly++;
-					mData[mCol][mRow] = WORD_IMAGE_MATCH_SCANNED_ONLY;
-				}
-				else if (rb < 80) {
-					renderedOnly++;
-					mData[mCol][mRow] = WORD_IMAGE_MATCH_RENDERED_ONLY;
-				}
-				else mData[mCol][mRow] = WORD_IMAGE_MATCH_NONE;
-			}
+		//	sample both images to match area (both need to be non-empty for any pixel to count)
+		BinaryImage sBitmap;
+		BinaryImage rBitmap;
+		if ((sWidth < 1) || (rWidth < 1) || (sHeight < 1) || (rHeight < 1)) {
+			sBitmap = new BinaryImage(mWidth, mHeight);
+			rBitmap = new BinaryImage(mWidth, mHeight);
+		}
+		else {
+			sBitmap = scanned.bitmap.getScaledArea(sLeft, sTop, sWidth, sHeight, mWidth, mHeight);
+			rBitmap = rendered.bitmap.getScaledArea(rLeft, rTop, rWidth, rHeight, mWidth, mHeight);
 		}
 		
+		//	compute match
+		int matched = sBitmap.countOverlap(rBitmap);
+		int scannedOnly = (sBitmap.countSet() - matched);
+		int renderedOnly = (rBitmap.countSet() - matched);
+		
 		//	finally ...
-		return new WordImageMatch(scanned, rendered, leftShift, rightShift, topShift, bottomShift, mData, matched, scannedOnly, renderedOnly);
+		return new WordImageMatch(scanned, rendered, leftShift, rightShift, topShift, bottomShift, sBitmap, rBitmap, matched, scannedOnly, renderedOnly);
 	}
 	/**
 	 * Compute the best alignment shifts between two histograms. This method
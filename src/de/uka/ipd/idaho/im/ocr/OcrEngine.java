@@ -64,6 +64,7 @@ import de.uka.ipd.idaho.im.ImRegion;
 import de.uka.ipd.idaho.im.ImWord;
 import de.uka.ipd.idaho.im.analysis.PageImageConverter;
 import de.uka.ipd.idaho.im.util.ImFontUtils;
+import de.uka.ipd.idaho.im.util.ImMetrics;
 
 /**
  * Wrapper class for Google's Tesseract OCR engine.
@@ -199,12 +200,14 @@ public class OcrEngine implements ImagingConstants {
 				
 				//	wait for instance to become available
 				this.awaitingInstance.add(awaitingInstance);
+				long waitStart = ImMetrics.startTime();
 				try {
 					this.instances.wait(timeout);
 				}
 				catch (InterruptedException ie) {
 					System.out.println("OCR Engine: waiting thread interrupted");
 				}
+				ImMetrics.time("OcrEngine.instanceWait", waitStart);
 				this.awaitingInstance.remove(awaitingInstance);
 				
 				//	we're shutting down ...
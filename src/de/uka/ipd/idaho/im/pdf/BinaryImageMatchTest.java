@@ -0,0 +1,370 @@
+/*
+ * Copyright (c) 2006-, IPD Boehm, Universitaet Karlsruhe (TH) / KIT, by Guido Sautter
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Universitaet Karlsruhe (TH) / KIT nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY UNIVERSITAET KARLSRUHE (TH) / KIT AND CONTRIBUTORS 
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uka.ipd.idaho.im.pdf;
+
+import java.awt.Font;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import de.uka.ipd.idaho.gamta.util.imaging.BoundingBox;
+import de.uka.ipd.idaho.im.analysis.WordImageAnalysis;
+import de.uka.ipd.idaho.im.analysis.WordImageAnalysis.WordImage;
+import de.uka.ipd.idaho.im.analysis.WordImageAnalysis.WordImageMatch;
+import de.uka.ipd.idaho.im.pdf.PdfCharDecoder.CharImage;
+import de.uka.ipd.idaho.im.pdf.PdfCharDecoder.CharImageMatch;
+
+/**
+ * Parity check of word and glyph image matching on packed bitmaps against
+ * the former pixel-by-pixel matching of brightness arrays. This test renders
+ * a fixed set of words and glyphs in the logical Java fonts, matches them
+ * against one another with <code>WordImageAnalysis.matchWordImages()</code>
+ * and <code>PdfCharDecoder.matchCharImage()</code>, and compares the numbers
+ * of matched and one-sided pixels, as well as the detailed word match data,
+ * to what the former pixel loops compute for the same match areas. Glyphs
+ * are matched both with the shifts the decoder picks and with fixed shifts
+ * that push match areas past the image edges.
+ * 
+ * @author sautter
+ */
+public class BinaryImageMatchTest {
+	private static final byte threshold = 80;
+	private static final String[] fontNames = {"Serif", "SansSerif", "Monospaced"};
+	private static final int[] fontStyles = {Font.PLAIN, Font.BOLD, Font.ITALIC};
+	private static final String[] words = {"the", "Analysis", "quick", "glyph", "Wavy", "1934", "(ibid.)"};
+	private static final String glyphs = "aegkmoqxyABGQRW0358&?";
+	private static final int[][] glyphShifts = {
+		{0, 0, 0, 0},
+		{2, -3, 1, -2},
+		{-4, 5, -3, 4},
+		{-12, -12, -12, -12},
+		{12, 12, 12, 12},
+	};
+	
+	/**
+	 * @param args the number of rounds (defaults to 3)
+	 */
+	public static void main(String[] args) throws Exception {
+		int rounds = ((args.length < 1) ? 3 : Integer.parseInt(args[0]));
+		
+		//	render word images, using renderings in the other fonts as 'scanned' images (without baseline)
+		ArrayList renderedWords = new ArrayList();
+		ArrayList scannedWords = new ArrayList();
+		for (int w = 0; w < words.length; w++)
+			for (int f = 0; f < fontNames.length; f++) {
+				BoundingBox wordBounds = new BoundingBox(0, (words[w].length() * (24 + (f * 4))), 0, (40 + (f * 6)));
+				WordImage wi = WordImageAnalysis.renderWordImage(words[w], wordBounds, ((wordBounds.bottom * 3) / 4), fontNames[f], fontStyles[f], 12, 300, null);
+				renderedWords.add(wi);
+				scannedWords.add(new WordImage(wi.img, words[w], false, 300));
+			}
+		
+		//	render glyphs
+		ArrayList charImages = new ArrayList();
+		for (int g = 0; g < glyphs.length(); g++)
+			for (int f = 0; f < fontNames.length; f++)
+				for (int s = 0; s < fontStyles.length; s++) {
+					CharImage ci = PdfCharDecoder.createCharImage(glyphs.charAt(g), new Font(fontNames[f], fontStyles[s], 12), (f == 0), (f == 2), null, false);
+					if (ci != null)
+						charImages.add(ci);
+				}
+		
+		for (int r = 0; r < rounds; r++) {
+			runWordRound(scannedWords, renderedWords);
+			runGlyphRound(charImages);
+		}
+	}
+	
+	private static void runWordRound(ArrayList scannedWords, ArrayList renderedWords) {
+		int pairs = 0;
+		int mismatches = 0;
+		long pixelTime = 0;
+		long bitmapTime = 0;
+		for (int s = 0; s < scannedWords.size(); s++)
+			for (int r = 0; r < renderedWords.size(); r++) {
+				WordImage scanned = ((WordImage) scannedWords.get(s));
+				WordImage rendered = ((WordImage) renderedWords.get(r));
+				for (int m = 0; m < 8; m++) {
+					boolean wordBoxMatch = ((m & 1) != 0);
+					boolean isVerificationMatch = ((m & 2) != 0);
+					boolean allowShift = ((m & 4) != 0);
+					pairs++;
+					
+					//	match pixel by pixel
+					long start = System.nanoTime();
+					int[] pixelCounts = new int[7];
+					byte[][] pixelMatchData = matchWordPixels(scanned, rendered, wordBoxMatch, isVerificationMatch, allowShift, pixelCounts);
+					long pixelEnd = System.nanoTime();
+					
+					//	match on bitmaps
+					WordImageMatch wim = WordImageAnalysis.matchWordImages(scanned, rendered, wordBoxMatch, isVerificationMatch, allowShift);
+					long bitmapEnd = System.nanoTime();
+					pixelTime += (pixelEnd - start);
+					bitmapTime += (bitmapEnd - pixelEnd);
+					
+					//	compare counts, shifts, and match data
+					int[] bitmapCounts = {wim.matched, wim.scannedOnly, wim.renderedOnly, wim.leftShift, wim.rightShift, wim.topShift, wim.bottomShift};
+					boolean match = Arrays.equals(pixelCounts, bitmapCounts);
+					if ((wim.matchWidth != pixelMatchData.length) || !Arrays.deepEquals(pixelMatchData, wim.getMatchData()))
+						match = false;
+					if (!match) {
+						mismatches++;
+						System.out.println("Mismatch in word match '" + scanned.str + "' vs. '" + rendered.str + "' in " + rendered.fontName + " (" + m + "): " + Arrays.toString(pixelCounts) + " vs. " + Arrays.toString(bitmapCounts));
+					}
+				}
+			}
+		System.out.println("Matched " + pairs + " word image pairs, " + mismatches + " mismatches, pixel by pixel took " + (pixelTime / 1000000) + "ms, bitmaps took " + (bitmapTime / 1000000) + "ms");
+	}
+	
+	private static void runGlyphRound(ArrayList charImages) {
+		int pairs = 0;
+		int mismatches = 0;
+		long pixelTime = 0;
+		long bitmapTime = 0;
+		for (int c = 0; c < charImages.size(); c++)
+			for (int m = 0; m < charImages.size(); m++) {
+				CharImage charImage = ((CharImage) charImages.get(c));
+				CharImage match = ((CharImage) charImages.get(m));
+				for (int b = 0; b < 2; b++) {
+					boolean charBoxMatch = (b != 0);
+					
+					//	match with shifts picked by decoder
+					CharImageMatch cim = PdfCharDecoder.matchCharImage(charImage, match, match.fontName, charBoxMatch, true, false);
+					if (!checkGlyphMatch(charImage, match, cim.leftShift, cim.rightShift, cim.topShift, cim.bottomShift, charBoxMatch, cim))
+						mismatches++;
+					pairs++;
+					
+					//	match with fixed shifts, timing both approaches
+					for (int s = 0; s < glyphShifts.length; s++) {
+						long start = System.nanoTime();
+						cim = PdfCharDecoder.matchCharImage(charImage, match, glyphShifts[s][0], glyphShifts[s][1], glyphShifts[s][2], glyphShifts[s][3], match.fontName, charBoxMatch, false);
+						long bitmapEnd = System.nanoTime();
+						if (!checkGlyphMatch(charImage, match, glyphShifts[s][0], glyphShifts[s][1], glyphShifts[s][2], glyphShifts[s][3], charBoxMatch, cim))
+							mismatches++;
+						long pixelEnd = System.nanoTime();
+						bitmapTime += (bitmapEnd - start);
+						pixelTime += (pixelEnd - bitmapEnd);
+						pairs++;
+					}
+				}
+			}
+		System.out.println("Matched " + pairs + " glyph image pairs, " + mismatches + " mismatches, pixel by pixel took " + (pixelTime / 1000000) + "ms, bitmaps took " + (bitmapTime / 1000000) + "ms");
+	}
+	
+	private static boolean checkGlyphMatch(CharImage charImage, CharImage match, int leftShift, int rightShift, int topShift, int bottomShift, boolean charBoxMatch, CharImageMatch cim) {
+		int[] pixelCounts = matchGlyphPixels(charImage, match, leftShift, rightShift, topShift, bottomShift, charBoxMatch);
+		int[] bitmapCounts = {cim.matched, cim.spurious, cim.missed};
+		if (Arrays.equals(pixelCounts, bitmapCounts))
+			return true;
+		System.out.println("Mismatch in glyph match '" + charImage.ch + "' in " + charImage.fontName + "-" + charImage.fontStyle + " vs. '" + match.ch + "' in " + match.fontName + "-" + match.fontStyle + " (" + leftShift + "/" + rightShift + "/" + topShift + "/" + bottomShift + "): " + Arrays.toString(pixelCounts) + " vs. " + Arrays.toString(bitmapCounts));
+		return false;
+	}
+	
+	private static byte getBrightness(byte[][] brightness, int col, int row) {
+		if ((col < 0) || (brightness.length <= col))
+			return 127;
+		if ((row < 0) || (brightness[col].length <= row))
+			return 127;
+		return brightness[col][row];
+	}
+	
+	//	former WordImageAnalysis.matchWordImages(), counts and shifts go into the argument array
+	private static byte[][] matchWordPixels(WordImage scanned, WordImage rendered, boolean wordBoxMatch, boolean isVerificationMatch, boolean allowShift, int[] counts) {
+		int sLeft = scanned.box.getLeftCol();
+		int sRight = scanned.box.getRightCol();
+		int sWidth = (sRight - sLeft);
+		int sTop = (wordBoxMatch ? scanned.box.getTopRow() : Math.min(scanned.baseline, scanned.box.getTopRow()));
+		int sBottom = (wordBoxMatch ? scanned.box.getBottomRow() : Math.max(scanned.baseline, scanned.box.getBottomRow()));
+		int sHeight = (sBottom - sTop);
+		int rLeft = rendered.box.getLeftCol();
+		int rRight = rendered.box.getRightCol();
+		int rWidth = (rRight - rLeft);
+		int rTop = (wordBoxMatch ? rendered.box.getTopRow() : Math.min(rendered.baseline, rendered.box.getTopRow()));
+		int rBottom = (wordBoxMatch ? rendered.box.getBottomRow() : Math.max(rendered.baseline, rendered.box.getBottomRow()));
+		int rHeight = (rBottom - rTop);
+		int mWidth = Math.max(sWidth, rWidth);
+		int mHeight = Math.max(sHeight, rHeight);
+		
+		int leftShift = 0;
+		int rightShift = 0;
+		if (allowShift) {
+			int[] colShifts = WordImageAnalysis.getHistogramAlignmentShifts(scanned.colBrightnessHist, rendered.colBrightnessHist, Math.max((Math.max(scanned.pageImageDpi, rendered.pageImageDpi) / 75), (mWidth / (isVerificationMatch ? 10 : 20))));
+			leftShift = colShifts[0];
+			rightShift = colShifts[1];
+			if ((leftShift != 0) || (rightShift != 0)) {
+				sLeft = (sLeft - Math.max(-leftShift, 0));
+				sRight = (sRight + Math.max(-rightShift, 0));
+				sWidth = (sRight - sLeft);
+				rLeft = (rLeft - Math.max(leftShift, 0));
+				rRight = (rRight + Math.max(rightShift, 0));
+				rWidth = (rRight - rLeft);
+				mWidth = Math.max(sWidth, rWidth);
+			}
+		}
+		int topShift = 0;
+		int bottomShift = 0;
+		if (allowShift) {
+			int[] rowShifts = WordImageAnalysis.getHistogramAlignmentShifts(scanned.rowBrightnessHist, rendered.rowBrightnessHist, (mHeight / 10));
+			topShift = rowShifts[0];
+			bottomShift = rowShifts[1];
+			if ((topShift != 0) || (bottomShift != 0)) {
+				sTop = (sTop - Math.max(-topShift, 0));
+				sBottom = (sBottom + Math.max(-bottomShift, 0));
+				sHeight = (sBottom - sTop);
+				rTop = (rTop - Math.max(topShift, 0));
+				rBottom = (rBottom + Math.max(bottomShift, 0));
+				rHeight = (rBottom - rTop);
+				mHeight = Math.max(sHeight, rHeight);
+			}
+		}
+		
+		byte[][] matchData = new byte[mWidth][mHeight];
+		int matched = 0;
+		int scannedOnly = 0;
+		int renderedOnly = 0;
+		for (int mCol = 0; mCol < mWidth; mCol++) {
+			int sCol = (sLeft + ((mCol * sWidth) / mWidth));
+			if (sCol < sLeft)
+				continue;
+			if (sRight <= sCol)
+				break;
+			int rCol = (rLeft + ((mCol * rWidth) / mWidth));
+			if (rCol < rLeft)
+				continue;
+			if (rRight <= rCol)
+				break;
+			for (int mRow = 0; mRow < mHeight; mRow++) {
+				int sRow = (sTop + ((mRow * sHeight) / mHeight));
+				if (sRow < sTop)
+					continue;
+				if (sBottom <= sRow)
+					break;
+				int rRow = (rTop + ((mRow * rHeight) / mHeight));
+				if (rRow < rTop)
+					continue;
+				if (rBottom <= rRow)
+					break;
+				byte sb = getBrightness(scanned.brightness, sCol, sRow);
+				byte rb = getBrightness(rendered.brightness, rCol, rRow);
+				if ((sb < threshold) && (rb < threshold)) {
+					matched++;
+					matchData[mCol][mRow] = WordImageAnalysis.WORD_IMAGE_MATCH_MATCHED;
+				}
+				else if (sb < threshold) {
+					scannedOnly++;
+					matchData[mCol][mRow] = WordImageAnalysis.WORD_IMAGE_MATCH_SCANNED_ONLY;
+				}
+				else if (rb < threshold) {
+					renderedOnly++;
+					matchData[mCol][mRow] = WordImageAnalysis.WORD_IMAGE_MATCH_RENDERED_ONLY;
+				}
+				else matchData[mCol][mRow] = WordImageAnalysis.WORD_IMAGE_MATCH_NONE;
+			}
+		}
+		counts[0] = matched;
+		counts[1] = scannedOnly;
+		counts[2] = renderedOnly;
+		counts[3] = leftShift;
+		counts[4] = rightShift;
+		counts[5] = topShift;
+		counts[6] = bottomShift;
+		return matchData;
+	}
+	
+	//	former loop of PdfCharDecoder.matchCharImage()
+	private static int[] matchGlyphPixels(CharImage charImage, CharImage match, int leftShift, int rightShift, int topShift, int bottomShift, boolean charBoxMatch) {
+		int ciLeft = charImage.box.getLeftCol();
+		int ciRight = charImage.box.getRightCol();
+		int ciWidth = (ciRight - ciLeft);
+		int ciTop = (charBoxMatch ? charImage.box.getTopRow() : Math.min(charImage.baseline, charImage.box.getTopRow()));
+		int ciBottom = (charBoxMatch ? charImage.box.getBottomRow() : Math.max(charImage.baseline, charImage.box.getBottomRow()));
+		int ciHeight = (ciBottom - ciTop);
+		int mLeft = match.box.getLeftCol();
+		int mRight = match.box.getRightCol();
+		int mWidth = (mRight - mLeft);
+		int mTop = (charBoxMatch ? match.box.getTopRow() : Math.min(match.baseline, match.box.getTopRow()));
+		int mBottom = (charBoxMatch ? match.box.getBottomRow() : Math.max(match.baseline, match.box.getBottomRow()));
+		int mHeight = (mBottom - mTop);
+		int cimWidth = Math.max(ciWidth, mWidth);
+		int cimHeight = Math.max(ciHeight, mHeight);
+		if ((leftShift != 0) || (rightShift != 0)) {
+			ciLeft = (ciLeft - Math.max(-leftShift, 0));
+			ciRight = (ciRight + Math.max(-rightShift, 0));
+			ciWidth = (ciRight - ciLeft);
+			mLeft = (mLeft - Math.max(leftShift, 0));
+			mRight = (mRight + Math.max(rightShift, 0));
+			mWidth = (mRight - mLeft);
+			cimWidth = Math.max(ciWidth, mWidth);
+		}
+		if ((topShift != 0) || (bottomShift != 0)) {
+			ciTop = (ciTop - Math.max(-topShift, 0));
+			ciBottom = (ciBottom + Math.max(-bottomShift, 0));
+			ciHeight = (ciBottom - ciTop);
+			mTop = (mTop - Math.max(topShift, 0));
+			mBottom = (mBottom + Math.max(bottomShift, 0));
+			mHeight = (mBottom - mTop);
+			cimHeight = Math.max(ciHeight, mHeight);
+		}
+		
+		int matched = 0;
+		int spurious = 0;
+		int missed = 0;
+		for (int cimCol = 0; cimCol < cimWidth; cimCol++) {
+			int ciCol = (ciLeft + ((cimCol * ciWidth) / cimWidth));
+			if (ciCol < 0)
+				continue;
+			if (ciRight <= ciCol)
+				break;
+			int mCol = (mLeft + ((cimCol * mWidth) / cimWidth));
+			if (mCol < 0)
+				continue;
+			if (mRight <= mCol)
+				break;
+			for (int cimRow = 0; cimRow < cimHeight; cimRow++) {
+				int ciRow = (ciTop + ((cimRow * ciHeight) / cimHeight));
+				if (ciRow < 0)
+					continue;
+				if (ciBottom <= ciRow)
+					break;
+				int mRow = (mTop + ((cimRow * mHeight) / cimHeight));
+				if (mRow < 0)
+					continue;
+				if (mBottom <= mRow)
+					break;
+				byte cib = getBrightness(charImage.brightness, ciCol, ciRow);
+				byte mb = getBrightness(match.brightness, mCol, mRow);
+				if ((cib < threshold) && (mb < threshold))
+					matched++;
+				else if (cib < threshold)
+					spurious++;
+				else if (mb < threshold)
+					missed++;
+			}
+		}
+		int[] counts = {matched, spurious, missed};
+		return counts;
+	}
+}
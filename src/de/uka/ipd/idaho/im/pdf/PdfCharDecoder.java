@@ -56,6 +56,7 @@ import javax.swing.JOptionPane;
 
 import de.uka.ipd.idaho.im.analysis.Imaging;
 import de.uka.ipd.idaho.im.analysis.Imaging.AnalysisImage;
+import de.uka.ipd.idaho.im.analysis.Imaging.BinaryImage;
 import de.uka.ipd.idaho.im.analysis.Imaging.ImagePartRectangle;
 import de.uka.ipd.idaho.im.pdf.PdfFontDecoder.FontDecoderCharset;
 import de.uka.ipd.idaho.im.util.ImFontUtils;
@@ -1134,6 +1135,22 @@ public class PdfCharDecoder {
 			}
 			this.isCharBoxMatch = isCharBoxMatch;
 		}
+		CharImageMatch copy(CharImage charImage) {
+			CharImageMatch cim = new CharImageMatch(charImage, this.match, this.matched, this.spurious, this.missed, this.isCharBoxMatch);
+			cim.sim = this.sim;
+			cim.vCenterShift = this.vCenterShift;
+			cim.scaleLogX = this.scaleLogX;
+			cim.scaleLogY = this.scaleLogY;
+			cim.relAscenderShift = this.relAscenderShift;
+			cim.relDescenderShift = this.relDescenderShift;
+			cim.leftShift = this.leftShift;
+			cim.rightShift = this.rightShift;
+			cim.topShift = this.topShift;
+			cim.bottomShift = this.bottomShift;
+			cim.xHistSim = this.xHistSim;
+			cim.yHistSim = this.yHistSim;
+			return cim;
+		}
 	}
 //	
 //	static CharImageMatch matchChar(CharImage charImage, char ch, Font font, boolean isSerifFont, HashMap cache, boolean isVerificationMatch, boolean debug) {
@@ -1310,7 +1327,7 @@ public class PdfCharDecoder {
 //	
 //	private static final char DEBUG_MATCH_TARGET_CHAR = ((char) 0);
 	
-	private static CharImageMatch matchCharImage(CharImage charImage, CharImage match, String fontName, boolean charBoxMatch, boolean isVerificationMatch, boolean debug) {
+	static CharImageMatch matchCharImage(CharImage charImage, CharImage match, String fontName, boolean charBoxMatch, boolean isVerificationMatch, boolean debug) {
 //		if ((charImage == null) || (match == null))
 //			return null;
 //		
@@ -1415,7 +1432,7 @@ public class PdfCharDecoder {
 		return shifts;
 	}
 	
-	private static CharImageMatch matchCharImage(CharImage charImage, CharImage match, int leftShift, int rightShift, int topShift, int bottomShift, String fontName, boolean charBoxMatch, boolean debug) {
+	static CharImageMatch matchCharImage(CharImage charImage, CharImage match, int leftShift, int rightShift, int topShift, int bottomShift, String fontName, boolean charBoxMatch, boolean debug) {
 		
 		int ciLeft = charImage.box.getLeftCol();
 		int ciRight = charImage.box.getRightCol();
@@ -1453,64 +1470,35 @@ public class PdfCharDecoder {
 			cimHeight = Math.max(ciHeight, mHeight);
 		}
 		
-		int matched = 0;
-		int spurious = 0;
-		int missed = 0;
-		byte[][] cimData = new byte[cimWidth][cimHeight];
-		byte[][] ciDistData = new byte[cimWidth][cimHeight];
-		byte[][] mDistData = new byte[cimWidth][cimHeight];
-		for (int cimCol = 0; cimCol < cimWidth; cimCol++) {
-			int ciCol = (ciLeft + ((cimCol * ciWidth) / cimWidth));
-			if (ciCol < 0)
-				continue;
-			if (ciRight <= ciCol)
-				break;
-			int mCol = (mLeft + ((cimCol * mWidth) / cimWidth));
-			if (mCol < 0)
-				continue;
-			if (mRight <= mCol)
-				break;
-			
-			for (int cimRow = 0; cimRow < cimHeight; cimRow++) {
-				int ciRow = (ciTop + ((cimRow * ciHeight) / cimHeight));
-				if (ciRow < 0)
-					continue;
-				if (ciBottom <= ciRow)
-					break;
-				int mRow = (mTop + ((cimRow * mHeight) / cimHeight));
-				if (mRow < 0)
-					continue;
-				if (mBottom <= mRow)
-					break;
-				
-				byte cib = (((0 <= ciCol) && (ciCol < charImage.brightness.length) && (0 <= ciRow) && (ciRow < charImage.brightness[ciCol].length)) ? charImage.brightness[ciCol][ciRow] : ((byte) 127));
-				byte mb = (((0 <= mCol) && (mCol < match.brightness.length) && (0 <= mRow) && (mRow < match.brightness[mCol].length)) ? match.brightness[mCol][mRow] : ((byte) 127));
-				if ((cib < 80) && (mb < 80)) {
-					matched++;
-					cimData[cimCol][cimRow] = CIM_MATCHED;
-					ciDistData[cimCol][cimRow] = 1;
-					mDistData[cimCol][cimRow] = 1;
-				}
-				else if (cib < 80) {
-					spurious++;
-					cimData[cimCol][cimRow] = CIM_SPURIOUS;
-					ciDistData[cimCol][cimRow] = 1;
-					mDistData[cimCol][cimRow] = 0;
-				}
-				else if (mb < 80) {
-					missed++;
-					cimData[cimCol][cimRow] = CIM_MISSED;
-					ciDistData[cimCol][cimRow] = 0;
-					mDistData[cimCol][cimRow] = 1;
-				}
-				else {
-					cimData[cimCol][cimRow] = CIM_NONE;
-					ciDistData[cimCol][cimRow] = 0;
-					mDistData[cimCol][cimRow] = 0;
-				}
+		/* sample both images to match area (both need to be non-empty for
+		 * any pixel to count), leaving out any columns and rows that end up
+		 * at negative positions in either image due to shifting */
+		int cimLeft = 0;
+		while ((cimLeft < cimWidth) && (((ciLeft + ((cimLeft * ciWidth) / cimWidth)) < 0) || ((mLeft + ((cimLeft * mWidth) / cimWidth)) < 0)))
+			cimLeft++;
+		int cimTop = 0;
+		while ((cimTop < cimHeight) && (((ciTop + ((cimTop * ciHeight) / cimHeight)) < 0) || ((mTop + ((cimTop * mHeight) / cimHeight)) < 0)))
+			cimTop++;
+		BinaryImage ciBitmap;
+		BinaryImage mBitmap;
+		if ((ciWidth < 1) || (mWidth < 1) || (ciHeight < 1) || (mHeight < 1)) {
+			ciBitmap = new BinaryImage(cimWidth, cimHeight);
+			mBitmap = new BinaryImage(cimWidth, cimHeight);
+		}
+		else {
+			ciBitmap = charImage.bitmap.getScaledArea(ciLeft, ciTop, ciWidth, ciHeight, cimWidth, cimHeight);
+			mBitmap = match.bitmap.getScaledArea(mLeft, mTop, mWidth, mHeight, cimWidth, cimHeight);
+			if ((cimLeft != 0) || (cimTop != 0)) {
+				ciBitmap = ciBitmap.getScaledArea(cimLeft, cimTop, (cimWidth - cimLeft), (cimHeight - cimTop), (cimWidth - cimLeft), (cimHeight - cimTop));
+				mBitmap = mBitmap.getScaledArea(cimLeft, cimTop, (cimWidth - cimLeft), (cimHeight - cimTop), (cimWidth - cimLeft), (cimHeight - cimTop));
 			}
 		}
 		
+		//	compute match
+		int matched = ciBitmap.countOverlap(mBitmap);
+		int spurious = (ciBitmap.countSet() - matched);
+		int missed = (mBitmap.countSet() - matched);
+		
 		//	TODO try and use char box match for verification
 		
 		//	TODO try and use average distances to penalize missed branches (maybe use to weight spurious and missed pixels)
@@ -1554,6 +1542,17 @@ public class PdfCharDecoder {
 		cim.scaleLogY = ((float) Math.log(((double) charImage.box.getHeight()) / match.box.getHeight()));
 		
 		if (debug) {
+			byte[][] cimData = new byte[cimWidth][cimHeight];
+			byte[][] ciDistData = new byte[cimWidth][cimHeight];
+			byte[][] mDistData = new byte[cimWidth][cimHeight];
+			for (int cimCol = cimLeft; cimCol < cimWidth; cimCol++)
+				for (int cimRow = cimTop; cimRow < cimHeight; cimRow++) {
+					boolean cis = ciBitmap.isSet((cimCol - cimLeft), (cimRow - cimTop));
+					boolean ms = mBitmap.isSet((cimCol - cimLeft), (cimRow - cimTop));
+					cimData[cimCol][cimRow] = ((cis && ms) ? CIM_MATCHED : (cis ? CIM_SPURIOUS : (ms ? CIM_MISSED : CIM_NONE)));
+					ciDistData[cimCol][cimRow] = ((byte) (cis ? 1 : 0));
+					mDistData[cimCol][cimRow] = ((byte) (ms ? 1 : 0));
+				}
 			fillDistData(ciDistData);
 			fillDistData(mDistData);
 			System.out.println((charBoxMatch ? "Char" : "Font") + " box match stats for " + fontName + ":");
@@ -2025,6 +2024,7 @@ public class PdfCharDecoder {
 		final Path2D.Float path;
 		final int pathWidth;
 		final byte[][] brightness;
+		final BinaryImage bitmap;
 		final ImagePartRectangle box;
 		final int baseline;
 		final short[] xHistogram;
@@ -2064,11 +2064,13 @@ public class PdfCharDecoder {
 			Arrays.fill(this.xHistogram, ((short) 0));
 			this.yHistogram = new short[this.img.getHeight()];
 			Arrays.fill(this.yHistogram, ((short) 0));
+			this.bitmap = new BinaryImage(this.xHistogram.length, this.yHistogram.length);
 			for (int c = 0; c < imgBrightness.length; c++) {
 				for (int r = 0; r < imgBrightness[c].length; r++)
 					if (imgBrightness[c][r] < 80) {
 						this.xHistogram[c]++;
 						this.yHistogram[r]++;
+						this.bitmap.set(c, r);
 					}
 			}
 			
@@ -37,6 +37,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 import de.uka.ipd.idaho.gamta.util.CountingSet;
 import de.uka.ipd.idaho.im.pdf.PdfParser.PStream;
@@ -86,6 +87,37 @@ abstract class PdfColorSpace {
 	}
 	abstract Color decodeColor(LinkedList stack, String indent);
 	
+	/**
+	 * Decode a single color from its component values and return it as a
+	 * packed ARGB integer. The component values have to be in the [0,1]
+	 * range, starting at the argument offset. This default implementation
+	 * goes through <code>decodeColor()</code>, sub classes overwrite it to do
+	 * the conversion without creating any objects.
+	 * @param components the array holding the component values
+	 * @param offset the index of the first component value
+	 * @return the ARGB value of the decoded color
+	 */
+	int decodeRgb(float[] components, int offset) {
+		LinkedList stack = new LinkedList();
+		for (int c = 0; c < this.numComponents; c++)
+			stack.addLast(new Float(components[offset + c]));
+		return this.decodeColor(stack, null).getRGB();
+	}
+	
+	/**
+	 * Decode a sequence of colors from their component values, e.g. a whole
+	 * row of pixels from a bitmap, and store them as packed ARGB integers.
+	 * The component values have to be in the [0,1] range, with the values of
+	 * each color immediately following those of its predecessor.
+	 * @param components the array holding the component values
+	 * @param rgbs the array to store the ARGB values in
+	 * @param count the number of colors to decode
+	 */
+	void decodeRgbs(float[] components, int[] rgbs, int count) {
+		for (int c = 0; c < count; c++)
+			rgbs[c] = this.decodeRgb(components, (c * this.numComponents));
+	}
+	
 	void printStats() {}
 	
 	static PdfColorSpace getColorSpace(String name) {
@@ -208,12 +240,18 @@ abstract class PdfColorSpace {
 			boolean pixelIsZero = (((Number) stack.removeLast()).floatValue() < 0.5);
 			return (pixelIsZero ? Color.BLACK : Color.WHITE); // TODO do we need white to be transparent ???
 		}
+		int decodeRgb(float[] components, int offset) {
+			return ((components[offset] < 0.5) ? 0xFF000000 : 0xFFFFFFFF);
+		}
 	};
 	private static PdfColorSpace imageMask10 = new PdfColorSpace("ImageMask10", 1, true) {
 		Color decodeColor(LinkedList stack, String indent) {
 			boolean pixelIsZero = (((Number) stack.removeLast()).floatValue() < 0.5);
 			return (pixelIsZero ? Color.WHITE : Color.BLACK); // TODO do we need white to be transparent ???
 		}
+		int decodeRgb(float[] components, int offset) {
+			return ((components[offset] < 0.5) ? 0xFFFFFFFF : 0xFF000000);
+		}
 	};
 	
 	private static PdfColorSpace deviceCmyk = new PdfColorSpace("DeviceCMYK", 4, false) {
@@ -224,6 +262,9 @@ abstract class PdfColorSpace {
 			float c = ((Number) stack.removeLast()).floatValue();
 			return convertCmykToRgb(c, m, y, k);
 		}
+		int decodeRgb(float[] components, int offset) {
+			return convertCmykToPackedRgb(components[offset], components[offset + 1], components[offset + 2], components[offset + 3]);
+		}
 	};
 	
 //	private static PdfColorSpace alphaDeviceCmyk = new PdfColorSpace("AlphaDeviceCMYK", 4, false) {
@@ -243,6 +284,9 @@ abstract class PdfColorSpace {
 			float r = ((Number) stack.removeLast()).floatValue();
 			return new Color(r, g, b);
 		}
+		int decodeRgb(float[] components, int offset) {
+			return packRgb(components[offset], components[offset + 1], components[offset + 2]);
+		}
 	};
 	
 //	private static PdfColorSpace alphaDeviceRgb = new PdfColorSpace("AlphaDeviceRGB", 3, true) {
@@ -261,6 +305,9 @@ abstract class PdfColorSpace {
 			float r = ((Number) stack.removeLast()).floatValue();
 			return new Color(r, g, b); // TODO observe black point and white point
 		}
+		int decodeRgb(float[] components, int offset) {
+			return packRgb(components[offset], components[offset + 1], components[offset + 2]); // TODO observe black point and white point
+		}
 	};
 	
 	//	Lab color space is somewhat similar to HSB
@@ -329,6 +376,9 @@ abstract class PdfColorSpace {
 			float g = ((Number) stack.removeLast()).floatValue();
 			return new Color(g, g, g);
 		}
+		int decodeRgb(float[] components, int offset) {
+			return packRgb(components[offset], components[offset], components[offset]);
+		}
 	};
 	
 //	private static PdfColorSpace alphaDeviceGray = new PdfColorSpace("AlphaDeviceGray", 1, true) {
@@ -343,6 +393,9 @@ abstract class PdfColorSpace {
 			float g = ((Number) stack.removeLast()).floatValue();
 			return new Color(g, g, g); // TODO observe black point and white point
 		}
+		int decodeRgb(float[] components, int offset) {
+			return packRgb(components[offset], components[offset], components[offset]); // TODO observe black point and white point
+		}
 	};
 	
 	static class PatternColorSpace extends PdfColorSpace {
@@ -449,6 +502,30 @@ abstract class PdfColorSpace {
 			this.colorStats.add(new Integer(index));
 			return color;
 		}
+		private volatile int[] rgbLookup = null;
+		int decodeRgb(float[] components, int offset) {
+			int index = Math.max(0, Math.min(Math.round(255 * components[offset]), this.hival));
+			int[] rgbLookup = this.rgbLookup;
+			if (rgbLookup == null)
+				rgbLookup = this.getRgbLookup();
+			return rgbLookup[index];
+		}
+		private synchronized int[] getRgbLookup() {
+			if (this.rgbLookup != null)
+				return this.rgbLookup;
+			
+			//	fill whole lookup table at once, at most 256 colors (publishing via volatile field makes it visible to other decoding threads)
+			int[] rgbLookup = new int[this.hival + 1];
+			float[] baseComponents = new float[this.baseColorSpace.numComponents];
+			for (int index = 0; index < rgbLookup.length; index++) {
+				int lookupOffset = (index * this.baseColorSpace.numComponents);
+				for (int c = 0; c < baseComponents.length; c++)
+					baseComponents[c] = (((lookupOffset + c) < this.lookup.length) ? (((float) (this.lookup[lookupOffset + c] & 0x000000FF)) / 255) : 0); // truncated lookup, treat missing bytes as 0
+				rgbLookup[index] = this.baseColorSpace.decodeRgb(baseComponents, 0);
+			}
+			this.rgbLookup = rgbLookup;
+			return rgbLookup;
+		}
 		private CountingSet colorStats = new CountingSet(new TreeMap());
 		void printStats() {
 			System.out.println("Indexed color space access stats:");
@@ -547,6 +624,67 @@ abstract class PdfColorSpace {
 			}
 			return color;
 		}
+		private volatile int[] rgbLookup = null;
+		int decodeRgb(float[] components, int offset) {
+			
+			//	we can only cache tints that come from 8 bit (or lower) samples
+			float t = components[offset];
+			int tintIndex = Math.round(t * 255);
+			if ((tintIndex < 0) || (255 < tintIndex) || (((float) tintIndex / 255) != t))
+				return this.computeRgb(t);
+			
+			//	use lookup table
+			int[] rgbLookup = this.rgbLookup;
+			if (rgbLookup == null)
+				rgbLookup = this.getRgbLookup();
+			return rgbLookup[tintIndex];
+		}
+		private synchronized int[] getRgbLookup() {
+			if (this.rgbLookup != null)
+				return this.rgbLookup;
+			
+			//	fill whole lookup table at once (publishing via volatile field makes it visible to other decoding threads)
+			int[] rgbLookup = new int[256];
+			for (int t = 0; t < rgbLookup.length; t++)
+				rgbLookup[t] = this.computeRgb(((float) t) / 255);
+			this.rgbLookup = rgbLookup;
+			return rgbLookup;
+		}
+		private int computeRgb(float t) {
+			if ("None".equals(this.colorantName))
+				return 0xFFFFFFFF; // nothing being painted at all ...
+			else if ("All".equals(this.colorantName))
+				return packRgb((1 - t), (1 - t), (1 - t));
+			else if ("Red".equals(this.colorantName))
+				return packRgb((1 - t), 0, 0);
+			else if ("Green".equals(this.colorantName))
+				return packRgb(0, (1 - t), 0);
+			else if ("Blue".equals(this.colorantName))
+				return packRgb(0, 0, (1 - t));
+			else if ("Cyan".equals(this.colorantName))
+				return convertCmykToPackedRgb(t, 0, 0, 0);
+			else if ("Magenta".equals(this.colorantName))
+				return convertCmykToPackedRgb(0, t, 0, 0);
+			else if ("Yellow".equals(this.colorantName))
+				return convertCmykToPackedRgb(0, 0, t, 0);
+			else if ("Black".equals(this.colorantName))
+				return convertCmykToPackedRgb(0, 0, 0, t);
+			
+			//	colorant present in alternative color space
+			float[] altComponents = new float[this.altColorSpace.colorantNames.length];
+			boolean colorantNameMatched = false;
+			for (int c = 0; c < altComponents.length; c++)
+				if (this.colorantName.equals(this.altColorSpace.colorantNames[c])) {
+					altComponents[c] = t;
+					colorantNameMatched = true;
+				}
+			if (colorantNameMatched)
+				return this.altColorSpace.decodeRgb(altComponents, 0);
+			
+			//	use tint transformer (works on copy of input)
+			float[] x = {t};
+			return this.altColorSpace.decodeRgb(this.tintTransformer.evaluate(x, null), 0);
+		}
 	}
 	
 	private static class DeviceNColorSpace extends PdfColorSpace {
@@ -668,6 +806,58 @@ abstract class PdfColorSpace {
 			}
 			else return this.tintTransformer.evaluate(x, ((indent == null) ? null : (indent + "  ")));
 		}
+		
+		/* packed RGB values of colorant tint combinations, keyed by the
+		 * concatenated 8 bit tint values (tints from bitmaps with up to 8
+		 * bits per component, for up to 7 colorants) */
+		private Map rgbCache = new ConcurrentHashMap();
+		private static final int MAX_RGB_CACHE_SIZE = 0x10000;
+		int decodeRgb(float[] components, int offset) {
+			long tintKey = this.getTintKey(components, offset);
+			Long rgbCacheKey = ((tintKey < 0) ? null : new Long(tintKey));
+			if (rgbCacheKey != null) {
+				Integer rgb = ((Integer) this.rgbCache.get(rgbCacheKey));
+				if (rgb != null)
+					return rgb.intValue();
+			}
+			float[] x = new float[this.numComponents];
+			System.arraycopy(components, offset, x, 0, x.length); // tint transformer works on copy of input
+			int rgb = this.altColorSpace.decodeRgb(this.transformTints(x, null), 0);
+			if ((rgbCacheKey != null) && (this.rgbCache.size() < MAX_RGB_CACHE_SIZE))
+				this.rgbCache.put(rgbCacheKey, new Integer(rgb));
+			return rgb;
+		}
+		private long getTintKey(float[] components, int offset) {
+			if (this.numComponents > 7)
+				return -1;
+			long tintKey = 0;
+			for (int c = 0; c < this.numComponents; c++) {
+				float t = components[offset + c];
+				int tintIndex = Math.round(t * 255);
+				if ((tintIndex < 0) || (255 < tintIndex) || (((float) tintIndex / 255) != t))
+					return -1;
+				tintKey = ((tintKey << 8) | tintIndex);
+			}
+			return tintKey;
+		}
+		void decodeRgbs(float[] components, int[] rgbs, int count) {
+			
+			//	re-use color of previous pixel if components are the same, as in most bitmap areas
+			for (int c = 0; c < count; c++) {
+				int offset = (c * this.numComponents);
+				if ((c != 0) && this.equalsPrevious(components, offset))
+					rgbs[c] = rgbs[c - 1];
+				else rgbs[c] = this.decodeRgb(components, offset);
+			}
+		}
+		private boolean equalsPrevious(float[] components, int offset) {
+			for (int cc = 0; cc < this.numComponents; cc++) {
+				if (components[offset + cc] != components[offset + cc - this.numComponents])
+					return false;
+			}
+			return true;
+		}
+		
 		private CountingSet colorStats = new CountingSet(new TreeMap());
 		void printStats() {
 			System.out.println("Indexed color space access stats:");
@@ -686,6 +876,21 @@ abstract class PdfColorSpace {
 		return new Color(r, g, b);
 	}
 	
+	private static int convertCmykToPackedRgb(float c, float m, float y, float k) {
+		float r = ((1 - c) * (1 - k));
+		float g = ((1 - m) * (1 - k));
+		float b = ((1 - y) * (1 - k));
+		return packRgb(r, g, b);
+	}
+	
+	private static int packRgb(float r, float g, float b) {
+		//	same rounding as the float based constructor of java.awt.Color, but clipping out-of-range values
+		int ri = Math.max(0, Math.min(255, ((int) ((r * 255) + 0.5))));
+		int gi = Math.max(0, Math.min(255, ((int) ((g * 255) + 0.5))));
+		int bi = Math.max(0, Math.min(255, ((int) ((b * 255) + 0.5))));
+		return (0xFF000000 | (ri << 16) | (gi << 8) | bi);
+	}
+	
 	private static Color setAlphaToInverseLuminosity(Color color) {
 		//	0-255 int based version from http://www.rapidtables.com/convert/color/cmyk-to-rgb.htm
 		int r = color.getRed();
@@ -67,6 +67,7 @@ import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.TreeSet;
 
 import javax.imageio.ImageIO;
 
@@ -113,6 +114,7 @@ import de.uka.ipd.idaho.gamta.util.imaging.ImagingConstants;
 import de.uka.ipd.idaho.gamta.util.imaging.PageImage;
 import de.uka.ipd.idaho.gamta.util.imaging.PageImageInputStream;
 import de.uka.ipd.idaho.gamta.util.imaging.PageImageStore;
+import de.uka.ipd.idaho.im.ImAnnotation;
 import de.uka.ipd.idaho.im.ImDocument;
 import de.uka.ipd.idaho.im.ImFont;
 import de.uka.ipd.idaho.im.ImPage;
@@ -153,7 +155,9 @@ import de.uka.ipd.idaho.im.pdf.PdfParser.PWord;
 import de.uka.ipd.idaho.im.pdf.test.PdfExtractorTest;
 import de.uka.ipd.idaho.im.util.ImDocumentStyle;
 import de.uka.ipd.idaho.im.util.ImFontUtils;
+import de.uka.ipd.idaho.im.util.ImMetrics;
 import de.uka.ipd.idaho.im.util.ImUtils;
+import de.uka.ipd.idaho.im.util.MappedPageImageStore;
 import de.uka.ipd.idaho.im.utilities.ImageDisplayDialog;
 
 /**
@@ -346,6 +350,46 @@ public class PdfExtractor implements ImagingConstants, TableConstants {
 		}
 	}
 	
+	/**
+	 * Retrieve the number of lookups in the font decoding cache. This cache
+	 * holds OCR matches for embedded font glyphs, keyed by font decoder
+	 * charset and glyph image content, as well as rendered comparison
+	 * characters. It is shared between all PDF extractors in the current JVM,
+	 * so glyphs of fonts that recur across documents are only decoded once.
+	 * @return the number of lookups in the font decoding cache
+	 */
+	public static int getFontDecodingCacheLookups() {
+		return PdfFontDecoder.glyphMatchCache.getLookups();
+	}
+	
+	/**
+	 * Retrieve the number of hits in the font decoding cache, i.e., the
+	 * number of embedded font glyphs whose OCR matches were reused from the
+	 * decoding of a pixel identical glyph in the same or an earlier document.
+	 * @return the number of hits in the font decoding cache
+	 */
+	public static int getFontDecodingCacheHits() {
+		return PdfFontDecoder.glyphMatchCache.getHits();
+	}
+	
+	/**
+	 * Retrieve the hit rate of the font decoding cache, i.e., the fraction of
+	 * lookups that were hits.
+	 * @return the hit rate of the font decoding cache
+	 */
+	public static float getFontDecodingCacheHitRate() {
+		return PdfFontDecoder.glyphMatchCache.getHitRate();
+	}
+	
+	/**
+	 * Clear the font decoding cache, e.g. to free memory after decoding a
+	 * batch of documents. This also resets the lookup and hit counters.
+	 */
+	public static void clearFontDecodingCache() {
+		PdfFontDecoder.glyphMatchCache.clear();
+		PdfFontDecoder.charImageCache.clear();
+	}
+	
 	/**
 	 * Load a document from a PDF. Page images are stored in the page image
 	 * store handed to the constructor. The document structure is stored in the
@@ -495,7 +539,7 @@ public class PdfExtractor implements ImagingConstants, TableConstants {
 		Catalog catalog = pdfDoc.getCatalog();
 		
 		//	parse PDF
-		HashMap objects = PdfParser.getObjects(pdfBytes, pdfDoc.getSecurityManager());
+		HashMap objects = PdfParser.getObjects(pdfBytes, pdfDoc.getSecurityManager(), this.useMultipleCores);
 		
 		//	decrypt streams and strings
 		PdfParser.decryptObjects(objects, pdfDoc.getSecurityManager());
@@ -647,8 +691,11 @@ public class PdfExtractor implements ImagingConstants, TableConstants {
 		//	prepare working in parallel
 		ParallelFor pf;
 		
+		//	prepare recording phase timings
+		PhaseTimer phases = new PhaseTimer("PdfExtractor.pageData", spm);
+		
 		//	extract page objects
-		spm.setStep("Extracting page content");
+		phases.setStep("extractContent", "Extracting page content");
 		spm.setBaseProgress(0);
 		spm.setProgress(0);
 		spm.setMaxProgress(5);
@@ -728,6 +775,7 @@ public class PdfExtractor implements ImagingConstants, TableConstants {
 				}
 			}
 		};
+		pf = phases.timePages(pf);
 		ParallelJobRunner.runParallelFor(pf, ((PdfExtractorTest.aimAtPage < 0) ? 0 : PdfExtractorTest.aimAtPage), ((PdfExtractorTest.aimAtPage < 0) ? pdfPages.length : (PdfExtractorTest.aimAtPage + 1)), (this.useMultipleCores ? -1 : 1));
 		spm.setProgress(100);
 		
@@ -739,7 +787,7 @@ public class PdfExtractor implements ImagingConstants, TableConstants {
 		 * - need to assess which fonts use UTF-16 (no matter which of the two) to handle usages of 0 as valid char code */
 //		if (((getWhat & getWords) != 0) && (fontCharSet != PdfFontDecoder.NO_DECODING)) {
 		if ((getWhat & getWords) != 0) {
-			spm.setStep("Assessing font char usage");
+			phases.setStep("assessFontCharUsage", "Assessing font char usage");
 			spm.setBaseProgress(5);
 			spm.setProgress(0);
 			spm.setMaxProgress(10);
@@ -784,7 +832,7 @@ public class PdfExtractor implements ImagingConstants, TableConstants {
 		}
 		
 		//	extract page objects
-		spm.setStep("Importing page words");
+		phases.setStep("importWords", "Importing page words");
 		spm.setBaseProgress(10);
 		spm.setProgress(0);
 		spm.setMaxProgress(30);
@@ -907,8 +955,10 @@ public class PdfExtractor implements ImagingConstants, TableConstants {
 				}
 			}
 		};
+		pf = phases.timePages(pf);
 		ParallelJobRunner.runParallelFor(pf, ((PdfExtractorTest.aimAtPage < 0) ? 0 : PdfExtractorTest.aimAtPage), ((PdfExtractorTest.aimAtPage < 0) ? pdfPages.length : (PdfExtractorTest.aimAtPage + 1)), (this.useMultipleCores ? -1 : 1));
 		spm.setProgress(100);
+		phases.endPhase();
 		
 		//	check errors
 		checkException(pf);
@@ -1632,9 +1682,25 @@ public class PdfExtractor implements ImagingConstants, TableConstants {
 	}
 	
 	private ImDocument doLoadTextPdf(ImDocument doc, Document pdfDoc, byte[] pdfBytes, FontDecoderCharset fontCharSet, int enhanceScanFlags, Set pageIDs, ProgressMonitor pm) throws IOException {
+		pdfDoc = this.getPdfDocument(pdfDoc, pdfBytes);
+		return this.doLoadTextPdf(doc, pdfDoc, pdfBytes, this.getTextPdfObjects(pdfDoc, pdfBytes), fontCharSet, enhanceScanFlags, pageIDs, pm);
+	}
+	
+	private HashMap getTextPdfObjects(Document pdfDoc, byte[] pdfBytes) throws IOException {
+		
+		//	parse PDF
+		HashMap objects = PdfParser.getObjects(pdfBytes, pdfDoc.getSecurityManager(), this.useMultipleCores);
+		
+		//	decrypt streams and strings
+		PdfParser.decryptObjects(objects, pdfDoc.getSecurityManager());
+		
+		//	finally ...
+		return objects;
+	}
+	
+	private ImDocument doLoadTextPdf(ImDocument doc, Document pdfDoc, byte[] pdfBytes, HashMap objects, FontDecoderCharset fontCharSet, int enhanceScanFlags, Set pageIDs, ProgressMonitor pm) throws IOException {
 		
 		//	check arguments
-		pdfDoc = this.getPdfDocument(pdfDoc, pdfBytes);
 		if (doc == null)
 			doc = this.doCreateDocument(getChecksum(pdfBytes), ((pageIDs == null) ? 0 : pdfDoc.getNumberOfPages()), pageIDs);
 		if (pm == null)
@@ -1649,12 +1715,6 @@ public class PdfExtractor implements ImagingConstants, TableConstants {
 		//	load document structure (IcePDF is better at that ...)
 		Catalog catalog = pdfDoc.getCatalog();
 		
-		//	parse PDF
-		HashMap objects = PdfParser.getObjects(pdfBytes, pdfDoc.getSecurityManager());
-		
-		//	decrypt streams and strings
-		PdfParser.decryptObjects(objects, pdfDoc.getSecurityManager());
-		
 		//	get basic page data (takes progress to 30%)
 		PPageData[] pData = this.getPdfPageData(doc, (getWords | getFigures | getPaths), fontCharSet, false, pageIDs, catalog.getPageTree(), objects, spm);
 		
@@ -1665,6 +1725,284 @@ public class PdfExtractor implements ImagingConstants, TableConstants {
 		return doc;
 	}
 	
+	/**
+	 * Parsed state of a textual PDF, to retain between loading a document and
+	 * later re-extracting individual pages. In particular, this includes the
+	 * parsed and decrypted PDF objects, and with them the fonts decoded along
+	 * the way, so re-extracting pages does not incur parsing the PDF and
+	 * decoding its fonts all over again.
+	 * 
+	 * @author sautter
+	 */
+	public static class TextPdfExtractionState {
+		final byte[] pdfBytes;
+		final Document pdfDoc;
+		final HashMap objects;
+		final FontDecoderCharset fontCharSet;
+		TextPdfExtractionState(byte[] pdfBytes, Document pdfDoc, HashMap objects, FontDecoderCharset fontCharSet) {
+			this.pdfBytes = pdfBytes;
+			this.pdfDoc = pdfDoc;
+			this.objects = objects;
+			this.fontCharSet = fontCharSet;
+		}
+	}
+	
+	/**
+	 * Parse a textual PDF, usually a digital-born PDF, into an extraction
+	 * state to load the document from, and to later re-extract individual
+	 * pages from.
+	 * @param pdfBytes the raw binary data of the PDF document
+	 * @param fontCharSet the character set to use for font decoding
+	 * @return the extraction state of the argument PDF
+	 * @throws IOException
+	 */
+	public TextPdfExtractionState getTextPdfExtractionState(byte[] pdfBytes, FontDecoderCharset fontCharSet) throws IOException {
+		Document pdfDoc = this.getPdfDocument(null, pdfBytes);
+		return new TextPdfExtractionState(pdfBytes, pdfDoc, this.getTextPdfObjects(pdfDoc, pdfBytes), fontCharSet);
+	}
+	
+	/**
+	 * Load a document from a textual PDF, usually a digital-born PDF, using a
+	 * previously parsed extraction state. Page images are stored in the page
+	 * image store handed to the constructor. If the argument set of page IDs
+	 * is null, all pages are loaded. Fonts decoded in the course of loading
+	 * are retained in the argument extraction state.
+	 * @param state the extraction state of the PDF to load
+	 * @param pageIDs a set containing the IDs of the pages to decode
+	 * @param pm a monitor object for reporting progress, e.g. to a UI
+	 * @return the decoded Image Markup document
+	 * @throws IOException
+	 */
+	public ImDocument loadTextPdf(TextPdfExtractionState state, Set pageIDs, ProgressMonitor pm) throws IOException {
+		return this.doLoadTextPdf(null, state.pdfDoc, state.pdfBytes, state.objects, state.fontCharSet, -1, pageIDs, pm);
+	}
+	
+	/**
+	 * Re-extract selected pages of a document loaded from a textual PDF,
+	 * usually a digital-born PDF, e.g. after fixing a font mapping. This
+	 * method replaces the argument pages proper, including their words and
+	 * regions, removes any annotations starting or ending on them, as well as
+	 * any figure and graphics supplements belonging to them, and then extracts
+	 * the pages anew from the argument extraction state, re-using any fonts
+	 * decoded before, as well as page images available from the page image
+	 * store handed to the constructor. Afterwards, each text stream that used
+	 * to cross the boundary of a re-extracted page is linked back to the
+	 * re-extracted text stream of the same type that lies where its words
+	 * used to be. Text streams of a type that does not re-occur in the
+	 * re-extracted pages remain cut, rather than being spliced into the main
+	 * text. Annotations spanning across a re-extracted page are retained if
+	 * the text stream they lie in is linked back together, and removed if it
+	 * remains cut.
+	 * @param doc the document to re-extract pages of
+	 * @param state the extraction state of the PDF the document was loaded from
+	 * @param pageIDs a set containing the IDs of the pages to re-extract
+	 * @param pm a monitor object for reporting progress, e.g. to a UI
+	 * @return the argument image markup document
+	 * @throws IOException
+	 */
+	public ImDocument reExtractTextPdfPages(ImDocument doc, TextPdfExtractionState state, Set pageIDs, ProgressMonitor pm) throws IOException {
+		if ((pageIDs == null) || pageIDs.isEmpty())
+			return doc;
+		if (pm == null)
+			pm = ProgressMonitor.dummy;
+		
+		//	build progress monitor with synchronized methods instead of synchronizing in-code
+		SynchronizedProgressMonitor spm = ((pm instanceof SynchronizedProgressMonitor) ? ((SynchronizedProgressMonitor) pm) : new SynchronizedProgressMonitor(pm));
+		
+		//	detach pages to re-extract from document
+		spm.setStep("Detaching pages to re-extract");
+		ArrayList textStreamLinks = new ArrayList();
+		HashSet spanningAnnots = new HashSet();
+		for (Iterator pidit = new TreeSet(pageIDs).iterator(); pidit.hasNext();) {
+			Integer pageId = ((Integer) pidit.next());
+			ImPage page = doc.getPage(pageId.intValue());
+			if (page == null)
+				continue;
+			
+			//	remove annotations starting or ending on page, remembering ones spanning across it to check after re-linking text streams
+			ImAnnotation[] annots = doc.getAnnotations(pageId.intValue());
+			for (int a = 0; a < annots.length; a++) {
+				if (pageIDs.contains(new Integer(annots[a].getFirstWord().pageId)) || pageIDs.contains(new Integer(annots[a].getLastWord().pageId)))
+					doc.removeAnnotation(annots[a]);
+				else spanningAnnots.add(annots[a]);
+			}
+			
+			//	get bounds of text streams in page, to later identify their re-extracted counterparts
+			ImWord[] words = page.getWords();
+			HashMap textStreamBounds = new HashMap();
+			for (int w = 0; w < words.length; w++) {
+				BoundingBox tsBounds = ((BoundingBox) textStreamBounds.get(words[w].getTextStreamId()));
+				textStreamBounds.put(words[w].getTextStreamId(), ((tsBounds == null) ? words[w].bounds : tsBounds.union(words[w].bounds)));
+			}
+			
+			//	cut text streams crossing page boundaries, remembering retained words to link re-extracted text to
+			for (int w = 0; w < words.length; w++) {
+				ImWord prevWord = words[w].getPreviousWord();
+				if ((prevWord != null) && !pageIDs.contains(new Integer(prevWord.pageId))) {
+					textStreamLinks.add(new TextStreamLink(pageId.intValue(), words[w].getTextStreamType(), ((BoundingBox) textStreamBounds.get(words[w].getTextStreamId())), prevWord, true));
+					prevWord.setNextWord(null);
+				}
+				ImWord nextWord = words[w].getNextWord();
+				if ((nextWord != null) && !pageIDs.contains(new Integer(nextWord.pageId))) {
+					textStreamLinks.add(new TextStreamLink(pageId.intValue(), words[w].getTextStreamType(), ((BoundingBox) textStreamBounds.get(words[w].getTextStreamId())), nextWord, false));
+					words[w].setNextWord(null);
+				}
+			}
+			
+			//	remove figures and graphics
+			ImSupplement[] supplements = doc.getSupplements();
+			for (int s = 0; s < supplements.length; s++) {
+				if ((supplements[s] instanceof ImSupplement.Figure) && (((ImSupplement.Figure) supplements[s]).getPageId() == pageId.intValue()))
+					doc.removeSupplement(supplements[s]);
+				else if ((supplements[s] instanceof ImSupplement.Graphics) && (((ImSupplement.Graphics) supplements[s]).getPageId() == pageId.intValue()))
+					doc.removeSupplement(supplements[s]);
+			}
+		}
+		
+		//	get basic page data (takes progress to 30%)
+		PPageData[] pData = this.getPdfPageData(doc, (getWords | getFigures | getPaths), state.fontCharSet, false, pageIDs, state.pdfDoc.getCatalog().getPageTree(), state.objects, spm);
+		
+		//	fill pages (replaces existing ones)
+		this.addTextPdfPages(doc, pData, -1, state.objects, spm);
+		
+		//	link text streams of re-extracted pages to retained pages (successors first, so predecessors find stream heads with their tails already linked)
+		for (int l = 0; l < textStreamLinks.size(); l++) {
+			TextStreamLink tsl = ((TextStreamLink) textStreamLinks.get(l));
+			if (tsl.retainedIsPredecessor)
+				continue;
+			ImPage page = doc.getPage(tsl.pageId);
+			ImWord textStreamStart = ((page == null) ? null : findTextStreamLinkTarget(page, tsl, pageIDs));
+			if (textStreamStart == null)
+				continue; // no counterpart of text stream, leave cut
+			ImWord textStreamTail = textStreamStart;
+			while ((textStreamTail.getNextWord() != null) && pageIDs.contains(new Integer(textStreamTail.getNextWord().pageId)))
+				textStreamTail = textStreamTail.getNextWord();
+			if (!tsl.textStreamType.equals(textStreamTail.getTextStreamType()))
+				textStreamTail.setTextStreamType(tsl.textStreamType);
+			textStreamTail.setNextWord(tsl.retainedWord);
+			textStreamTail.setNextRelation(ImWord.NEXT_RELATION_PARAGRAPH_END);
+		}
+		for (int l = 0; l < textStreamLinks.size(); l++) {
+			TextStreamLink tsl = ((TextStreamLink) textStreamLinks.get(l));
+			if (!tsl.retainedIsPredecessor)
+				continue;
+			ImPage page = doc.getPage(tsl.pageId);
+			ImWord textStreamHead = ((page == null) ? null : findTextStreamLinkTarget(page, tsl, pageIDs));
+			if (textStreamHead == null)
+				continue; // no counterpart of text stream, leave cut
+			tsl.retainedWord.setNextWord(textStreamHead);
+			tsl.retainedWord.setNextRelation(ImWord.NEXT_RELATION_PARAGRAPH_END);
+		}
+		
+		//	remove spanning annotations whose first and last words ended up in different text streams (would reach across cut otherwise)
+		for (Iterator ait = spanningAnnots.iterator(); ait.hasNext();) {
+			ImAnnotation annot = ((ImAnnotation) ait.next());
+			if (!isTextStreamContinuous(annot.getFirstWord(), annot.getLastWord()))
+				doc.removeAnnotation(annot);
+		}
+		
+		//	finally ...
+		return doc;
+	}
+	
+	/* check if a word precedes another one in the same text stream, i.e.,
+	 * the latter is reachable from the former via next word links */
+	private static boolean isTextStreamContinuous(ImWord firstWord, ImWord lastWord) {
+		if (!firstWord.getTextStreamId().equals(lastWord.getTextStreamId()))
+			return false;
+		return (firstWord.getTextStreamPos() <= lastWord.getTextStreamPos());
+	}
+	
+	/* a link of a text stream across the boundary of a re-extracted page,
+	 * with the type and bounds of the text stream in the re-extracted page
+	 * before re-extraction */
+	private static class TextStreamLink {
+		final int pageId;
+		final String textStreamType;
+		final BoundingBox textStreamBounds;
+		final ImWord retainedWord;
+		final boolean retainedIsPredecessor;
+		TextStreamLink(int pageId, String textStreamType, BoundingBox textStreamBounds, ImWord retainedWord, boolean retainedIsPredecessor) {
+			this.pageId = pageId;
+			this.textStreamType = textStreamType;
+			this.textStreamBounds = textStreamBounds;
+			this.retainedWord = retainedWord;
+			this.retainedIsPredecessor = retainedIsPredecessor;
+		}
+	}
+	
+	/* Find the start of the re-extracted text stream in a page to restore a
+	 * cut link to, i.e., the first word of a text stream on the page that
+	 * does not have a predecessor yet (for retained predecessors), or whose
+	 * tail in the re-extracted pages does not have a successor yet (for
+	 * retained successors). Among the candidates, text streams of the same
+	 * type take precedence, then ones lying where the original text stream
+	 * used to be. Main text can fall back to the largest candidate, while
+	 * other text streams are only linked to candidates of their own type or
+	 * in their original position, so they never get spliced into the main
+	 * text. */
+	private static ImWord findTextStreamLinkTarget(ImPage page, TextStreamLink tsl, Set pageIDs) {
+		ImWord[] words = page.getWords();
+		ImWord target = null;
+		boolean targetSameType = false;
+		int targetOverlapArea = 0;
+		int targetArea = 0;
+		for (int w = 0; w < words.length; w++) {
+			
+			//	check if we have the start of a text stream in the page
+			ImWord prevWord = words[w].getPreviousWord();
+			if (tsl.retainedIsPredecessor) {
+				if (prevWord != null)
+					continue; // already linked
+			}
+			else if ((prevWord != null) && (prevWord.pageId == page.pageId))
+				continue; // not the start of a text stream in this page
+			else {
+				ImWord tail = words[w];
+				while ((tail.getNextWord() != null) && pageIDs.contains(new Integer(tail.getNextWord().pageId)))
+					tail = tail.getNextWord();
+				if (tail.getNextWord() != null)
+					continue; // already linked
+			}
+			
+			//	measure text stream in page
+			String textStreamType = words[w].getTextStreamType();
+			boolean sameType = tsl.textStreamType.equals(textStreamType);
+			if (!sameType && (ImWord.TEXT_STREAM_TYPE_LABEL.equals(textStreamType) || ImWord.TEXT_STREAM_TYPE_ARTIFACT.equals(textStreamType)))
+				continue; // never link up with labels or artifacts
+			int overlapArea = 0;
+			int area = 0;
+			for (ImWord imw = words[w]; (imw != null) && (imw.pageId == page.pageId); imw = imw.getNextWord()) {
+				area += imw.bounds.getArea();
+				if ((tsl.textStreamBounds != null) && tsl.textStreamBounds.overlaps(imw.bounds))
+					overlapArea += imw.bounds.intersect(tsl.textStreamBounds).getArea();
+			}
+			
+			//	other text streams need to match by type or position
+			if (!sameType && (overlapArea == 0) && !ImWord.TEXT_STREAM_TYPE_MAIN_TEXT.equals(tsl.textStreamType))
+				continue;
+			
+			//	compare to best candidate so far (type first, then position, then size)
+			if (target != null) {
+				if (targetSameType != sameType) {
+					if (targetSameType)
+						continue;
+				}
+				else if (targetOverlapArea != overlapArea) {
+					if (targetOverlapArea > overlapArea)
+						continue;
+				}
+				else if (targetArea >= area)
+					continue;
+			}
+			target = words[w];
+			targetSameType = sameType;
+			targetOverlapArea = overlapArea;
+			targetArea = area;
+		}
+		return target;
+	}
+	
 	/**
 	 * Load the fonts from a textual PDF, usually a digital-born PDF. This
 	 * method is a special mode for font reference generation, not intended for
@@ -1707,7 +2045,7 @@ public class PdfExtractor implements ImagingConstants, TableConstants {
 		Catalog catalog = pdfDoc.getCatalog();
 		
 		//	parse PDF
-		HashMap objects = PdfParser.getObjects(pdfBytes, pdfDoc.getSecurityManager());
+		HashMap objects = PdfParser.getObjects(pdfBytes, pdfDoc.getSecurityManager(), this.useMultipleCores);
 		
 		//	decrypt streams and strings
 		PdfParser.decryptObjects(objects, pdfDoc.getSecurityManager());
@@ -1815,8 +2153,11 @@ public class PdfExtractor implements ImagingConstants, TableConstants {
 		//	prepare working in parallel
 		ParallelFor pf;
 		
+		//	prepare recording phase timings
+		PhaseTimer phases = new PhaseTimer("PdfExtractor.textPages", spm);
+		
 		//	extract page objects
-		spm.setStep("Sanitizing page words and graphics");
+		phases.setStep("sanitizeWordsAndGraphics", "Sanitizing page words and graphics");
 		spm.setBaseProgress(30);
 		spm.setProgress(0);
 		spm.setMaxProgress(32);
@@ -1857,6 +2198,7 @@ public class PdfExtractor implements ImagingConstants, TableConstants {
 				}
 			}
 		};
+		pf = phases.timePages(pf);
 		ParallelJobRunner.runParallelFor(pf, ((PdfExtractorTest.aimAtPage < 0) ? 0 : PdfExtractorTest.aimAtPage), ((PdfExtractorTest.aimAtPage < 0) ? pData.length : (PdfExtractorTest.aimAtPage + 1)), (this.useMultipleCores ? -1 : 1));
 		spm.setProgress(100);
 		
@@ -1864,14 +2206,14 @@ public class PdfExtractor implements ImagingConstants, TableConstants {
 		checkException(pf);
 		
 		//	catch word sequences up or down vertical page edges, as well as ones across top or bottom ("Downloaded from ...")
-		spm.setStep("Removing watermarks along page margins");
+		phases.setStep("removeMarginWatermarks", "Removing watermarks along page margins");
 		spm.setBaseProgress(32);
 		spm.setProgress(0);
 		spm.setMaxProgress(35);
 		this.removePageEdgeWatermarks(pData, false, 0, 0, new CascadingProgressMonitor(spm));
 		
 		//	assess page content in preparation for flipping
-		spm.setStep("Assessing page graphics");
+		phases.setStep("assessGraphics", "Assessing page graphics");
 		spm.setBaseProgress(35);
 		spm.setProgress(0);
 		spm.setMaxProgress(36);
@@ -1977,7 +2319,7 @@ public class PdfExtractor implements ImagingConstants, TableConstants {
 		}
 		
 		//	classify whole page content
-		spm.setStep("Assessing page content");
+		phases.setStep("assessContent", "Assessing page content");
 		spm.setBaseProgress(36);
 		spm.setProgress(0);
 		spm.setMaxProgress(37);
@@ -2027,7 +2369,7 @@ public class PdfExtractor implements ImagingConstants, TableConstants {
 		spm.setInfo(" ==> minimum page margin is " + pMinPageMargin);
 		
 		//	do page rotation assessment and content flipping right here
-		spm.setStep("Handling flipped page content");
+		phases.setStep("handleFlippedContent", "Handling flipped page content");
 		spm.setBaseProgress(37);
 		spm.setProgress(0);
 		spm.setMaxProgress(40);
@@ -2525,6 +2867,7 @@ public class PdfExtractor implements ImagingConstants, TableConstants {
 				return false;
 			}
 		};
+		pf = phases.timePages(pf);
 		ParallelJobRunner.runParallelFor(pf, ((PdfExtractorTest.aimAtPage < 0) ? 0 : PdfExtractorTest.aimAtPage), ((PdfExtractorTest.aimAtPage < 0) ? pData.length : (PdfExtractorTest.aimAtPage + 1)), (this.useMultipleCores ? -1 : 1));
 		spm.setProgress(100);
 		
@@ -2532,7 +2875,7 @@ public class PdfExtractor implements ImagingConstants, TableConstants {
 		checkException(pf);
 		
 		//	extract page objects
-		spm.setStep("Storing figures and graphics");
+		phases.setStep("storeFiguresAndGraphics", "Storing figures and graphics");
 		spm.setBaseProgress(40);
 		spm.setProgress(0);
 		spm.setMaxProgress(42);
@@ -2564,6 +2907,7 @@ public class PdfExtractor implements ImagingConstants, TableConstants {
 				}
 			}
 		};
+		pf = phases.timePages(pf);
 		ParallelJobRunner.runParallelFor(pf, ((PdfExtractorTest.aimAtPage < 0) ? 0 : PdfExtractorTest.aimAtPage), ((PdfExtractorTest.aimAtPage < 0) ? pData.length : (PdfExtractorTest.aimAtPage + 1)), (this.useMultipleCores ? -1 : 1));
 		spm.setProgress(100);
 		
@@ -2571,7 +2915,7 @@ public class PdfExtractor implements ImagingConstants, TableConstants {
 		checkException(pf);
 		
 		//	extract page objects
-		spm.setStep("Analyzing words in relation to figures and graphics");
+		phases.setStep("analyzeWordsAtFiguresAndGraphics", "Analyzing words in relation to figures and graphics");
 		spm.setBaseProgress(42);
 		spm.setProgress(0);
 		spm.setMaxProgress(45);
@@ -2763,6 +3107,7 @@ public class PdfExtractor implements ImagingConstants, TableConstants {
 				spm.setInfo("Found " + ((pWatermarkWords[p] == null) ? "no" : ("" + pWatermarkWords[p].size())) + " watermark words in page " + p + " of " + pData.length);
 			}
 		};
+		pf = phases.timePages(pf);
 		ParallelJobRunner.runParallelFor(pf, ((PdfExtractorTest.aimAtPage < 0) ? 0 : PdfExtractorTest.aimAtPage), ((PdfExtractorTest.aimAtPage < 0) ? pData.length : (PdfExtractorTest.aimAtPage + 1)), (this.useMultipleCores ? -1 : 1));
 		spm.setProgress(100);
 		
@@ -2783,7 +3128,7 @@ public class PdfExtractor implements ImagingConstants, TableConstants {
 		}
 		
 		//	attach non-standard PDF fonts to document (substituting > 255 char codes with unused ones <= 255)
-		spm.setStep("Storing custom fonts");
+		phases.setStep("storeFonts", "Storing custom fonts");
 		ArrayList fonts = new ArrayList();
 		CountingSet fontNames = new CountingSet(new TreeMap());
 		for (Iterator okit = objects.keySet().iterator(); okit.hasNext();) {
@@ -2851,14 +3196,14 @@ public class PdfExtractor implements ImagingConstants, TableConstants {
 		}
 		
 		//	assess number punctuation
-		spm.setStep("Assessing number punctuation");
+		phases.setStep("assessNumberPunctuation", "Assessing number punctuation");
 		spm.setBaseProgress(45);
 		spm.setProgress(0);
 		spm.setMaxProgress(46);
 		final Tokenizer numberTokenizer = getNumberTokenizer(pData, tokenizer, spm);
 		
 		//	split words only now
-		spm.setStep("Splitting page words");
+		phases.setStep("splitWords", "Splitting page words");
 		spm.setBaseProgress(46);
 		spm.setProgress(0);
 		spm.setMaxProgress(50);
@@ -2882,6 +3227,7 @@ public class PdfExtractor implements ImagingConstants, TableConstants {
 				else spm.setInfo(" --> got " + pData[p].words.length + " words in PDF");
 			}
 		};
+		pf = phases.timePages(pf);
 		ParallelJobRunner.runParallelFor(pf, ((PdfExtractorTest.aimAtPage < 0) ? 0 : PdfExtractorTest.aimAtPage), ((PdfExtractorTest.aimAtPage < 0) ? pData.length : (PdfExtractorTest.aimAtPage + 1)), (this.useMultipleCores ? -1 : 1));
 		spm.setProgress(100);
 		
@@ -2889,7 +3235,7 @@ public class PdfExtractor implements ImagingConstants, TableConstants {
 		checkException(pf);
 		
 		//	put PDF words into images
-		spm.setStep("Generating page images");
+		phases.setStep("generatePageImages", "Generating page images");
 		spm.setBaseProgress(50);
 		spm.setProgress(0);
 		spm.setMaxProgress(70);
@@ -2985,7 +3331,7 @@ public class PdfExtractor implements ImagingConstants, TableConstants {
 					//	order by increasing render order number
 					Collections.sort(pageObjects);
 					
-					//	render them all in a single loop
+					//	render them all in a single loop (in parallel tiles for large pages)
 					pageImages[p] = new BufferedImage(pageBox.getWidth(), pageBox.getHeight(), BufferedImage.TYPE_INT_ARGB);
 					Graphics2D piGr = pageImages[p].createGraphics();
 					piGr.setColor(Color.WHITE);
@@ -2993,215 +3339,9 @@ public class PdfExtractor implements ImagingConstants, TableConstants {
 					piGr.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
 					if (pageBackgroundImages[p] != null)
 						piGr.drawImage(pageBackgroundImages[p], 0, 0, pageImages[p].getWidth(), pageImages[p].getHeight(), null);
-					for (int o = 0; o < pageObjects.size(); o++) {
-						PObject po = ((PObject) pageObjects.get(o));
-						if (PdfExtractorTest.aimAtPage != -1)
-							System.out.println("Rendering " + po);
-						
-						//	TODO use rendering implementation of ImWord here
-						if (po instanceof PWord) {
-							PWord pw = ((PWord) po);
-							
-							//	skip over water marks (all too faint words that do not lie in image or graphics)
-							if ((pWatermarkWords[p] != null) && pWatermarkWords[p].contains(pw)) {
-								if (PdfExtractorTest.aimAtPage != -1)
-									System.out.println(" ==> skipped as too faint");
-								continue;
-							}
-							
-							//	convert bounds, as PDF Y coordinate is bottom-up, whereas Java, JavaScript, etc. Y coordinate is top-down
-							BoundingBox wb = getBoundingBox(pw.bounds, pData[p].pdfPageContentBox, magnification, pData[p].rotate);
-							if (PdfExtractorTest.aimAtPage != -1)
-								System.out.println(" - " + wb + " in page");
-							
-							//	prepare color, observe background luminosity if we're inside an image or graphics (and in bounds)
-							Color color = ((PdfExtractorTest.aimAtPage == -1) ? pw.color : ((pw.color == Color.RED) ? Color.RED : Color.GREEN));
-							piGr.setColor(color);
-							
-							//	prepare font
-							int fontStyle = Font.PLAIN;
-							if (pw.bold)
-								fontStyle = (fontStyle | Font.BOLD);
-							if (pw.italics)
-								fontStyle = (fontStyle | Font.ITALIC);
-							Font rf = getFont(pw.font.name, fontStyle, pw.serif, pw.monospaced, Math.round(((float) pw.fontSize) * magnification));
-							piGr.setFont(rf);
-							
-							//	adjust word size and position
-							AffineTransform preAt = piGr.getTransform();
-							FontRenderContext wfrc = new FontRenderContext(preAt, true, true);
-							LineMetrics wlm = rf.getLineMetrics(pw.str, wfrc);
-							TextLayout wtl = new TextLayout(pw.str, rf, wfrc);
-							piGr.translate(wb.left, wb.bottom);
-							float leftShift = ((float) -wtl.getBounds().getMinX());
-							double hScale = 1;
-							
-							//	rotate and scale word as required
-							if (pw.fontDirection == PWord.LEFT_RIGHT_FONT_DIRECTION) {
-								if (pw.italics)
-									hScale = (((double) wb.getWidth()) / wtl.getBounds().getWidth());
-								else {
-									hScale = (((double) wb.getWidth()) / wtl.getAdvance());
-									leftShift = 0;
-								}
-								piGr.scale(hScale, 1);
-							}
-							else if (pw.fontDirection == PWord.BOTTOM_UP_FONT_DIRECTION) {
-								piGr.rotate((-Math.PI / 2), (((float) wb.getWidth()) / 2), -(((float) wb.getWidth()) / 2));
-								if (pw.italics)
-									hScale = (((double) wb.getHeight()) / wtl.getBounds().getWidth());
-								else {
-									hScale = (((double) wb.getHeight()) / wtl.getAdvance());
-									leftShift = 0;
-								}
-								piGr.scale(1, hScale);
-							}
-							else if (pw.fontDirection == PWord.TOP_DOWN_FONT_DIRECTION) {
-								piGr.rotate((Math.PI / 2), (((float) wb.getHeight()) / 2), -(((float) wb.getHeight()) / 2));
-								if (pw.italics)
-									hScale = (((double) wb.getHeight()) / wtl.getBounds().getWidth());
-								else {
-									hScale = (((double) wb.getHeight()) / wtl.getAdvance());
-									leftShift = 0;
-								}
-								piGr.scale(1, hScale);
-							}
-							//	TODO_not observe upside-down font direction ==> upside-down words should only occur in bottom-up or top-down blocks, and those are flipped to bottom-up or top-down by now
-							
-							//	render word, finally ...
-							if (PdfExtractorTest.aimAtPage != -1)
-								System.out.println("Rendering " + pw.str + ((pw.str.length() == 1) ? (" " + Integer.toString(((int) pw.str.charAt(0)), 16)) : "") + ", hScale is " + hScale);
-							try {
-								piGr.drawGlyphVector(rf.createGlyphVector(wfrc, pw.str), leftShift, (pw.font.hasDescent ? -Math.round(wlm.getDescent()) : 0));
-							} catch (InternalError ie) {}
-							
-							//	reset graphics
-							piGr.setTransform(preAt);
-						}
-						
-						//	render figure
-						else if (po instanceof PFigure) {
-							PFigure pf = ((PFigure) po);
-							
-							//	convert bounds, as PDF Y coordinate is bottom-up, whereas Java, JavaScript, etc. Y coordinate is top-down
-							BoundingBox fb = getBoundingBox(pf.bounds, pData[p].pdfPageContentBox, magnification, pData[p].rotate);
-							if (PdfExtractorTest.aimAtPage != -1) {
-								System.out.println(" - bounds are " + pf.bounds);
-								System.out.println(" - " + fb + " in page");
-							}
-							
-							//	load and render figure image
-							ImSupplement.Figure figureSupplement = ((ImSupplement.Figure) doc.getSupplement((String) pFigureSupplementIDs[p].get(pf)));
-							if (figureSupplement != null) try {
-								BufferedImage fbi = ImageIO.read(figureSupplement.getInputStream());
-								Shape preClip = piGr.getClip();
-								AffineTransform preAt = piGr.getTransform();
-								Composite preComp = piGr.getComposite();
-								
-								//	use white-neutral blend mode composite for mask images
-								Composite maskComp = null;
-								if ((pf.refOrData instanceof PStream) && ((PStream) pf.refOrData).params.containsKey("ImageMask"))
-									maskComp = BlendComposite.getInstance("Multiply");
-								
-								//	observe clipping
-								if (pf.clipPaths != null) {
-									BoundingBox cb = getBoundingBox(pf.visibleBounds, pData[p].pdfPageContentBox, magnification, pData[p].rotate);
-									piGr.clipRect(cb.left, cb.top, cb.getWidth(), cb.getHeight());
-									if (PdfExtractorTest.aimAtPage != -1) {
-										System.out.println(" - clip bounds are " + pf.visibleBounds);
-										System.out.println(" - clipped to " + cb + " in page");
-									}
-								}
-								
-								//	render image
-								piGr.translate(fb.left, fb.top);
-								if (maskComp != null)
-									piGr.setComposite(maskComp);
-								piGr.drawImage(fbi, 0, 0, fb.getWidth(), fb.getHeight(), null);
-								
-								//	reset graphics
-								piGr.setComposite(preComp);
-								piGr.setTransform(preAt);
-								piGr.setClip(preClip);
-							}
-							catch (RuntimeException re) {
-								System.out.println("Error rendering figure at " + figureSupplement.getBounds() + ": " + re.getMessage());
-								re.printStackTrace(System.out);
-							}
-						}
-						
-						//	render path (safe for what we skipped above, i.e., out of page paths, bright on white paths, etc.)
-						else if (po instanceof PPath) {
-							PPath pp = ((PPath) po);
-							if (PdfExtractorTest.aimAtPage != -1) {
-								BoundingBox pb = getBoundingBox(pp.getBounds(), pData[p].pdfPageContentBox, magnification, pData[p].rotate);
-								System.out.println(" - " + pb + " in page");
-							}
-							
-							Shape preClip = piGr.getClip();
-							AffineTransform preAt = piGr.getTransform();
-							Composite preComp = piGr.getComposite();
-							Color preColor = piGr.getColor();
-							Stroke preStroke = piGr.getStroke();
-							
-							//	observe clipping (we need this despite all sanitization, as some paths draw all over and show only partially)
-							if (pp.clipPaths != null) {
-								BoundingBox cb = getBoundingBox(pp.visibleBounds, pData[p].pdfPageContentBox, magnification, pData[p].rotate);
-								piGr.clipRect(cb.left, cb.top, cb.getWidth(), cb.getHeight());
-								if (PdfExtractorTest.aimAtPage != -1)
-									System.out.println(" - clipped to " + cb + " in page");
-							}
-							
-							//	adjust graphics (account for size and position differences between page box and page content box, magnification, and switch of top and bottom)
-							piGr.translate((-pData[p].pdfPageContentBox.x * magnification), (pData[p].pdfPageContentBox.y * magnification));
-							piGr.scale(magnification, -magnification);
-							if (pp.blendMode != null)
-								piGr.setComposite(pp.blendMode);
-							Stroke stroke = null;
-							if (pp.strokeColor != null) {
-								float[] dashPattern = null;
-								if (pp.dashPattern != null) {
-									dashPattern = new float[pp.dashPattern.size()];
-									boolean allZeroDashes = true;
-									for (int e = 0; e < pp.dashPattern.size(); e++) {
-										dashPattern[e] = ((Number) pp.dashPattern.get(e)).floatValue();
-										allZeroDashes = (allZeroDashes && (dashPattern[e] == 0));
-									}
-									if (allZeroDashes)
-										dashPattern = null;
-								}
-								stroke = new BasicStroke(pp.lineWidth, pp.lineCapStyle, pp.lineJointStyle, ((pp.miterLimit < 1) ? 1.0f : pp.miterLimit), dashPattern, pp.dashPatternPhase);
-							}
-							
-							//	render path
-							Path2D path = new Path2D.Float();
-							PSubPath[] psps = pp.getSubPaths();
-							for (int sp = 0; sp < psps.length; sp++) {
-								Path2D subPath = psps[sp].getPath();
-								path.append(subPath, false);
-							}
-							if (pp.fillColor != null) {
-								piGr.setColor(pp.fillColor); // TODO track remaining source of MAGENTA fallback !!!
-								piGr.fill(path);
-								if (PdfExtractorTest.aimAtPage != -1)
-									System.out.println(" - filled in " + pp.fillColor + " with a=" + pp.fillColor.getAlpha());
-							}
-							if (pp.strokeColor != null) {
-								piGr.setColor(pp.strokeColor);
-								piGr.setStroke(stroke);
-								piGr.draw(path);
-								if (PdfExtractorTest.aimAtPage != -1)
-									System.out.println(" - stroked in " + pp.strokeColor + " with a=" + pp.strokeColor.getAlpha());
-							}
-							
-							//	reset graphics
-							piGr.setStroke(preStroke);
-							piGr.setColor(preColor);
-							piGr.setComposite(preComp);
-							piGr.setTransform(preAt);
-							piGr.setClip(preClip);
-						}
-					}
+					if (useMultipleCores && ((pageImages[p].getWidth() * pageImages[p].getHeight()) > minTiledPageImagePixels))
+						renderPageObjectsTiled(pageImages[p], pageObjects, pData[p], pWatermarkWords[p], pFigureSupplementIDs[p], doc, magnification, spm);
+					else renderPageObjects(piGr, null, pageObjects, pData[p], pWatermarkWords[p], pFigureSupplementIDs[p], doc, null, magnification);
 					
 					//	clean up
 					piGr.dispose();
@@ -3227,6 +3367,7 @@ public class PdfExtractor implements ImagingConstants, TableConstants {
 					pageImages[p] = null;
 			}
 		};
+		pf = phases.timePages(pf);
 		ParallelJobRunner.runParallelFor(pf, ((PdfExtractorTest.aimAtPage < 0) ? 0 : PdfExtractorTest.aimAtPage), ((PdfExtractorTest.aimAtPage < 0) ? pData.length : (PdfExtractorTest.aimAtPage + 1)), (this.useMultipleCores ? -1 : 1));
 		spm.setProgress(100);
 		
@@ -3238,7 +3379,7 @@ public class PdfExtractor implements ImagingConstants, TableConstants {
 			System.gc();
 		
 		//	create pages and add words
-		spm.setStep("Generating pages");
+		phases.setStep("generatePages", "Generating pages");
 		spm.setBaseProgress(70);
 		spm.setProgress(0);
 		spm.setMaxProgress(75);
@@ -3333,6 +3474,7 @@ public class PdfExtractor implements ImagingConstants, TableConstants {
 				}
 			}
 		};
+		pf = phases.timePages(pf);
 		ParallelJobRunner.runParallelFor(pf, ((PdfExtractorTest.aimAtPage < 0) ? 0 : PdfExtractorTest.aimAtPage), ((PdfExtractorTest.aimAtPage < 0) ? pData.length : (PdfExtractorTest.aimAtPage + 1)), (this.useMultipleCores ? -1 : 1));
 		spm.setProgress(100);
 		
@@ -3360,7 +3502,7 @@ public class PdfExtractor implements ImagingConstants, TableConstants {
 		final int titleBannerMaxPage = (coverPageCount + docLayout.getIntProperty("titleBannerMaxPage", -1));
 		
 		//	analyze page structure
-		spm.setStep("Analyzing page structure");
+		phases.setStep("analyzePageStructure", "Analyzing page structure");
 		spm.setBaseProgress(75);
 		spm.setProgress(0);
 		spm.setMaxProgress(98);
@@ -3725,6 +3867,7 @@ public class PdfExtractor implements ImagingConstants, TableConstants {
 				spm.setInfo(" - page done");
 			}
 		};
+		pf = phases.timePages(pf);
 		ParallelJobRunner.runParallelFor(pf, ((PdfExtractorTest.aimAtPage < 0) ? 0 : PdfExtractorTest.aimAtPage), ((PdfExtractorTest.aimAtPage < 0) ? pData.length : (PdfExtractorTest.aimAtPage + 1)), (this.useMultipleCores ? -1 : 1));
 		spm.setProgress(100);
 		
@@ -3735,7 +3878,7 @@ public class PdfExtractor implements ImagingConstants, TableConstants {
 		checkException(pf);
 		
 		//	finalize text stream structure
-		spm.setStep("Analyzing text stream structure");
+		phases.setStep("analyzeTextStreams", "Analyzing text stream structure");
 		spm.setBaseProgress(98);
 		spm.setProgress(0);
 		spm.setMaxProgress(100);
@@ -3746,6 +3889,7 @@ public class PdfExtractor implements ImagingConstants, TableConstants {
 				lastWord = addTextStreamStructure(pages[p], lastWord, pageFirstWords[p]);
 		}
 		spm.setProgress(100);
+		phases.endPhase();
 		spm.setInfo(" - word sequence analysis done");
 	}
 	
@@ -4103,6 +4247,7 @@ public class PdfExtractor implements ImagingConstants, TableConstants {
 				if ((c < pageContentBox.left) || (c >= pageContentBox.right) || (r < pageContentBox.top) || (r >= pageContentBox.bottom))
 					apiBrightness[c][r] = ((byte) 127);
 			}
+		api.brightnessEdited();
 		
 		//	collect raw bounds of all figures (excluding line figures, though)
 		ArrayList pageFigureBounds = new ArrayList();
@@ -4817,6 +4962,7 @@ public class PdfExtractor implements ImagingConstants, TableConstants {
 		
 		//	flood fill outside area with marker
 		Imaging.floodFill(renderingBrightness, 0, 0, ((byte) 127), ((byte) -1));
+		aRendering.brightnessEdited();
 //		for (int c = 0; c < renderingBrightness.length; c++)
 //			for (int r = 0; r < renderingBrightness[c].length; r++) {
 //				if (renderingBrightness[c][r] == -1)
@@ -8488,6 +8634,281 @@ public class PdfExtractor implements ImagingConstants, TableConstants {
 	private static Font monospacedFont = new Font((USE_FREE_FONTS ? "FreeMono" : "Monospaced"), Font.PLAIN, 1);
 	
 	private static Map fontCache = Collections.synchronizedMap(new HashMap(5));
+	/* page images with more pixels than this get rendered in tiles in parallel
+	 * (some 16 mega pixels, e.g. A3 at 300 DPI, or large maps and foldouts) */
+	private static final int minTiledPageImagePixels = (4096 * 4096);
+	
+	/* number of pixels to render in each tile (tiles are full width stripes) */
+	private static final int pageImageTilePixels = (1024 * 1024);
+	
+	private void renderPageObjectsTiled(final BufferedImage pageImage, final ArrayList pageObjects, final PPageData pData, final Set pWatermarkWords, final Map pFigureSupplementIDs, final ImDocument doc, final float magnification, ProgressMonitor spm) throws IOException {
+		final int tileHeight = Math.max(64, (pageImageTilePixels / pageImage.getWidth()));
+		final int tileCount = ((pageImage.getHeight() + tileHeight - 1) / tileHeight);
+		spm.setInfo(" - rendering page image in " + tileCount + " tiles of " + pageImage.getWidth() + " x " + tileHeight);
+		
+		//	share decoded figure images between tiles
+		final Map figureImages = Collections.synchronizedMap(new HashMap());
+		
+		//	render tiles, each into its own part of the page image raster
+		ParallelFor pf = new ParallelFor() {
+			public void doFor(int t) throws Exception {
+				int tileTop = (t * tileHeight);
+				int tileBottom = Math.min((tileTop + tileHeight), pageImage.getHeight());
+				BufferedImage tileImage = pageImage.getSubimage(0, tileTop, pageImage.getWidth(), (tileBottom - tileTop));
+				Graphics2D tiGr = tileImage.createGraphics();
+				tiGr.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+				tiGr.translate(0, -tileTop);
+				renderPageObjects(tiGr, new BoundingBox(0, pageImage.getWidth(), tileTop, tileBottom), pageObjects, pData, pWatermarkWords, pFigureSupplementIDs, doc, figureImages, magnification);
+				tiGr.dispose();
+			}
+		};
+		ParallelJobRunner.runParallelFor(pf, tileCount, -1);
+		checkException(pf);
+	}
+	
+	private static boolean overlapsTile(BoundingBox bb, int margin, BoundingBox tileBox) {
+		if ((bb.right + margin) <= tileBox.left)
+			return false;
+		if (tileBox.right <= (bb.left - margin))
+			return false;
+		if ((bb.bottom + margin) <= tileBox.top)
+			return false;
+		if (tileBox.bottom <= (bb.top - margin))
+			return false;
+		return true;
+	}
+	
+	private static BufferedImage getFigureImage(ImSupplement.Figure figureSupplement, Map figureImages) throws IOException {
+		if (figureImages == null)
+			return ImageIO.read(figureSupplement.getInputStream());
+		synchronized (figureSupplement) {
+			BufferedImage fbi = ((BufferedImage) figureImages.get(figureSupplement.getId()));
+			if (fbi == null) {
+				fbi = ImageIO.read(figureSupplement.getInputStream());
+				figureImages.put(figureSupplement.getId(), fbi);
+			}
+			return fbi;
+		}
+	}
+	
+	private void renderPageObjects(Graphics2D piGr, BoundingBox tileBox, ArrayList pageObjects, PPageData pData, Set pWatermarkWords, Map pFigureSupplementIDs, ImDocument doc, Map figureImages, float magnification) throws IOException {
+		for (int o = 0; o < pageObjects.size(); o++) {
+			PObject po = ((PObject) pageObjects.get(o));
+			if (PdfExtractorTest.aimAtPage != -1)
+				System.out.println("Rendering " + po);
+			
+			//	TODO use rendering implementation of ImWord here
+			if (po instanceof PWord) {
+				PWord pw = ((PWord) po);
+				
+				//	skip over water marks (all too faint words that do not lie in image or graphics)
+				if ((pWatermarkWords != null) && pWatermarkWords.contains(pw)) {
+					if (PdfExtractorTest.aimAtPage != -1)
+						System.out.println(" ==> skipped as too faint");
+					continue;
+				}
+				
+				//	convert bounds, as PDF Y coordinate is bottom-up, whereas Java, JavaScript, etc. Y coordinate is top-down
+				BoundingBox wb = getBoundingBox(pw.bounds, pData.pdfPageContentBox, magnification, pData.rotate);
+				if ((tileBox != null) && !overlapsTile(wb, wb.getHeight(), tileBox))
+					continue;
+				if (PdfExtractorTest.aimAtPage != -1)
+					System.out.println(" - " + wb + " in page");
+				
+				//	prepare color, observe background luminosity if we're inside an image or graphics (and in bounds)
+				Color color = ((PdfExtractorTest.aimAtPage == -1) ? pw.color : ((pw.color == Color.RED) ? Color.RED : Color.GREEN));
+				piGr.setColor(color);
+				
+				//	prepare font
+				int fontStyle = Font.PLAIN;
+				if (pw.bold)
+					fontStyle = (fontStyle | Font.BOLD);
+				if (pw.italics)
+					fontStyle = (fontStyle | Font.ITALIC);
+				Font rf = getFont(pw.font.name, fontStyle, pw.serif, pw.monospaced, Math.round(((float) pw.fontSize) * magnification));
+				piGr.setFont(rf);
+				
+				//	adjust word size and position
+				AffineTransform preAt = piGr.getTransform();
+				FontRenderContext wfrc = new FontRenderContext(preAt, true, true);
+				LineMetrics wlm = rf.getLineMetrics(pw.str, wfrc);
+				TextLayout wtl = new TextLayout(pw.str, rf, wfrc);
+				piGr.translate(wb.left, wb.bottom);
+				float leftShift = ((float) -wtl.getBounds().getMinX());
+				double hScale = 1;
+				
+				//	rotate and scale word as required
+				if (pw.fontDirection == PWord.LEFT_RIGHT_FONT_DIRECTION) {
+					if (pw.italics)
+						hScale = (((double) wb.getWidth()) / wtl.getBounds().getWidth());
+					else {
+						hScale = (((double) wb.getWidth()) / wtl.getAdvance());
+						leftShift = 0;
+					}
+					piGr.scale(hScale, 1);
+				}
+				else if (pw.fontDirection == PWord.BOTTOM_UP_FONT_DIRECTION) {
+					piGr.rotate((-Math.PI / 2), (((float) wb.getWidth()) / 2), -(((float) wb.getWidth()) / 2));
+					if (pw.italics)
+						hScale = (((double) wb.getHeight()) / wtl.getBounds().getWidth());
+					else {
+						hScale = (((double) wb.getHeight()) / wtl.getAdvance());
+						leftShift = 0;
+					}
+					piGr.scale(1, hScale);
+				}
+				else if (pw.fontDirection == PWord.TOP_DOWN_FONT_DIRECTION) {
+					piGr.rotate((Math.PI / 2), (((float) wb.getHeight()) / 2), -(((float) wb.getHeight()) / 2));
+					if (pw.italics)
+						hScale = (((double) wb.getHeight()) / wtl.getBounds().getWidth());
+					else {
+						hScale = (((double) wb.getHeight()) / wtl.getAdvance());
+						leftShift = 0;
+					}
+					piGr.scale(1, hScale);
+				}
+				//	TODO_not observe upside-down font direction ==> upside-down words should only occur in bottom-up or top-down blocks, and those are flipped to bottom-up or top-down by now
+				
+				//	render word, finally ...
+				if (PdfExtractorTest.aimAtPage != -1)
+					System.out.println("Rendering " + pw.str + ((pw.str.length() == 1) ? (" " + Integer.toString(((int) pw.str.charAt(0)), 16)) : "") + ", hScale is " + hScale);
+				try {
+					piGr.drawGlyphVector(rf.createGlyphVector(wfrc, pw.str), leftShift, (pw.font.hasDescent ? -Math.round(wlm.getDescent()) : 0));
+				} catch (InternalError ie) {}
+				
+				//	reset graphics
+				piGr.setTransform(preAt);
+			}
+			
+			//	render figure
+			else if (po instanceof PFigure) {
+				PFigure pf = ((PFigure) po);
+				
+				//	convert bounds, as PDF Y coordinate is bottom-up, whereas Java, JavaScript, etc. Y coordinate is top-down
+				BoundingBox fb = getBoundingBox(pf.bounds, pData.pdfPageContentBox, magnification, pData.rotate);
+				if ((tileBox != null) && !overlapsTile(fb, 1, tileBox))
+					continue;
+				if (PdfExtractorTest.aimAtPage != -1) {
+					System.out.println(" - bounds are " + pf.bounds);
+					System.out.println(" - " + fb + " in page");
+				}
+				
+				//	load and render figure image
+				ImSupplement.Figure figureSupplement = ((ImSupplement.Figure) doc.getSupplement((String) pFigureSupplementIDs.get(pf)));
+				if (figureSupplement != null) try {
+					BufferedImage fbi = getFigureImage(figureSupplement, figureImages);
+					Shape preClip = piGr.getClip();
+					AffineTransform preAt = piGr.getTransform();
+					Composite preComp = piGr.getComposite();
+					
+					//	use white-neutral blend mode composite for mask images
+					Composite maskComp = null;
+					if ((pf.refOrData instanceof PStream) && ((PStream) pf.refOrData).params.containsKey("ImageMask"))
+						maskComp = BlendComposite.getInstance("Multiply");
+					
+					//	observe clipping
+					if (pf.clipPaths != null) {
+						BoundingBox cb = getBoundingBox(pf.visibleBounds, pData.pdfPageContentBox, magnification, pData.rotate);
+						piGr.clipRect(cb.left, cb.top, cb.getWidth(), cb.getHeight());
+						if (PdfExtractorTest.aimAtPage != -1) {
+							System.out.println(" - clip bounds are " + pf.visibleBounds);
+							System.out.println(" - clipped to " + cb + " in page");
+						}
+					}
+					
+					//	render image
+					piGr.translate(fb.left, fb.top);
+					if (maskComp != null)
+						piGr.setComposite(maskComp);
+					piGr.drawImage(fbi, 0, 0, fb.getWidth(), fb.getHeight(), null);
+					
+					//	reset graphics
+					piGr.setComposite(preComp);
+					piGr.setTransform(preAt);
+					piGr.setClip(preClip);
+				}
+				catch (RuntimeException re) {
+					System.out.println("Error rendering figure at " + figureSupplement.getBounds() + ": " + re.getMessage());
+					re.printStackTrace(System.out);
+				}
+			}
+			
+			//	render path (safe for what we skipped above, i.e., out of page paths, bright on white paths, etc.)
+			else if (po instanceof PPath) {
+				PPath pp = ((PPath) po);
+				if ((tileBox != null) && !overlapsTile(getBoundingBox(pp.getBounds(), pData.pdfPageContentBox, magnification, pData.rotate), (((int) Math.ceil(pp.lineWidth * magnification)) + 2), tileBox))
+					continue;
+				if (PdfExtractorTest.aimAtPage != -1) {
+					BoundingBox pb = getBoundingBox(pp.getBounds(), pData.pdfPageContentBox, magnification, pData.rotate);
+					System.out.println(" - " + pb + " in page");
+				}
+				
+				Shape preClip = piGr.getClip();
+				AffineTransform preAt = piGr.getTransform();
+				Composite preComp = piGr.getComposite();
+				Color preColor = piGr.getColor();
+				Stroke preStroke = piGr.getStroke();
+				
+				//	observe clipping (we need this despite all sanitization, as some paths draw all over and show only partially)
+				if (pp.clipPaths != null) {
+					BoundingBox cb = getBoundingBox(pp.visibleBounds, pData.pdfPageContentBox, magnification, pData.rotate);
+					piGr.clipRect(cb.left, cb.top, cb.getWidth(), cb.getHeight());
+					if (PdfExtractorTest.aimAtPage != -1)
+						System.out.println(" - clipped to " + cb + " in page");
+				}
+				
+				//	adjust graphics (account for size and position differences between page box and page content box, magnification, and switch of top and bottom)
+				piGr.translate((-pData.pdfPageContentBox.x * magnification), (pData.pdfPageContentBox.y * magnification));
+				piGr.scale(magnification, -magnification);
+				if (pp.blendMode != null)
+					piGr.setComposite(pp.blendMode);
+				Stroke stroke = null;
+				if (pp.strokeColor != null) {
+					float[] dashPattern = null;
+					if (pp.dashPattern != null) {
+						dashPattern = new float[pp.dashPattern.size()];
+						boolean allZeroDashes = true;
+						for (int e = 0; e < pp.dashPattern.size(); e++) {
+							dashPattern[e] = ((Number) pp.dashPattern.get(e)).floatValue();
+							allZeroDashes = (allZeroDashes && (dashPattern[e] == 0));
+						}
+						if (allZeroDashes)
+							dashPattern = null;
+					}
+					stroke = new BasicStroke(pp.lineWidth, pp.lineCapStyle, pp.lineJointStyle, ((pp.miterLimit < 1) ? 1.0f : pp.miterLimit), dashPattern, pp.dashPatternPhase);
+				}
+				
+				//	render path
+				Path2D path = new Path2D.Float();
+				PSubPath[] psps = pp.getSubPaths();
+				for (int sp = 0; sp < psps.length; sp++) {
+					Path2D subPath = psps[sp].getPath();
+					path.append(subPath, false);
+				}
+				if (pp.fillColor != null) {
+					piGr.setColor(pp.fillColor); // TODO track remaining source of MAGENTA fallback !!!
+					piGr.fill(path);
+					if (PdfExtractorTest.aimAtPage != -1)
+						System.out.println(" - filled in " + pp.fillColor + " with a=" + pp.fillColor.getAlpha());
+				}
+				if (pp.strokeColor != null) {
+					piGr.setColor(pp.strokeColor);
+					piGr.setStroke(stroke);
+					piGr.draw(path);
+					if (PdfExtractorTest.aimAtPage != -1)
+						System.out.println(" - stroked in " + pp.strokeColor + " with a=" + pp.strokeColor.getAlpha());
+				}
+				
+				//	reset graphics
+				piGr.setStroke(preStroke);
+				piGr.setColor(preColor);
+				piGr.setComposite(preComp);
+				piGr.setTransform(preAt);
+				piGr.setClip(preClip);
+			}
+		}
+	}
+	
 	private static Font getFont(String name, int style, boolean serif, boolean monospaced, int size) {
 		String fontKey = (style + " " + (serif ? "serif" : "sans") + " " + size);
 		if (PdfExtractorTest.aimAtPage != -1)
@@ -10050,7 +10471,7 @@ public class PdfExtractor implements ImagingConstants, TableConstants {
 		PageTree pageTree = catalog.getPageTree();
 		
 		//	parse PDF
-		HashMap objects = PdfParser.getObjects(pdfBytes, pdfDoc.getSecurityManager());
+		HashMap objects = PdfParser.getObjects(pdfBytes, pdfDoc.getSecurityManager(), this.useMultipleCores);
 		
 		//	decrypt streams and strings
 		PdfParser.decryptObjects(objects, pdfDoc.getSecurityManager());
@@ -10151,6 +10572,10 @@ public class PdfExtractor implements ImagingConstants, TableConstants {
 		if (pData.length > Runtime.getRuntime().availableProcessors())
 			pageImageCache = null;
 		
+		//	page images memory mapped anyway, no use holding them on the heap as well
+		else if (this.imageStore instanceof MappedPageImageStore)
+			pageImageCache = null;
+		
 		//	cache page images (only binary and gray scale, and only up to 300 DPI, as memory consumption gets too high beyond that)
 		else pageImageCache = Collections.synchronizedMap(new HashMap() {
 			public Object put(Object cacheKey, Object pageImage) {
@@ -10165,8 +10590,11 @@ public class PdfExtractor implements ImagingConstants, TableConstants {
 			}
 		});
 		
+		//	prepare recording phase timings
+		PhaseTimer phases = new PhaseTimer("PdfExtractor.imagePdf", spm);
+		
 		//	load pages
-		spm.setStep("Loading document page images");
+		phases.setStep("loadPageImages", "Loading document page images");
 		spm.setBaseProgress(0);
 		spm.setProgress(0);
 		spm.setMaxProgress(30);
@@ -10176,21 +10604,21 @@ public class PdfExtractor implements ImagingConstants, TableConstants {
 		Map pageRegionCache = Collections.synchronizedMap(new HashMap());
 		
 		//	fill in blocks and do OCR
-		spm.setStep("Extracting blocks & " + (useEmbeddedOCR ? "embedded " : "doing ") + "OCR");
+		phases.setStep("extractBlocksAndOcr", "Extracting blocks & " + (useEmbeddedOCR ? "embedded " : "doing ") + "OCR");
 		spm.setBaseProgress(30);
 		spm.setProgress(0);
 		spm.setMaxProgress(70);
 		this.addImagePdfPageBlocks(doc, (useEmbeddedOCR ? pData : null), embeddedOcrMode, renderEmbeddedOcr, new CascadingProgressMonitor(spm), pageImageCache, pageRegionCache);
 		
 		//	analyze block structure and layout
-		spm.setStep("Analyzing page text structure");
+		phases.setStep("analyzePageTextStructure", "Analyzing page text structure");
 		spm.setBaseProgress(70);
 		spm.setProgress(0);
 		spm.setMaxProgress(90);
 		this.addImagePdfPageLayout(doc, new CascadingProgressMonitor(spm), pageImageCache, pageRegionCache);
 		
 		//	analyze font metrics across whole document (unless embedded OCR already gives us that)
-		spm.setStep("Analyzing font metrics");
+		phases.setStep("analyzeFontMetrics", "Analyzing font metrics");
 		spm.setBaseProgress(90);
 		spm.setProgress(0);
 		spm.setMaxProgress(100);
@@ -10250,6 +10678,7 @@ public class PdfExtractor implements ImagingConstants, TableConstants {
 //		if (analyzeFontMetrics) // TODO revisit this with HBMW !!!
 //			WordImageAnalysis.analyzeFontMetrics(doc, this.useMultipleCores, new CascadingProgressMonitor(spm));
 		WordImageAnalysis.analyzeFontMetrics(doc, this.useMultipleCores, new CascadingProgressMonitor(spm), assessBold, assessItalics, measureFontSize);
+		phases.endPhase();
 		
 		//	finally ...
 		return pData;
@@ -10366,6 +10795,7 @@ public class PdfExtractor implements ImagingConstants, TableConstants {
 				Imaging.cleanUpCache(pi.image.hashCode() + "-");
 			}
 		};
+		pf = PhaseTimer.timePages("PdfExtractor.imagePageLayout.page", pf);
 		ParallelJobRunner.runParallelFor(pf, 0, pages.length, (this.useMultipleCores ? -1 : 1));
 		spm.setProgress(100);
 		
@@ -10675,6 +11105,10 @@ public class PdfExtractor implements ImagingConstants, TableConstants {
 		if (pdfDoc.getPageTree().getNumberOfPages() > Runtime.getRuntime().availableProcessors())
 			pageImageCache = null;
 		
+		//	page images memory mapped anyway, no use holding them on the heap as well
+		else if (this.imageStore instanceof MappedPageImageStore)
+			pageImageCache = null;
+		
 		//	cache page images (only binary and gray scale, and only up to 300 DPI, as memory consumption gets too high beyond that)
 		else pageImageCache = Collections.synchronizedMap(new HashMap() {
 			public Object put(Object cacheKey, Object pageImage) {
@@ -10697,7 +11131,7 @@ public class PdfExtractor implements ImagingConstants, TableConstants {
 		PageTree pageTree = catalog.getPageTree();
 		
 		//	parse PDF
-		HashMap objects = PdfParser.getObjects(pdfBytes, pdfDoc.getSecurityManager());
+		HashMap objects = PdfParser.getObjects(pdfBytes, pdfDoc.getSecurityManager(), this.useMultipleCores);
 		
 		//	decrypt streams and strings
 		PdfParser.decryptObjects(objects, pdfDoc.getSecurityManager());
@@ -10705,8 +11139,11 @@ public class PdfExtractor implements ImagingConstants, TableConstants {
 		//	get basic page data (takes progress to 30%)
 		PPageData[] pData = this.getPdfPageData(doc, (getFigures | (useEmbeddedOCR ? getWords : 0)), PdfFontDecoder.NO_DECODING, true, pageIDs, pageTree, objects, spm);
 		
+		//	prepare recording phase timings
+		PhaseTimer phases = new PhaseTimer("PdfExtractor.imagePdfBlocks", pm);
+		
 		//	load pages
-		pm.setStep("Loading document page images");
+		phases.setStep("loadPageImages", "Loading document page images");
 		pm.setBaseProgress(0);
 		pm.setProgress(0);
 		pm.setMaxProgress(40);
@@ -10716,12 +11153,13 @@ public class PdfExtractor implements ImagingConstants, TableConstants {
 		ImSupplement.Source.createSource(doc, "application/pdf", pdfBytes);
 		
 		//	fill in blocks and do OCR
-		pm.setStep("Extracting blocks & " + (useEmbeddedOCR ? "embedded " : "doing ") + "OCR");
+		phases.setStep("extractBlocksAndOcr", "Extracting blocks & " + (useEmbeddedOCR ? "embedded " : "doing ") + "OCR");
 		pm.setBaseProgress(40);
 		pm.setProgress(0);
 		pm.setMaxProgress(100);
 //		this.addImagePdfPageBlocks(doc, (useEmbeddedOCR ? pData : null), fixEmbeddedOCR, spm, pageImageCache, null);
 		this.addImagePdfPageBlocks(doc, (useEmbeddedOCR ? pData : null), embeddedOcrMode, isDjVu, spm, pageImageCache, null);
+		phases.endPhase();
 		
 		//	finally ...
 		return doc;
@@ -10963,6 +11401,7 @@ TODO Perform OCR adjustment on text mask image alone if scans layered:
 								apiBrightness[c][r] = 0;
 						}
 					}
+					api.brightnessEdited();
 					
 					//	obtain higher level page structure
 					//	TODO use background and text images here if available
@@ -11039,6 +11478,7 @@ TODO Perform OCR adjustment on text mask image alone if scans layered:
 				Imaging.cleanUpCache(pi.image.hashCode() + "-");
 			}
 		};
+		pf = PhaseTimer.timePages("PdfExtractor.imagePageBlocks.page", pf);
 		ParallelJobRunner.runParallelFor(pf, 0, pages.length, (this.useMultipleCores ? -1 : 1));
 		spm.setProgress(100);
 		
@@ -11379,12 +11819,16 @@ TODO Perform OCR adjustment on text mask image alone if scans layered:
 		boolean useFixedDpi = ((flags & USE_FIXED_RESOLUTION) != 0);
 		int fixedDpi = (useFixedDpi ? ((flags >>> 20) & 0x0FFF) : -1);
 		
+		//	prepare recording phase timings
+		PhaseTimer phases = new PhaseTimer("PdfExtractor.imagePdfPages", pm);
+		
 		//	load pages
-		pm.setStep("Loading document page images");
+		phases.setStep("loadPageImages", "Loading document page images");
 		pm.setBaseProgress(0);
 		pm.setProgress(0);
 		pm.setMaxProgress(100);
 		this.addImagePdfPages(doc, pdfDoc, pdfBytes, metaPages, singlePages, doublePages, fixedDpi, scaleFactor, pageIDs, enhanceScanFlags, false, false, pm, null);
+		phases.endPhase();
 		
 		//	preserve source PDF in supplement
 		ImSupplement.Source.createSource(doc, "application/pdf", pdfBytes);
@@ -11431,7 +11875,7 @@ TODO Perform OCR adjustment on text mask image alone if scans layered:
 		PageTree pageTree = catalog.getPageTree();
 		
 		//	parse PDF
-		HashMap objects = PdfParser.getObjects(pdfBytes, pdfDoc.getSecurityManager());
+		HashMap objects = PdfParser.getObjects(pdfBytes, pdfDoc.getSecurityManager(), this.useMultipleCores);
 		
 		//	decrypt streams and strings
 		PdfParser.decryptObjects(objects, pdfDoc.getSecurityManager());
@@ -11466,8 +11910,11 @@ TODO Perform OCR adjustment on text mask image alone if scans layered:
 		//	display figures if testing
 		final ImageDisplayDialog idd = ((DEBUG_EXTRACT_FIGURES && (PdfExtractorTest.aimAtPage >= 0)) ? new ImageDisplayDialog("Images in Page " + PdfExtractorTest.aimAtPage) : null);
 		
+		//	prepare recording phase timings
+		PhaseTimer phases = new PhaseTimer("PdfExtractor.imagePages", spm);
+		
 		//	extract page objects
-		spm.setStep("Extracting page figures");
+		phases.setStep("extractFigures", "Extracting page figures");
 		spm.setBaseProgress(5);
 		spm.setProgress(0);
 		spm.setMaxProgress(13);
@@ -11589,6 +12036,7 @@ TODO Perform OCR adjustment on text mask image alone if scans layered:
 //				}
 //			}
 		};
+		pf = phases.timePages(pf);
 		ParallelJobRunner.runParallelFor(pf, ((PdfExtractorTest.aimAtPage < 0) ? 0 : PdfExtractorTest.aimAtPage), ((PdfExtractorTest.aimAtPage < 0) ? pData.length : (PdfExtractorTest.aimAtPage + 1)), (this.useMultipleCores ? -1 : 1));
 		spm.setProgress(100);
 		
@@ -11604,7 +12052,7 @@ TODO Perform OCR adjustment on text mask image alone if scans layered:
 		
 		//	assess result
 		//	TODO add method parameter specifying whether or not we have a scan for sure (rather than a generic PDF whose type we're assessing)
-		spm.setStep("Assessing page figures");
+		phases.setStep("assessFigures", "Assessing page figures");
 		spm.setBaseProgress(13);
 		spm.setProgress(0);
 		spm.setMaxProgress(15);
@@ -11667,7 +12115,7 @@ TODO Perform OCR adjustment on text mask image alone if scans layered:
 				filterOffPageWords(pData[p], spm);
 			
 			//	catch word sequences up or down vertical page edges, as well as ones across top or bottom ("Downloaded from ...")
-			spm.setStep("Removing page edge watermarks");
+			phases.setStep("removeEdgeWatermarks", "Removing page edge watermarks");
 			spm.setBaseProgress(15);
 			spm.setProgress(0);
 			spm.setMaxProgress(20);
@@ -11746,7 +12194,8 @@ TODO Perform OCR adjustment on text mask image alone if scans layered:
 			}
 		}
 		
-		//	extract & save page images
+		//	extract & save page images (page steps set per page in there)
+		phases.endPhase();
 		PPageData[] spData;
 		if (doublePages)
 			spData = this.addImagePdfPagesDouble(doc, scaleFactor, enhanceScanFlags, renderEmbeddedOcr, pdfPages, pdfPageBoxes, fixedDpi, sPdfPageBoxes, pData, pageImageParts, noImagePageIDs, objects, pageImageCache, spm);
@@ -12256,6 +12705,7 @@ TODO Perform OCR adjustment on text mask image alone if scans layered:
 				spm.setInfo(" --> page image stored, page bounds are " + pageBoxes[p].toString());
 			}
 		};
+		pf = PhaseTimer.timePages("PdfExtractor.imagePages.importPageImages.page", pf);
 		ParallelJobRunner.runParallelFor(pf, ((PdfExtractorTest.aimAtPage < 0) ? 0 : PdfExtractorTest.aimAtPage), ((PdfExtractorTest.aimAtPage < 0) ? pdfPageBoxes.length : (PdfExtractorTest.aimAtPage + 1)), (this.useMultipleCores ? -1 : 1));
 		spm.setProgress(99);
 		
@@ -12562,6 +13012,7 @@ TODO Perform OCR adjustment on text mask image alone if scans layered:
 				spm.setInfo(" --> double page image halves stored, page bounds are " + pageBoxes[pp * 2].toString() + " and " + pageBoxes[(pp * 2) + 1].toString());
 			}
 		};
+		pf = PhaseTimer.timePages("PdfExtractor.imagePages.importDoublePageImages.page", pf);
 		ParallelJobRunner.runParallelFor(pf, ((PdfExtractorTest.aimAtPage < 0) ? 0 : PdfExtractorTest.aimAtPage), ((PdfExtractorTest.aimAtPage < 0) ? pdfPageBoxes.length : (PdfExtractorTest.aimAtPage + 1)), (this.useMultipleCores ? -1 : 1));
 		spm.setProgress(99);
 		
@@ -13013,6 +13464,55 @@ TODO Perform OCR adjustment on text mask image alone if scans layered:
 		return new PPageImage(pipBi, pip.renderOrderNumber, pip.pdfBounds, null, null);
 	}
 	
+	/**
+	 * Wrapper for a progress monitor that records the duration of each step,
+	 * as well as the duration of the processing of each individual page in
+	 * the step, in <code>ImMetrics</code>. Metrics are named after a fixed
+	 * phase ID rather than the step label shown to users, so they stay the
+	 * same if the label changes. If metrics recording is inactive, this class
+	 * simply forwards steps to the wrapped progress monitor.
+	 * 
+	 * @author sautter
+	 */
+	private static class PhaseTimer {
+		private String metricPrefix;
+		private ProgressMonitor pm;
+		private String phase = null;
+		private long phaseStart = 0;
+		PhaseTimer(String metricPrefix, ProgressMonitor pm) {
+			this.metricPrefix = metricPrefix;
+			this.pm = pm;
+		}
+		void setStep(String phaseId, String step) {
+			this.pm.setStep(step);
+			this.endPhase();
+			this.phaseStart = ImMetrics.startTime();
+			if (this.phaseStart != 0)
+				this.phase = (this.metricPrefix + "." + phaseId);
+		}
+		void endPhase() {
+			if (this.phase != null)
+				ImMetrics.time(this.phase, this.phaseStart);
+			this.phase = null;
+		}
+		ParallelFor timePages(ParallelFor pf) {
+			if (this.phase == null)
+				return pf;
+			return timePages((this.phase + ".page"), pf);
+		}
+		static ParallelFor timePages(final String pagePhase, final ParallelFor pf) {
+			if (!ImMetrics.isActive())
+				return pf;
+			return new ParallelFor() {
+				public void doFor(int p) throws Exception {
+					long pageStart = ImMetrics.startTime();
+					pf.doFor(p);
+					ImMetrics.time(pagePhase, pageStart);
+				}
+			};
+		}
+	}
+	
 	private static void checkException(ParallelFor pf) throws IOException, RuntimeException {
 		Exception error = pf.getException();
 		if (error != null) {
@@ -44,6 +44,8 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.Reader;
 import java.io.StringReader;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -7127,7 +7129,7 @@ FontName12 38//SID
 		double[] monoStyleSimSums = {0, 0, 0, 0};
 		double[] monoStyleSimSumsNs = {0, 0, 0, 0};
 		
-		HashMap matchCharChache = new HashMap();
+		HashMap matchCharChache = charImageCache;
 		
 		//	collect potential small-caps, and best matches for small-caps assessment
 		HashSet smallCapsChars = new HashSet();
@@ -8187,6 +8189,111 @@ FontName12 38//SID
 	
 	private static final boolean FORCE_OCR_DECODING = false;
 	
+	/**
+	 * Size bounded cache for font decoding results that do not depend on any
+	 * individual document, shared across all fonts and documents decoded in
+	 * the current JVM. Beyond the configured maximum number of entries, the
+	 * least recently used ones are evicted. Lookups and hits are counted to
+	 * provide a hit rate for monitoring.
+	 * 
+	 * @author sautter
+	 */
+	static class DecodingCache extends LinkedHashMap {
+		private static final long serialVersionUID = 5236185427139506113L;
+		private final int maxSize;
+		private int lookups = 0;
+		private int hits = 0;
+		DecodingCache(int maxSize) {
+			super(256, 0.75f, true);
+			this.maxSize = maxSize;
+		}
+		public synchronized Object get(Object key) {
+			this.lookups++;
+			Object value = super.get(key);
+			if (value != null)
+				this.hits++;
+			return value;
+		}
+		public synchronized Object put(Object key, Object value) {
+			return super.put(key, value);
+		}
+		public synchronized void clear() {
+			super.clear();
+			this.lookups = 0;
+			this.hits = 0;
+		}
+		protected boolean removeEldestEntry(Map.Entry eldest) {
+			return (this.size() > this.maxSize);
+		}
+		synchronized int getLookups() {
+			return this.lookups;
+		}
+		synchronized int getHits() {
+			return this.hits;
+		}
+		synchronized float getHitRate() {
+			return ((this.lookups == 0) ? 0 : (((float) this.hits) / this.lookups));
+		}
+	}
+	
+	/** cache for comparison characters rendered in the fixed serif, sans-serif, and monospaced fonts */
+	static final DecodingCache charImageCache = new DecodingCache(8192);
+	
+	/** cache for OCR matches of glyph images, keyed by charset, comparison fonts, and glyph image content (many publishers embed the same fonts in document after document) */
+	static final DecodingCache glyphMatchCache = new DecodingCache(4096);
+	
+	private static Object getGlyphMatchKey(CharImage charImage, FontDecoderCharset charSet, String unicodeMappedChars, Font[] serifFonts, Font[] sansFonts, Font[] monoFonts) {
+		MessageDigest md5;
+		try {
+			md5 = MessageDigest.getInstance("MD5");
+		}
+		catch (NoSuchAlgorithmException nsae) {
+			return null; // no caching without hash
+		}
+		byte[][] brightness = charImage.brightness;
+		for (int c = 0; c < brightness.length; c++)
+			md5.update(brightness[c]);
+		byte[] hash = md5.digest();
+		StringBuffer glyphKey = new StringBuffer();
+		glyphKey.append(brightness.length + "x" + ((brightness.length == 0) ? 0 : brightness[0].length) + "@" + charImage.baseline + ":");
+		for (int b = 0; b < hash.length; b++) {
+			int hb = (((int) hash[b]) & 0xFF);
+			if (hb < 16)
+				glyphKey.append('0');
+			glyphKey.append(Integer.toHexString(hb));
+		}
+		glyphKey.append(":" + unicodeMappedChars);
+		
+		//	add comparison fonts, as matches depend on them just as much as on the glyph proper
+		glyphKey.append(":" + getComparisonFontKey(serifFonts));
+		glyphKey.append(":" + getComparisonFontKey(sansFonts));
+		glyphKey.append(":" + getComparisonFontKey(monoFonts));
+		
+		//	charset compares by identity, so results only get shared between documents decoded with the same charset
+		return Arrays.asList(new Object[] {charSet, glyphKey.toString()});
+	}
+	
+	private static String getComparisonFontKey(Font[] fonts) {
+		StringBuffer fontKey = new StringBuffer();
+		for (int f = 0; f < fonts.length; f++) {
+			if (f != 0)
+				fontKey.append(',');
+			if (fonts[f] != null)
+				fontKey.append(fonts[f].getFontName() + "-" + fonts[f].getStyle() + "-" + fonts[f].getSize2D());
+		}
+		return fontKey.toString();
+	}
+	
+	/* copy OCR matches of a glyph image, re-pointing them to the argument
+	 * glyph image (null to not hold on to a document specific one in the
+	 * cache), while sharing the comparison character images */
+	private static CharImageMatch[] copyCharImageMatches(CharImageMatch[] cims, CharImage charImage) {
+		CharImageMatch[] copyCims = new CharImageMatch[cims.length];
+		for (int m = 0; m < cims.length; m++)
+			copyCims[m] = ((cims[m] == null) ? null : cims[m].copy(charImage));
+		return copyCims;
+	}
+	
 	private static void ocrDecodeChars(PdfFont pFont, char[] chars, CharImage[] charImages, CharImageMatch[] bestCims, CharImageMatch[] badBestCims, FontDecoderCharset charSet, float maxDescent, Integer[] charCodes, String[] charNames, Object[] glyphKeys, Font[] serifFonts, Font[] sansFonts, Font[] monoFonts, ProgressMonitor pm, boolean debug) {
 //		if (!"PBBHDA+AdvOTd5f4e5b7.B".equals(pFont.name))
 //			return;
@@ -8205,6 +8312,7 @@ FontName12 38//SID
 		//	TODO TEST true type font with added small-caps in page 17 (bibliography author names) of londt_2014d.pdf
 		
 		//	union argument charset with whatever characters are Unicode mapped to in argument font
+		FontDecoderCharset argCharSet = charSet;
 		final HashSet unicodeMappedChars = new HashSet();
 		for (Iterator ccit = pFont.ucMappings.keySet().iterator(); ccit.hasNext();) {
 			Object ccObj = ccit.next();
@@ -8226,21 +8334,17 @@ FontName12 38//SID
 			}
 		});
 		
-		//	cache character images to speed up matters
+		//	cache character images to speed up matters (shared across fonts and documents, as comparison fonts are fixed)
 		pm.setInfo("   - OCR decoding remaining characters");
-		final float[] cacheHitRate = {0};
-		HashMap cache = new HashMap() {
-			int lookups = 0;
-			int hits = 0;
-			public Object get(Object key) {
-				this.lookups ++;
-				Object value = super.get(key);
-				if (value != null)
-					this.hits++;
-				cacheHitRate[0] = (((float) this.hits) / this.lookups);
-				return value;
-			}
-		};
+		DecodingCache cache = charImageCache;
+		
+		//	get sorted Unicode mapped chars to discriminate cached OCR matches (charset might be union with them)
+		char[] unicodeMappedCharArray = new char[unicodeMappedChars.size()];
+		int umci = 0;
+		for (Iterator ucit = unicodeMappedChars.iterator(); ucit.hasNext();)
+			unicodeMappedCharArray[umci++] = ((Character) ucit.next()).charValue();
+		Arrays.sort(unicodeMappedCharArray);
+		String unicodeMappedCharString = new String(unicodeMappedCharArray);
 		
 		//	get top matches matches for remaining characters, and collect char codes and names
 		CharImageMatch[][] topCims = new CharImageMatch[chars.length][];
@@ -8271,7 +8375,17 @@ FontName12 38//SID
 			//	perform match (keep matches twice to allow for ressurrection of eliminated ones)
 			pm.setInfo("     - Getting OCR matches for char " + c + " (" + charCodes[c] + "/" + charNames[c] + "/'" + chars[c] + "'/'" + StringUtils.getNormalForm(chars[c]) + "'/" + ((int) chars[c]) + ")");
 			if (debug) System.out.println("Getting OCR matches for char " + c + " (" + charCodes[c] + "/" + charNames[c] + "/'" + chars[c] + "'/'" + StringUtils.getNormalForm(chars[c]) + "'/" + ((int) chars[c]) + ")");
-			topCims[c] = getCharsForImage(chars[c], charImages[c], charSet, serifFonts, sansFonts, monoFonts, cache, false);
+			Object glyphMatchKey = getGlyphMatchKey(charImages[c], argCharSet, unicodeMappedCharString, serifFonts, sansFonts, monoFonts);
+			CharImageMatch[] cachedTopCims = ((glyphMatchKey == null) ? null : ((CharImageMatch[]) glyphMatchCache.get(glyphMatchKey)));
+			if (cachedTopCims == null) {
+				topCims[c] = getCharsForImage(chars[c], charImages[c], charSet, serifFonts, sansFonts, monoFonts, cache, false);
+				if ((glyphMatchKey != null) && (topCims[c] != null))
+					glyphMatchCache.put(glyphMatchKey, copyCharImageMatches(topCims[c], null));
+			}
+			else {
+				if (debug) System.out.println(" ==> reusing OCR matches of pixel identical glyph");
+				topCims[c] = copyCharImageMatches(cachedTopCims, charImages[c]);
+			}
 			
 			//	check OCR matches against retained verification match ... and use latter if better
 			if (badBestCims[c] == null)
@@ -9361,14 +9475,14 @@ FontName12 38//SID
 			
 			//	is our best (remaining) match beter than earlier verification match?
 			if ((badBestCims[c] != null) && (bestCims[c].sim < badBestCims[c].sim)) {
-				pm.setInfo("       ==> char reverted to verification match '" + badBestCims[c].match.ch + "' (" + StringUtils.getCharName(badBestCims[c].match.ch) + ", '" + StringUtils.getNormalForm(badBestCims[c].match.ch) + "') at " + badBestCims[c].sim + ", cache hit rate at " + cacheHitRate[0]);
+				pm.setInfo("       ==> char reverted to verification match '" + badBestCims[c].match.ch + "' (" + StringUtils.getCharName(badBestCims[c].match.ch) + ", '" + StringUtils.getNormalForm(badBestCims[c].match.ch) + "') at " + badBestCims[c].sim + ", cache hit rate at " + cache.getHitRate());
 				if (debug) System.out.println(" ==> char reverted to verification match '" + badBestCims[c].match.ch + "' at similarity " + badBestCims[c].sim + " over assigned OCR match '" + bestCims[c].match.ch + "' at similarity " + topCims[c][0].sim);
 			}
 			
 			//	do we have a reliable match?
 			else if (bestCims[c].sim > 0.8) {
-				pm.setInfo("       ==> char decoded (1) to '" + bestCims[c].match.ch + "' (" + StringUtils.getCharName(bestCims[c].match.ch) + ", '" + StringUtils.getNormalForm(bestCims[c].match.ch) + "') at " + bestCims[c].sim + ", cache hit rate at " + cacheHitRate[0]);
-				if (debug) System.out.println(" ==> char decoded (1) to '" + bestCims[c].match.ch + "' (" + StringUtils.getCharName(bestCims[c].match.ch) + ", '" + StringUtils.getNormalForm(bestCims[c].match.ch) + "') at " + bestCims[c].sim + ", cache hit rate at " + cacheHitRate[0]);
+				pm.setInfo("       ==> char decoded (1) to '" + bestCims[c].match.ch + "' (" + StringUtils.getCharName(bestCims[c].match.ch) + ", '" + StringUtils.getNormalForm(bestCims[c].match.ch) + "') at " + bestCims[c].sim + ", cache hit rate at " + cache.getHitRate());
+				if (debug) System.out.println(" ==> char decoded (1) to '" + bestCims[c].match.ch + "' (" + StringUtils.getCharName(bestCims[c].match.ch) + ", '" + StringUtils.getNormalForm(bestCims[c].match.ch) + "') at " + bestCims[c].sim + ", cache hit rate at " + cache.getHitRate());
 				
 				//	correct char mapping specified in Unicode mapping
 				pFont.mapUnicode(charCodes[c], ("" + bestCims[c].match.ch), false);
@@ -9377,8 +9491,8 @@ FontName12 38//SID
 			
 			//	use whatever we got
 			else {
-				pm.setInfo("       ==> char decoded (2) to '" + bestCims[c].match.ch + "' (" + StringUtils.getCharName(bestCims[c].match.ch) + ", '" + StringUtils.getNormalForm(bestCims[c].match.ch) + "') at " + bestCims[c].sim + ", cache hit rate at " + cacheHitRate[0]);
-				if (debug) System.out.println(" ==> char decoded (2) to '" + bestCims[c].match.ch + "' (" + StringUtils.getCharName(bestCims[c].match.ch) + ", '" + StringUtils.getNormalForm(bestCims[c].match.ch) + "') at " + bestCims[c].sim + ", cache hit rate at " + cacheHitRate[0]);
+				pm.setInfo("       ==> char decoded (2) to '" + bestCims[c].match.ch + "' (" + StringUtils.getCharName(bestCims[c].match.ch) + ", '" + StringUtils.getNormalForm(bestCims[c].match.ch) + "') at " + bestCims[c].sim + ", cache hit rate at " + cache.getHitRate());
+				if (debug) System.out.println(" ==> char decoded (2) to '" + bestCims[c].match.ch + "' (" + StringUtils.getCharName(bestCims[c].match.ch) + ", '" + StringUtils.getNormalForm(bestCims[c].match.ch) + "') at " + bestCims[c].sim + ", cache hit rate at " + cache.getHitRate());
 				
 				//	correct char mapping specified in Unicode mapping
 				pFont.mapUnicode(charCodes[c], ("" + bestCims[c].match.ch), false);
@@ -48,6 +48,7 @@ import java.awt.image.WritableRaster;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -79,6 +80,8 @@ import de.uka.ipd.idaho.gamta.TokenSequence;
 import de.uka.ipd.idaho.gamta.TokenSequenceUtils;
 import de.uka.ipd.idaho.gamta.Tokenizer;
 import de.uka.ipd.idaho.gamta.util.CountingSet;
+import de.uka.ipd.idaho.gamta.util.ParallelJobRunner;
+import de.uka.ipd.idaho.gamta.util.ParallelJobRunner.ParallelFor;
 import de.uka.ipd.idaho.gamta.util.ProgressMonitor;
 import de.uka.ipd.idaho.im.pdf.PdfColorSpace.PatternColorSpace;
 import de.uka.ipd.idaho.im.pdf.PdfFontDecoder.FontDecoderCharset;
@@ -194,7 +197,24 @@ public class PdfParser {
 	 * @throws IOException
 	 */
 	public static HashMap getObjects(byte[] bytes, SecurityManager sm) throws IOException {
-		return getObjects(bytes, sm, null, true);
+		return getObjects(bytes, sm, null, true, false);
+	}
+	
+	/**
+	 * Parse a binary PDF file into individual objects. The returned map holds
+	 * the parsed objects, the keys being the object numbers together with the
+	 * generation numbers. If the <code>parallel</code> argument is true, any
+	 * compressed object streams are inflated and parsed on multiple CPU
+	 * cores after the main parsing pass. This only applies if there is no
+	 * security manager, as the latter is not safe for concurrent use.
+	 * @param bytes the binary PDF file to parse
+	 * @param sm a security manager to use on encrypted object streams
+	 * @param parallel decode object streams on multiple CPU cores?
+	 * @return a Map holding the objects parsed from the PDF file
+	 * @throws IOException
+	 */
+	public static HashMap getObjects(byte[] bytes, SecurityManager sm, boolean parallel) throws IOException {
+		return getObjects(bytes, sm, null, true, parallel);
 	}
 	
 	/**
@@ -215,6 +235,10 @@ public class PdfParser {
 	 * @throws IOException
 	 */
 	public static HashMap getObjects(byte[] bytes, SecurityManager sm, PObjectTracker objectTracker, boolean resolveBasicRefs) throws IOException {
+		return getObjects(bytes, sm, objectTracker, resolveBasicRefs, false);
+	}
+	
+	private static HashMap getObjects(byte[] bytes, SecurityManager sm, PObjectTracker objectTracker, boolean resolveBasicRefs, boolean parallel) throws IOException {
 		HashMap objects = new LinkedHashMap() {
 			public Object put(Object key, Object value) {
 				if (!DEBUG_PARSE_PDF && !DEBUG_PDF_BYTES && (PdfExtractorTest.aimAtPage == -1))
@@ -231,6 +255,15 @@ public class PdfParser {
 			}
 		};
 		
+		//	collect object streams for decoding in parallel (security manager and object tracker are not thread safe)
+		ArrayList objStreamJobs = null;
+		HashMap objSequenceNumbers = null;
+		if (parallel && (sm == null) && (objectTracker == null)) {
+			objStreamJobs = new ArrayList();
+			objSequenceNumbers = new HashMap();
+		}
+		int objSequenceNumber = 0;
+		
 		PdfByteInputStream lis = new PdfByteInputStream(bytes);
 		for (byte[] line; (line = lis.readLine()) != null;) {
 			if (PdfUtils.matches(line, "[1-9][0-9]*\\s[0-9]+\\sobj.*")) {
@@ -352,7 +385,7 @@ public class PdfParser {
 					if ((lineBreaksAddedBefore + lineBreaksAddedAfter) != 0) {
 						if (objectTracker != null)
 							objectTracker.clear();
-						return getObjects(bytes, sm, objectTracker, resolveBasicRefs);
+						return getObjects(bytes, sm, objectTracker, resolveBasicRefs, parallel);
 					}
 				}
 				
@@ -371,11 +404,16 @@ public class PdfParser {
 				objects.put(objId, obj);
 				if (objectTracker != null)
 					objectTracker.binaryObjects.put(objId, new PBinaryObject(objStart, objEnd, obj, objByteDepths));
+				if (objSequenceNumbers != null)
+					objSequenceNumbers.put(objId, new Integer(objSequenceNumber));
+				objSequenceNumber++;
 				
 				//	decode object streams
 				if (obj instanceof PStream) {
 					Object type = ((PStream) obj).params.get("Type");
-					if ((type != null) && "ObjStm".equals(type.toString())) {
+					if ((type != null) && "ObjStm".equals(type.toString()) && (objStreamJobs != null))
+						objStreamJobs.add(new PObjectStreamJob(((PStream) obj), (objSequenceNumber - 1)));
+					else if ((type != null) && "ObjStm".equals(type.toString())) {
 						Reference sObjRef = null;
 						if ((sm != null) || (objectTracker != null)) {
 							String[] objIdNrs = objId.split("[^0-9]+");
@@ -405,6 +443,9 @@ public class PdfParser {
 		}
 		lis.close();
 		
+		if ((objStreamJobs != null) && (objStreamJobs.size() != 0))
+			decodeObjectStreams(((PObjectStreamJob[]) objStreamJobs.toArray(new PObjectStreamJob[objStreamJobs.size()])), objects, objSequenceNumbers);
+		
 		if (resolveBasicRefs)
 			dereferenceObjects(objects, objectTracker);
 		if (objectTracker != null)
@@ -462,6 +503,50 @@ public class PdfParser {
 		}
 	}
 	
+	private static class PObjectStreamJob {
+		final PStream objStream;
+		final int sequenceNumber;
+		LinkedHashMap sObjects = null;
+		PObjectStreamJob(PStream objStream, int sequenceNumber) {
+			this.objStream = objStream;
+			this.sequenceNumber = sequenceNumber;
+		}
+	}
+	
+	private static void decodeObjectStreams(final PObjectStreamJob[] objStreamJobs, final Map objects, Map objSequenceNumbers) throws IOException {
+		
+		//	inflate and parse object streams in parallel, only reading from main object map
+		ParallelFor pf = new ParallelFor() {
+			public void doFor(int j) throws Exception {
+				LinkedHashMap sObjects = new LinkedHashMap() {
+					public Object get(Object key) {
+						Object value = super.get(key);
+						return ((value == null) ? objects.get(key) : value);
+					}
+				};
+				decodeObjectStream(null, objStreamJobs[j].objStream, sObjects, false, null, null);
+				objStreamJobs[j].sObjects = sObjects;
+			}
+		};
+		ParallelJobRunner.runParallelFor(pf, objStreamJobs.length, -1);
+		Exception error = pf.getException();
+		if (error instanceof IOException)
+			throw ((IOException) error);
+		else if (error instanceof RuntimeException)
+			throw ((RuntimeException) error);
+		else if (error != null)
+			throw new IOException(error.getMessage());
+		
+		//	store objects in file order, so objects further down the file replace ones with the same ID, just as in sequential decoding
+		for (int j = 0; j < objStreamJobs.length; j++)
+			for (Iterator sobjit = objStreamJobs[j].sObjects.keySet().iterator(); sobjit.hasNext();) {
+				Object sObjId = sobjit.next();
+				Integer objSequenceNumber = ((Integer) objSequenceNumbers.get(sObjId));
+				if ((objSequenceNumber == null) || (objSequenceNumber.intValue() < objStreamJobs[j].sequenceNumber))
+					objects.put(sObjId, objStreamJobs[j].sObjects.get(sObjId));
+			}
+	}
+
 //	private static PStream checkStreamLength(PStream pStream, Map objects) {
 	private static PStream checkStreamLength(PStream pStream, Map objects, int maxPad) throws IOException {
 		Object length = getObject(pStream.params, "Length", objects);
@@ -529,15 +614,15 @@ public class PdfParser {
 			}
 		}
 		
-		//	process multi-level filters (filter object is Vector)
+		//	process multi-level filters (filter object is List), chaining decoders rather than copying intermediate results
 		if (filter instanceof List) {
-			for (Iterator fit = ((List) filter).iterator(); fit.hasNext();) {
-				Object fObj = fit.next();
-				ByteArrayOutputStream fBaos = new ByteArrayOutputStream();
-				decode(fObj, stream, params, fBaos, objects);
-				stream = fBaos.toByteArray();
-			}
-			baos.write(stream);
+			InputStream in = new ByteArrayInputStream(stream);
+			for (Iterator fit = ((List) filter).iterator(); fit.hasNext();)
+				in = getDecoderStream(fit.next(), in, params);
+			byte[] buffer = new byte[1024];
+			for (int read; (read = in.read(buffer)) != -1;)
+				baos.write(buffer, 0, read);
+			in.close();
 			return;
 		}
 		
@@ -569,6 +654,30 @@ public class PdfParser {
 		else baos.write(stream);
 	}
 	
+	private static InputStream getDecoderStream(Object filter, InputStream in, Map params) throws IOException {
+		
+		//	get filter name
+		String f = null;
+		if (filter != null) {
+			f = filter.toString();
+			if (f.startsWith("/"))
+				f = f.substring(1);
+		}
+		
+		//	wrap decoder around input (unknown filters pass through data, just as in decode())
+		if ("FlateDecode".equals(f) || "Fl".equals(f))
+			return new FlateDecode(new Library(), new HashMap(params), in);
+		else if ("LZWDecode".equals(f) || "LZW".equals(f))
+			return new LZWDecode(new BitStream(in), new Library(), new HashMap(params));
+		else if ("RunLengthDecode".equals(f) || "RL".equals(f))
+			return new RunLengthDecode(in);
+		else if ("ASCIIHexDecode".equals(f) || "AHx".equals(f))
+			return new ASCIIHexDecode(in);
+		else if ("ASCII85Decode".equals(f) || "A85".equals(f))
+			return new ASCII85Decode(in);
+		else return in;
+	}
+	
 	private static void decodeLzw(byte[] stream, Map params, ByteArrayOutputStream baos) throws IOException {
 		LZWDecode lzwd = new LZWDecode(new BitStream(new ByteArrayInputStream(stream)), new Library(), new HashMap(params));
 		byte[] buffer = new byte[1024];
@@ -476,7 +476,13 @@ class PdfUtils {
 			biType = BufferedImage.TYPE_BYTE_GRAY;
 		else biType = BufferedImage.TYPE_INT_ARGB;
 		
-		//	fill image
+		//	fill image (in debug mode, go pixel by pixel to collect color space statistics)
+		if (PdfExtractorTest.aimAtPage == -1) {
+			BufferedImage bi = new BufferedImage(width, height, biType);
+			fillBitmap(bi, biIn, cs, colorComponents, bitsPerComponent, componentBitMask, bitsPerPixel, pixelBitMask, (decodeInverted && !isImageMask));
+			biIn.close();
+			return bi;
+		}
 		LinkedList colorDecodeStack = new LinkedList();
 		ArrayList topPixelRow = null;
 		if (PdfExtractorTest.aimAtPage != -1) {
@@ -533,6 +539,102 @@ class PdfUtils {
 		return bi;
 	}
 	
+	/* maximum number of bits per pixel to use a lookup table for, covering
+	 * all 8 bit single component color spaces, Indexed color spaces, as well
+	 * as DeviceN color spaces with two 8 bit colorants */
+	private static final int MAX_LOOKUP_BITS_PER_PIXEL = 16;
+	
+	private static void fillBitmap(BufferedImage bi, InputStream biIn, PdfColorSpace cs, int colorComponents, int bitsPerComponent, int componentBitMask, int bitsPerPixel, long pixelBitMask, boolean invert) throws IOException {
+		int width = bi.getWidth();
+		int height = bi.getHeight();
+		
+		//	for low bit depths, cache colors by pixel bits, as there are few enough distinct values
+		int[] rgbLookup = null;
+		boolean[] rgbLookupFilled = null;
+		if (bitsPerPixel <= MAX_LOOKUP_BITS_PER_PIXEL) {
+			rgbLookup = new int[1 << bitsPerPixel];
+			rgbLookupFilled = new boolean[1 << bitsPerPixel];
+		}
+		
+		//	compute component values once for each possible component bit pattern
+		float[] componentValues = new float[componentBitMask + 1];
+		for (int rccb = 0; rccb < componentValues.length; rccb++) {
+			long ccb = rccb;
+			for (int b = bitsPerComponent; b < 8; b += bitsPerComponent) {
+				ccb <<= bitsPerComponent;
+				ccb |= rccb;
+			}
+			componentValues[rccb] = (((float) ccb) / 255);
+		}
+		
+		//	decode image row by row
+		byte[] rowBytes = new byte[((width * bitsPerPixel) + 7) / 8];
+		float[] rowComponents = new float[width * colorComponents];
+		long[] rowPixelBits = new long[width];
+		int[] rowRgbs = new int[width];
+		for (int r = 0; r < height; r++) {
+			
+			//	read whole row at once
+			int rowByteCount = 0;
+			while (rowByteCount < rowBytes.length) {
+				int read = biIn.read(rowBytes, rowByteCount, (rowBytes.length - rowByteCount));
+				if (read < 0)
+					break;
+				rowByteCount += read;
+			}
+			int rowByte = 0;
+			int bitsRemaining = 0;
+			long bitData = 0;
+			for (int c = 0; c < width; c++) {
+				
+				//	make sure we have enough bits left in buffer (past the end of the data, all bits are set, as they used to be with the -1 returned by read())
+				while (bitsRemaining < bitsPerPixel) {
+					if (rowByte < rowByteCount) {
+						bitData <<= 8;
+						bitData |= (rowBytes[rowByte++] & 0xFF);
+					}
+					else bitData = -1L;
+					bitsRemaining += 8;
+				}
+				
+				//	get component values for pixel
+				long pixelBits = ((bitData >>> (bitsRemaining - bitsPerPixel)) & pixelBitMask);
+				bitsRemaining -= bitsPerPixel;
+				rowPixelBits[c] = pixelBits;
+				
+				//	we have this one in the lookup table, no need for extracting components
+				if ((rgbLookup != null) && rgbLookupFilled[(int) pixelBits])
+					continue;
+				
+				//	extract component values
+				for (int cc = 0; cc < colorComponents; cc++)
+					rowComponents[(c * colorComponents) + cc] = componentValues[(int) ((pixelBits >>> ((colorComponents - cc - 1) * bitsPerComponent)) & componentBitMask)];
+			}
+			
+			//	convert whole row at once if we don't have a lookup table ...
+			if (rgbLookup == null) {
+				cs.decodeRgbs(rowComponents, rowRgbs, width);
+				if (invert) // mask image color space does inversion internally
+					for (int c = 0; c < width; c++)
+						rowRgbs[c] = ~rowRgbs[c];
+			}
+			
+			//	... or go through lookup table
+			else for (int c = 0; c < width; c++) {
+				int pixelBits = ((int) rowPixelBits[c]);
+				if (!rgbLookupFilled[pixelBits]) {
+					int rgb = cs.decodeRgb(rowComponents, (c * colorComponents));
+					rgbLookup[pixelBits] = (invert ? ~rgb : rgb); // mask image color space does inversion internally
+					rgbLookupFilled[pixelBits] = true;
+				}
+				rowRgbs[c] = rgbLookup[pixelBits];
+			}
+			
+			//	set pixels
+			bi.setRGB(0, r, width, 1, rowRgbs, 0, width);
+		}
+	}
+	
 	static Color getMaskImageBackgroundColor(Map params) {
 		/* if we have a mask image
 		 * Decoding [0, 1] ==> 0 means paint-through (default), requires black background
@@ -0,0 +1,260 @@
+/*
+ * Copyright (c) 2006-, IPD Boehm, Universitaet Karlsruhe (TH) / KIT, by Guido Sautter
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Universitaet Karlsruhe (TH) / KIT nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY UNIVERSITAET KARLSRUHE (TH) / KIT AND CONTRIBUTORS 
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uka.ipd.idaho.im.pdf.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import de.uka.ipd.idaho.gamta.util.imaging.PageImage;
+import de.uka.ipd.idaho.gamta.util.imaging.PageImageInputStream;
+import de.uka.ipd.idaho.gamta.util.imaging.PageImageStore.AbstractPageImageStore;
+import de.uka.ipd.idaho.im.ImAnnotation;
+import de.uka.ipd.idaho.im.ImDocument;
+import de.uka.ipd.idaho.im.ImPage;
+import de.uka.ipd.idaho.im.ImWord;
+import de.uka.ipd.idaho.im.pdf.PdfExtractor;
+import de.uka.ipd.idaho.im.pdf.PdfExtractor.TextPdfExtractionState;
+import de.uka.ipd.idaho.im.pdf.PdfFontDecoder;
+
+/**
+ * Consistency check of page re-extraction under annotations spanning across
+ * the re-extracted page, on generated three page text PDFs. The text of all
+ * pages is linked into one text stream, and an annotation runs from the first
+ * to the last page. Re-extracting the middle page from the same PDF has to
+ * re-link the text stream and retain the annotation. Re-extracting it from a
+ * PDF whose middle page has its text moved elsewhere still re-links main
+ * text, but leaves a footnote text stream cut, and then has to remove the
+ * annotation. In all cases, annotations and text stream links have to end up
+ * on words actually present in the document.
+ *
+ * @author sautter
+ */
+public class PdfReExtractionTest {
+	
+	/**
+	 * @param args
+	 */
+	public static void main(String[] args) throws Exception {
+		PdfExtractor pdfExtractor = new PdfExtractor(new File("."), new MemoryPageImageStore());
+		TextPdfExtractionState state = pdfExtractor.getTextPdfExtractionState(buildPdf(false), PdfFontDecoder.LATIN_FULL);
+		TextPdfExtractionState movedState = pdfExtractor.getTextPdfExtractionState(buildPdf(true), PdfFontDecoder.LATIN_FULL);
+		Set pageIDs = Collections.singleton(new Integer(1));
+		int errors = 0;
+		
+		//	re-extract middle page from same PDF, text stream re-links
+		errors += checkReExtraction(pdfExtractor, state, state, pageIDs, ImWord.TEXT_STREAM_TYPE_MAIN_TEXT, true);
+		
+		//	re-extract middle page with text moved, main text re-links by fallback
+		errors += checkReExtraction(pdfExtractor, state, movedState, pageIDs, ImWord.TEXT_STREAM_TYPE_MAIN_TEXT, true);
+		
+		//	re-extract middle page with text moved, footnote remains cut
+		errors += checkReExtraction(pdfExtractor, state, movedState, pageIDs, ImWord.TEXT_STREAM_TYPE_FOOTNOTE, false);
+		
+		System.out.println("Re-extraction checks done, " + errors + " errors");
+	}
+	
+	private static int checkReExtraction(PdfExtractor pdfExtractor, TextPdfExtractionState loadState, TextPdfExtractionState reExtractState, Set pageIDs, String textStreamType, boolean expectRelinked) throws IOException {
+		int errors = 0;
+		ImDocument doc = pdfExtractor.loadTextPdf(loadState, null, null);
+		ImAnnotation[] annots = addTestAnnotations(doc, textStreamType);
+		pdfExtractor.reExtractTextPdfPages(doc, reExtractState, pageIDs, null);
+		errors += checkConsistency(doc);
+		if (expectRelinked && !isInDocument(doc, annots[0])) {
+			System.out.println("Spanning annotation removed despite re-linked " + textStreamType + " text stream");
+			errors++;
+		}
+		else if (!expectRelinked && isInDocument(doc, annots[0])) {
+			System.out.println("Spanning annotation retained across cut " + textStreamType + " text stream");
+			errors++;
+		}
+		if (isInDocument(doc, annots[1]) || isInDocument(doc, annots[2])) {
+			System.out.println("Annotation starting or ending on re-extracted page retained");
+			errors++;
+		}
+		return errors;
+	}
+	
+	/* link the main text across all pages into a text stream of the argument
+	 * type, and add an annotation spanning from the first to the last page,
+	 * as well as one ending and one lying on the middle page */
+	private static ImAnnotation[] addTestAnnotations(ImDocument doc, String textStreamType) {
+		ImPage[] pages = doc.getPages();
+		ImWord prevTail = null;
+		for (int p = 0; p < pages.length; p++) {
+			ImWord[] heads = pages[p].getTextStreamHeads();
+			ImWord head = null;
+			for (int h = 0; h < heads.length; h++) {
+				if (ImWord.TEXT_STREAM_TYPE_MAIN_TEXT.equals(heads[h].getTextStreamType()) && ((head == null) || (head.getTextStreamPos() > heads[h].getTextStreamPos())))
+					head = heads[h];
+			}
+			if (head == null)
+				throw new IllegalStateException("No main text on page " + pages[p].pageId);
+			if (prevTail != null) {
+				prevTail.setNextWord(head);
+				prevTail.setNextRelation(ImWord.NEXT_RELATION_PARAGRAPH_END);
+			}
+			prevTail = head;
+			while ((prevTail.getNextWord() != null) && (prevTail.getNextWord().pageId == head.pageId))
+				prevTail = prevTail.getNextWord();
+		}
+		ImWord first = pages[0].getTextStreamHeads()[0];
+		while (first.getPreviousWord() != null)
+			first = first.getPreviousWord();
+		first.setTextStreamType(textStreamType);
+		ImWord middle = first;
+		while (middle.pageId < 1)
+			middle = middle.getNextWord();
+		ImWord last = middle;
+		while (last.getNextWord() != null)
+			last = last.getNextWord();
+		ImAnnotation[] annots = {
+			doc.addAnnotation(first, last, "spanning"),
+			doc.addAnnotation(first, middle, "endingOnPage"),
+			doc.addAnnotation(middle, middle, "onPage"),
+		};
+		System.out.println("Annotated " + textStreamType + " text stream across " + pages.length + " pages, " + doc.getAnnotations().length + " annotations");
+		return annots;
+	}
+	
+	private static boolean isInDocument(ImDocument doc, ImAnnotation annot) {
+		ImAnnotation[] annots = doc.getAnnotations(annot.getType());
+		for (int a = 0; a < annots.length; a++) {
+			if (annots[a] == annot)
+				return true;
+		}
+		return false;
+	}
+	
+	/* check that annotations and text stream links only refer to words in the
+	 * document, and that every annotation lies in a single text stream */
+	private static int checkConsistency(ImDocument doc) {
+		int errors = 0;
+		ImPage[] pages = doc.getPages();
+		for (int p = 0; p < pages.length; p++) {
+			ImWord[] words = pages[p].getWords();
+			for (int w = 0; w < words.length; w++) {
+				ImWord prevWord = words[w].getPreviousWord();
+				if ((prevWord != null) && ((prevWord.getNextWord() != words[w]) || !isInDocument(doc, prevWord))) {
+					System.out.println("Broken predecessor link on " + words[w].getLocalID());
+					errors++;
+				}
+				ImWord nextWord = words[w].getNextWord();
+				if ((nextWord != null) && ((nextWord.getPreviousWord() != words[w]) || !isInDocument(doc, nextWord))) {
+					System.out.println("Broken successor link on " + words[w].getLocalID());
+					errors++;
+				}
+			}
+		}
+		ImAnnotation[] annots = doc.getAnnotations();
+		for (int a = 0; a < annots.length; a++) {
+			ImWord firstWord = annots[a].getFirstWord();
+			ImWord lastWord = annots[a].getLastWord();
+			if (!isInDocument(doc, firstWord) || !isInDocument(doc, lastWord)) {
+				System.out.println("Annotation " + annots[a].getType() + " refers to word not in document");
+				errors++;
+				continue;
+			}
+			ImWord imw = firstWord;
+			while ((imw != null) && (imw != lastWord))
+				imw = imw.getNextWord();
+			if (imw == null) {
+				System.out.println("Annotation " + annots[a].getType() + " does not reach its last word");
+				errors++;
+			}
+		}
+		return errors;
+	}
+	
+	private static boolean isInDocument(ImDocument doc, ImWord word) {
+		ImPage page = doc.getPage(word.pageId);
+		return ((page != null) && (page.getWord(word.bounds) == word));
+	}
+	
+	/* generate a three page PDF with a few lines of running text in a
+	 * standard font on each page, optionally with the text of the middle page
+	 * moved to the lower half of the page */
+	private static byte[] buildPdf(boolean moveMiddlePage) throws IOException {
+		ArrayList objects = new ArrayList();
+		objects.add("<< /Type /Catalog /Pages 2 0 R >>");
+		objects.add("<< /Type /Pages /Kids [3 0 R 4 0 R 5 0 R] /Count 3 >>");
+		for (int p = 0; p < 3; p++)
+			objects.add("<< /Type /Page /Parent 2 0 R /MediaBox [0 0 612 792] /Resources << /Font << /F1 6 0 R >> >> /Contents " + (7 + p) + " 0 R >>");
+		objects.add("<< /Type /Font /Subtype /Type1 /BaseFont /Helvetica /Encoding /WinAnsiEncoding >>");
+		for (int p = 0; p < 3; p++) {
+			StringBuffer content = new StringBuffer("BT /F1 12 Tf 72 " + ((moveMiddlePage && (p == 1)) ? 300 : 720) + " Td 16 TL");
+			for (int l = 0; l < 8; l++)
+				content.append(" (Page " + (p + 1) + " line " + (l + 1) + " of the running text continues with some more words) '");
+			content.append(" ET");
+			objects.add("<< /Length " + content.length() + " >>\nstream\n" + content + "\nendstream");
+		}
+		ByteArrayOutputStream pdf = new ByteArrayOutputStream();
+		pdf.write("%PDF-1.4\n".getBytes("US-ASCII"));
+		int[] offsets = new int[objects.size()];
+		for (int o = 0; o < objects.size(); o++) {
+			offsets[o] = pdf.size();
+			pdf.write(((o + 1) + " 0 obj\n" + objects.get(o) + "\nendobj\n").getBytes("US-ASCII"));
+		}
+		int xrefOffset = pdf.size();
+		StringBuffer xref = new StringBuffer("xref\n0 " + (objects.size() + 1) + "\n0000000000 65535 f \n");
+		for (int o = 0; o < offsets.length; o++) {
+			String offset = ("0000000000" + offsets[o]);
+			xref.append(offset.substring(offset.length() - 10) + " 00000 n \n");
+		}
+		xref.append("trailer\n<< /Size " + (objects.size() + 1) + " /Root 1 0 R >>\nstartxref\n" + xrefOffset + "\n%%EOF\n");
+		pdf.write(xref.toString().getBytes("US-ASCII"));
+		return pdf.toByteArray();
+	}
+	
+	/* page image store holding encoded page images in memory */
+	private static class MemoryPageImageStore extends AbstractPageImageStore {
+		private Map pageImageBytes = Collections.synchronizedMap(new HashMap());
+		public boolean isPageImageAvailable(String name) {
+			return this.pageImageBytes.containsKey(name);
+		}
+		public PageImageInputStream getPageImageAsStream(String name) throws IOException {
+			byte[] pib = ((byte[]) this.pageImageBytes.get(name));
+			return ((pib == null) ? null : new PageImageInputStream(new ByteArrayInputStream(pib), this));
+		}
+		public boolean storePageImage(String name, PageImage pageImage) throws IOException {
+			ByteArrayOutputStream pio = new ByteArrayOutputStream();
+			pageImage.write(pio);
+			this.pageImageBytes.put(name, pio.toByteArray());
+			return true;
+		}
+		public int getPriority() {
+			return 0;
+		}
+	}
+}
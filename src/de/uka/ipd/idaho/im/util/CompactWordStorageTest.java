@@ -0,0 +1,248 @@
+/*
+ * Copyright (c) 2006-, IPD Boehm, Universitaet Karlsruhe (TH) / KIT, by Guido Sautter
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Universitaet Karlsruhe (TH) / KIT nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY UNIVERSITAET KARLSRUHE (TH) / KIT AND CONTRIBUTORS 
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uka.ipd.idaho.im.util;
+
+import java.util.Random;
+
+import de.uka.ipd.idaho.gamta.util.imaging.BoundingBox;
+import de.uka.ipd.idaho.im.ImAnnotation;
+import de.uka.ipd.idaho.im.ImDocument;
+import de.uka.ipd.idaho.im.ImPage;
+import de.uka.ipd.idaho.im.ImWord;
+
+/**
+ * Parity check of compact word storage against regular word objects. Two
+ * identical synthetic documents receive the same random edits, one of them
+ * with its words in compact storage, and the two have to agree on all word
+ * properties, text streams, and annotations after every round, also after
+ * word handles were garbage collected in between.
+ *
+ * @author sautter
+ */
+public class CompactWordStorageTest {
+	
+	/**
+	 * @param args
+	 */
+	public static void main(String[] args) throws Exception {
+		ImDocument regDoc = createDocument();
+		ImDocument cmpDoc = createDocument();
+		cmpDoc.setCompactWordStorage(true);
+		int errors = 0;
+		
+		//	compare initial state
+		System.gc();
+		errors += compare("Initial", regDoc, cmpDoc);
+		
+		//	check handle identity
+		ImWord word = cmpDoc.getPage(3).getWords()[17];
+		System.gc();
+		if (cmpDoc.getWord(word.getLocalID()) != word) {
+			System.out.println("Handle identity lost on lookup by local ID");
+			errors++;
+		}
+		if (cmpDoc.getObjectByLocalUID(word.getLocalUID()) != word) {
+			System.out.println("Handle identity lost on lookup by local UID");
+			errors++;
+		}
+		if (cmpDoc.getPage(3).getWordAt(word.centerX, word.centerY) != word) {
+			System.out.println("Handle identity lost on lookup by point");
+			errors++;
+		}
+		word = null;
+		
+		//	edit both documents in rounds
+		Random rnd = new Random(31);
+		for (int r = 0; r < 10; r++) {
+			long seed = rnd.nextLong();
+			edit(regDoc, new Random(seed), r);
+			edit(cmpDoc, new Random(seed), r);
+			System.gc();
+			errors += compare(("Round " + r), regDoc, cmpDoc);
+		}
+		
+		//	switch off compact storage again
+		cmpDoc.setCompactWordStorage(false);
+		errors += compare("Released", regDoc, cmpDoc);
+		
+		//	build document in compact storage right away
+		ImDocument newDoc = new ImDocument("CompactWordStorageTest");
+		newDoc.setCompactWordStorage(true);
+		copyWords(regDoc, newDoc);
+		System.gc();
+		errors += compare("Built", regDoc, newDoc);
+		System.out.println("Compared 10 rounds of edits, " + errors + " errors");
+	}
+	
+	private static ImDocument createDocument() {
+		ImDocumentGenerator gen = new ImDocumentGenerator();
+		gen.setPageCount(12);
+		gen.setWordsPerPage(300);
+		gen.setFootnotesPerPage(1);
+		gen.addAnnotationType("emphasis", 8, 4);
+		gen.setSeed(31);
+		return gen.generateDocument("CompactWordStorageTest");
+	}
+	
+	private static void edit(ImDocument doc, Random rnd, int round) {
+		ImPage[] pages = doc.getPages();
+		for (int e = 0; e < 20; e++) {
+			ImWord[] words = pages[rnd.nextInt(pages.length)].getWords();
+			ImWord word = words[rnd.nextInt(words.length)];
+			int edit = rnd.nextInt(8);
+			if (edit == 0)
+				word.setString(word.getString() + round);
+			else if (edit == 1) {
+				word.setFontName("Font" + rnd.nextInt(3));
+				word.setFontSize(8 + rnd.nextInt(4));
+				word.setAttribute(ImWord.BOLD_ATTRIBUTE, (rnd.nextBoolean() ? "true" : null));
+			}
+			else if (edit == 2)
+				word.setAttribute(("edit" + round), ("" + e));
+			else if (edit == 3)
+				word.setNextRelation(ImWord.NEXT_RELATION_HYPHENATED);
+			else if (edit == 4)
+				word.setNextWord(null); // split text stream
+			else if (edit == 5) {
+				ImWord other = words[rnd.nextInt(words.length)];
+				if ((other != word) && (other.getTextStreamHead(false) != word.getTextStreamHead(false))) {
+					ImWord tail = word;
+					while (tail.getNextWord() != null)
+						tail = tail.getNextWord();
+					tail.setNextWord(other.getTextStreamHead(false)); // join text streams
+				}
+			}
+			else if (edit == 6)
+				word.setTextStreamType(ImWord.TEXT_STREAM_TYPE_FOOTNOTE);
+			else {
+				ImPage page = word.getPage();
+				if (page.removeWord(word, true))
+					new ImWord(page, word.bounds.translate(1, 1), word.getString()).setBaseline(word.bounds.bottom - 1);
+			}
+		}
+	}
+	
+	private static void copyWords(ImDocument fromDoc, ImDocument toDoc) {
+		ImPage[] fromPages = fromDoc.getPages();
+		for (int p = 0; p < fromPages.length; p++) {
+			ImPage toPage = new ImPage(toDoc, fromPages[p].pageId, fromPages[p].bounds);
+			ImWord[] words = fromPages[p].getWords();
+			for (int w = 0; w < words.length; w++) {
+				ImWord word = new ImWord(toPage, words[w].bounds, words[w].getString());
+				String[] ans = words[w].getAttributeNames();
+				for (int n = 0; n < ans.length; n++) {
+					if (!ImWord.PREVIOUS_WORD_ATTRIBUTE.equals(ans[n]) && !ImWord.NEXT_WORD_ATTRIBUTE.equals(ans[n]))
+						word.setAttribute(ans[n], words[w].getAttribute(ans[n]));
+				}
+			}
+		}
+		ImWord[] heads = fromDoc.getTextStreamHeads();
+		for (int h = 0; h < heads.length; h++) {
+			ImWord prevWord = null;
+			for (ImWord imw = heads[h]; imw != null; imw = imw.getNextWord()) {
+				ImWord word = toDoc.getWord(imw.getLocalID());
+				word.setNextRelation(imw.getNextRelation());
+				word.setPreviousWord(prevWord);
+				word.setTextStreamType(imw.getTextStreamType());
+				prevWord = word;
+			}
+		}
+		ImAnnotation[] annots = fromDoc.getAnnotations();
+		for (int a = 0; a < annots.length; a++)
+			toDoc.addAnnotation(toDoc.getWord(annots[a].getFirstWord().getLocalID()), toDoc.getWord(annots[a].getLastWord().getLocalID()), annots[a].getType());
+	}
+	
+	private static int compare(String label, ImDocument regDoc, ImDocument cmpDoc) {
+		int errors = 0;
+		ImPage[] regPages = regDoc.getPages();
+		ImPage[] cmpPages = cmpDoc.getPages();
+		for (int p = 0; p < regPages.length; p++) {
+			ImWord[] regWords = regPages[p].getWords();
+			ImWord[] cmpWords = cmpPages[p].getWords();
+			if (regWords.length != cmpWords.length) {
+				System.out.println(label + ": page " + p + " has " + cmpWords.length + " words instead of " + regWords.length);
+				errors++;
+				continue;
+			}
+			for (int w = 0; w < regWords.length; w++) {
+				String regData = getWordData(regWords[w]);
+				String cmpData = getWordData(cmpWords[w]);
+				if (!regData.equals(cmpData)) {
+					System.out.println(label + ": word data mismatch");
+					System.out.println("  regular: " + regData);
+					System.out.println("  compact: " + cmpData);
+					errors++;
+				}
+			}
+			if (getWordIDs(regPages[p].getTextStreamHeads()).equals(getWordIDs(cmpPages[p].getTextStreamHeads())))
+				continue;
+			System.out.println(label + ": text stream heads mismatch on page " + p);
+			errors++;
+		}
+		if (!getWordIDs(regDoc.getTextStreamHeads()).equals(getWordIDs(cmpDoc.getTextStreamHeads()))) {
+			System.out.println(label + ": text stream heads mismatch");
+			errors++;
+		}
+		if (!getAnnotationData(regDoc).equals(getAnnotationData(cmpDoc))) {
+			System.out.println(label + ": annotation mismatch");
+			errors++;
+		}
+		if (regDoc.getWordCount() != cmpDoc.getWordCount()) {
+			System.out.println(label + ": " + cmpDoc.getWordCount() + " words instead of " + regDoc.getWordCount());
+			errors++;
+		}
+		return errors;
+	}
+	
+	private static String getWordData(ImWord word) {
+		StringBuffer data = new StringBuffer(word.getLocalID());
+		String[] ans = word.getAttributeNames();
+		for (int n = 0; n < ans.length; n++)
+			data.append(" " + ans[n] + "=" + word.getAttribute(ans[n]));
+		data.append(" | " + word.getTextStreamId() + "/" + word.getTextStreamPos() + "/" + word.getTextStreamType());
+		data.append(" | " + ((word.getPreviousWord() == null) ? "" : word.getPreviousWord().getLocalID()));
+		data.append(" | " + ((word.getNextWord() == null) ? "" : word.getNextWord().getLocalID()));
+		data.append(" | " + word.getNextRelation() + " | " + word.getFontName() + "/" + word.getFontSize() + "/" + word.getBaseline());
+		return data.toString();
+	}
+	
+	private static String getWordIDs(ImWord[] words) {
+		StringBuffer ids = new StringBuffer();
+		for (int w = 0; w < words.length; w++)
+			ids.append(words[w].getLocalID() + " ");
+		return ids.toString();
+	}
+	
+	private static String getAnnotationData(ImDocument doc) {
+		StringBuffer data = new StringBuffer();
+		ImAnnotation[] annots = doc.getAnnotations();
+		for (int a = 0; a < annots.length; a++)
+			data.append(annots[a].getType() + ":" + annots[a].getFirstWord().getLocalID() + "-" + annots[a].getLastWord().getLocalID() + " ");
+		return data.toString();
+	}
+}
@@ -0,0 +1,457 @@
+/*
+ * Copyright (c) 2006-, IPD Boehm, Universitaet Karlsruhe (TH) / KIT, by Guido Sautter
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Universitaet Karlsruhe (TH) / KIT nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY UNIVERSITAET KARLSRUHE (TH) / KIT AND CONTRIBUTORS 
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uka.ipd.idaho.im.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+
+import de.uka.ipd.idaho.gamta.util.DocumentErrorProtocol.DocumentError;
+import de.uka.ipd.idaho.im.ImAnnotation;
+import de.uka.ipd.idaho.im.ImDocument;
+import de.uka.ipd.idaho.im.ImDocument.ImDocumentListener;
+import de.uka.ipd.idaho.im.ImFont;
+import de.uka.ipd.idaho.im.ImObject;
+import de.uka.ipd.idaho.im.ImPage;
+import de.uka.ipd.idaho.im.ImRegion;
+import de.uka.ipd.idaho.im.ImSupplement;
+import de.uka.ipd.idaho.im.ImWord;
+import de.uka.ipd.idaho.im.util.ImDocumentErrorProtocol.ImDocumentError;
+
+/**
+ * Monitor keeping the error protocol of an Image Markup document up to date
+ * while the document is being edited. Instances observe the document and use
+ * the observed targets and checked subjects the wrapped error checkers
+ * indicate for each category and type of errors to determine which checks
+ * are affected by a given modification, and which subjects need re-checking.
+ * Affected subjects are collected until client code calls the
+ * <code>recheck()</code> method, which then re-checks only these subjects,
+ * via the <code>addRegionErrors()</code> and <code>addAnnotationErrors()</code>
+ * methods of the respective error checkers. Checks that work on the document
+ * as a whole, or whose affected subjects cannot be localized, fall back to
+ * re-checking the whole document for the respective category and type of
+ * errors. While there are subjects marked for re-checking, monitors mark the
+ * error protocol supplement of the document (if any) as stale, as the errors
+ * stored in there precede the last edit.
+ * 
+ * @author sautter
+ */
+public class ImDocumentErrorMonitor implements ImDocumentListener {
+	
+	/** the document whose error protocol to keep up to date */
+	public final ImDocument doc;
+	
+	/** the error protocol to keep up to date */
+	public final ImDocumentErrorProtocol idep;
+	
+	private ErrorCheck[] checks;
+	private HashSet removed = new HashSet();
+	private boolean observing = false;
+	
+	/** Constructor
+	 * @param doc the document whose error protocol to keep up to date
+	 * @param idep the error protocol to keep up to date
+	 * @param checkers the error checkers to run on modified subjects
+	 */
+	public ImDocumentErrorMonitor(ImDocument doc, ImDocumentErrorProtocol idep, ImDocumentErrorChecker[] checkers) {
+		this.doc = doc;
+		this.idep = idep;
+		ArrayList checks = new ArrayList();
+		for (int c = 0; c < checkers.length; c++) {
+			String[] categories = checkers[c].getErrorCategories();
+			for (int ec = 0; ec < categories.length; ec++) {
+				String[] types = checkers[c].getErrorTypes(categories[ec]);
+				for (int et = 0; et < types.length; et++)
+					checks.add(new ErrorCheck(checkers[c], categories[ec], types[et]));
+			}
+		}
+		this.checks = ((ErrorCheck[]) checks.toArray(new ErrorCheck[checks.size()]));
+	}
+	
+	/**
+	 * Start observing the document for modifications.
+	 */
+	public synchronized void startObserving() {
+		if (this.observing)
+			return;
+		this.doc.addDocumentListener(this);
+		this.observing = true;
+	}
+	
+	/**
+	 * Stop observing the document for modifications. Any subjects affected by
+	 * modifications up to this point remain marked for re-checking.
+	 */
+	public synchronized void stopObserving() {
+		if (!this.observing)
+			return;
+		this.doc.removeDocumentListener(this);
+		this.observing = false;
+	}
+	
+	/**
+	 * Check whether or not any subjects are marked for re-checking.
+	 * @return true if there are subjects to re-check
+	 */
+	public synchronized boolean isDirty() {
+		for (int c = 0; c < this.checks.length; c++) {
+			if (this.checks[c].isDirty())
+				return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * Re-check all subjects affected by modifications since the last call to
+	 * this method. Errors previously reported on these subjects by the
+	 * respective error checkers are removed from the error protocol before
+	 * the re-check. Once all checks have run, the error protocol supplement
+	 * of the document (if any) is no longer marked as stale.
+	 * @return the number of errors added to the error protocol
+	 */
+	public synchronized int recheck() {
+		long start = ImMetrics.startTime();
+		int errorCount = 0;
+		for (int c = 0; c < this.checks.length; c++)
+			errorCount += this.checks[c].recheck();
+		this.removed.clear();
+		this.markErrorProtocolCurrent();
+		ImMetrics.time("ImDocumentErrorMonitor.recheck", start);
+		return errorCount;
+	}
+	
+	/* (non-Javadoc)
+	 * @see de.uka.ipd.idaho.im.ImDocument.ImDocumentListener#typeChanged(de.uka.ipd.idaho.im.ImObject, java.lang.String)
+	 */
+	public synchronized void typeChanged(ImObject object, String oldType) {
+		ModifiedObject mo = new ModifiedObject(object);
+		for (int c = 0; c < this.checks.length; c++) {
+			if (this.checks[c].observes(oldType))
+				this.checks[c].markAffected(mo, oldType);
+			if (this.checks[c].observes(object.getType()))
+				this.checks[c].markAffected(mo, object.getType());
+		}
+		this.markErrorProtocolStale();
+	}
+	
+	/* (non-Javadoc)
+	 * @see de.uka.ipd.idaho.im.ImDocument.ImDocumentListener#attributeChanged(de.uka.ipd.idaho.im.ImObject, java.lang.String, java.lang.Object)
+	 */
+	public synchronized void attributeChanged(ImObject object, String attributeName, Object oldValue) {
+		if (object instanceof ImSupplement)
+			return; // supplements are not subject to error checks, and we're marking the error protocol supplement ourselves
+		ModifiedObject mo = new ModifiedObject(object);
+		String type = object.getType();
+		for (int c = 0; c < this.checks.length; c++) {
+			if (this.checks[c].observes(type) || this.checks[c].observes("@" + attributeName))
+				this.checks[c].markAffected(mo, type);
+		}
+		this.markErrorProtocolStale();
+	}
+	
+	/* (non-Javadoc)
+	 * @see de.uka.ipd.idaho.im.ImDocument.ImDocumentListener#supplementChanged(java.lang.String, de.uka.ipd.idaho.im.ImSupplement)
+	 */
+	public void supplementChanged(String supplementId, ImSupplement oldValue) {}
+	
+	/* (non-Javadoc)
+	 * @see de.uka.ipd.idaho.im.ImDocument.ImDocumentListener#fontChanged(java.lang.String, de.uka.ipd.idaho.im.ImFont)
+	 */
+	public void fontChanged(String fontName, ImFont oldValue) {}
+	
+	/* (non-Javadoc)
+	 * @see de.uka.ipd.idaho.im.ImDocument.ImDocumentListener#regionAdded(de.uka.ipd.idaho.im.ImRegion)
+	 */
+	public synchronized void regionAdded(ImRegion region) {
+		this.removed.remove(region);
+		this.objectAddedOrRemoved(region);
+	}
+	
+	/* (non-Javadoc)
+	 * @see de.uka.ipd.idaho.im.ImDocument.ImDocumentListener#regionRemoved(de.uka.ipd.idaho.im.ImRegion)
+	 */
+	public synchronized void regionRemoved(ImRegion region) {
+		this.removed.add(region);
+		this.objectAddedOrRemoved(region);
+	}
+	
+	/* (non-Javadoc)
+	 * @see de.uka.ipd.idaho.im.ImDocument.ImDocumentListener#annotationAdded(de.uka.ipd.idaho.im.ImAnnotation)
+	 */
+	public synchronized void annotationAdded(ImAnnotation annotation) {
+		this.removed.remove(annotation);
+		this.objectAddedOrRemoved(annotation);
+	}
+	
+	/* (non-Javadoc)
+	 * @see de.uka.ipd.idaho.im.ImDocument.ImDocumentListener#annotationRemoved(de.uka.ipd.idaho.im.ImAnnotation)
+	 */
+	public synchronized void annotationRemoved(ImAnnotation annotation) {
+		this.removed.add(annotation);
+		this.objectAddedOrRemoved(annotation);
+	}
+	
+	private void objectAddedOrRemoved(ImObject object) {
+		ModifiedObject mo = new ModifiedObject(object);
+		String type = object.getType();
+		for (int c = 0; c < this.checks.length; c++) {
+			if (this.checks[c].observes(type))
+				this.checks[c].markAffected(mo, type);
+		}
+		this.markErrorProtocolStale();
+	}
+	
+	private void markErrorProtocolStale() {
+		if (!this.isDirty())
+			return;
+		ImSupplement idepSupp = this.doc.getSupplement(ImDocumentErrorProtocol.errorProtocolSupplementName);
+		if ((idepSupp != null) && !idepSupp.hasAttribute(ImDocumentErrorProtocol.staleErrorProtocolMarker))
+			idepSupp.setAttribute(ImDocumentErrorProtocol.staleErrorProtocolMarker, "true");
+	}
+	
+	private void markErrorProtocolCurrent() {
+		if (this.isDirty())
+			return;
+		ImSupplement idepSupp = this.doc.getSupplement(ImDocumentErrorProtocol.errorProtocolSupplementName);
+		if ((idepSupp != null) && idepSupp.hasAttribute(ImDocumentErrorProtocol.staleErrorProtocolMarker))
+			idepSupp.removeAttribute(ImDocumentErrorProtocol.staleErrorProtocolMarker);
+	}
+	
+	/* a modified object, together with the annotations and regions around it
+	 * that might be affected, looked up only once for all error checks */
+	private class ModifiedObject {
+		final ImObject object;
+		private ImAnnotation[] annots = null;
+		private ImRegion[] regions = null;
+		ModifiedObject(ImObject object) {
+			this.object = object;
+		}
+		
+		ImAnnotation[] getAnnotations() {
+			if (this.annots != null)
+				return this.annots;
+			
+			//	word, get spanning annotations
+			if (this.object instanceof ImWord)
+				this.annots = doc.getAnnotationsOverlapping((ImWord) this.object);
+			
+			//	annotation, get overlapping annotations
+			else if (this.object instanceof ImAnnotation) {
+				ImAnnotation annot = ((ImAnnotation) this.object);
+				this.annots = doc.getAnnotationsOverlapping(annot.getFirstWord(), annot.getLastWord());
+			}
+			
+			//	region, get annotations on contained words
+			else if (this.object instanceof ImRegion) {
+				ImRegion region = ((ImRegion) this.object);
+				ImPage page = doc.getPage(region.pageId);
+				ImWord[] words = ((page == null) ? new ImWord[0] : page.getWordsInside(region.bounds));
+				LinkedHashSet annots = new LinkedHashSet();
+				for (int w = 0; w < words.length; w++)
+					annots.addAll(Arrays.asList(doc.getAnnotationsOverlapping(words[w])));
+				this.annots = ((ImAnnotation[]) annots.toArray(new ImAnnotation[annots.size()]));
+			}
+			else this.annots = new ImAnnotation[0];
+			return this.annots;
+		}
+		
+		ImRegion[] getRegions() {
+			if (this.regions != null)
+				return this.regions;
+			LinkedHashSet regions = new LinkedHashSet();
+			
+			//	word, get including regions
+			if (this.object instanceof ImWord)
+				this.addRegionsIncluding(((ImWord) this.object), regions);
+			
+			//	annotation, get regions including end words
+			else if (this.object instanceof ImAnnotation) {
+				ImAnnotation annot = ((ImAnnotation) this.object);
+				this.addRegionsIncluding(annot.getFirstWord(), regions);
+				if (annot.getLastWord() != annot.getFirstWord())
+					this.addRegionsIncluding(annot.getLastWord(), regions);
+			}
+			
+			//	region, get including and nested regions
+			else if (this.object instanceof ImRegion) {
+				ImRegion region = ((ImRegion) this.object);
+				ImPage page = doc.getPage(region.pageId);
+				if (page != null) {
+					regions.addAll(Arrays.asList(page.getRegionsIncluding(region.bounds, false)));
+					regions.addAll(Arrays.asList(page.getRegionsInside(region.bounds, false)));
+				}
+			}
+			this.regions = ((ImRegion[]) regions.toArray(new ImRegion[regions.size()]));
+			return this.regions;
+		}
+		
+		private void addRegionsIncluding(ImWord word, LinkedHashSet regions) {
+			ImPage page = doc.getPage(word.pageId);
+			if (page != null)
+				regions.addAll(Arrays.asList(page.getRegionsIncluding(word.bounds, false)));
+		}
+	}
+	
+	/* a single category and type of errors of an individual error checker,
+	 * together with the subjects marked for re-checking */
+	private class ErrorCheck {
+		final ImDocumentErrorChecker checker;
+		final String category;
+		final String type;
+		private HashSet observedTargets = new HashSet();
+		private HashSet checkedSubjects = new HashSet();
+		private boolean isDocumentLevel;
+		private LinkedHashMap affectedSubjects = new LinkedHashMap(); // subject --> set of types to remove errors for
+		private boolean recheckDocument = false;
+		
+		ErrorCheck(ImDocumentErrorChecker checker, String category, String type) {
+			this.checker = checker;
+			this.category = category;
+			this.type = type;
+			String[] observedTargets = checker.getObservedTargets(category, type);
+			if (observedTargets != null) {
+				for (int t = 0; t < observedTargets.length; t++)
+					this.observedTargets.add(observedTargets[t]);
+			}
+			String[] checkedSubjects = checker.getCheckedSubjects(category, type);
+			if (checkedSubjects != null) {
+				for (int s = 0; s < checkedSubjects.length; s++)
+					this.checkedSubjects.add(checkedSubjects[s]);
+			}
+			this.isDocumentLevel = (this.checkedSubjects.isEmpty() || checker.requiresTopLevelDocument(category, type));
+		}
+		
+		boolean observes(String target) {
+			return (this.observedTargets.isEmpty() || this.observedTargets.contains(target)); // no observed targets means we cannot tell
+		}
+		
+		boolean isDirty() {
+			return (this.recheckDocument || (this.affectedSubjects.size() != 0));
+		}
+		
+		void markAffected(ModifiedObject mo, String type) {
+			if (this.recheckDocument)
+				return; // re-checking everything anyway
+			if (this.isDocumentLevel) {
+				this.recheckDocument = true;
+				this.affectedSubjects.clear();
+				return;
+			}
+			
+			//	object checked proper
+			if (this.checkedSubjects.contains(type))
+				this.markSubject(mo.object, type);
+			
+			//	word or annotation, mark spanning or overlapping annotations and including regions
+			if ((mo.object instanceof ImWord) || (mo.object instanceof ImAnnotation)) {
+				this.markAnnotations(mo.getAnnotations());
+				this.markRegions(mo.getRegions());
+			}
+			
+			//	region (other than page), mark including and nested regions, as well as annotations on contained words
+			else if ((mo.object instanceof ImRegion) && !(mo.object instanceof ImPage)) {
+				this.markRegions(mo.getRegions());
+				this.markAnnotations(mo.getAnnotations());
+			}
+			
+			//	page, document, font, or supplement, cannot localize
+			else {
+				this.recheckDocument = true;
+				this.affectedSubjects.clear();
+			}
+		}
+		
+		private void markAnnotations(ImAnnotation[] annots) {
+			for (int a = 0; a < annots.length; a++) {
+				if (this.checkedSubjects.contains(annots[a].getType()))
+					this.markSubject(annots[a], annots[a].getType());
+			}
+		}
+		
+		private void markRegions(ImRegion[] regions) {
+			for (int r = 0; r < regions.length; r++) {
+				if (this.checkedSubjects.contains(regions[r].getType()))
+					this.markSubject(regions[r], regions[r].getType());
+			}
+		}
+		
+		private void markSubject(ImObject subject, String type) {
+			LinkedHashSet types = ((LinkedHashSet) this.affectedSubjects.get(subject));
+			if (types == null) {
+				types = new LinkedHashSet(2);
+				this.affectedSubjects.put(subject, types);
+			}
+			types.add(type);
+		}
+		
+		int recheck() {
+			int errorCount = 0;
+			
+			//	re-check whole document
+			if (this.recheckDocument) {
+				DocumentError[] errors = idep.getErrors(this.category, this.type);
+				for (int e = 0; e < errors.length; e++) {
+					if (this.checker.name.equals(errors[e].source))
+						idep.removeError(errors[e]);
+				}
+				errorCount += this.checker.addDocumentErrors(doc, idep, this.category, this.type);
+				ImMetrics.count("ImDocumentErrorMonitor.documentRechecks");
+			}
+			
+			//	re-check individual subjects
+			else for (Iterator sit = this.affectedSubjects.keySet().iterator(); sit.hasNext();) {
+				ImObject subject = ((ImObject) sit.next());
+				LinkedHashSet types = ((LinkedHashSet) this.affectedSubjects.get(subject));
+				for (Iterator tit = types.iterator(); tit.hasNext();) {
+					ImDocumentError[] errors = idep.getErrorsForSubject(subject, ((String) tit.next()));
+					for (int e = 0; e < errors.length; e++) {
+						if (this.checker.name.equals(errors[e].source) && this.category.equals(errors[e].category) && this.type.equals(errors[e].type))
+							idep.removeError(errors[e]);
+					}
+				}
+				if (removed.contains(subject))
+					continue;
+				if (!this.checkedSubjects.contains(subject.getType()))
+					continue;
+				if (subject instanceof ImAnnotation)
+					errorCount += this.checker.addAnnotationErrors(((ImAnnotation) subject), idep, this.category, this.type);
+				else if (subject instanceof ImRegion)
+					errorCount += this.checker.addRegionErrors(((ImRegion) subject), idep, this.category, this.type);
+				ImMetrics.count("ImDocumentErrorMonitor.subjectRechecks");
+			}
+			
+			//	clean up
+			this.recheckDocument = false;
+			this.affectedSubjects.clear();
+			return errorCount;
+		}
+	}
+}
@@ -0,0 +1,293 @@
+/*
+ * Copyright (c) 2006-, IPD Boehm, Universitaet Karlsruhe (TH) / KIT, by Guido Sautter
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Universitaet Karlsruhe (TH) / KIT nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY UNIVERSITAET KARLSRUHE (TH) / KIT AND CONTRIBUTORS 
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uka.ipd.idaho.im.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.TreeSet;
+
+import de.uka.ipd.idaho.gamta.util.DocumentErrorProtocol.DocumentError;
+import de.uka.ipd.idaho.gamta.util.imaging.BoundingBox;
+import de.uka.ipd.idaho.im.ImAnnotation;
+import de.uka.ipd.idaho.im.ImDocument;
+import de.uka.ipd.idaho.im.ImPage;
+import de.uka.ipd.idaho.im.ImRegion;
+import de.uka.ipd.idaho.im.ImSupplement;
+import de.uka.ipd.idaho.im.ImWord;
+
+/**
+ * Parity check of incremental re-checking via an error monitor against full
+ * document checks, on a synthetic document with random word edits and with
+ * paragraphs added and removed inside other paragraphs. Also checks that the
+ * error protocol supplement is marked stale by edits and current again after
+ * each re-check.
+ *
+ * @author sautter
+ */
+public class ImDocumentErrorMonitorTest {
+	
+	/**
+	 * @param args
+	 */
+	public static void main(String[] args) throws Exception {
+		Random rnd = new Random(39);
+		
+		//	generate document
+		ImDocument doc = new ImDocument("ImDocumentErrorMonitorTest");
+		for (int p = 0; p < 20; p++) {
+			ImPage page = new ImPage(doc, p, new BoundingBox(0, 2000, 0, 3000));
+			int top = 0;
+			for (int g = 0; g < 10; g++) {
+				int gTop = top;
+				for (int l = 0; l < 4; l++) {
+					for (int w = 0; w < 8; w++)
+						new ImWord(page, new BoundingBox((w * 200), (w * 200 + 150), top, (top + 30)), ((rnd.nextInt(50) == 0) ? "ERR" : "word"));
+					top += 40;
+				}
+				new ImRegion(page, new BoundingBox(0, 1600, gTop, top), ImRegion.PARAGRAPH_TYPE);
+				top += 20;
+			}
+		}
+		
+		//	add error protocol supplement
+		ImSupplement idepSupp = new ImSupplement(doc, ImDocumentErrorProtocol.errorProtocolSupplementName, "errorProtocol", "text/plain") {
+			public InputStream getInputStream() throws IOException {
+				return new ByteArrayInputStream(new byte[0]);
+			}
+		};
+		doc.addSupplement(idepSupp);
+		
+		//	run full check, and start monitoring
+		ImDocumentErrorChecker[] checkers = {new ErrorWordChecker(), new NestedParagraphChecker()};
+		ImDocumentErrorProtocol idep = new ImDocumentErrorProtocol(doc);
+		for (int c = 0; c < checkers.length; c++)
+			checkers[c].addDocumentErrors(doc, idep, null, null);
+		System.out.println("Initial check found " + idep.getErrorCount() + " errors");
+		ImDocumentErrorMonitor idem = new ImDocumentErrorMonitor(doc, idep, checkers);
+		idem.startObserving();
+		
+		//	edit words and nested paragraphs in rounds, re-check incrementally, and compare to full check
+		ArrayList nestedParagraphs = new ArrayList();
+		int mismatches = 0;
+		for (int r = 0; r < 10; r++) {
+			for (int e = 0; e < 25; e++) {
+				ImPage page = doc.getPage(rnd.nextInt(doc.getPageCount()));
+				ImWord[] words = page.getWords();
+				ImWord word = words[rnd.nextInt(words.length)];
+				word.setString("ERR".equals(word.getString()) ? "word" : "ERR");
+			}
+			for (int e = 0; e < 4; e++) {
+				if ((nestedParagraphs.size() != 0) && rnd.nextBoolean()) {
+					ImRegion nested = ((ImRegion) nestedParagraphs.remove(rnd.nextInt(nestedParagraphs.size())));
+					doc.getPage(nested.pageId).removeRegion(nested);
+				}
+				else {
+					ImPage page = doc.getPage(rnd.nextInt(doc.getPageCount()));
+					ImRegion[] paragraphs = page.getRegions(ImRegion.PARAGRAPH_TYPE);
+					ImRegion outer = paragraphs[rnd.nextInt(paragraphs.length)];
+					int left = (outer.bounds.left + (rnd.nextInt(4) * 200));
+					nestedParagraphs.add(new ImRegion(page, new BoundingBox(left, (left + 350), outer.bounds.top, (outer.bounds.top + 70)), ImRegion.PARAGRAPH_TYPE));
+				}
+			}
+			if (!idepSupp.hasAttribute(ImDocumentErrorProtocol.staleErrorProtocolMarker)) {
+				System.out.println("Round " + r + ": error protocol not marked stale after edits");
+				mismatches++;
+			}
+			long start = System.currentTimeMillis();
+			idem.recheck();
+			long incTime = (System.currentTimeMillis() - start);
+			if (idepSupp.hasAttribute(ImDocumentErrorProtocol.staleErrorProtocolMarker)) {
+				System.out.println("Round " + r + ": error protocol still marked stale after re-check");
+				mismatches++;
+			}
+			ImDocumentErrorProtocol fullIdep = new ImDocumentErrorProtocol(doc);
+			start = System.currentTimeMillis();
+			for (int c = 0; c < checkers.length; c++)
+				checkers[c].addDocumentErrors(doc, fullIdep, null, null);
+			long fullTime = (System.currentTimeMillis() - start);
+			TreeSet incErrorIDs = getErrorIDs(idep);
+			TreeSet fullErrorIDs = getErrorIDs(fullIdep);
+			if (!incErrorIDs.equals(fullErrorIDs)) {
+				System.out.println("Round " + r + ": " + incErrorIDs.size() + " errors after incremental re-check, but " + fullErrorIDs.size() + " after full check");
+				mismatches++;
+			}
+			else System.out.println("Round " + r + ": " + incErrorIDs.size() + " errors, incremental re-check in " + incTime + "ms, full check in " + fullTime + "ms");
+		}
+		idem.stopObserving();
+		System.out.println("Compared 10 rounds of edits, " + mismatches + " mismatches");
+	}
+	
+	private static TreeSet getErrorIDs(ImDocumentErrorProtocol idep) {
+		TreeSet errorIDs = new TreeSet();
+		DocumentError[] errors = idep.getErrors();
+		for (int e = 0; e < errors.length; e++)
+			errorIDs.add(((ImDocumentErrorProtocol.ImDocumentError) errors[e]).id);
+		return errorIDs;
+	}
+	
+	/* flags paragraphs containing a word reading 'ERR' */
+	private static class ErrorWordChecker extends ImDocumentErrorChecker {
+		private static final String NAME = "ErrorWordChecker";
+		ErrorWordChecker() {
+			super(NAME);
+		}
+		public String[] getErrorCategories() {
+			String[] categories = {"text"};
+			return categories;
+		}
+		public String getErrorCategoryLabel(String category) {
+			return "Text";
+		}
+		public String getErrorCategoryDescription(String category) {
+			return "Text errors";
+		}
+		public String[] getErrorTypes(String category) {
+			String[] types = {"errorWord"};
+			return types;
+		}
+		public String getErrorTypeLabel(String category, String type) {
+			return "Error Word";
+		}
+		public String getErrorTypeDescription(String category, String type) {
+			return "Paragraphs containing an error word";
+		}
+		public String[] getObservedTargets(String category, String type) {
+			String[] targets = {ImWord.WORD_ANNOTATION_TYPE, ("@" + ImWord.STRING_ATTRIBUTE), ImRegion.PARAGRAPH_TYPE};
+			return targets;
+		}
+		public String[] getCheckedSubjects(String category, String type) {
+			String[] subjects = {ImRegion.PARAGRAPH_TYPE};
+			return subjects;
+		}
+		public boolean requiresTopLevelDocument(String category, String type) {
+			return false;
+		}
+		public String getCheckLevel(String category, String type) {
+			return null;
+		}
+		public boolean isDefaultErrorChecker() {
+			return false;
+		}
+		public int addDocumentErrors(ImDocument doc, ImDocumentErrorProtocol dep, String category, String type) {
+			int errorCount = 0;
+			ImPage[] pages = doc.getPages();
+			for (int p = 0; p < pages.length; p++) {
+				ImRegion[] paragraphs = pages[p].getRegions(ImRegion.PARAGRAPH_TYPE);
+				for (int g = 0; g < paragraphs.length; g++)
+					errorCount += this.addRegionErrors(paragraphs[g], dep, category, type);
+			}
+			return errorCount;
+		}
+		public int addAnnotationErrors(ImAnnotation annot, ImDocumentErrorProtocol dep, String category, String type) {
+			return 0;
+		}
+		public int addRegionErrors(ImRegion region, ImDocumentErrorProtocol dep, String category, String type) {
+			if (!ImRegion.PARAGRAPH_TYPE.equals(region.getType()))
+				return 0;
+			ImWord[] words = region.getWords();
+			for (int w = 0; w < words.length; w++) {
+				if ("ERR".equals(words[w].getString()))
+					return (dep.addError(new ImDocumentErrorProtocol.ImDocumentError(NAME, region, region.getDocument(), "text", "errorWord", "Paragraph contains error word", DocumentError.SEVERITY_MAJOR)) ? 1 : 0);
+			}
+			return 0;
+		}
+	}
+	
+	/* flags paragraphs nested in or containing another paragraph */
+	private static class NestedParagraphChecker extends ImDocumentErrorChecker {
+		private static final String NAME = "NestedParagraphChecker";
+		NestedParagraphChecker() {
+			super(NAME);
+		}
+		public String[] getErrorCategories() {
+			String[] categories = {"layout"};
+			return categories;
+		}
+		public String getErrorCategoryLabel(String category) {
+			return "Layout";
+		}
+		public String getErrorCategoryDescription(String category) {
+			return "Layout errors";
+		}
+		public String[] getErrorTypes(String category) {
+			String[] types = {"nestedParagraph"};
+			return types;
+		}
+		public String getErrorTypeLabel(String category, String type) {
+			return "Nested Paragraph";
+		}
+		public String getErrorTypeDescription(String category, String type) {
+			return "Paragraphs nested in or containing another paragraph";
+		}
+		public String[] getObservedTargets(String category, String type) {
+			String[] targets = {ImRegion.PARAGRAPH_TYPE};
+			return targets;
+		}
+		public String[] getCheckedSubjects(String category, String type) {
+			String[] subjects = {ImRegion.PARAGRAPH_TYPE};
+			return subjects;
+		}
+		public boolean requiresTopLevelDocument(String category, String type) {
+			return false;
+		}
+		public String getCheckLevel(String category, String type) {
+			return null;
+		}
+		public boolean isDefaultErrorChecker() {
+			return false;
+		}
+		public int addDocumentErrors(ImDocument doc, ImDocumentErrorProtocol dep, String category, String type) {
+			int errorCount = 0;
+			ImPage[] pages = doc.getPages();
+			for (int p = 0; p < pages.length; p++) {
+				ImRegion[] paragraphs = pages[p].getRegions(ImRegion.PARAGRAPH_TYPE);
+				for (int g = 0; g < paragraphs.length; g++)
+					errorCount += this.addRegionErrors(paragraphs[g], dep, category, type);
+			}
+			return errorCount;
+		}
+		public int addAnnotationErrors(ImAnnotation annot, ImDocumentErrorProtocol dep, String category, String type) {
+			return 0;
+		}
+		public int addRegionErrors(ImRegion region, ImDocumentErrorProtocol dep, String category, String type) {
+			if (!ImRegion.PARAGRAPH_TYPE.equals(region.getType()))
+				return 0;
+			ImRegion[] paragraphs = region.getPage().getRegions(ImRegion.PARAGRAPH_TYPE);
+			for (int g = 0; g < paragraphs.length; g++) {
+				if (paragraphs[g] == region)
+					continue;
+				if (region.bounds.includes(paragraphs[g].bounds, false) || paragraphs[g].bounds.includes(region.bounds, false))
+					return (dep.addError(new ImDocumentErrorProtocol.ImDocumentError(NAME, region, region.getDocument(), "layout", "nestedParagraph", "Paragraph nested in or containing another paragraph", DocumentError.SEVERITY_MINOR)) ? 1 : 0);
+			}
+			return 0;
+		}
+	}
+}
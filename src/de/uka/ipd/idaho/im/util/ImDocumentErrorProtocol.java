@@ -40,6 +40,7 @@ import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.TreeMap;
 
 import de.uka.ipd.idaho.gamta.Annotation;
@@ -79,7 +80,7 @@ public class ImDocumentErrorProtocol extends DocumentErrorProtocol implements Im
 	/** the Image Markup document the error protocol pertains to */
 	public final ImDocument subject;
 	
-	private ArrayList errors = new ArrayList();
+	private LinkedHashSet errors = new LinkedHashSet();
 	private HashMap errorsByIDs = new HashMap();
 	private HashMap falsePositivesByIDs = new HashMap();
 	private HashMap errorsByCategory = new HashMap();
@@ -87,8 +88,10 @@ public class ImDocumentErrorProtocol extends DocumentErrorProtocol implements Im
 	private HashMap errorsBySubjectType = new HashMap();
 	private HashMap errorsByTypeInternalSubjectId = new HashMap();
 	private HashMap errorsBySourceId = new HashMap();
+	private HashMap errorsBySeverity = new HashMap();
 	private CountingSet errorSeverityCounts = new CountingSet(new TreeMap());
 	
+	
 	/** Constructor
 	 * @param subject the document the error protocol pertains to
 	 */
@@ -139,12 +142,13 @@ public class ImDocumentErrorProtocol extends DocumentErrorProtocol implements Im
 			return false;
 		this.errors.add(error);
 		this.errorsByIDs.put(error.id, error);
-		getIndexList(this.errorsByCategory, error.category, true).add(error);
-		getIndexList(this.errorsByCategoryAndType, (error.category + "." + error.type), true).add(error);
-		getIndexList(this.errorsBySubjectType, error.subjectType, true).add(error);
-		getIndexList(this.errorsByTypeInternalSubjectId, error.typeInternalSubjectId, true).add(error);
+		getIndexSet(this.errorsByCategory, error.category, true).add(error);
+		getIndexSet(this.errorsByCategoryAndType, (error.category + "." + error.type), true).add(error);
+		getIndexSet(this.errorsBySubjectType, error.subjectType, true).add(error);
+		getIndexSet(this.errorsByTypeInternalSubjectId, error.typeInternalSubjectId, true).add(error);
 		if (error.source != null)
-			getIndexList(this.errorsBySourceId, error.source, true).add(error);
+			getIndexSet(this.errorsBySourceId, error.source, true).add(error);
+		getIndexSet(this.errorsBySeverity, error.severity, true).add(error);
 		this.errorSeverityCounts.add(error.severity);
 		this.errorSeverityCounts.add(error.category + "." + error.severity);
 		this.errorSeverityCounts.add(error.category + "." + error.type + "." + error.severity);
@@ -171,6 +175,15 @@ public class ImDocumentErrorProtocol extends DocumentErrorProtocol implements Im
 		return list;
 	}
 	
+	private static LinkedHashSet getIndexSet(HashMap index, String key, boolean create) {
+		LinkedHashSet set = ((LinkedHashSet) index.get(key));
+		if ((set == null) && create) {
+			set = new LinkedHashSet(4);
+			index.put(key, set);
+		}
+		return set;
+	}
+	
 	/**
 	 * Remove all errors of a specific category and type. Null values of either
 	 * argument are treated as wildcards: If the argument category is null, all
@@ -192,16 +205,17 @@ public class ImDocumentErrorProtocol extends DocumentErrorProtocol implements Im
 			this.errorsBySubjectType.clear();
 			this.errorsByTypeInternalSubjectId.clear();
 			this.errorsBySourceId.clear();
+			this.errorsBySeverity.clear();
 			this.errorSeverityCounts.clear();
 			return removed;
 		}
 		
 		//	get errors to remove
-		ArrayList ctErrors = null;
+		LinkedHashSet ctErrors = null;
 		
 		//	type wildcard, clean up category right away
 		if (type == null) {
-			ctErrors = getIndexList(this.errorsByCategory, category, false);
+			ctErrors = getIndexSet(this.errorsByCategory, category, false);
 			this.errorsByCategory.remove(category);
 			for (Iterator ctit = this.errorsByCategoryAndType.keySet().iterator(); ctit.hasNext();) {
 				String ct = ((String) ctit.next());
@@ -212,7 +226,7 @@ public class ImDocumentErrorProtocol extends DocumentErrorProtocol implements Im
 		
 		//	specific error type, clean up that index at least
 		else {
-			ctErrors = getIndexList(this.errorsByCategoryAndType, (category + "." + type), false);
+			ctErrors = getIndexSet(this.errorsByCategoryAndType, (category + "." + type), false);
 			this.errorsByCategoryAndType.remove(category + "." + type);
 		}
 		
@@ -222,8 +236,8 @@ public class ImDocumentErrorProtocol extends DocumentErrorProtocol implements Im
 		
 		//	clean up remaining indexes
 		boolean removed = false;
-		for (int e = 0; e < ctErrors.size(); e++) {
-			ImDocumentError ide = ((ImDocumentError) ctErrors.get(e));
+		for (Iterator eit = ctErrors.iterator(); eit.hasNext();) {
+			ImDocumentError ide = ((ImDocumentError) eit.next());
 			if (this.removeError(ide))
 				removed = true;
 		}
@@ -252,13 +266,13 @@ public class ImDocumentErrorProtocol extends DocumentErrorProtocol implements Im
 		if (this.subject == null)
 			return false;
 		String tisId = getTypeInternalErrorSubjectId(subject, this.subject);
-		ArrayList tisErrors = getIndexList(this.errorsByTypeInternalSubjectId, tisId, false);
+		LinkedHashSet tisErrors = getIndexSet(this.errorsByTypeInternalSubjectId, tisId, false);
 		if (tisErrors == null)
 			return false;
-		tisErrors = new ArrayList(tisErrors); // make local copy of index list to prevent any errors from slipping past scrutiny due to downstream index removals
+		ImDocumentError[] tisErrorArray = ((ImDocumentError[]) tisErrors.toArray(new ImDocumentError[tisErrors.size()])); // make local copy of index set to prevent any errors from slipping past scrutiny due to downstream index removals
 		boolean removed = false;
-		for (int e = 0; e < tisErrors.size(); e++) {
-			ImDocumentError ide = ((ImDocumentError) tisErrors.get(e));
+		for (int e = 0; e < tisErrorArray.length; e++) {
+			ImDocumentError ide = tisErrorArray[e];
 			if ((type == null) || ide.subjectType.equals(type)) {
 				if (this.removeError(ide))
 					removed = true;
@@ -273,13 +287,13 @@ public class ImDocumentErrorProtocol extends DocumentErrorProtocol implements Im
 	 * @return true if any error was actually removed
 	 */
 	public boolean removeErrorsBySource(String sourceId) {
-		ArrayList srcErrors = getIndexList(this.errorsBySourceId, sourceId, false);
+		LinkedHashSet srcErrors = getIndexSet(this.errorsBySourceId, sourceId, false);
 		if (srcErrors == null)
 			return false;
-		srcErrors = new ArrayList(srcErrors); // make local copy of index list to prevent any errors from slipping past scrutiny due to downstream index removals
+		ImDocumentError[] srcErrorArray = ((ImDocumentError[]) srcErrors.toArray(new ImDocumentError[srcErrors.size()])); // make local copy of index set to prevent any errors from slipping past scrutiny due to downstream index removals
 		boolean removed = false;
-		for (int e = 0; e < srcErrors.size(); e++) {
-			ImDocumentError ide = ((ImDocumentError) srcErrors.get(e));
+		for (int e = 0; e < srcErrorArray.length; e++) {
+			ImDocumentError ide = srcErrorArray[e];
 			if (this.removeError(ide))
 				removed = true;
 		}
@@ -300,12 +314,13 @@ public class ImDocumentErrorProtocol extends DocumentErrorProtocol implements Im
 			return false;
 		this.errors.remove(error);
 		this.errorsByIDs.remove(error.id);
-		removeFromIndexList(this.errorsByCategory, error.category, error);
-		removeFromIndexList(this.errorsByCategoryAndType, (error.category + "." + error.type), error);
-		removeFromIndexList(this.errorsBySubjectType, error.subjectType, error);
-		removeFromIndexList(this.errorsByTypeInternalSubjectId, error.typeInternalSubjectId, error);
+		removeFromIndexSet(this.errorsByCategory, error.category, error);
+		removeFromIndexSet(this.errorsByCategoryAndType, (error.category + "." + error.type), error);
+		removeFromIndexSet(this.errorsBySubjectType, error.subjectType, error);
+		removeFromIndexSet(this.errorsByTypeInternalSubjectId, error.typeInternalSubjectId, error);
 		if (error.source != null)
-			removeFromIndexList(this.errorsBySourceId, error.source, error);
+			removeFromIndexSet(this.errorsBySourceId, error.source, error);
+		removeFromIndexSet(this.errorsBySeverity, error.severity, error);
 		this.errorSeverityCounts.remove(error.severity);
 		this.errorSeverityCounts.remove(error.category + "." + error.severity);
 		this.errorSeverityCounts.remove(error.category + "." + error.type + "." + error.severity);
@@ -335,6 +350,15 @@ public class ImDocumentErrorProtocol extends DocumentErrorProtocol implements Im
 		else return false;
 	}
 	
+	private static void removeFromIndexSet(HashMap index, String key, DocumentError error) {
+		LinkedHashSet set = ((LinkedHashSet) index.get(key));
+		if (set == null)
+			return;
+		set.remove(error);
+		if (set.isEmpty())
+			index.remove(key);
+	}
+	
 	public boolean isFalsePositive(DocumentError error) {
 		return this.isFalsePositive((ImDocumentError) error);
 	}
@@ -402,8 +426,18 @@ public class ImDocumentErrorProtocol extends DocumentErrorProtocol implements Im
 		return ((DocumentError[]) this.errors.toArray(new DocumentError[this.errors.size()]));
 	}
 	
+	/**
+	 * Retrieve the errors of a given severity.
+	 * @param severity the severity of the errors
+	 * @return an array holding the errors
+	 */
+	public DocumentError[] getErrorsWithSeverity(String severity) {
+		LinkedHashSet severityErrors = getIndexSet(this.errorsBySeverity, severity, false);
+		return ((severityErrors == null) ? new DocumentError[0] : ((DocumentError[]) severityErrors.toArray(new DocumentError[severityErrors.size()])));
+	}
+	
 	public int getErrorCount(String category) {
-		ArrayList categoryErrors = getIndexList(this.errorsByCategory, category, false);
+		LinkedHashSet categoryErrors = getIndexSet(this.errorsByCategory, category, false);
 		return ((categoryErrors == null) ? 0 : categoryErrors.size());
 	}
 	
@@ -414,12 +448,12 @@ public class ImDocumentErrorProtocol extends DocumentErrorProtocol implements Im
 	public DocumentError[] getErrors(String category) {
 		if (category == null)
 			return this.getErrors();
-		ArrayList categoryErrors = getIndexList(this.errorsByCategory, category, false);
+		LinkedHashSet categoryErrors = getIndexSet(this.errorsByCategory, category, false);
 		return ((categoryErrors == null) ? new DocumentError[0] : ((DocumentError[]) categoryErrors.toArray(new DocumentError[categoryErrors.size()])));
 	}
 	
 	public int getErrorCount(String category, String type) {
-		ArrayList categoryAndTypeErrors = getIndexList(this.errorsByCategoryAndType, (category + "." + type), false);
+		LinkedHashSet categoryAndTypeErrors = getIndexSet(this.errorsByCategoryAndType, (category + "." + type), false);
 		return ((categoryAndTypeErrors == null) ? 0 : categoryAndTypeErrors.size());
 	}
 	
@@ -432,7 +466,7 @@ public class ImDocumentErrorProtocol extends DocumentErrorProtocol implements Im
 			return this.getErrors();
 		if (type == null)
 			return this.getErrors(category);
-		ArrayList categoryAndTypeErrors = getIndexList(this.errorsByCategoryAndType, (category + "." + type), false);
+		LinkedHashSet categoryAndTypeErrors = getIndexSet(this.errorsByCategoryAndType, (category + "." + type), false);
 		return ((categoryAndTypeErrors == null) ? new DocumentError[0] : ((DocumentError[]) categoryAndTypeErrors.toArray(new DocumentError[categoryAndTypeErrors.size()])));
 	}
 	
@@ -456,12 +490,12 @@ public class ImDocumentErrorProtocol extends DocumentErrorProtocol implements Im
 		if (this.subject == null)
 			return new ImDocumentError[0];
 		String tisId = getTypeInternalErrorSubjectId(subject, this.subject);
-		ArrayList tisErrors = getIndexList(this.errorsByTypeInternalSubjectId, tisId, false);
+		LinkedHashSet tisErrors = getIndexSet(this.errorsByTypeInternalSubjectId, tisId, false);
 		if (tisErrors == null)
 			return new ImDocumentError[0];
 		ArrayList sErrors = new ArrayList();
-		for (int e = 0; e < tisErrors.size(); e++) {
-			ImDocumentError ide = ((ImDocumentError) tisErrors.get(e));
+		for (Iterator eit = tisErrors.iterator(); eit.hasNext();) {
+			ImDocumentError ide = ((ImDocumentError) eit.next());
 			if ((type == null) || ide.subjectType.equals(type))
 				sErrors.add(ide);
 		}
@@ -476,7 +510,7 @@ public class ImDocumentErrorProtocol extends DocumentErrorProtocol implements Im
 	 * @return an array holding the errors
 	 */
 	public DocumentError[] getErrorsFromSource(String sourceId) {
-		ArrayList srcErrors = getIndexList(this.errorsBySourceId, sourceId, false);
+		LinkedHashSet srcErrors = getIndexSet(this.errorsBySourceId, sourceId, false);
 		if (srcErrors == null)
 			return new ImDocumentError[0];
 		return ((ImDocumentError[]) srcErrors.toArray(new ImDocumentError[srcErrors.size()]));
@@ -595,6 +629,7 @@ public class ImDocumentErrorProtocol extends DocumentErrorProtocol implements Im
 		
 		//	load error protocol, scoping error categories and types
 		BufferedReader epBr = ((in instanceof BufferedReader) ? ((BufferedReader) in) : new BufferedReader(in));
+		ErrorSubjectResolver subjectResolver = ((idep.subject == null) ? null : new ErrorSubjectResolver(idep.subject));
 		String category = "null";
 		String type = "null";
 		for (String line; (line = epBr.readLine()) != null;) {
@@ -602,13 +637,15 @@ public class ImDocumentErrorProtocol extends DocumentErrorProtocol implements Im
 			if (line.length() == 0)
 				continue;
 			
-			//	parse data
-			String[] data = line.split("\\t");
-			if (data.length < 2)
+			//	check data type
+			int split = line.indexOf('\t');
+			if (split == -1)
 				continue;
+			String dataType = line.substring(0, split);
 			
 			//	read error category
-			if ("CATEGORY".equals(data[0])) {
+			if ("CATEGORY".equals(dataType)) {
+				String[] data = line.split("\\t");
 				category = data[1];
 				String label = getElement(data, 2, category);
 				String description = getElement(data, 3, category);
@@ -617,7 +654,8 @@ public class ImDocumentErrorProtocol extends DocumentErrorProtocol implements Im
 			}
 			
 			//	read error type
-			if ("TYPE".equals(data[0])) {
+			if ("TYPE".equals(dataType)) {
+				String[] data = line.split("\\t");
 				type = data[1];
 				String label = getElement(data, 2, type);
 				String description = getElement(data, 3, type);
@@ -626,42 +664,100 @@ public class ImDocumentErrorProtocol extends DocumentErrorProtocol implements Im
 			}
 			
 			//	do we have an actual error or false positive?
-			if (!"ERROR".equals(data[0]) && !"FALPOS".equals(data[0]))
+			if (!"ERROR".equals(dataType) && !"FALPOS".equals(dataType))
 				continue; // something weird, ignore it
-			if (data.length < (isSeverity(data[1]) ? 9 : 8))
-				continue; // not the data we expected ...
 			
-			//	read error (handle absence of severity for now, we do have a few existing protocols without it out there)
-			int i = 1;
-			String severity = (isSeverity(data[i]) ? data[i++] : DocumentError.SEVERITY_CRITICAL);
-			String description = data[i++];
-			String source = data[i++];
-			String subjectClass = data[i++];
-			String subjectType = data[i++];
-			String typeInternalSubjectId = data[i++];
-			int subjectPageId = Integer.parseInt(data[i++]);
-			int subjectLastPageId = Integer.parseInt(data[i++]);
-			ImWord subjectFirstWord;
-			ImWord subjectLastWord;
-			ImObject subject;
-			if (idep.subject == null) {
-				subjectFirstWord = ((data.length < 10) ? null : buildDummyWord(data[i++]));
-				subjectLastWord = ((data.length < 11) ? null : buildDummyWord(data[i++]));
-				subject = null;
-			}
-			else {
-				subjectFirstWord = ((data.length < 10) ? null : idep.subject.getWord(data[i++]));
-				subjectLastWord = ((data.length < 11) ? null : idep.subject.getWord(data[i++]));
-				subject = getErrorSubject(idep.subject, subjectClass, subjectType, typeInternalSubjectId, subjectPageId, subjectFirstWord);
-			}
-			ImDocumentError ide = new ImDocumentError(source, subject, category, type, description, severity, subjectClass, subjectType, typeInternalSubjectId, subjectPageId, subjectFirstWord, subjectLastPageId, subjectLastWord);
-			if ("ERROR".equals(data[0]))
+			//	read error
+			ImDocumentError ide = idep.parseErrorData(category, type, line, subjectResolver);
+			if (ide == null)
+				continue; // not the data we expected ...
+			if ("ERROR".equals(dataType))
 				idep.addError(ide);
-			else if ("FALPOS".equals(data[0]))
-				idep.markFalsePositive(ide);
+			else idep.markFalsePositive(ide);
 		}
 		epBr.close();
 	}
+	
+	private ImDocumentError parseErrorData(String category, String type, String line, ErrorSubjectResolver subjectResolver) {
+		
+		//	parse data
+		String[] data = line.split("\\t");
+		if (data.length < (isSeverity(data[1]) ? 9 : 8))
+			return null; // not the data we expected ...
+		
+		//	read error (handle absence of severity for now, we do have a few existing protocols without it out there)
+		int i = 1;
+		String severity = (isSeverity(data[i]) ? data[i++] : DocumentError.SEVERITY_CRITICAL);
+		String description = data[i++];
+		String source = data[i++];
+		String subjectClass = data[i++];
+		String subjectType = data[i++];
+		String typeInternalSubjectId = data[i++];
+		int subjectPageId = Integer.parseInt(data[i++]);
+		int subjectLastPageId = Integer.parseInt(data[i++]);
+		ImWord subjectFirstWord;
+		ImWord subjectLastWord;
+		ImObject subject;
+		if (subjectResolver == null) {
+			subjectFirstWord = ((data.length < 10) ? null : buildDummyWord(data[i++]));
+			subjectLastWord = ((data.length < 11) ? null : buildDummyWord(data[i++]));
+			subject = null;
+		}
+		else {
+			subjectFirstWord = ((data.length < 10) ? null : this.subject.getWord(data[i++]));
+			subjectLastWord = ((data.length < 11) ? null : this.subject.getWord(data[i++]));
+			subject = subjectResolver.getErrorSubject(subjectClass, subjectType, typeInternalSubjectId, subjectPageId, subjectFirstWord);
+		}
+		return new ImDocumentError(source, subject, category, type, description, severity, subjectClass, subjectType, typeInternalSubjectId, subjectPageId, subjectFirstWord, subjectLastPageId, subjectLastWord);
+	}
+	
+	/* resolves error subjects when loading an error protocol, indexing the
+	 * candidate regions and annotations by their type internal IDs only once
+	 * for all the errors on the same page or starting at the same word */
+	private static class ErrorSubjectResolver {
+		private final ImDocument doc;
+		private HashMap regionsById = new HashMap(); // page ID and type --> type internal ID --> region
+		private HashMap annotsById = new HashMap(); // first word ID --> type and type internal ID --> annotation
+		ErrorSubjectResolver(ImDocument doc) {
+			this.doc = doc;
+		}
+		ImObject getErrorSubject(String subjectClass, String subjectType, String subjectId, int subjectPageId, ImWord subjectFirstWord) {
+			if ("region".equals(subjectClass)) {
+				String pageTypeKey = (subjectPageId + "." + subjectType);
+				HashMap regions = ((HashMap) this.regionsById.get(pageTypeKey));
+				if (regions == null) {
+					regions = new HashMap();
+					ImPage page = this.doc.getPage(subjectPageId);
+					ImRegion[] pageRegions = ((page == null) ? new ImRegion[0] : page.getRegions(subjectType));
+					for (int r = 0; r < pageRegions.length; r++) {
+						String regionId = getTypeInternalErrorSubjectId(pageRegions[r], this.doc);
+						if (!regions.containsKey(regionId))
+							regions.put(regionId, pageRegions[r]);
+					}
+					this.regionsById.put(pageTypeKey, regions);
+				}
+				return ((ImObject) regions.get(subjectId));
+			}
+			if ("annotation".equals(subjectClass)) {
+				if (subjectFirstWord == null)
+					return null;
+				HashMap annots = ((HashMap) this.annotsById.get(subjectFirstWord.getLocalID()));
+				if (annots == null) {
+					annots = new HashMap();
+					ImAnnotation[] wordAnnots = this.doc.getAnnotations(subjectFirstWord, null);
+					for (int a = 0; a < wordAnnots.length; a++) {
+						String annotKey = (wordAnnots[a].getType() + " " + getTypeInternalErrorSubjectId(wordAnnots[a], this.doc));
+						if (!annots.containsKey(annotKey))
+							annots.put(annotKey, wordAnnots[a]);
+					}
+					this.annotsById.put(subjectFirstWord.getLocalID(), annots);
+				}
+				return ((ImObject) annots.get(subjectType + " " + subjectId));
+			}
+			return ImDocumentErrorProtocol.getErrorSubject(this.doc, subjectClass, subjectType, subjectId, subjectPageId, subjectFirstWord);
+		}
+	}
+	
 	private static String getElement(String[] data, int index, String def) {
 		return ((index < data.length) ? data[index] : def);
 	}
@@ -738,7 +834,7 @@ public class ImDocumentErrorProtocol extends DocumentErrorProtocol implements Im
 				
 				//	store false positives
 				if (falsePositives == null)
-					falsePositives = idep.getFalsePositiveList();
+					falsePositives = new ArrayList(idep.falsePositivesByIDs.values());
 				for (int fp = 0; fp < falsePositives.size(); fp++) {
 					ImDocumentError ide = ((ImDocumentError) falsePositives.get(fp));
 					if (!categories[c].equals(ide.category))
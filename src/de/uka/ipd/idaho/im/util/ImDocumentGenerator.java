@@ -0,0 +1,712 @@
+/*
+ * Copyright (c) 2006-, IPD Boehm, Universitaet Karlsruhe (TH) / KIT, by Guido Sautter
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Universitaet Karlsruhe (TH) / KIT nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY UNIVERSITAET KARLSRUHE (TH) / KIT AND CONTRIBUTORS 
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uka.ipd.idaho.im.util;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+
+import de.uka.ipd.idaho.gamta.util.imaging.BoundingBox;
+import de.uka.ipd.idaho.gamta.util.imaging.ImagingConstants;
+import de.uka.ipd.idaho.gamta.util.imaging.PageImage;
+import de.uka.ipd.idaho.gamta.util.imaging.PageImageInputStream;
+import de.uka.ipd.idaho.gamta.util.imaging.PageImageStore.AbstractPageImageStore;
+import de.uka.ipd.idaho.im.ImDocument;
+import de.uka.ipd.idaho.im.ImPage;
+import de.uka.ipd.idaho.im.ImRegion;
+import de.uka.ipd.idaho.im.ImSupplement;
+import de.uka.ipd.idaho.im.ImWord;
+
+/**
+ * Generator for synthetic Image Markup documents of arbitrary size, for load,
+ * scale, and performance testing without any need for actual (and possibly
+ * confidential) documents. The generated documents have a realistic general
+ * structure, i.e., words arranged in lines, blocks, and columns, as well as
+ * tables, figures with captions, footnotes, and page headers, all marked
+ * with the respective regions and organized in text streams. Word strings
+ * are random, but reproducibly so, as all randomness derives from a single
+ * seed. Page images are plain white and held in memory, encoded only once
+ * per page size.<br/>
+ * Instances of this class are configured via their setters; the default
+ * configuration generates ten single-column pages with 400 words each.<br/>
+ * The <code>main()</code> method provides a command line interface that
+ * generates a document and stores it in any number of storage modes.
+ * 
+ * @author sautter
+ */
+public class ImDocumentGenerator implements ImagingConstants {
+	
+	/** text stream layout with all main text in a single text stream spanning the whole document */
+	public static final int STREAM_LAYOUT_DOCUMENT = 0;
+	
+	/** text stream layout with the main text of each page in a text stream of its own */
+	public static final int STREAM_LAYOUT_PAGE = 1;
+	
+	/** text stream layout with each block of main text in a text stream of its own, like in raw OCR output */
+	public static final int STREAM_LAYOUT_BLOCK = 2;
+	
+	/** region nesting level with no text regions at all */
+	public static final int REGIONS_NONE = 0;
+	
+	/** region nesting level with columns only */
+	public static final int REGIONS_COLUMNS = 1;
+	
+	/** region nesting level with columns and blocks */
+	public static final int REGIONS_BLOCKS = 2;
+	
+	/** region nesting level with columns, blocks, and paragraphs */
+	public static final int REGIONS_PARAGRAPHS = 3;
+	
+	/** region nesting level with columns, blocks, paragraphs, and lines */
+	public static final int REGIONS_LINES = 4;
+	
+	private static final String[] syllables = {"an", "ber", "con", "di", "el", "fa", "gen", "hu", "in", "lo", "mus", "nor", "or", "pa", "qua", "ri", "sta", "tur", "um", "ve"};
+	
+	private int pageWidth = 2480;
+	private int pageHeight = 3508;
+	private int pageDpi = 300;
+	private int pageMargin = 200;
+	
+	private int pageCount = 10;
+	private int wordsPerPage = 400;
+	private int columnsPerPage = 1;
+	private int wordsPerLine = 10;
+	private int linesPerBlock = 8;
+	private int streamLayout = STREAM_LAYOUT_DOCUMENT;
+	private int regionNesting = REGIONS_LINES;
+	private boolean pageHeaders = true;
+	private int footnotesPerPage = 0;
+	
+	private int tablesPerPage = 0;
+	private int tableRows = 10;
+	private int tableColumns = 5;
+	
+	private int figuresPerPage = 0;
+	private int figureBytes = 16384;
+	private int sourceBytes = 0;
+	
+	private ArrayList annotationTypes = new ArrayList();
+	
+	private long seed = 4711;
+	
+	/** Constructor creating a generator with the default configuration
+	 */
+	public ImDocumentGenerator() {}
+	
+	/**
+	 * Set the size of generated pages, in pixels at the page resolution. The
+	 * default is A4 at 300 DPI, i.e., 2480 by 3508 pixels.
+	 * @param width the page width
+	 * @param height the page height
+	 * @param dpi the page resolution
+	 */
+	public void setPageSize(int width, int height, int dpi) {
+		this.pageWidth = width;
+		this.pageHeight = height;
+		this.pageDpi = dpi;
+		this.pageMargin = (dpi * 2) / 3;
+	}
+	
+	/**
+	 * Set the number of pages to generate (default 10).
+	 * @param pageCount the number of pages
+	 */
+	public void setPageCount(int pageCount) {
+		this.pageCount = pageCount;
+	}
+	
+	/**
+	 * Set the number of main text words to generate per page (default 400).
+	 * Words in page headers, footnotes, tables, and captions come on top of
+	 * this number. The more words, the smaller the generated lines.
+	 * @param wordsPerPage the number of words per page
+	 */
+	public void setWordsPerPage(int wordsPerPage) {
+		this.wordsPerPage = wordsPerPage;
+	}
+	
+	/**
+	 * Set the number of text columns per page (default 1).
+	 * @param columnsPerPage the number of columns
+	 */
+	public void setColumnsPerPage(int columnsPerPage) {
+		this.columnsPerPage = Math.max(1, columnsPerPage);
+	}
+	
+	/**
+	 * Set the number of words per line of main text (default 10).
+	 * @param wordsPerLine the number of words per line
+	 */
+	public void setWordsPerLine(int wordsPerLine) {
+		this.wordsPerLine = Math.max(1, wordsPerLine);
+	}
+	
+	/**
+	 * Set the number of lines per block of main text (default 8). Each block
+	 * is a paragraph of its own.
+	 * @param linesPerBlock the number of lines per block
+	 */
+	public void setLinesPerBlock(int linesPerBlock) {
+		this.linesPerBlock = Math.max(1, linesPerBlock);
+	}
+	
+	/**
+	 * Set the text stream layout of the main text, i.e., one of the
+	 * <code>STREAM_LAYOUT_...</code> constants (default is one stream for
+	 * the whole document).
+	 * @param streamLayout the text stream layout
+	 */
+	public void setStreamLayout(int streamLayout) {
+		this.streamLayout = streamLayout;
+	}
+	
+	/**
+	 * Set the level of region nesting for the main text, i.e., one of the
+	 * <code>REGIONS_...</code> constants (default is down to lines).
+	 * @param regionNesting the region nesting level
+	 */
+	public void setRegionNesting(int regionNesting) {
+		this.regionNesting = regionNesting;
+	}
+	
+	/**
+	 * Generate a page header line at the top of each page (default true)?
+	 * @param pageHeaders generate page headers?
+	 */
+	public void setPageHeaders(boolean pageHeaders) {
+		this.pageHeaders = pageHeaders;
+	}
+	
+	/**
+	 * Set the number of single-line footnotes at the bottom of each page
+	 * (default 0).
+	 * @param footnotesPerPage the number of footnotes per page
+	 */
+	public void setFootnotesPerPage(int footnotesPerPage) {
+		this.footnotesPerPage = footnotesPerPage;
+	}
+	
+	/**
+	 * Set the number and size of tables per page (default none). Tables are
+	 * marked with table, row, column, and cell regions, with one word per
+	 * cell, and each table forms a text stream of its own.
+	 * @param tablesPerPage the number of tables per page
+	 * @param rows the number of rows per table
+	 * @param columns the number of columns per table
+	 */
+	public void setTables(int tablesPerPage, int rows, int columns) {
+		this.tablesPerPage = tablesPerPage;
+		this.tableRows = Math.max(1, rows);
+		this.tableColumns = Math.max(1, columns);
+	}
+	
+	/**
+	 * Set the number of figures per page and the approximate size of their
+	 * binary data (default none). Each figure is a PNG image of noise, so
+	 * its data does not compress, and comes with a single-line caption.
+	 * @param figuresPerPage the number of figures per page
+	 * @param figureBytes the approximate number of bytes per figure
+	 */
+	public void setFigures(int figuresPerPage, int figureBytes) {
+		this.figuresPerPage = figuresPerPage;
+		this.figureBytes = Math.max(64, figureBytes);
+	}
+	
+	/**
+	 * Set the number of bytes in a random binary source supplement attached
+	 * to the document (default 0, i.e., no source supplement).
+	 * @param sourceBytes the size of the source supplement
+	 */
+	public void setSourceBytes(int sourceBytes) {
+		this.sourceBytes = sourceBytes;
+	}
+	
+	/**
+	 * Add an annotation type to the mix of generated annotations (default
+	 * none). Annotations start at random main text words and span up to the
+	 * argument maximum number of words, but never cross text stream ends.
+	 * @param type the annotation type
+	 * @param perPage the number of annotations of the type per page
+	 * @param maxWords the maximum number of words per annotation
+	 */
+	public void addAnnotationType(String type, int perPage, int maxWords) {
+		this.annotationTypes.add(new AnnotationTypeSpec(type, perPage, Math.max(1, maxWords)));
+	}
+	
+	private static class AnnotationTypeSpec {
+		final String type;
+		final int perPage;
+		final int maxWords;
+		AnnotationTypeSpec(String type, int perPage, int maxWords) {
+			this.type = type;
+			this.perPage = perPage;
+			this.maxWords = maxWords;
+		}
+	}
+	
+	/**
+	 * Set the seed for all random decisions (default 4711). Two generators
+	 * with the same configuration and seed produce identical documents.
+	 * @param seed the random seed
+	 */
+	public void setSeed(long seed) {
+		this.seed = seed;
+	}
+	
+	/**
+	 * Generate a document according to the current configuration.
+	 * @param docId the ID for the document
+	 * @return the generated document
+	 */
+	public ImDocument generateDocument(String docId) {
+		Random rand = new Random(this.seed);
+		ImDocument doc = new ImDocument(docId);
+		doc.setPageImageSource(new MemoryPageImageStore(this.pageWidth, this.pageHeight, this.pageDpi));
+		
+		//	add source supplement
+		if (this.sourceBytes > 0) {
+			byte[] sourceData = new byte[this.sourceBytes];
+			rand.nextBytes(sourceData);
+			ImSupplement.Source.createSource(doc, "application/octet-stream", sourceData);
+		}
+		
+		//	generate pages
+		ImWord[] lastMainTextWord = {null};
+		for (int p = 0; p < this.pageCount; p++)
+			this.generatePage(doc, p, rand, lastMainTextWord);
+		return doc;
+	}
+	
+	private void generatePage(ImDocument doc, int pageId, Random rand, ImWord[] lastMainTextWord) {
+		ImPage page = new ImPage(doc, pageId, new BoundingBox(0, this.pageWidth, 0, this.pageHeight));
+		page.setImageDPI(this.pageDpi);
+		int contentWidth = (this.pageWidth - (2 * this.pageMargin));
+		int top = this.pageMargin;
+		int bottom = (this.pageHeight - this.pageMargin);
+		int fullLineHeight = (this.pageDpi / 5);
+		
+		//	add page header
+		if (this.pageHeaders) {
+			this.addLine(page, this.pageMargin, contentWidth, top, fullLineHeight, 5, ImWord.TEXT_STREAM_TYPE_PAGE_TITLE, rand);
+			top += (fullLineHeight * 2);
+		}
+		
+		//	add footnotes from page bottom upward
+		for (int f = 0; f < this.footnotesPerPage; f++) {
+			bottom -= fullLineHeight;
+			BoundingBox footnote = this.addLine(page, this.pageMargin, contentWidth, bottom, fullLineHeight, this.wordsPerLine, ImWord.TEXT_STREAM_TYPE_FOOTNOTE, rand);
+			new ImRegion(page, footnote, BLOCK_ANNOTATION_TYPE);
+			new ImRegion(page, footnote, FOOTNOTE_TYPE);
+		}
+		
+		//	add figures with captions above footnotes
+		if (this.figuresPerPage > 0) {
+			int figureWidth = (contentWidth / this.figuresPerPage);
+			int figureHeight = Math.max(fullLineHeight, Math.min((figureWidth - fullLineHeight), ((bottom - top) / 4)));
+			bottom -= (figureHeight + (fullLineHeight * 2));
+			for (int f = 0; f < this.figuresPerPage; f++) {
+				int left = (this.pageMargin + (f * figureWidth));
+				BoundingBox figureBounds = new BoundingBox(left, (left + figureWidth - fullLineHeight), bottom, (bottom + figureHeight));
+				this.addFigure(doc, pageId, f, figureBounds);
+				new ImRegion(page, figureBounds, ImRegion.IMAGE_TYPE);
+				BoundingBox caption = this.addLine(page, left, (figureWidth - fullLineHeight), (bottom + figureHeight + (fullLineHeight / 2)), fullLineHeight, 4, ImWord.TEXT_STREAM_TYPE_CAPTION, rand);
+				new ImRegion(page, caption, CAPTION_TYPE);
+			}
+		}
+		
+		//	add tables above figures
+		for (int t = 0; t < this.tablesPerPage; t++) {
+			int tableHeight = Math.max(this.tableRows, Math.min((this.tableRows * fullLineHeight), ((bottom - top) / (2 * this.tablesPerPage))));
+			bottom -= (tableHeight + fullLineHeight);
+			this.addTable(page, new BoundingBox(this.pageMargin, (this.pageMargin + contentWidth), bottom, (bottom + tableHeight)), rand);
+		}
+		
+		//	fill remaining space with main text
+		this.addMainText(page, this.pageMargin, contentWidth, top, bottom, rand, lastMainTextWord);
+		
+		//	add annotations to main text
+		ImWord[] pageWords = page.getWords();
+		ArrayList mainTextWords = new ArrayList();
+		for (int w = 0; w < pageWords.length; w++) {
+			if (ImWord.TEXT_STREAM_TYPE_MAIN_TEXT.equals(pageWords[w].getTextStreamType()))
+				mainTextWords.add(pageWords[w]);
+		}
+		if (mainTextWords.isEmpty())
+			return;
+		for (int t = 0; t < this.annotationTypes.size(); t++) {
+			AnnotationTypeSpec ats = ((AnnotationTypeSpec) this.annotationTypes.get(t));
+			for (int a = 0; a < ats.perPage; a++) {
+				ImWord firstWord = ((ImWord) mainTextWords.get(rand.nextInt(mainTextWords.size())));
+				ImWord lastWord = firstWord;
+				for (int w = rand.nextInt(ats.maxWords); (w > 0) && (lastWord.getNextWord() != null); w--)
+					lastWord = lastWord.getNextWord();
+				doc.addAnnotation(firstWord, lastWord, ats.type);
+			}
+		}
+	}
+	
+	private void addMainText(ImPage page, int left, int width, int top, int bottom, Random rand, ImWord[] lastMainTextWord) {
+		if (this.wordsPerPage < 1)
+			return;
+		
+		//	compute layout
+		int columnGap = (this.pageDpi / 6);
+		int columnWidth = ((width - ((this.columnsPerPage - 1) * columnGap)) / this.columnsPerPage);
+		int wordsPerColumn = ((this.wordsPerPage + this.columnsPerPage - 1) / this.columnsPerPage);
+		int linesPerColumn = ((wordsPerColumn + this.wordsPerLine - 1) / this.wordsPerLine);
+		int blocksPerColumn = ((linesPerColumn + this.linesPerBlock - 1) / this.linesPerBlock);
+		int lineHeight = Math.max(4, Math.min((this.pageDpi / 5), ((bottom - top) / Math.max(1, (linesPerColumn + blocksPerColumn)))));
+		
+		//	reset main text stream per page if requested
+		if (this.streamLayout != STREAM_LAYOUT_DOCUMENT)
+			lastMainTextWord[0] = null;
+		
+		//	generate columns
+		int wordsLeft = this.wordsPerPage;
+		for (int c = 0; (c < this.columnsPerPage) && (wordsLeft > 0); c++) {
+			int columnLeft = (left + (c * (columnWidth + columnGap)));
+			int columnTop = top;
+			int columnBottom = top;
+			for (int b = 0; (b < blocksPerColumn) && (wordsLeft > 0); b++) {
+				if (this.streamLayout == STREAM_LAYOUT_BLOCK)
+					lastMainTextWord[0] = null;
+				int blockTop = columnBottom;
+				ArrayList blockLines = new ArrayList();
+				for (int l = 0; (l < this.linesPerBlock) && (wordsLeft > 0); l++) {
+					int lineWords = Math.min(wordsLeft, this.wordsPerLine);
+					BoundingBox lineBounds = this.addLine(page, columnLeft, columnWidth, columnBottom, lineHeight, lineWords, ImWord.TEXT_STREAM_TYPE_MAIN_TEXT, rand, lastMainTextWord, (this.regionNesting >= REGIONS_LINES));
+					blockLines.add(lineBounds);
+					wordsLeft -= lineWords;
+					columnBottom += lineHeight;
+				}
+				BoundingBox blockBounds = BoundingBox.aggregate((BoundingBox[]) blockLines.toArray(new BoundingBox[blockLines.size()]));
+				if (this.regionNesting >= REGIONS_BLOCKS)
+					new ImRegion(page, blockBounds, BLOCK_ANNOTATION_TYPE);
+				if (this.regionNesting >= REGIONS_PARAGRAPHS)
+					new ImRegion(page, blockBounds, PARAGRAPH_TYPE);
+				columnBottom = (blockTop + ((blockLines.size() + 1) * lineHeight));
+			}
+			if (this.regionNesting >= REGIONS_COLUMNS)
+				new ImRegion(page, new BoundingBox(columnLeft, (columnLeft + columnWidth), columnTop, (columnBottom - lineHeight)), COLUMN_ANNOTATION_TYPE);
+		}
+	}
+	
+	private BoundingBox addLine(ImPage page, int left, int width, int top, int height, int wordCount, String textStreamType, Random rand) {
+		return this.addLine(page, left, width, top, height, wordCount, textStreamType, rand, new ImWord[1], true);
+	}
+	
+	private BoundingBox addLine(ImPage page, int left, int width, int top, int height, int wordCount, String textStreamType, Random rand, ImWord[] prevWord, boolean markLine) {
+		int wordSlotWidth = Math.max(2, (width / Math.max(1, wordCount)));
+		int wordGap = Math.max(1, (wordSlotWidth / 8));
+		int wordHeight = Math.max(2, ((height * 3) / 4));
+		String fontSize = ("" + Math.max(1, ((wordHeight * 72) / this.pageDpi)));
+		for (int w = 0; w < wordCount; w++) {
+			int wordLeft = (left + (w * wordSlotWidth));
+			ImWord word = new ImWord(page, new BoundingBox(wordLeft, (wordLeft + wordSlotWidth - wordGap), top, (top + wordHeight)), createWordString(rand));
+			word.setAttribute(BASELINE_ATTRIBUTE, ("" + (top + ((wordHeight * 4) / 5))));
+			word.setAttribute(FONT_SIZE_ATTRIBUTE, fontSize);
+			if (prevWord[0] == null)
+				word.setTextStreamType(textStreamType);
+			else prevWord[0].setNextWord(word);
+			prevWord[0] = word;
+		}
+		BoundingBox lineBounds = new BoundingBox(left, (left + (wordCount * wordSlotWidth) - wordGap), top, (top + wordHeight));
+		if (markLine)
+			new ImRegion(page, lineBounds, LINE_ANNOTATION_TYPE);
+		return lineBounds;
+	}
+	
+	private void addTable(ImPage page, BoundingBox tableBounds, Random rand) {
+		new ImRegion(page, tableBounds, ImRegion.TABLE_TYPE);
+		int rowHeight = ((tableBounds.bottom - tableBounds.top) / this.tableRows);
+		int colWidth = ((tableBounds.right - tableBounds.left) / this.tableColumns);
+		for (int c = 0; c < this.tableColumns; c++) {
+			int colLeft = (tableBounds.left + (c * colWidth));
+			new ImRegion(page, new BoundingBox(colLeft, (colLeft + colWidth), tableBounds.top, tableBounds.bottom), ImRegion.TABLE_COL_TYPE);
+		}
+		ImWord[] prevWord = {null};
+		for (int r = 0; r < this.tableRows; r++) {
+			int rowTop = (tableBounds.top + (r * rowHeight));
+			new ImRegion(page, new BoundingBox(tableBounds.left, tableBounds.right, rowTop, (rowTop + rowHeight)), ImRegion.TABLE_ROW_TYPE);
+			for (int c = 0; c < this.tableColumns; c++) {
+				int colLeft = (tableBounds.left + (c * colWidth));
+				new ImRegion(page, new BoundingBox(colLeft, (colLeft + colWidth), rowTop, (rowTop + rowHeight)), ImRegion.TABLE_CELL_TYPE);
+				this.addLine(page, colLeft, colWidth, rowTop, rowHeight, 1, ImWord.TEXT_STREAM_TYPE_TABLE, rand, prevWord, false);
+			}
+		}
+	}
+	
+	private void addFigure(ImDocument doc, int pageId, int renderOrderNumber, BoundingBox bounds) {
+		final byte[] figureData = this.getFigureData();
+		new ImSupplement.Figure(doc, "image/png", pageId, renderOrderNumber, this.pageDpi, bounds) {
+			public InputStream getInputStream() throws IOException {
+				return new ByteArrayInputStream(figureData);
+			}
+		};
+	}
+	
+	private byte[] figureData = null;
+	private byte[] getFigureData() {
+		if (this.figureData == null) {
+			int side = Math.max(8, ((int) Math.sqrt(this.figureBytes)));
+			BufferedImage bi = new BufferedImage(side, side, BufferedImage.TYPE_BYTE_GRAY);
+			Random rand = new Random(this.seed);
+			byte[] pixels = new byte[side * side];
+			rand.nextBytes(pixels);
+			bi.getRaster().setDataElements(0, 0, side, side, pixels);
+			ByteArrayOutputStream figureOut = new ByteArrayOutputStream();
+			try {
+				ImageIO.write(bi, "PNG", figureOut);
+			}
+			catch (IOException ioe) { /* never gonna happen with a byte array, but Java don't know */ }
+			this.figureData = figureOut.toByteArray();
+		}
+		return this.figureData;
+	}
+	
+	private static String createWordString(Random rand) {
+		StringBuffer word = new StringBuffer();
+		for (int s = (1 + rand.nextInt(3)); s > 0; s--)
+			word.append(syllables[rand.nextInt(syllables.length)]);
+		return word.toString();
+	}
+	
+	/**
+	 * Resolve the name of a storage mode to the respective storage flags for
+	 * <code>ImDocumentIO</code>. Valid names are 'CSV', 'TSV' (plain TSV
+	 * mode), and 'TSV_ADAPTIVE' (TSV mode with all adaptive options active).
+	 * @param storageMode the name of the storage mode
+	 * @return the storage flags
+	 */
+	public static long getStorageFlags(String storageMode) {
+		if ("CSV".equalsIgnoreCase(storageMode))
+			return ImDocumentIO.STORAGE_MODE_CSV;
+		else if ("TSV".equalsIgnoreCase(storageMode))
+			return ImDocumentIO.STORAGE_MODE_TSV;
+		else if ("TSV_ADAPTIVE".equalsIgnoreCase(storageMode))
+			return (ImDocumentIO.STORAGE_MODE_TSV
+					| ImDocumentIO.STORAGE_MODE_TSV_SUPPLEMENT_ATTRIBUTE_COLUMNS
+					| ImDocumentIO.STORAGE_MODE_TSV_BUNDLE_GRAPHICS_DATA
+					| ImDocumentIO.STORAGE_MODE_TSV_PAGE_ATTRIBUTE_COLUMNS
+					| ImDocumentIO.STORAGE_MODE_TSV_WORD_ATTRIBUTE_COLUMNS
+					| ImDocumentIO.STORAGE_MODE_TSV_WORD_CHUNKS
+					| ImDocumentIO.STORAGE_MODE_TSV_REGION_ATTRIBUTE_COLUMNS
+					| ImDocumentIO.STORAGE_MODE_TSV_EXTERNAL_REGION_ATTRIBUTES
+					| ImDocumentIO.STORAGE_MODE_TSV_EXTERNAL_REGION_TYPES
+					| ImDocumentIO.STORAGE_MODE_TSV_ANNOTATION_ATTRIBUTE_COLUMNS
+					| ImDocumentIO.STORAGE_MODE_TSV_EXTERNAL_ANNOTATION_ATTRIBUTES
+					| ImDocumentIO.STORAGE_MODE_TSV_EXTERNAL_ANNOTATION_TYPES);
+		else throw new IllegalArgumentException("Invalid storage mode '" + storageMode + "'");
+	}
+	
+	/**
+	 * In-memory page image store for generated documents. Unless explicitly
+	 * stored otherwise, this store provides the same plain white image for
+	 * every page, encoded only once.
+	 * 
+	 * @author sautter
+	 */
+	static class MemoryPageImageStore extends AbstractPageImageStore {
+		private int width;
+		private int height;
+		private int dpi;
+		private byte[] blankPageImageBytes = null;
+		private HashMap pageImageBytes = new HashMap();
+		MemoryPageImageStore(int width, int height, int dpi) {
+			this.width = width;
+			this.height = height;
+			this.dpi = dpi;
+		}
+		public boolean isPageImageAvailable(String name) {
+			return true;
+		}
+		public PageImageInputStream getPageImageAsStream(String name) throws IOException {
+			if (!name.endsWith(IMAGE_FORMAT))
+				name += ("." + IMAGE_FORMAT);
+			byte[] pib;
+			synchronized (this.pageImageBytes) {
+				pib = ((byte[]) this.pageImageBytes.get(name));
+			}
+			if (pib == null)
+				pib = this.getBlankPageImageBytes();
+			return new PageImageInputStream(new ByteArrayInputStream(pib), this);
+		}
+		public boolean storePageImage(String name, PageImage pageImage) throws IOException {
+			if (!name.endsWith(IMAGE_FORMAT))
+				name += ("." + IMAGE_FORMAT);
+			ByteArrayOutputStream pibOut = new ByteArrayOutputStream();
+			pageImage.write(pibOut);
+			synchronized (this.pageImageBytes) {
+				this.pageImageBytes.put(name, pibOut.toByteArray());
+			}
+			return true;
+		}
+		public int getPriority() {
+			return 10; // we're specific to our documents
+		}
+		private synchronized byte[] getBlankPageImageBytes() throws IOException {
+			if (this.blankPageImageBytes == null) {
+				BufferedImage bi = new BufferedImage(this.width, this.height, BufferedImage.TYPE_BYTE_GRAY);
+				Graphics2D gr = bi.createGraphics();
+				gr.setColor(Color.WHITE);
+				gr.fillRect(0, 0, bi.getWidth(), bi.getHeight());
+				gr.dispose();
+				ByteArrayOutputStream pibOut = new ByteArrayOutputStream();
+				new PageImage(bi, this.dpi, this).write(pibOut);
+				this.blankPageImageBytes = pibOut.toByteArray();
+			}
+			return this.blankPageImageBytes;
+		}
+	}
+	
+	/**
+	 * Command line interface, generating a document and storing it in one or
+	 * more storage modes. Use '-?' to list the available arguments.
+	 * @param args the arguments
+	 */
+	public static void main(String[] args) throws Exception {
+		ImDocumentGenerator gen = new ImDocumentGenerator();
+		String outPath = ".";
+		String docId = null;
+		String[] storageModes = {"CSV"};
+		boolean storeFiles = true;
+		boolean storeFolders = false;
+		for (int a = 0; a < args.length; a += 2) {
+			if ("-?".equals(args[a]) || "-h".equalsIgnoreCase(args[a])) {
+				printHelp();
+				return;
+			}
+			if ((a+1) == args.length) {
+				System.out.println("Missing value for argument '" + args[a] + "', use '-?' or '-h' to list available arguments");
+				return;
+			}
+			String value = args[a+1];
+			if ("-p".equals(args[a]))
+				gen.setPageCount(Integer.parseInt(value));
+			else if ("-w".equals(args[a]))
+				gen.setWordsPerPage(Integer.parseInt(value));
+			else if ("-c".equals(args[a]))
+				gen.setColumnsPerPage(Integer.parseInt(value));
+			else if ("-l".equals(args[a]))
+				gen.setStreamLayout("P".equalsIgnoreCase(value) ? STREAM_LAYOUT_PAGE : ("B".equalsIgnoreCase(value) ? STREAM_LAYOUT_BLOCK : STREAM_LAYOUT_DOCUMENT));
+			else if ("-r".equals(args[a]))
+				gen.setRegionNesting(Integer.parseInt(value));
+			else if ("-f".equals(args[a]))
+				gen.setFootnotesPerPage(Integer.parseInt(value));
+			else if ("-t".equals(args[a])) {
+				String[] table = value.split("x");
+				gen.setTables(Integer.parseInt(table[0]), ((table.length < 2) ? 10 : Integer.parseInt(table[1])), ((table.length < 3) ? 5 : Integer.parseInt(table[2])));
+			}
+			else if ("-g".equals(args[a])) {
+				String[] figures = value.split("x");
+				gen.setFigures(Integer.parseInt(figures[0]), ((figures.length < 2) ? 16384 : Integer.parseInt(figures[1])));
+			}
+			else if ("-src".equals(args[a]))
+				gen.setSourceBytes(Integer.parseInt(value));
+			else if ("-a".equals(args[a])) {
+				String[] annotTypes = value.split("\\s*\\,\\s*");
+				for (int t = 0; t < annotTypes.length; t++) {
+					String[] annotType = annotTypes[t].split("\\:");
+					gen.addAnnotationType(annotType[0], ((annotType.length < 2) ? 10 : Integer.parseInt(annotType[1])), ((annotType.length < 3) ? 5 : Integer.parseInt(annotType[2])));
+				}
+			}
+			else if ("-seed".equals(args[a]))
+				gen.setSeed(Long.parseLong(value));
+			else if ("-id".equals(args[a]))
+				docId = value;
+			else if ("-m".equals(args[a]))
+				storageModes = value.split("\\s*\\,\\s*");
+			else if ("-s".equals(args[a])) {
+				storeFiles = ("F".equalsIgnoreCase(value) || "A".equalsIgnoreCase(value));
+				storeFolders = ("D".equalsIgnoreCase(value) || "A".equalsIgnoreCase(value));
+			}
+			else if ("-o".equals(args[a]))
+				outPath = value;
+			else {
+				System.out.println("Invalid argument '" + args[a] + "', use '-?' or '-h' to list available arguments");
+				return;
+			}
+		}
+		
+		//	generate document
+		if (docId == null)
+			docId = ("Synthetic" + gen.pageCount + "x" + gen.wordsPerPage);
+		long start = System.currentTimeMillis();
+		ImDocument doc = gen.generateDocument(docId);
+		System.out.println("Generated " + doc.getPageCount() + " pages with " + doc.getAnnotations().length + " annotations in " + (System.currentTimeMillis() - start) + "ms");
+		
+		//	store document in all requested modes
+		File outFolder = new File(outPath);
+		outFolder.mkdirs();
+		for (int m = 0; m < storageModes.length; m++) {
+			long storageFlags = getStorageFlags(storageModes[m]);
+			if (storeFiles) {
+				File docFile = new File(outFolder, (docId + "." + storageModes[m] + ".imf"));
+				start = System.currentTimeMillis();
+				ImDocumentIO.storeDocument(doc, docFile, storageFlags);
+				System.out.println("Stored " + storageModes[m] + " file " + docFile.getAbsolutePath() + " (" + docFile.length() + " bytes) in " + (System.currentTimeMillis() - start) + "ms");
+			}
+			if (storeFolders) {
+				File docFolder = new File(outFolder, (docId + "." + storageModes[m] + ".imd"));
+				docFolder.mkdirs();
+				start = System.currentTimeMillis();
+				ImDocumentIO.storeDocument(doc, docFolder, storageFlags);
+				System.out.println("Stored " + storageModes[m] + " folder " + docFolder.getAbsolutePath() + " in " + (System.currentTimeMillis() - start) + "ms");
+			}
+		}
+	}
+	
+	private static void printHelp() {
+		System.out.println("ImDocumentGenerator: generate a synthetic Image Markup document and store it");
+		System.out.println("-p <pages>\tnumber of pages (default 10)");
+		System.out.println("-w <words>\tnumber of main text words per page (default 400)");
+		System.out.println("-c <columns>\tnumber of text columns per page (default 1)");
+		System.out.println("-l <layout>\tmain text stream layout: D (one per document, default), P (one per page), B (one per block)");
+		System.out.println("-r <nesting>\tregion nesting: 0 (none), 1 (columns), 2 (+blocks), 3 (+paragraphs), 4 (+lines, default)");
+		System.out.println("-f <footnotes>\tnumber of footnotes per page (default 0)");
+		System.out.println("-t <tables>[x<rows>[x<columns>]]\ttables per page and their size (default 0x10x5)");
+		System.out.println("-g <figures>[x<bytes>]\tfigures per page and their data size (default 0x16384)");
+		System.out.println("-src <bytes>\tsize of binary source supplement (default 0, i.e., none)");
+		System.out.println("-a <type>[:<perPage>[:<maxWords>]],...\tannotation types to generate (default none)");
+		System.out.println("-seed <seed>\trandom seed (default 4711)");
+		System.out.println("-id <docId>\tdocument ID (default derived from size)");
+		System.out.println("-m <mode>,...\tstorage modes: CSV (default), TSV, TSV_ADAPTIVE");
+		System.out.println("-s <target>\tstorage target: F (zipped files, default), D (folders), A (both)");
+		System.out.println("-o <path>\toutput folder (default current folder)");
+	}
+}
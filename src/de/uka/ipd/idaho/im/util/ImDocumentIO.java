@@ -809,7 +809,7 @@ TODO More thoughts for parameter/storage flag handling in IMFv2 aware facilities
 			docTsv.close();
 		}
 		else if (data.hasEntry("document.csv")) {
-			InputStream docIn = data.getInputStream("document.csv");
+			InputStream docIn = getMeteredInputStream(data.getInputStream("document.csv"), "document.csv");
 			StringRelation docDatas = StringRelation.readCsvData(new InputStreamReader(docIn, "UTF-8"), true, null);
 			docIn.close();
 			docData = docDatas.get(0);
@@ -890,7 +890,7 @@ TODO More thoughts for parameter/storage flag handling in IMFv2 aware facilities
 			fontTsv.close();
 		}
 		else if (data.hasEntry("fonts.csv")) {
-			InputStream fontsIn = data.getInputStream("fonts.csv");
+			InputStream fontsIn = getMeteredInputStream(data.getInputStream("fonts.csv"), "fonts.csv");
 			StringRelation fontsData = StringRelation.readCsvData(new InputStreamReader(fontsIn, "UTF-8"), true, null);
 			fontsIn.close();
 			ImFont font = null;
@@ -953,7 +953,7 @@ TODO More thoughts for parameter/storage flag handling in IMFv2 aware facilities
 			pageImageTsv.close();
 		}
 		else if (data.hasEntry("pageImages.csv")) {
-			InputStream pageImagesIn = data.getInputStream("pageImages.csv");
+			InputStream pageImagesIn = getMeteredInputStream(data.getInputStream("pageImages.csv"), "pageImages.csv");
 			StringRelation pageImagesData = StringRelation.readCsvData(new InputStreamReader(pageImagesIn, "UTF-8"), true, null);
 			pageImagesIn.close();
 			for (int p = 0; p < pageImagesData.size(); p++) {
@@ -986,7 +986,7 @@ TODO More thoughts for parameter/storage flag handling in IMFv2 aware facilities
 			pageTsv.close();
 		}
 		else if (data.hasEntry("pages.csv")) {
-			InputStream pagesIn = data.getInputStream("pages.csv");
+			InputStream pagesIn = getMeteredInputStream(data.getInputStream("pages.csv"), "pages.csv");
 			StringRelation pagesData = StringRelation.readCsvData(new InputStreamReader(pagesIn, "UTF-8"), true, null);
 			pagesIn.close();
 			pm.setInfo("Adding " + pagesData.size() + " pages");
@@ -1051,7 +1051,7 @@ TODO More thoughts for parameter/storage flag handling in IMFv2 aware facilities
 			}
 		}
 		else if (data.hasEntry("words.csv")) {
-			InputStream wordsIn = data.getInputStream("words.csv");
+			InputStream wordsIn = getMeteredInputStream(data.getInputStream("words.csv"), "words.csv");
 			StringRelation wordsData = StringRelation.readCsvData(new InputStreamReader(wordsIn, "UTF-8"), true, null);
 			wordsIn.close();
 			pm.setInfo("Adding " + wordsData.size() + " words");
@@ -1141,7 +1141,7 @@ TODO More thoughts for parameter/storage flag handling in IMFv2 aware facilities
 			readOffset = sizeOffset[0];
 			sizeOffset[0] += entry.size;
 		}
-		final DataHashInputStream hasher = new DataHashInputStream(data.getInputStream(entry.name));
+		final DataHashInputStream hasher = new DataHashInputStream(getMeteredInputStream(data.getInputStream(entry.name), getEntryMetricName(entry.name)));
 		return new BufferedReader(new InputStreamReader(new ProgressMonitorInputStream(hasher, pm, readOffset, sizeTotal) {
 			public void close() throws IOException {
 				super.close();
@@ -1153,6 +1153,14 @@ TODO More thoughts for parameter/storage flag handling in IMFv2 aware facilities
 		}, "UTF-8"));
 	}
 	
+	private static String getEntryMetricName(String entryName) {
+		int nameEnd = entryName.indexOf('.');
+		int typeStart = entryName.lastIndexOf('.');
+		if (nameEnd == typeStart)
+			return entryName;
+		return (entryName.substring(0, nameEnd) + entryName.substring(typeStart)); // aggregate chunked and per-type entries, e.g. 'words.0-999.tsv' to 'words.tsv'
+	}
+	
 	private static void readWordChunk(ImDocument doc, TsvReader wordTsv, LinkedHashMap toChainWords, ArrayList includeChunkEntryRanges) throws IOException {
 		String[] record = new String[wordTsv.keys.length];
 		for (int length; (length = wordTsv.fillRecord(record)) != -1;) {
@@ -1220,7 +1228,7 @@ TODO More thoughts for parameter/storage flag handling in IMFv2 aware facilities
 			}
 		}
 		else if (data.hasEntry("regions.csv")) {
-			InputStream regsIn = data.getInputStream("regions.csv");
+			InputStream regsIn = getMeteredInputStream(data.getInputStream("regions.csv"), "regions.csv");
 			StringRelation regsData = StringRelation.readCsvData(new InputStreamReader(regsIn, "UTF-8"), true, null);
 			regsIn.close();
 			pm.setInfo("Adding " + regsData.size() + " regions");
@@ -1365,7 +1373,7 @@ TODO More thoughts for parameter/storage flag handling in IMFv2 aware facilities
 			}
 		}
 		else if (data.hasEntry("annotations.csv")) {
-			InputStream annotsIn = data.getInputStream("annotations.csv");
+			InputStream annotsIn = getMeteredInputStream(data.getInputStream("annotations.csv"), "annotations.csv");
 			StringRelation annotsData = StringRelation.readCsvData(new InputStreamReader(annotsIn, "UTF-8"), true, null);
 			annotsIn.close();
 			pm.setInfo("Adding " + annotsData.size() + " annotations");
@@ -1631,7 +1639,7 @@ TODO More thoughts for parameter/storage flag handling in IMFv2 aware facilities
 			supplTsv.close();
 		}
 		else if (data.hasEntry("supplements.csv")) {
-			InputStream supplementsIn = data.getInputStream("supplements.csv");
+			InputStream supplementsIn = getMeteredInputStream(data.getInputStream("supplements.csv"), "supplements.csv");
 			StringRelation supplementsData = StringRelation.readCsvData(new InputStreamReader(supplementsIn, "UTF-8"), true, null);
 			supplementsIn.close();
 			pm.setInfo("Adding " + supplementsData.size() + " supplements");
@@ -1656,32 +1664,32 @@ TODO More thoughts for parameter/storage flag handling in IMFv2 aware facilities
 		if (ImSupplement.SOURCE_TYPE.equals(supplType))
 			return new ImSupplement.Source(doc, supplMimeType) {
 				public InputStream getInputStream() throws IOException {
-					return docData.getInputStream(supplDataEntryName);
+					return getMeteredInputStream(docData.getInputStream(supplDataEntryName), "supplement");
 				}
 			};
 		else if (ImSupplement.SCAN_TYPE.equals(supplType))
 			return new ImSupplement.Scan(doc, supplId, supplMimeType) {
 				public InputStream getInputStream() throws IOException {
-					return docData.getInputStream(supplDataEntryName);
+					return getMeteredInputStream(docData.getInputStream(supplDataEntryName), "supplement");
 				}
 			};
 		else if (ImSupplement.FIGURE_TYPE.equals(supplType))
 			return new ImSupplement.Figure(doc, supplId, supplMimeType) {
 				public InputStream getInputStream() throws IOException {
-					return docData.getInputStream(supplDataEntryName);
+					return getMeteredInputStream(docData.getInputStream(supplDataEntryName), "supplement");
 				}
 			};
 		else if (ImSupplement.GRAPHICS_TYPE.equals(supplType))
 			return new ImSupplement.Graphics(doc, supplId) {
 				public InputStream getInputStream() throws IOException {
 					if (gdp == null)
-						return docData.getInputStream(supplDataEntryName);
-					else return gdp.getInputStream(supplDataEntryName);
+						return getMeteredInputStream(docData.getInputStream(supplDataEntryName), "supplement");
+					else return getMeteredInputStream(gdp.getInputStream(supplDataEntryName), "supplement");
 				}
 			};
 		else return new ImSupplement(doc, supplId, supplType, supplMimeType) {
 			public InputStream getInputStream() throws IOException {
-				return docData.getInputStream(supplDataEntryName);
+				return getMeteredInputStream(docData.getInputStream(supplDataEntryName), "supplement");
 			}
 		};
 	}
@@ -1822,7 +1830,7 @@ TODO More thoughts for parameter/storage flag handling in IMFv2 aware facilities
 			docTsv.close();
 		}
 		else if (data.hasEntry("document.csv")) {
-			InputStream docIn = data.getInputStream("document.csv");
+			InputStream docIn = getMeteredInputStream(data.getInputStream("document.csv"), "document.csv");
 			StringRelation docDatas = StringRelation.readCsvData(new InputStreamReader(docIn, "UTF-8"), true, null);
 			docIn.close();
 			StringTupel docData = docDatas.get(0);
@@ -1926,7 +1934,7 @@ TODO More thoughts for parameter/storage flag handling in IMFv2 aware facilities
 				return null;
 			String piPageIdStr = name.substring(this.doc.docId.length() + ".".length());
 			name = ("page" + piPageIdStr + "." + IMAGE_FORMAT);
-			return this.getPageImageInputStream(this.doc.getInputStream(name), piPageIdStr);
+			return this.getPageImageInputStream(getMeteredInputStream(this.doc.getInputStream(name), "pageImage"), piPageIdStr);
 		}
 		private PageImageInputStream getPageImageInputStream(InputStream in, String piPageIdStr) throws IOException {
 			
@@ -3218,7 +3226,7 @@ TODO quite possibly use highest bit in thresholds for type specific annotation a
 				if (tsvMode)
 					piRecord = getPageImageRecordTsv(pages[p].pageId, piis);
 				else piAttributes = getPageImageAttributesCsv(piis);
-				OutputStream piOut = data.getOutputStream(piName, writePiDirectly /* write directly if we know we need to */);
+				OutputStream piOut = getMeteredOutputStream(data.getOutputStream(piName, writePiDirectly /* write directly if we know we need to */), "pageImage");
 				byte[] pib = new byte[1024];
 				for (int r; (r = piis.read(pib, 0, pib.length)) != -1;)
 					piOut.write(pib, 0, r);
@@ -3407,7 +3415,7 @@ TODO quite possibly use highest bit in thresholds for type specific annotation a
 			if (writeSupplData) {
 				InputStream sdIn = suppls[s].getInputStream();
 //				OutputStream sdOut = data.getOutputStream(sfn, true);
-				OutputStream sdOut = (((gdp != null) && (suppls[s] instanceof ImSupplement.Graphics)) ? gdp.getOutputStream(sfn) : data.getOutputStream(sfn, true));
+				OutputStream sdOut = getMeteredOutputStream((((gdp != null) && (suppls[s] instanceof ImSupplement.Graphics)) ? gdp.getOutputStream(sfn) : data.getOutputStream(sfn, true)), "supplement");
 				byte[] sdb = new byte[1024];
 				for (int r; (r = sdIn.read(sdb, 0, sdb.length)) != -1;)
 					sdOut.write(sdb, 0, r);
@@ -4800,7 +4808,63 @@ TODO quite possibly use highest bit in thresholds for type specific annotation a
 	private static BufferedWriter getWriter(ImDocumentData data, String entryName, HashSet staleEntryNames, boolean writeDirectly) throws IOException {
 		if (staleEntryNames != null)
 			staleEntryNames.remove(entryName);
-		return new BufferedWriter(new OutputStreamWriter(data.getOutputStream(entryName, writeDirectly), "UTF-8"));
+		return new BufferedWriter(new OutputStreamWriter(getMeteredOutputStream(data.getOutputStream(entryName, writeDirectly), getEntryMetricName(entryName)), "UTF-8"));
+	}
+	
+	private static InputStream getMeteredInputStream(InputStream in, final String metricName) {
+		if (!ImMetrics.isActive())
+			return in;
+		final long start = System.nanoTime();
+		return new FilterInputStream(in) {
+			private long bytes = 0;
+			private boolean closed = false;
+			public int read() throws IOException {
+				int r = super.read();
+				if (r != -1)
+					this.bytes++;
+				return r;
+			}
+			public int read(byte[] b, int off, int len) throws IOException {
+				int r = super.read(b, off, len);
+				if (r > 0)
+					this.bytes += r;
+				return r;
+			}
+			public void close() throws IOException {
+				super.close();
+				if (this.closed)
+					return;
+				this.closed = true;
+				ImMetrics.time(("ImDocumentIO.load." + metricName), start);
+				ImMetrics.sample(("ImDocumentIO.load." + metricName + ".bytes"), this.bytes);
+			}
+		};
+	}
+	
+	private static OutputStream getMeteredOutputStream(OutputStream out, final String metricName) {
+		if (!ImMetrics.isActive())
+			return out;
+		final long start = System.nanoTime();
+		return new FilterOutputStream(out) {
+			private long bytes = 0;
+			private boolean closed = false;
+			public void write(int b) throws IOException {
+				this.out.write(b);
+				this.bytes++;
+			}
+			public void write(byte[] b, int off, int len) throws IOException {
+				this.out.write(b, off, len);
+				this.bytes += len;
+			}
+			public void close() throws IOException {
+				super.close();
+				if (this.closed)
+					return;
+				this.closed = true;
+				ImMetrics.time(("ImDocumentIO.store." + metricName), start);
+				ImMetrics.sample(("ImDocumentIO.store." + metricName + ".bytes"), this.bytes);
+			}
+		};
 	}
 	
 	/**
@@ -27,15 +27,26 @@
  */
 package de.uka.ipd.idaho.im.util;
 
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
 
 import de.uka.ipd.idaho.gamta.Attributed;
 import de.uka.ipd.idaho.gamta.util.DocumentStyle;
 import de.uka.ipd.idaho.gamta.util.imaging.BoundingBox;
+import de.uka.ipd.idaho.im.ImAnnotation;
 import de.uka.ipd.idaho.im.ImDocument;
+import de.uka.ipd.idaho.im.ImDocument.ImDocumentListener;
+import de.uka.ipd.idaho.im.ImFont;
+import de.uka.ipd.idaho.im.ImObject;
 import de.uka.ipd.idaho.im.ImPage;
+import de.uka.ipd.idaho.im.ImRegion;
+import de.uka.ipd.idaho.im.ImSupplement;
 import de.uka.ipd.idaho.im.ImWord;
 import de.uka.ipd.idaho.stringUtils.StringUtils;
 
@@ -218,15 +229,139 @@ public class ImDocumentStyle extends DocumentStyle {
 		public boolean matches(Attributed doc) {
 			if (doc instanceof ImDocument) {
 				ImDocument imDoc = ((ImDocument) doc);
-				for (int p = 0; p <= Math.min(this.maxPageId, (imDoc.getPageCount() - 1)); p++) {
-					ImPage page = imDoc.getPage(imDoc.getFirstPageId() + p);
-					if (matches(page, this.area, this.minFontSize, this.maxFontSize, this.isBold, this.isItalics, this.isAllCaps, this.pattern, null))
-						return true;
+				PageFeatureIndex pfi = PageFeatureIndex.getIndex(imDoc);
+				long start = ImMetrics.startTime();
+				try {
+					for (int p = 0; p <= Math.min(this.maxPageId, (imDoc.getPageCount() - 1)); p++) {
+						ImPage page = imDoc.getPage(imDoc.getFirstPageId() + p);
+						if ((page != null) && pfi.matches(page, this.area, this.minFontSize, this.maxFontSize, this.isBold, this.isItalics, this.isAllCaps, this.pattern))
+							return true;
+					}
+				}
+				finally {
+					ImMetrics.time("PageFeatureAnchor.match", start);
 				}
 			}
 			return false;
 		}
 		
+		/**
+		 * Per-document index of page features extracted by page feature
+		 * anchors. Style detection evaluates the anchors of all available
+		 * styles against the same few pages of a document, and many of these
+		 * anchors share areas and font properties, so this index holds on to
+		 * the words extracted from page areas, the filtered and normalized
+		 * word strings, and the outcome of pattern matches, separately for
+		 * each page object. Features are keyed by page identity rather than
+		 * page ID, so a page replaced in or discarded from the document never
+		 * serves features of its predecessor. The index clears itself whenever
+		 * a word is added, removed, or modified. The index is only reachable
+		 * from its document, so both are garbage collected together.
+		 * 
+		 * @author sautter
+		 */
+		private static class PageFeatureIndex implements ImDocumentListener {
+			private static final Map docIndexes = new WeakHashMap(); // document --> weak reference to index, as index refers to document via words
+			private static final Object NO_FEATURE = new Object();
+			
+			static PageFeatureIndex getIndex(ImDocument doc) {
+				synchronized (docIndexes) {
+					WeakReference pfiRef = ((WeakReference) docIndexes.get(doc));
+					PageFeatureIndex pfi = ((pfiRef == null) ? null : ((PageFeatureIndex) pfiRef.get()));
+					if (pfi == null) {
+						pfi = new PageFeatureIndex();
+						docIndexes.put(doc, new WeakReference(pfi));
+						doc.addDocumentListener(pfi); // document holds on to index via listener
+					}
+					return pfi;
+				}
+			}
+			
+			private final ConcurrentHashMap pageFeatures = new ConcurrentHashMap(); // page (by identity) --> features
+			
+			private PageFeatures getPageFeatures(ImPage page) {
+				PageFeatures pf = ((PageFeatures) this.pageFeatures.get(page));
+				if (pf != null)
+					return pf;
+				
+				//	drop features of any replaced page with same ID
+				for (Iterator pit = this.pageFeatures.keySet().iterator(); pit.hasNext();) {
+					ImPage fPage = ((ImPage) pit.next());
+					if ((fPage.pageId == page.pageId) && (fPage != page))
+						pit.remove();
+				}
+				pf = new PageFeatures();
+				PageFeatures cPf = ((PageFeatures) this.pageFeatures.putIfAbsent(page, pf));
+				return ((cPf == null) ? pf : cPf);
+			}
+			
+			boolean matches(ImPage page, BoundingBox area, int minFontSize, int maxFontSize, boolean isBold, boolean isItalics, boolean isAllCaps, Pattern pattern) {
+				PageFeatures pf = this.getPageFeatures(page);
+				
+				//	get words in area, sharing extraction between anchors
+				BoundingBox pageArea = scaleBox(area, 72, page.getImageDPI());
+				String areaKey = pageArea.toString();
+				ImWord[] words = ((ImWord[]) pf.areaWords.get(areaKey));
+				if (words == null) {
+					words = page.getWordsInside(pageArea);
+					pf.areaWords.put(areaKey, words);
+					ImMetrics.count("PageFeatureAnchor.wordExtractions");
+				}
+				else ImMetrics.count("PageFeatureAnchor.sharedWordExtractions");
+				if (words.length == 0)
+					return false;
+				
+				//	get normalized string of words matching font properties
+				String featureKey = (areaKey + " " + minFontSize + "-" + maxFontSize + (isBold ? "B" : "") + (isItalics ? "I" : "") + (isAllCaps ? "C" : ""));
+				Object feature = pf.featureStrings.get(featureKey);
+				if (feature == null) {
+					ImWord[] fWords = filterWords(words, minFontSize, maxFontSize, isBold, isItalics, isAllCaps);
+					feature = ((fWords.length == 0) ? NO_FEATURE : getWordString(fWords));
+					pf.featureStrings.put(featureKey, feature);
+				}
+				if (feature == NO_FEATURE)
+					return false;
+				
+				//	test against pattern
+				String matchKey = (featureKey + " " + pattern.flags() + " " + pattern.pattern());
+				Boolean match = ((Boolean) pf.featureMatches.get(matchKey));
+				if (match == null) {
+					match = (pattern.matcher((String) feature).matches() ? Boolean.TRUE : Boolean.FALSE);
+					pf.featureMatches.put(matchKey, match);
+					ImMetrics.count("PageFeatureAnchor.patternMatches");
+				}
+				return match.booleanValue();
+			}
+			
+			private void clear() {
+				this.pageFeatures.clear(); // concurrent matches keep working on detached features
+			}
+			
+			private static class PageFeatures {
+				final ConcurrentHashMap areaWords = new ConcurrentHashMap(); // area --> words
+				final ConcurrentHashMap featureStrings = new ConcurrentHashMap(); // area and font properties --> normalized word string
+				final ConcurrentHashMap featureMatches = new ConcurrentHashMap(); // area, font properties, and pattern --> match result
+			}
+			
+			public void typeChanged(ImObject object, String oldType) {}
+			public void attributeChanged(ImObject object, String attributeName, Object oldValue) {
+				if (object instanceof ImWord)
+					this.clear();
+			}
+			public void supplementChanged(String supplementId, ImSupplement oldValue) {}
+			public void fontChanged(String fontName, ImFont oldValue) {}
+			public void regionAdded(ImRegion region) {
+				if ((region instanceof ImWord) || (region instanceof ImPage))
+					this.clear();
+			}
+			public void regionRemoved(ImRegion region) {
+				if ((region instanceof ImWord) || (region instanceof ImPage))
+					this.clear();
+			}
+			public void annotationAdded(ImAnnotation annotation) {}
+			public void annotationRemoved(ImAnnotation annotation) {}
+		}
+		
 		/**
 		 * Match the attributes of a page feature anchor to a given page. If
 		 * the <code>matchLog</code> argument is not null, this method fills it
@@ -283,7 +418,6 @@ public class ImDocumentStyle extends DocumentStyle {
 				matchLog.add(" - found " + words.length + " words in area");
 			
 			//	filter words by font properties
-			ArrayList wordList = new ArrayList();
 			if (matchLog != null) {
 				matchLog.add(" - applying font property filter:");
 				if (isBold)
@@ -294,6 +428,33 @@ public class ImDocumentStyle extends DocumentStyle {
 					matchLog.add("   - all-caps");
 				matchLog.add("   - font size " + minFontSize + ((maxFontSize == minFontSize) ? "" : ("-" + maxFontSize)));
 			}
+			words = filterWords(words, minFontSize, maxFontSize, isBold, isItalics, isAllCaps);
+			if (words.length == 0) {
+				if (matchLog != null)
+					matchLog.add(" ==> no words left after font property filter, mismatch");
+				return false;
+			}
+			if (matchLog != null)
+				matchLog.add(" - " + words.length + " words left after font property filter");
+			
+			//	sort words and create normalized string
+			String wordStr = getWordString(words);
+			if (matchLog != null)
+				matchLog.add(" - word string is '" + wordStr + "'");
+			
+			//	test against pattern
+			boolean match = pattern.matcher(wordStr).matches();
+			if (matchLog != null) {
+				matchLog.add(" - matching against pattern '" + pattern.toString() + "'");
+				matchLog.add(" ==> " + (match ? "match" : "mismatch"));
+			}
+			
+			//	finally ...
+			return match;
+		}
+		
+		private static ImWord[] filterWords(ImWord[] words, int minFontSize, int maxFontSize, boolean isBold, boolean isItalics, boolean isAllCaps) {
+			ArrayList wordList = new ArrayList();
 			for (int w = 0; w < words.length; w++) {
 				if (isBold && !words[w].hasAttribute(ImWord.BOLD_ATTRIBUTE))
 					continue;
@@ -310,34 +471,19 @@ public class ImDocumentStyle extends DocumentStyle {
 				} catch (NumberFormatException nfe) {}
 				wordList.add(words[w]);
 			}
-			if (wordList.isEmpty()) {
-				if (matchLog != null)
-					matchLog.add(" ==> no words left after font property filter, mismatch");
-				return false;
-			}
-			else if (wordList.size() < words.length)
-				words = ((ImWord[]) wordList.toArray(new ImWord[wordList.size()]));
-			if (matchLog != null)
-				matchLog.add(" - " + words.length + " words left after font property filter");
-			
-			//	sort words and create normalized string
+			if (wordList.size() < words.length)
+				return ((ImWord[]) wordList.toArray(new ImWord[wordList.size()]));
+			else return words;
+		}
+		
+		private static String getWordString(ImWord[] words) {
+			words = ((ImWord[]) words.clone()); // sort copy, as argument array might be shared
 			ImUtils.sortLeftRightTopDown(words);
 			StringBuffer wordStr = new StringBuffer();
 			for (int w = 0; w < words.length; w++)
 //				wordStr.append(normalizeString(words[w].getString()));
 				wordStr.append(StringUtils.normalizeString(words[w].getString()));
-			if (matchLog != null)
-				matchLog.add(" - word string is '" + wordStr.toString() + "'");
-			
-			//	test against pattern
-			boolean match = pattern.matcher(wordStr).matches();
-			if (matchLog != null) {
-				matchLog.add(" - matching against pattern '" + pattern.toString() + "'");
-				matchLog.add(" ==> " + (match ? "match" : "mismatch"));
-			}
-			
-			//	finally ...
-			return match;
+			return wordStr.toString();
 		}
 //		
 //		private static String normalizeString(String string) {
@@ -432,11 +578,16 @@ public class ImDocumentStyle extends DocumentStyle {
 	
 	private DocumentStyle docStyle;
 	
+	private final boolean cacheCompiledProperties;
+	private final ConcurrentHashMap compiledProperties = new ConcurrentHashMap();
+	private final ConcurrentHashMap subsets = new ConcurrentHashMap();
+	
 	/** Constructor for root object
 	 * @param data the document style data object to wrap
 	 */
 	public ImDocumentStyle(Data data) {
 		super(data);
+		this.cacheCompiledProperties = true;
 	}
 	
 	/** Constructor for wrapper object, using data of argument document style,
@@ -447,6 +598,7 @@ public class ImDocumentStyle extends DocumentStyle {
 		super(docStyle.getData());
 		if (this.data == null)
 			this.docStyle = docStyle;
+		this.cacheCompiledProperties = (this.docStyle == null); // wrapped styles might track or change property lookups
 	}
 	
 	/** Constructor for subsets
@@ -455,6 +607,7 @@ public class ImDocumentStyle extends DocumentStyle {
 	 */
 	public ImDocumentStyle(DocumentStyle parent, String prefix) {
 		super(parent, prefix);
+		this.cacheCompiledProperties = ((parent instanceof ImDocumentStyle) && ((ImDocumentStyle) parent).cacheCompiledProperties);
 	}
 	
 	/* (non-Javadoc)
@@ -474,7 +627,143 @@ public class ImDocumentStyle extends DocumentStyle {
 	 * @return a sublist with the argument prefix
 	 */
 	public ImDocumentStyle getImSubset(String prefix) {
-		return (((prefix == null) || (prefix.trim().length() == 0)) ? this : new ImDocumentStyle(this, prefix.trim()));
+		if ((prefix == null) || (prefix.trim().length() == 0))
+			return this;
+		prefix = prefix.trim();
+		ImDocumentStyle subset = ((ImDocumentStyle) this.subsets.get(prefix));
+		if (subset != null)
+			return subset;
+		subset = new ImDocumentStyle(this, prefix);
+		if (this.subsets.size() < MAX_CACHED_SUBSETS) {
+			ImDocumentStyle cSubset = ((ImDocumentStyle) this.subsets.putIfAbsent(prefix, subset));
+			if (cSubset != null)
+				subset = cSubset;
+		}
+		return subset;
+	}
+	private static final int MAX_CACHED_SUBSETS = 256;
+	
+	/**
+	 * Clear the cache of compiled, i.e., parsed and scaled, property values,
+	 * both in this document style and in any subsets obtained from it. This
+	 * only serves to free up memory; compiled values are validated against
+	 * the raw property data on every lookup, so in-place modifications of the
+	 * data of a document style become visible without any notification.
+	 */
+	public void clearCompiledProperties() {
+		this.compiledProperties.clear();
+		for (Iterator sit = this.subsets.values().iterator(); sit.hasNext();)
+			((ImDocumentStyle) sit.next()).clearCompiledProperties();
+	}
+	
+	/* Compiled property values, linked in an immutable list per key, one per
+	 * value class and DPI, along with the raw property data they were compiled
+	 * from. A null value indicates the key to not map to any valid value, so
+	 * callers use their default. */
+	private static class CompiledProperty {
+		final Class valueClass;
+		final int dpi;
+		final String rawValue;
+		final Object value;
+		final CompiledProperty next;
+		CompiledProperty(Class valueClass, int dpi, String rawValue, Object value, CompiledProperty next) {
+			this.valueClass = valueClass;
+			this.dpi = dpi;
+			this.rawValue = rawValue;
+			this.value = value;
+			this.next = next;
+		}
+		boolean isCompiledFrom(String rawValue) {
+			return ((this.rawValue == rawValue) || ((this.rawValue != null) && this.rawValue.equals(rawValue)));
+		}
+	}
+	private static final int MAX_COMPILED_PROPERTY_KEYS = 4096;
+	
+	private Object getCompiledProperty(String key, Class valueClass, int dpi) {
+		if (!this.cacheCompiledProperties)
+			return this.compileProperty(key, valueClass, dpi);
+		
+		//	do lookup (lock free, as lists are never modified in place), checking raw data is still the same
+		String rawValue = this.getPropertyData(key, valueClass);
+		CompiledProperty cps = ((CompiledProperty) this.compiledProperties.get(key));
+		for (CompiledProperty cp = cps; cp != null; cp = cp.next) {
+			if ((cp.valueClass == valueClass) && (cp.dpi == dpi) && cp.isCompiledFrom(rawValue))
+				return cp.value;
+		}
+		
+		//	compile value and add it to list, dropping stale values on the fly
+		Object value = this.compileProperty(key, valueClass, dpi);
+		if ((cps == null) && (this.compiledProperties.size() >= MAX_COMPILED_PROPERTY_KEYS))
+			return value;
+		CompiledProperty cp = new CompiledProperty(valueClass, dpi, rawValue, value, null);
+		for (CompiledProperty pCp = cps; pCp != null; pCp = pCp.next) {
+			if (!pCp.isCompiledFrom(rawValue))
+				continue;
+			if ((pCp.valueClass == valueClass) && (pCp.dpi == dpi))
+				continue;
+			cp = new CompiledProperty(pCp.valueClass, pCp.dpi, pCp.rawValue, pCp.value, cp);
+		}
+		this.compiledProperties.put(key, cp); // concurrent puts might lose an entry, which simply gets compiled again
+		return value;
+	}
+	
+	private Object compileProperty(String key, Class valueClass, int dpi) {
+		boolean scale = ((0 < dpi) && (dpi != DEFAULT_DPI));
+		if (valueClass == Integer.class) {
+			int val = this.getIntProperty(key, Integer.MIN_VALUE);
+			if (val == Integer.MIN_VALUE)
+				return null;
+			return new Integer(scale ? scaleInt(val, DEFAULT_DPI, dpi) : val);
+		}
+		else if (valueClass == Float.class) {
+			float val = this.getFloatProperty(key, Float.NEGATIVE_INFINITY);
+			if (val == Float.NEGATIVE_INFINITY)
+				return null;
+			return new Float(scale ? scaleFloat(val, DEFAULT_DPI, dpi) : val);
+		}
+		else if (valueClass == Double.class) {
+			double val = this.getDoubleProperty(key, Double.NEGATIVE_INFINITY);
+			if (val == Double.NEGATIVE_INFINITY)
+				return null;
+			return new Double(scale ? scaleDouble(val, DEFAULT_DPI, dpi) : val);
+		}
+		else if (valueClass == BoundingBox.class) {
+			String valStr = this.getPropertyData(key, BoundingBox.class);
+			if ((valStr == null) || (valStr.trim().length() == 0))
+				return null;
+			try {
+				BoundingBox val = BoundingBox.parse(valStr);
+				return (scale ? scaleBox(val, DEFAULT_DPI, dpi) : val);
+			} catch (IllegalArgumentException iae) {}
+			return null;
+		}
+		else if (valueClass == int[].class) {
+			int[] vals = this.getIntListProperty(key, null);
+			if ((vals != null) && scale) {
+				for (int v = 0; v < vals.length; v++)
+					vals[v] = scaleInt(vals[v], DEFAULT_DPI, dpi);
+			}
+			return vals;
+		}
+		else if (valueClass == float[].class) {
+			float[] vals = this.getFloatListProperty(key, null);
+			if ((vals != null) && scale) {
+				for (int v = 0; v < vals.length; v++)
+					vals[v] = scaleFloat(vals[v], DEFAULT_DPI, dpi);
+			}
+			return vals;
+		}
+		else if (valueClass == double[].class) {
+			double[] vals = this.getDoubleListProperty(key, null);
+			if ((vals != null) && scale) {
+				for (int v = 0; v < vals.length; v++)
+					vals[v] = scaleDouble(vals[v], DEFAULT_DPI, dpi);
+			}
+			return vals;
+		}
+		else if (valueClass == boxListClass)
+			return parseBoxList(this.getPropertyData(key, boxListClass), dpi);
+		else throw new IllegalArgumentException("Cannot compile " + valueClass.getName());
 	}
 	
 	/* (non-Javadoc)
@@ -515,12 +804,8 @@ public class ImDocumentStyle extends DocumentStyle {
 	 * @see java.util.Properties#getProperty(java.lang.String, java.lang.String)
 	 */
 	public int getIntProperty(String key, int defVal, int dpi) {
-		int val = this.getIntProperty(key, Integer.MIN_VALUE);
-		if (val == Integer.MIN_VALUE)
-			return defVal;
-		if ((dpi < 1) || (dpi == DEFAULT_DPI))
-			return val;
-		return scaleInt(val, DEFAULT_DPI, dpi);
+		Integer val = ((Integer) this.getCompiledProperty(key, Integer.class, dpi));
+		return ((val == null) ? defVal : val.intValue());
 	}
 	
 	/**
@@ -537,12 +822,8 @@ public class ImDocumentStyle extends DocumentStyle {
 	 * @see java.util.Properties#getProperty(java.lang.String, java.lang.String)
 	 */
 	public float getFloatProperty(String key, float defVal, int dpi) {
-		float val = this.getFloatProperty(key, Float.NEGATIVE_INFINITY);
-		if (val == Float.NEGATIVE_INFINITY)
-			return defVal;
-		if ((dpi < 1) || (dpi == DEFAULT_DPI))
-			return val;
-		return scaleFloat(val, DEFAULT_DPI, dpi);
+		Float val = ((Float) this.getCompiledProperty(key, Float.class, dpi));
+		return ((val == null) ? defVal : val.floatValue());
 	}
 	
 	/**
@@ -559,12 +840,8 @@ public class ImDocumentStyle extends DocumentStyle {
 	 * @see java.util.Properties#getProperty(java.lang.String, java.lang.String)
 	 */
 	public double getDoubleProperty(String key, double defVal, int dpi) {
-		double val = this.getDoubleProperty(key, Double.NEGATIVE_INFINITY);
-		if (val == Double.NEGATIVE_INFINITY)
-			return defVal;
-		if ((dpi < 1) || (dpi == DEFAULT_DPI))
-			return val;
-		return scaleDouble(val, DEFAULT_DPI, dpi);
+		Double val = ((Double) this.getCompiledProperty(key, Double.class, dpi));
+		return ((val == null) ? defVal : val.doubleValue());
 	}
 	
 	/**
@@ -594,14 +871,8 @@ public class ImDocumentStyle extends DocumentStyle {
 	 * @see java.util.Properties#getProperty(java.lang.String, java.lang.String)
 	 */
 	public BoundingBox getBoxProperty(String key, BoundingBox defVal, int dpi) {
-		String valStr = this.getPropertyData(key, BoundingBox.class);
-		if ((valStr != null) && (valStr.trim().length() != 0)) try {
-			BoundingBox val = BoundingBox.parse(valStr);
-			if ((dpi < 1) || (dpi == DEFAULT_DPI))
-				return val;
-			else return scaleBox(val, DEFAULT_DPI, dpi);
-		} catch (IllegalArgumentException iae) {}
-		return defVal;
+		BoundingBox val = ((BoundingBox) this.getCompiledProperty(key, BoundingBox.class, dpi));
+		return ((val == null) ? defVal : val);
 	}
 	
 	/**
@@ -618,14 +889,8 @@ public class ImDocumentStyle extends DocumentStyle {
 	 * @see java.util.Properties#getProperty(java.lang.String, java.lang.String)
 	 */
 	public int[] getIntListProperty(String key, int[] defVal, int dpi) {
-		int[] vals = this.getIntListProperty(key, null);
-		if (vals == null)
-			return defVal;
-		if ((0 < dpi) && (dpi != DEFAULT_DPI)) {
-			for (int v = 0; v < vals.length; v++)
-				vals[v] = scaleInt(vals[v], DEFAULT_DPI, dpi);
-		}
-		return vals;
+		int[] vals = ((int[]) this.getCompiledProperty(key, int[].class, dpi));
+		return ((vals == null) ? defVal : ((int[]) vals.clone())); // clone array, as client code might modify it
 	}
 	
 	/**
@@ -642,14 +907,8 @@ public class ImDocumentStyle extends DocumentStyle {
 	 * @see java.util.Properties#getProperty(java.lang.String, java.lang.String)
 	 */
 	public float[] getFloatListProperty(String key, float[] defVal, int dpi) {
-		float[] vals = this.getFloatListProperty(key, null);
-		if (vals == null)
-			return defVal;
-		if ((0 < dpi) && (dpi != DEFAULT_DPI)) {
-			for (int v = 0; v < vals.length; v++)
-				vals[v] = scaleFloat(vals[v], DEFAULT_DPI, dpi);
-		}
-		return vals;
+		float[] vals = ((float[]) this.getCompiledProperty(key, float[].class, dpi));
+		return ((vals == null) ? defVal : ((float[]) vals.clone())); // clone array, as client code might modify it
 	}
 	
 	/**
@@ -666,14 +925,8 @@ public class ImDocumentStyle extends DocumentStyle {
 	 * @see java.util.Properties#getProperty(java.lang.String, java.lang.String)
 	 */
 	public double[] getDoubleListProperty(String key, double[] defVal, int dpi) {
-		double[] vals = this.getDoubleListProperty(key, null);
-		if (vals == null)
-			return defVal;
-		if ((0 < dpi) && (dpi != DEFAULT_DPI)) {
-			for (int v = 0; v < vals.length; v++)
-				vals[v] = scaleDouble(vals[v], DEFAULT_DPI, dpi);
-		}
-		return vals;
+		double[] vals = ((double[]) this.getCompiledProperty(key, double[].class, dpi));
+		return ((vals == null) ? defVal : ((double[]) vals.clone())); // clone array, as client code might modify it
 	}
 	
 	/**
@@ -703,9 +956,13 @@ public class ImDocumentStyle extends DocumentStyle {
 	 * @see java.util.Properties#getProperty(java.lang.String, java.lang.String)
 	 */
 	public BoundingBox[] getBoxListProperty(String key, BoundingBox[] defVal, int dpi) {
-		String valStr = this.getPropertyData(key, boxListClass);
+		BoundingBox[] vals = ((BoundingBox[]) this.getCompiledProperty(key, boxListClass, dpi));
+		return ((vals == null) ? defVal : ((BoundingBox[]) vals.clone())); // clone array, as client code might modify it
+	}
+	
+	private static BoundingBox[] parseBoxList(String valStr, int dpi) {
 		if ((valStr == null) || (valStr.trim().length() == 0))
-			return defVal;
+			return null;
 		String[] valStrs = valStr.split("[^0-9\\,\\[\\]]+");
 		BoundingBox[] vals = new BoundingBox[valStrs.length];
 		try {
@@ -716,7 +973,7 @@ public class ImDocumentStyle extends DocumentStyle {
 			}
 			return vals;
 		} catch (IllegalArgumentException iae) {}
-		return defVal;
+		return null;
 	}
 	
 	/**
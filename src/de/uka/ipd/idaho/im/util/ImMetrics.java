@@ -0,0 +1,324 @@
+/*
+ * Copyright (c) 2006-, IPD Boehm, Universitaet Karlsruhe (TH) / KIT, by Guido Sautter
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Universitaet Karlsruhe (TH) / KIT nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY UNIVERSITAET KARLSRUHE (TH) / KIT AND CONTRIBUTORS 
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uka.ipd.idaho.im.util;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Central access point for runtime metrics of Image Markup documents, their
+ * IO, and their generation. Instrumented code reports counters, timings, and
+ * value samples through the static methods of this class, which forward them
+ * to the currently installed <code>MetricsRecorder</code>. By default, there
+ * is no recorder installed, in which case all reporting methods return right
+ * away, and <code>startTime()</code> does not even read the system clock, so
+ * instrumentation is virtually free unless explicitly activated.<br/>
+ * Client code can install a <code>SnapshotRecorder</code> to aggregate all
+ * reported metrics in memory and export them as a JSON snapshot, or a custom
+ * <code>MetricsRecorder</code> implementation that forwards the reported
+ * values to an external monitoring facility.
+ * 
+ * @author sautter
+ */
+public class ImMetrics {
+	
+	/**
+	 * Receiver of reported metrics. Implementations have to be thread safe, as
+	 * metrics are reported from any thread that happens to do the measured
+	 * work.
+	 * 
+	 * @author sautter
+	 */
+	public static interface MetricsRecorder {
+		
+		/**
+		 * Increment (or decrement, for negative arguments) a counter.
+		 * @param name the name of the counter
+		 * @param delta the value to add to the counter
+		 */
+		public abstract void count(String name, long delta);
+		
+		/**
+		 * Record the duration of an operation.
+		 * @param name the name of the timer
+		 * @param nanos the duration of the operation in nanoseconds
+		 */
+		public abstract void time(String name, long nanos);
+		
+		/**
+		 * Record a sample value, e.g. the size of some data, to be aggregated
+		 * in a histogram.
+		 * @param name the name of the histogram
+		 * @param value the value to record
+		 */
+		public abstract void sample(String name, long value);
+	}
+	
+	private static volatile MetricsRecorder recorder = null;
+	
+	/**
+	 * Install a metrics recorder. Setting the recorder to null deactivates
+	 * recording altogether.
+	 * @param mr the metrics recorder to install
+	 */
+	public static void setRecorder(MetricsRecorder mr) {
+		recorder = mr;
+	}
+	
+	/**
+	 * Retrieve the currently installed metrics recorder.
+	 * @return the current metrics recorder, or null if there is none
+	 */
+	public static MetricsRecorder getRecorder() {
+		return recorder;
+	}
+	
+	/**
+	 * Check if metrics recording is active, i.e., if there is a recorder
+	 * installed. Client code can use this method to avoid computing the
+	 * values to report if recording is inactive.
+	 * @return true if metrics are being recorded
+	 */
+	public static boolean isActive() {
+		return (recorder != null);
+	}
+	
+	/**
+	 * Increment a counter by one.
+	 * @param name the name of the counter
+	 */
+	public static void count(String name) {
+		count(name, 1);
+	}
+	
+	/**
+	 * Increment (or decrement, for negative arguments) a counter.
+	 * @param name the name of the counter
+	 * @param delta the value to add to the counter
+	 */
+	public static void count(String name, long delta) {
+		MetricsRecorder mr = recorder;
+		if (mr != null)
+			mr.count(name, delta);
+	}
+	
+	/**
+	 * Obtain the start time of an operation to measure. If recording is
+	 * inactive, this method returns 0 without reading the system clock.
+	 * @return the current time in nanoseconds, or 0
+	 */
+	public static long startTime() {
+		return ((recorder == null) ? 0 : System.nanoTime());
+	}
+	
+	/**
+	 * Record the duration of an operation that started at the argument time,
+	 * as returned by <code>startTime()</code>, and ended right now. If the
+	 * argument start time is 0, recording was inactive when the operation
+	 * started, and this method does nothing.
+	 * @param name the name of the timer
+	 * @param startNanos the start time of the operation
+	 */
+	public static void time(String name, long startNanos) {
+		if (startNanos == 0)
+			return;
+		MetricsRecorder mr = recorder;
+		if (mr != null)
+			mr.time(name, (System.nanoTime() - startNanos));
+	}
+	
+	/**
+	 * Record a sample value to be aggregated in a histogram.
+	 * @param name the name of the histogram
+	 * @param value the value to record
+	 */
+	public static void sample(String name, long value) {
+		MetricsRecorder mr = recorder;
+		if (mr != null)
+			mr.sample(name, value);
+	}
+	
+	/**
+	 * Metrics recorder aggregating all reported metrics in memory. Timers
+	 * and samples are aggregated to count, sum, minimum, and maximum, as well
+	 * as a histogram with power-of-two bucket boundaries. The aggregated
+	 * values can be exported as JSON.
+	 * 
+	 * @author sautter
+	 */
+	public static class SnapshotRecorder implements MetricsRecorder {
+		private TreeMap counters = new TreeMap();
+		private TreeMap timers = new TreeMap();
+		private TreeMap samples = new TreeMap();
+		
+		public synchronized void count(String name, long delta) {
+			long[] counter = ((long[]) this.counters.get(name));
+			if (counter == null) {
+				counter = new long[1];
+				this.counters.put(name, counter);
+			}
+			counter[0] += delta;
+		}
+		
+		public synchronized void time(String name, long nanos) {
+			Stats stats = ((Stats) this.timers.get(name));
+			if (stats == null) {
+				stats = new Stats();
+				this.timers.put(name, stats);
+			}
+			stats.add(nanos);
+		}
+		
+		public synchronized void sample(String name, long value) {
+			Stats stats = ((Stats) this.samples.get(name));
+			if (stats == null) {
+				stats = new Stats();
+				this.samples.put(name, stats);
+			}
+			stats.add(value);
+		}
+		
+		/**
+		 * Retrieve the current value of a counter.
+		 * @param name the name of the counter
+		 * @return the value of the counter
+		 */
+		public synchronized long getCount(String name) {
+			long[] counter = ((long[]) this.counters.get(name));
+			return ((counter == null) ? 0 : counter[0]);
+		}
+		
+		/**
+		 * Clear all aggregated metrics.
+		 */
+		public synchronized void reset() {
+			this.counters.clear();
+			this.timers.clear();
+			this.samples.clear();
+		}
+		
+		/**
+		 * Export the aggregated metrics as a JSON object. Timer values are
+		 * given in nanoseconds.
+		 * @return the JSON snapshot
+		 */
+		public String toJson() {
+			StringWriter sw = new StringWriter();
+			try {
+				this.writeJson(sw);
+			} catch (IOException ioe) { /* never gonna happen with a StringWriter */ }
+			return sw.toString();
+		}
+		
+		/**
+		 * Write the aggregated metrics to some writer as a JSON object. Timer
+		 * values are given in nanoseconds.
+		 * @param out the writer to write to
+		 * @throws IOException
+		 */
+		public synchronized void writeJson(Writer out) throws IOException {
+			out.write("{\"counters\":{");
+			for (Iterator cit = this.counters.entrySet().iterator(); cit.hasNext();) {
+				Map.Entry ce = ((Map.Entry) cit.next());
+				writeJsonString(((String) ce.getKey()), out);
+				out.write(":" + ((long[]) ce.getValue())[0]);
+				if (cit.hasNext())
+					out.write(",");
+			}
+			out.write("},\"timers\":");
+			writeJsonStats(this.timers, out);
+			out.write(",\"samples\":");
+			writeJsonStats(this.samples, out);
+			out.write("}");
+			out.flush();
+		}
+		
+		private static void writeJsonStats(TreeMap statsMap, Writer out) throws IOException {
+			out.write("{");
+			for (Iterator sit = statsMap.entrySet().iterator(); sit.hasNext();) {
+				Map.Entry se = ((Map.Entry) sit.next());
+				writeJsonString(((String) se.getKey()), out);
+				out.write(":");
+				((Stats) se.getValue()).writeJson(out);
+				if (sit.hasNext())
+					out.write(",");
+			}
+			out.write("}");
+		}
+		
+		private static void writeJsonString(String str, Writer out) throws IOException {
+			out.write('"');
+			for (int c = 0; c < str.length(); c++) {
+				char ch = str.charAt(c);
+				if ((ch == '"') || (ch == '\\'))
+					out.write('\\');
+				if (ch < 32)
+					out.write("\\u" + Integer.toHexString(0x10000 | ch).substring(1));
+				else out.write(ch);
+			}
+			out.write('"');
+		}
+	}
+	
+	private static class Stats {
+		long count = 0;
+		long sum = 0;
+		long min = Long.MAX_VALUE;
+		long max = Long.MIN_VALUE;
+		long[] buckets = new long[64]; // bucket b counts values below 2^b, but not below 2^(b-1)
+		void add(long value) {
+			this.count++;
+			this.sum += value;
+			this.min = Math.min(this.min, value);
+			this.max = Math.max(this.max, value);
+			this.buckets[(value <= 0) ? 0 : (64 - Long.numberOfLeadingZeros(value))]++;
+		}
+		void writeJson(Writer out) throws IOException {
+			out.write("{\"count\":" + this.count);
+			out.write(",\"sum\":" + this.sum);
+			out.write(",\"min\":" + ((this.count == 0) ? 0 : this.min));
+			out.write(",\"max\":" + ((this.count == 0) ? 0 : this.max));
+			out.write(",\"mean\":" + ((this.count == 0) ? 0 : (this.sum / this.count)));
+			out.write(",\"histogram\":{");
+			boolean first = true;
+			for (int b = 0; b < this.buckets.length; b++) {
+				if (this.buckets[b] == 0)
+					continue;
+				if (first)
+					first = false;
+				else out.write(",");
+				out.write("\"<" + ((b == 0) ? "1" : ((b == 63) ? "max" : ("" + (1L << b)))) + "\":" + this.buckets[b]);
+			}
+			out.write("}}");
+		}
+	}
+}
@@ -0,0 +1,288 @@
+/*
+ * Copyright (c) 2006-, IPD Boehm, Universitaet Karlsruhe (TH) / KIT, by Guido Sautter
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Universitaet Karlsruhe (TH) / KIT nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY UNIVERSITAET KARLSRUHE (TH) / KIT AND CONTRIBUTORS 
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uka.ipd.idaho.im.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import de.uka.ipd.idaho.im.ImPage;
+import de.uka.ipd.idaho.im.ImRegion;
+import de.uka.ipd.idaho.im.ImWord;
+import de.uka.ipd.idaho.stringUtils.StringUtils;
+
+/**
+ * A set of line patterns to match against the lines of an Image Markup
+ * document in a single pass. Instead of having each pattern fetch and sort
+ * paragraphs, lines, and line words by itself, this class does so only once
+ * and then tests all patterns against every line. The words and normalized
+ * string of a line are computed only once, and so are the outcomes of font
+ * property, font size, and regular expression tests that several patterns
+ * have in common. Sub classes of <code>LinePattern</code> that might have
+ * modified the matching behavior are matched via their own
+ * <code>matches()</code> method.
+ * 
+ * @author sautter
+ */
+public class LinePatternSet {
+	private LinePattern[] patterns;
+	private boolean[] isPlainPattern;
+	
+	/** Constructor
+	 * @param patterns the line patterns to include in the set
+	 */
+	public LinePatternSet(LinePattern[] patterns) {
+		this.patterns = ((LinePattern[]) patterns.clone());
+		this.isPlainPattern = new boolean[this.patterns.length];
+		for (int p = 0; p < this.patterns.length; p++)
+			this.isPlainPattern[p] = (this.patterns[p].getClass() == LinePattern.class);
+	}
+	
+	/**
+	 * Retrieve the number of line patterns in the set.
+	 * @return the number of line patterns
+	 */
+	public int size() {
+		return this.patterns.length;
+	}
+	
+	/**
+	 * Retrieve a line pattern from the set.
+	 * @param index the index of the line pattern
+	 * @return the line pattern at the argument index
+	 */
+	public LinePattern getPattern(int index) {
+		return this.patterns[index];
+	}
+	
+	/**
+	 * Extract all lines matching each of the line patterns from a given page
+	 * in an Image Markup document. The outer dimension of the returned array
+	 * corresponds to the order of the patterns in the set; the matching lines
+	 * of each pattern come in the same order as from the
+	 * <code>getMatches()</code> method of the pattern proper.
+	 * @param page the page whose lines to test
+	 * @return an array holding the matching lines for each pattern
+	 */
+	public ImRegion[][] getMatches(ImPage page) {
+		ArrayList[] matchLines = this.createMatchLists();
+		ImRegion[] paragraphs = page.getRegions(ImRegion.PARAGRAPH_TYPE);
+		Arrays.sort(paragraphs, ImUtils.topDownOrder);
+		for (int p = 0; p < paragraphs.length; p++) {
+			boolean[] isCandidate = this.getCandidatePatterns(paragraphs[p]);
+			if (isCandidate != null)
+				this.addMatches(paragraphs[p].getRegions(ImRegion.LINE_ANNOTATION_TYPE, true), paragraphs[p], isCandidate, matchLines);
+		}
+		return this.toMatchArrays(matchLines);
+	}
+	
+	/**
+	 * Extract all lines matching each of the line patterns from a given array,
+	 * in the context of their parent paragraph. If the argument paragraph is
+	 * null, paragraph orientation will be ignored; the same applies if the
+	 * paragraph comes without the 'orientation' attribute.
+	 * @param lines the lines to test
+	 * @param paragraph the parent paragraph of the lines
+	 * @return an array holding the matching lines for each pattern
+	 */
+	public ImRegion[][] getMatches(ImRegion[] lines, ImRegion paragraph) {
+		ArrayList[] matchLines = this.createMatchLists();
+		boolean[] isCandidate = this.getCandidatePatterns(paragraph);
+		if (isCandidate != null)
+			this.addMatches(lines, paragraph, isCandidate, matchLines);
+		return this.toMatchArrays(matchLines);
+	}
+	
+	/**
+	 * Match a line against all patterns in the set, in context of its parent
+	 * paragraph. If the argument paragraph is null, paragraph orientation will
+	 * be ignored; the same applies if the paragraph comes without the
+	 * 'orientation' attribute.
+	 * @param line the line to match
+	 * @param paragraph the parent paragraph of the line
+	 * @return an array indicating for each pattern whether or not it matches
+	 */
+	public boolean[] matches(ImRegion line, ImRegion paragraph) {
+		boolean[] matches = new boolean[this.patterns.length];
+		boolean[] isCandidate = this.getCandidatePatterns(paragraph);
+		if (isCandidate != null)
+			this.matches(new LineFeatures(line, null), paragraph, isCandidate, matches);
+		return matches;
+	}
+	
+	/**
+	 * Match the words of a line against the patterns in the set, bypassing
+	 * paragraph orientation. This is intended for client code that has the
+	 * words of lines at hand in a specific order and handles paragraph
+	 * orientation by itself, e.g. in the course of block layout analysis. If
+	 * the <code>isCandidate</code> argument is not null, only patterns marked
+	 * as candidates are tested, and all others are reported as mismatches.
+	 * @param lineWords the words of the line to match
+	 * @param isCandidate an array indicating which patterns to test
+	 * @return an array indicating for each pattern whether or not it matches
+	 */
+	public boolean[] matches(ImWord[] lineWords, boolean[] isCandidate) {
+		boolean[] matches = new boolean[this.patterns.length];
+		if (isCandidate == null) {
+			isCandidate = new boolean[this.patterns.length];
+			Arrays.fill(isCandidate, true);
+		}
+		this.matches(new LineFeatures(null, lineWords), null, isCandidate, matches);
+		return matches;
+	}
+	
+	private ArrayList[] createMatchLists() {
+		ArrayList[] matchLines = new ArrayList[this.patterns.length];
+		for (int p = 0; p < matchLines.length; p++)
+			matchLines[p] = new ArrayList();
+		return matchLines;
+	}
+	
+	private ImRegion[][] toMatchArrays(ArrayList[] matchLines) {
+		ImRegion[][] matches = new ImRegion[matchLines.length][];
+		for (int p = 0; p < matchLines.length; p++)
+			matches[p] = ((ImRegion[]) matchLines[p].toArray(new ImRegion[matchLines[p].size()]));
+		return matches;
+	}
+	
+	private boolean[] getCandidatePatterns(ImRegion paragraph) {
+		String po = ((paragraph == null) ? null : ((String) paragraph.getAttribute(ImRegion.TEXT_ORIENTATION_ATTRIBUTE)));
+		boolean[] isCandidate = new boolean[this.patterns.length];
+		boolean gotCandidate = false;
+		for (int p = 0; p < this.patterns.length; p++) {
+			isCandidate[p] = this.patterns[p].matchesParagraphOrientation(po);
+			gotCandidate = (gotCandidate || isCandidate[p]);
+		}
+		return (gotCandidate ? isCandidate : null); // no need to even get lines if paragraph orientation rules out all patterns
+	}
+	
+	private void addMatches(ImRegion[] lines, ImRegion paragraph, boolean[] isCandidate, ArrayList[] matchLines) {
+		Arrays.sort(lines, ImUtils.topDownOrder);
+		boolean[] matches = new boolean[this.patterns.length];
+		for (int l = 0; l < lines.length; l++) {
+			Arrays.fill(matches, false);
+			this.matches(new LineFeatures(lines[l], null), paragraph, isCandidate, matches);
+			for (int p = 0; p < matches.length; p++) {
+				if (matches[p])
+					matchLines[p].add(lines[l]);
+			}
+		}
+	}
+	
+	private void matches(LineFeatures line, ImRegion paragraph, boolean[] isCandidate, boolean[] matches) {
+		for (int p = 0; p < this.patterns.length; p++) {
+			if (!isCandidate[p])
+				continue;
+			LinePattern lp = this.patterns[p];
+			if (this.isPlainPattern[p])
+				matches[p] = (true
+					&& line.matchesStartFontProperties(lp)
+					&& line.matchesFontProperties(lp)
+					&& line.matchesFontSize(lp)
+					&& line.matchesString(lp)
+				);
+			else if (line.line == null) // matching plain words, use word level methods of pattern proper
+				matches[p] = (true
+					&& lp.matchesStartFontProperties(line.words, null)
+					&& lp.matchesFontProperties(line.words, null)
+					&& lp.matchesFontSize(line.words, null)
+					&& lp.matchesString(line.words, null)
+				);
+			else matches[p] = lp.matches(line.line, paragraph, null);
+		}
+	}
+	
+	/* features of an individual line, computed only once and shared between
+	 * patterns, with test outcomes memorized by the tested parameter values */
+	private static class LineFeatures {
+		final ImRegion line;
+		private ImWord[] words;
+		private String normString = null;
+		private HashMap testResults = new HashMap();
+		LineFeatures(ImRegion line, ImWord[] words) {
+			this.line = line;
+			this.words = words;
+		}
+		ImWord[] getWords() {
+			if (this.words == null) {
+				this.words = this.line.getWords();
+				Arrays.sort(this.words, ImUtils.textStreamOrder);
+			}
+			return this.words;
+		}
+		String getNormalizedString() {
+			if (this.normString == null)
+				this.normString = StringUtils.normalizeString(ImUtils.getString(this.getWords(), true));
+			return this.normString;
+		}
+		boolean matchesStartFontProperties(LinePattern lp) {
+			if (lp.startFontProperties == null)
+				return true; // wildcard match
+			String key = ("SFP:" + lp.startFontProperties);
+			Boolean match = ((Boolean) this.testResults.get(key));
+			if (match == null) {
+				match = (lp.matchesStartFontProperties(this.getWords(), null) ? Boolean.TRUE : Boolean.FALSE);
+				this.testResults.put(key, match);
+			}
+			return match.booleanValue();
+		}
+		boolean matchesFontProperties(LinePattern lp) {
+			if (lp.fontProperties == null)
+				return true; // wildcard match
+			String key = ("FP:" + lp.fontProperties);
+			Boolean match = ((Boolean) this.testResults.get(key));
+			if (match == null) {
+				match = (lp.matchesFontProperties(this.getWords(), null) ? Boolean.TRUE : Boolean.FALSE);
+				this.testResults.put(key, match);
+			}
+			return match.booleanValue();
+		}
+		boolean matchesFontSize(LinePattern lp) {
+			if ((lp.minFontSize == 0) && (lp.maxFontSize == 72))
+				return true; // wildcard match
+			String key = ("FS:" + lp.minFontSize + "-" + lp.maxFontSize);
+			Boolean match = ((Boolean) this.testResults.get(key));
+			if (match == null) {
+				match = (lp.matchesFontSize(this.getWords(), null) ? Boolean.TRUE : Boolean.FALSE);
+				this.testResults.put(key, match);
+			}
+			return match.booleanValue();
+		}
+		boolean matchesString(LinePattern lp) {
+			if (lp.pattern == null)
+				return true; // wildcard match
+			String key = ("P:" + lp.pattern.flags() + ":" + lp.pattern.pattern());
+			Boolean match = ((Boolean) this.testResults.get(key));
+			if (match == null) {
+				match = (lp.pattern.matcher(this.getNormalizedString()).matches() ? Boolean.TRUE : Boolean.FALSE);
+				this.testResults.put(key, match);
+			}
+			return match.booleanValue();
+		}
+	}
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2006-, IPD Boehm, Universitaet Karlsruhe (TH) / KIT, by Guido Sautter
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Universitaet Karlsruhe (TH) / KIT nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY UNIVERSITAET KARLSRUHE (TH) / KIT AND CONTRIBUTORS 
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uka.ipd.idaho.im.util;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.Random;
+
+import de.uka.ipd.idaho.gamta.util.imaging.BoundingBox;
+import de.uka.ipd.idaho.im.ImDocument;
+import de.uka.ipd.idaho.im.ImPage;
+import de.uka.ipd.idaho.im.ImRegion;
+import de.uka.ipd.idaho.im.ImWord;
+
+/**
+ * Parity check of line pattern sets against their individual line patterns,
+ * on a synthetic page with random paragraph orientations, font sizes, and
+ * emphases.
+ *
+ * @author sautter
+ */
+public class LinePatternSetTest {
+	private static final String[] ORIENTATIONS = {null, "L", "R", "C", "J"};
+	private static final String[] FONT_PROPERTIES = {null, "B", "I", "C", "BI", "BC"};
+	private static final String[] WORDS = {"Introduction", "METHODS", "Results", "Fig.", "1", "2.", "a", "the", "Table", "of", "Discussion", "III"};
+	private static final String[] PATTERNS = {null, "[A-Z].*", "[A-Z]+", "[0-9]+\\.?.*", "Fig\\..*", "Table .*", ".*[a-z]", "(?i)the .*"};
+
+	/**
+	 * @param args
+	 */
+	public static void main(String[] args) throws Exception {
+		Random rnd = new Random(38);
+
+		//	generate page
+		ImDocument doc = new ImDocument("LinePatternSetTest");
+		ImPage page = new ImPage(doc, 0, new BoundingBox(0, 2000, 0, 8000));
+		int top = 0;
+		int lineCount = 0;
+		for (int p = 0; p < 40; p++) {
+			int pTop = top;
+			int pLines = (1 + rnd.nextInt(6));
+			for (int l = 0; l < pLines; l++) {
+				boolean bold = rnd.nextBoolean();
+				boolean italics = rnd.nextBoolean();
+				int fontSize = (6 + rnd.nextInt(10));
+				int left = 0;
+				int lWords = (1 + rnd.nextInt(5));
+				ImWord prevWord = null;
+				for (int w = 0; w < lWords; w++) {
+					String str = WORDS[rnd.nextInt(WORDS.length)];
+					ImWord word = new ImWord(page, new BoundingBox(left, (left + (str.length() * 20)), top, (top + 30)), str);
+					if (bold || (rnd.nextInt(4) == 0))
+						word.setAttribute(ImWord.BOLD_ATTRIBUTE);
+					if (italics && (rnd.nextInt(4) != 0))
+						word.setAttribute(ImWord.ITALICS_ATTRIBUTE);
+					word.setFontSize(fontSize + ((rnd.nextInt(6) == 0) ? -2 : 0));
+					if (prevWord != null)
+						prevWord.setNextWord(word);
+					prevWord = word;
+					left += (str.length() * 20 + 10);
+				}
+				new ImRegion(page, new BoundingBox(0, left, top, (top + 30)), ImRegion.LINE_ANNOTATION_TYPE);
+				top += 40;
+				lineCount++;
+			}
+			ImRegion paragraph = new ImRegion(page, new BoundingBox(0, 2000, pTop, top), ImRegion.PARAGRAPH_TYPE);
+			String po = ORIENTATIONS[rnd.nextInt(ORIENTATIONS.length)];
+			if (po != null)
+				paragraph.setAttribute(ImRegion.TEXT_ORIENTATION_ATTRIBUTE, po);
+			top += 20;
+		}
+		System.out.println("Generated " + lineCount + " lines");
+
+		//	generate patterns, including a sub class that needs to match via its own methods
+		LinePattern[] patterns = new LinePattern[200];
+		for (int p = 0; p < (patterns.length - 1); p++) {
+			int minFs = (rnd.nextBoolean() ? 0 : (6 + rnd.nextInt(6)));
+			int maxFs = ((minFs == 0) ? 72 : (minFs + rnd.nextInt(6)));
+			patterns[p] = new LinePattern(ORIENTATIONS[rnd.nextInt(ORIENTATIONS.length)], FONT_PROPERTIES[rnd.nextInt(FONT_PROPERTIES.length)], FONT_PROPERTIES[rnd.nextInt(FONT_PROPERTIES.length)], minFs, maxFs, PATTERNS[rnd.nextInt(PATTERNS.length)]);
+		}
+		patterns[patterns.length - 1] = new LinePattern(null, null, null, 0, 72, "[A-Z].*") {
+			public boolean matchesString(String lineString, PrintStream log) {
+				return !super.matchesString(lineString, log);
+			}
+		};
+		LinePatternSet lps = new LinePatternSet(patterns);
+
+		//	compare page level matches
+		int errors = 0;
+		int matches = 0;
+		ImRegion[][] setMatches = lps.getMatches(page);
+		for (int p = 0; p < patterns.length; p++) {
+			ImRegion[] lpMatches = patterns[p].getMatches(page, null);
+			matches += lpMatches.length;
+			if (!Arrays.equals(lpMatches, setMatches[p])) {
+				System.out.println("Page match mismatch for " + patterns[p] + ": " + lpMatches.length + " vs. " + setMatches[p].length);
+				errors++;
+			}
+		}
+
+		//	compare line and word level matches
+		ImRegion[] paragraphs = page.getRegions(ImRegion.PARAGRAPH_TYPE);
+		for (int g = 0; g < paragraphs.length; g++) {
+			ImRegion[] lines = paragraphs[g].getRegions(ImRegion.LINE_ANNOTATION_TYPE, true);
+			for (int l = 0; l < lines.length; l++) {
+				boolean[] lineMatches = lps.matches(lines[l], paragraphs[g]);
+				ImWord[] lineWords = lines[l].getWords();
+				Arrays.sort(lineWords, ImUtils.leftRightOrder);
+				boolean[] wordMatches = lps.matches(lineWords, null);
+				for (int p = 0; p < patterns.length; p++) {
+					if (lineMatches[p] != patterns[p].matches(lines[l], paragraphs[g], null)) {
+						System.out.println("Line match mismatch for " + patterns[p] + " on " + ImUtils.getString(lineWords, true));
+						errors++;
+					}
+					boolean lpWordMatch = (true
+						&& patterns[p].matchesStartFontProperties(lineWords, null)
+						&& patterns[p].matchesFontProperties(lineWords, null)
+						&& patterns[p].matchesFontSize(lineWords, null)
+						&& patterns[p].matchesString(lineWords, null)
+					);
+					if (wordMatches[p] != lpWordMatch) {
+						System.out.println("Word match mismatch for " + patterns[p] + " on " + ImUtils.getString(lineWords, true));
+						errors++;
+					}
+				}
+			}
+		}
+		System.out.println("Compared " + patterns.length + " patterns on " + lineCount + " lines, " + matches + " matches, " + errors + " mismatches");
+	}
+}
@@ -0,0 +1,643 @@
+/*
+ * Copyright (c) 2006-, IPD Boehm, Universitaet Karlsruhe (TH) / KIT, by Guido Sautter
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Universitaet Karlsruhe (TH) / KIT nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY UNIVERSITAET KARLSRUHE (TH) / KIT AND CONTRIBUTORS 
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uka.ipd.idaho.im.util;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.IndexColorModel;
+import java.awt.image.WritableRaster;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import de.uka.ipd.idaho.gamta.util.imaging.PageImage;
+import de.uka.ipd.idaho.gamta.util.imaging.PageImageInputStream;
+import de.uka.ipd.idaho.gamta.util.imaging.PageImageSource;
+import de.uka.ipd.idaho.gamta.util.imaging.PageImageStore;
+import de.uka.ipd.idaho.gamta.util.imaging.PageImageStore.AbstractPageImageStore;
+
+/**
+ * Page image store keeping decoded page image rasters in memory mapped files
+ * on background storage, one file per document. Each page image is stored as
+ * its raw raster data, exactly as laid out in the data buffer of a standard
+ * <code>BufferedImage</code>, while its dimensions, resolution, edges, and
+ * image type stay in memory. Retrieving a page image
+ * thus comes down to copying the raster data out of the mapped file into a
+ * fresh <code>BufferedImage</code>, without any PNG decoding, and which parts
+ * of the mapped files stay in physical memory is left to the page cache of
+ * the operating system rather than to the Java heap.<br/>
+ * Instances of this class can wrap a backing page image source, e.g. the page
+ * image store of an <code>ImDocument</code> or the one handed to a
+ * <code>PdfExtractor</code>. Page images not yet held in a mapped file are
+ * loaded from the backing source on first access and added to the mapped file
+ * right away; page images stored in an instance of this class are handed on
+ * to the backing source if it is a <code>PageImageStore</code> in its own
+ * right, and are added to the mapped file as well. Without a backing source,
+ * page images persist only as long as an instance of this class. Concurrent
+ * requests for a page image that is not yet mapped load it from the backing
+ * source only once. The space of page images replaced by a newer version is
+ * reused as soon as no thread is reading them any more.<br/>
+ * Only page images of the types <code>TYPE_BYTE_GRAY</code>,
+ * <code>TYPE_BYTE_BINARY</code> (black and white only),
+ * <code>TYPE_3BYTE_BGR</code>, <code>TYPE_4BYTE_ABGR</code>,
+ * <code>TYPE_INT_RGB</code>, <code>TYPE_INT_ARGB</code>, and
+ * <code>TYPE_INT_BGR</code> are held in the mapped files; page images of any
+ * other type are always handled by the backing source.<br/>
+ * The mapped files are intended as a cache for the lifetime of an instance of
+ * this class, not as a persistent storage format, and they are recreated from
+ * scratch if they exist when first accessed. Client code should call
+ * <code>removeDocument()</code> after being done with a document, and
+ * <code>dispose()</code> after being done with an instance of this class as a
+ * whole, to clean up the mapped files.
+ * 
+ * @author sautter
+ */
+public class MappedPageImageStore extends AbstractPageImageStore {
+	
+	private static final String FILE_SUFFIX = ".pimg";
+	
+	private final PageImageSource source;
+	private final File cacheFolder;
+	private final boolean isTempCacheFolder;
+	private final HashMap documentFiles = new HashMap();
+	private final HashMap pageLocks = new HashMap();
+	
+	/** Constructor creating a temporary cache folder for the mapped files,
+	 * which is removed in <code>dispose()</code>
+	 * @param source the backing page image source (may be null)
+	 * @throws IOException if the cache folder cannot be created
+	 */
+	public MappedPageImageStore(PageImageSource source) throws IOException {
+		this(source, createTempCacheFolder(), true);
+	}
+	
+	/** Constructor
+	 * @param source the backing page image source (may be null)
+	 * @param cacheFolder the folder to put the mapped files in
+	 */
+	public MappedPageImageStore(PageImageSource source, File cacheFolder) {
+		this(source, cacheFolder, false);
+	}
+	
+	private MappedPageImageStore(PageImageSource source, File cacheFolder, boolean isTempCacheFolder) {
+		this.source = source;
+		this.cacheFolder = cacheFolder;
+		this.cacheFolder.mkdirs();
+		this.isTempCacheFolder = isTempCacheFolder;
+	}
+	
+	private static File createTempCacheFolder() throws IOException {
+		File cacheFolder = File.createTempFile("MappedPageImages", "");
+		if (!cacheFolder.delete() || !cacheFolder.mkdirs())
+			throw new IOException("Could not create cache folder " + cacheFolder.getAbsolutePath());
+		cacheFolder.deleteOnExit();
+		return cacheFolder;
+	}
+	
+	/**
+	 * Retrieve the backing page image source page images are loaded from
+	 * (and stored to, if it is a <code>PageImageStore</code>).
+	 * @return the backing page image source
+	 */
+	public PageImageSource getSource() {
+		return this.source;
+	}
+	
+	/**
+	 * Retrieve the folder the mapped files reside in.
+	 * @return the cache folder
+	 */
+	public File getCacheFolder() {
+		return this.cacheFolder;
+	}
+	
+	public boolean isPageImageAvailable(String name) {
+		String docId = getDocId(name);
+		int pageId = ((docId == null) ? -1 : getPageId(name));
+		if ((pageId != -1) && this.isPageImageMapped(docId, pageId))
+			return true;
+		return ((this.source != null) && this.source.isPageImageAvailable(name));
+	}
+	
+	public boolean isPageImageAvailable(String docId, int pageId) {
+		if (this.isPageImageMapped(docId, pageId))
+			return true;
+		return ((this.source != null) && this.source.isPageImageAvailable(docId, pageId));
+	}
+	
+	public PageImage getPageImage(String name) throws IOException {
+		String docId = getDocId(name);
+		int pageId = ((docId == null) ? -1 : getPageId(name));
+		if (pageId == -1)
+			return ((this.source == null) ? null : this.source.getPageImage(name));
+		else return this.getPageImage(docId, pageId, name);
+	}
+	
+	public PageImage getPageImage(String docId, int pageId) throws IOException {
+		return this.getPageImage(docId, pageId, PageImage.getPageImageName(docId, pageId));
+	}
+	
+	private PageImage getPageImage(String docId, int pageId, String name) throws IOException {
+		
+		//	do we have this one mapped?
+		PageImage pi = this.getMappedPageImage(docId, pageId);
+		if (pi != null) {
+			ImMetrics.count("MappedPageImageStore.hits");
+			return pi;
+		}
+		ImMetrics.count("MappedPageImageStore.misses");
+		
+		//	load page image from backing source, and map it for subsequent access (only one thread per page, so concurrent misses don't load and map it twice)
+		if (this.source == null)
+			return null;
+		PageLock pl = this.getPageLock(docId, pageId);
+		try {
+			synchronized (pl) {
+				
+				//	check if another thread mapped page image while we were waiting
+				pi = this.getMappedPageImage(docId, pageId);
+				if (pi != null)
+					return pi;
+				
+				//	load and map page image
+				long startTime = ImMetrics.startTime();
+				pi = this.source.getPageImage(name);
+				ImMetrics.time("MappedPageImageStore.sourceLoad", startTime);
+				if (pi != null)
+					this.mapPageImage(docId, pageId, pi);
+				return pi;
+			}
+		}
+		finally {
+			this.releasePageLock(pl);
+		}
+	}
+	
+	public PageImageInputStream getPageImageAsStream(String name) throws IOException {
+		
+		//	prefer stream from backing source, as it's likely encoded already
+		if ((this.source != null) && this.source.isPageImageAvailable(name))
+			return this.source.getPageImageAsStream(name);
+		
+		//	encode mapped page image
+		String docId = getDocId(name);
+		int pageId = ((docId == null) ? -1 : getPageId(name));
+		if (pageId == -1)
+			return null;
+		PageImage pi = this.getMappedPageImage(docId, pageId);
+		if (pi == null)
+			return null;
+		ByteArrayOutputStream piOut = new ByteArrayOutputStream();
+		pi.write(piOut);
+		return new PageImageInputStream(new ByteArrayInputStream(piOut.toByteArray()), this);
+	}
+	
+	public boolean storePageImage(String name, PageImage pageImage) throws IOException {
+		String docId = getDocId(name);
+		int pageId = ((docId == null) ? -1 : getPageId(name));
+		
+		//	hand page image on to backing store
+		if (pageId == -1)
+			return ((this.source instanceof PageImageStore) && ((PageImageStore) this.source).storePageImage(name, pageImage));
+		
+		//	store and map page image (replacing any previous version), locking page against concurrent loading of the previous version
+		PageLock pl = this.getPageLock(docId, pageId);
+		try {
+			synchronized (pl) {
+				boolean stored = false;
+				if (this.source instanceof PageImageStore)
+					stored = ((PageImageStore) this.source).storePageImage(name, pageImage);
+				return (this.mapPageImage(docId, pageId, pageImage) || stored);
+			}
+		}
+		finally {
+			this.releasePageLock(pl);
+		}
+	}
+	
+	public int getPriority() {
+		if (this.source instanceof PageImageStore)
+			return (((PageImageStore) this.source).getPriority() + 1); // we're taking precedence over our backing store
+		else return 10; // we're specific to the documents we're used for
+	}
+	
+	/**
+	 * Remove all mapped page images of a document and delete the mapped file.
+	 * This does not affect the backing source.
+	 * @param docId the ID of the document to remove
+	 */
+	public void removeDocument(String docId) {
+		PageImageFile pif;
+		synchronized (this.documentFiles) {
+			pif = ((PageImageFile) this.documentFiles.remove(docId));
+		}
+		if (pif != null)
+			pif.dispose();
+	}
+	
+	/**
+	 * Remove all mapped page images and delete the mapped files, as well as
+	 * the cache folder if it was created by this class. This does not affect
+	 * the backing source.
+	 */
+	public void dispose() {
+		ArrayList pifs;
+		synchronized (this.documentFiles) {
+			pifs = new ArrayList(this.documentFiles.values());
+			this.documentFiles.clear();
+		}
+		for (int f = 0; f < pifs.size(); f++)
+			((PageImageFile) pifs.get(f)).dispose();
+		if (this.isTempCacheFolder && !this.cacheFolder.delete())
+			this.cacheFolder.deleteOnExit();
+	}
+	
+	private boolean isPageImageMapped(String docId, int pageId) {
+		PageImageFile pif;
+		synchronized (this.documentFiles) {
+			pif = ((PageImageFile) this.documentFiles.get(docId));
+		}
+		return ((pif != null) && pif.hasPageImage(pageId));
+	}
+	
+	private PageImage getMappedPageImage(String docId, int pageId) {
+		PageImageFile pif;
+		synchronized (this.documentFiles) {
+			pif = ((PageImageFile) this.documentFiles.get(docId));
+		}
+		return ((pif == null) ? null : pif.getPageImage(pageId, this));
+	}
+	
+	private PageLock getPageLock(String docId, int pageId) {
+		String key = (docId + "." + pageId);
+		synchronized (this.pageLocks) {
+			PageLock pl = ((PageLock) this.pageLocks.get(key));
+			if (pl == null) {
+				pl = new PageLock(key);
+				this.pageLocks.put(key, pl);
+			}
+			pl.users++;
+			return pl;
+		}
+	}
+	
+	private void releasePageLock(PageLock pl) {
+		synchronized (this.pageLocks) {
+			pl.users--;
+			if (pl.users == 0)
+				this.pageLocks.remove(pl.key);
+		}
+	}
+	
+	/* a lock on a single page image, held while loading or storing it */
+	private static class PageLock {
+		final String key;
+		int users = 0;
+		PageLock(String key) {
+			this.key = key;
+		}
+	}
+	
+	private boolean mapPageImage(String docId, int pageId, PageImage pi) throws IOException {
+		BufferedImage pageImage = getMappableImage(pi.image);
+		if (pageImage == null)
+			return false; // can't map this one
+		PageImageFile pif;
+		synchronized (this.documentFiles) {
+			pif = ((PageImageFile) this.documentFiles.get(docId));
+			if (pif == null) {
+				pif = new PageImageFile(File.createTempFile(getFileNamePrefix(docId), FILE_SUFFIX, this.cacheFolder));
+				this.documentFiles.put(docId, pif);
+			}
+		}
+		long startTime = ImMetrics.startTime();
+		boolean mapped = pif.putPageImage(pageId, pi, pageImage);
+		ImMetrics.time("MappedPageImageStore.map", startTime);
+		return mapped;
+	}
+	
+	/* Get the document ID from a page image name, or null if the name does
+	 * not end with a page ID. The page ID is only parsed for names with a
+	 * document ID; if it exceeds the integer range, parsing yields -1. Either
+	 * way, the name is handed to the backing source as is. */
+	static String getDocId(String name) {
+		if (name.endsWith("." + IMAGE_FORMAT))
+			name = name.substring(0, (name.length() - ("." + IMAGE_FORMAT).length()));
+		int split = name.lastIndexOf('.');
+		if (split < 1)
+			return null;
+		for (int c = (split + 1); c < name.length(); c++) {
+			if (!Character.isDigit(name.charAt(c)))
+				return null;
+		}
+		return (((split + 1) < name.length()) ? name.substring(0, split) : null);
+	}
+	
+	static int getPageId(String name) {
+		if (name.endsWith("." + IMAGE_FORMAT))
+			name = name.substring(0, (name.length() - ("." + IMAGE_FORMAT).length()));
+		try {
+			return Integer.parseInt(name.substring(name.lastIndexOf('.') + 1));
+		}
+		catch (NumberFormatException nfe) {
+			return -1; // too many digits for a page ID
+		}
+	}
+	
+	private static String getFileNamePrefix(String docId) {
+		StringBuffer prefix = new StringBuffer();
+		for (int c = 0; c < Math.min(docId.length(), 64); c++) {
+			char ch = docId.charAt(c);
+			prefix.append((Character.isLetterOrDigit(ch) || (ch == '-') || (ch == '_')) ? ch : '_');
+		}
+		while (prefix.length() < 3)
+			prefix.append('_'); // createTempFile() requires at least 3 characters
+		prefix.append('.');
+		return prefix.toString();
+	}
+	
+	/* Get a page image in the standard layout of its image type, copying it
+	 * if it comes with a non-standard raster (e.g. a sub image), or null if
+	 * its type cannot be mapped */
+	private static BufferedImage getMappableImage(BufferedImage bi) {
+		int type = bi.getType();
+		int width = bi.getWidth();
+		int height = bi.getHeight();
+		int size = getRasterDataSize(type, width, height);
+		if (size < 0)
+			return null;
+		if ((type == BufferedImage.TYPE_BYTE_BINARY) && !isBlackWhiteColorModel(bi.getColorModel()))
+			return null;
+		if ((((long) size) * ((getTransferType(type) == DataBuffer.TYPE_INT) ? 4 : 1)) > Integer.MAX_VALUE)
+			return null; // too large to map in one piece
+		
+		//	check if raster is in standard layout
+		WritableRaster raster = bi.getRaster();
+		DataBuffer data = raster.getDataBuffer();
+		if ((raster.getParent() == null) && (raster.getSampleModelTranslateX() == 0) && (raster.getSampleModelTranslateY() == 0) && (data.getNumBanks() == 1) && (data.getOffset() == 0) && (data.getSize() == size))
+			return bi;
+		
+		//	copy image data to standard raster
+		BufferedImage mbi = new BufferedImage(width, height, type);
+		mbi.getRaster().setDataElements(0, 0, width, height, raster.getDataElements(raster.getMinX(), raster.getMinY(), width, height, null));
+		return mbi;
+	}
+	
+	private static int getRasterDataSize(int type, int width, int height) {
+		switch (type) {
+			case BufferedImage.TYPE_BYTE_BINARY: return (((width + 7) / 8) * height);
+			case BufferedImage.TYPE_BYTE_GRAY: return (width * height);
+			case BufferedImage.TYPE_3BYTE_BGR: return (width * height * 3);
+			case BufferedImage.TYPE_4BYTE_ABGR: return (width * height * 4);
+			case BufferedImage.TYPE_INT_RGB:
+			case BufferedImage.TYPE_INT_ARGB:
+			case BufferedImage.TYPE_INT_BGR: return (width * height);
+			default: return -1;
+		}
+	}
+	
+	private static int getTransferType(int type) {
+		switch (type) {
+			case BufferedImage.TYPE_INT_RGB:
+			case BufferedImage.TYPE_INT_ARGB:
+			case BufferedImage.TYPE_INT_BGR: return DataBuffer.TYPE_INT;
+			default: return DataBuffer.TYPE_BYTE;
+		}
+	}
+	
+	private static boolean isBlackWhiteColorModel(ColorModel cm) {
+		if (!(cm instanceof IndexColorModel))
+			return false;
+		IndexColorModel icm = ((IndexColorModel) cm);
+		return ((icm.getMapSize() == 2) && ((icm.getRGB(0) & 0x00FFFFFF) == 0x00000000) && ((icm.getRGB(1) & 0x00FFFFFF) == 0x00FFFFFF));
+	}
+	
+	/* a single mapped file, holding the page images of one document, as well
+	 * as a list of the spaces in it that are free for reuse, sorted by their
+	 * position and each stored as a pair of position and length */
+	private static class PageImageFile {
+		private final File file;
+		private RandomAccessFile raf;
+		private FileChannel channel;
+		private HashMap pageRecords = new HashMap();
+		private ArrayList freeSpaces = new ArrayList();
+		private long size = 0;
+		PageImageFile(File file) throws IOException {
+			this.file = file;
+			this.file.deleteOnExit();
+			this.raf = new RandomAccessFile(this.file, "rw");
+			this.raf.setLength(0); // start over if file exists
+			this.channel = this.raf.getChannel();
+		}
+		synchronized boolean hasPageImage(int pageId) {
+			return this.pageRecords.containsKey(new Integer(pageId));
+		}
+		PageImage getPageImage(int pageId, PageImageSource pis) {
+			
+			//	get page record, and register as reader
+			PageRecord pr;
+			synchronized (this) {
+				pr = ((PageRecord) this.pageRecords.get(new Integer(pageId)));
+				if (pr == null)
+					return null;
+				pr.readers++;
+			}
+			
+			//	copy out raster data (outside synchronization)
+			try {
+				return pr.getPageImage(pis);
+			}
+			
+			//	unregister as reader, and free space if page image was replaced in the meantime
+			finally {
+				synchronized (this) {
+					pr.readers--;
+					if (pr.superseded && (pr.readers == 0))
+						this.freeSpace(pr.spacePos, pr.spaceLength);
+				}
+			}
+		}
+		boolean putPageImage(int pageId, PageImage pi, BufferedImage pageImage) throws IOException {
+			
+			//	get raster data (outside synchronization)
+			ByteBuffer data;
+			DataBuffer db = pageImage.getRaster().getDataBuffer();
+			if (db instanceof DataBufferInt) {
+				int[] intData = ((DataBufferInt) db).getData();
+				data = ByteBuffer.allocate(intData.length * 4).order(ByteOrder.nativeOrder());
+				data.asIntBuffer().put(intData);
+			}
+			else data = ByteBuffer.wrap(((DataBufferByte) db).getData());
+			
+			//	write raster data to free space and map it
+			synchronized (this) {
+				if (this.channel == null)
+					return false; // disposed
+				long spaceLength = ((data.capacity() + 7) & ~7L); // keep spaces aligned to 8 bytes
+				long spacePos = this.allocateSpace(spaceLength);
+				while (data.hasRemaining())
+					this.channel.write(data, (spacePos + data.position()));
+				MappedByteBuffer mappedData = this.channel.map(FileChannel.MapMode.READ_ONLY, spacePos, data.capacity());
+				PageRecord pr = new PageRecord(pageImage.getType(), pageImage.getWidth(), pageImage.getHeight(), pi, spacePos, spaceLength, mappedData);
+				
+				//	free space of any previous version (once all readers are done with it)
+				PageRecord opr = ((PageRecord) this.pageRecords.put(new Integer(pageId), pr));
+				if (opr != null) {
+					opr.superseded = true;
+					if (opr.readers == 0)
+						this.freeSpace(opr.spacePos, opr.spaceLength);
+				}
+			}
+			return true;
+		}
+		private long allocateSpace(long length) {
+			
+			//	use first free space that is large enough
+			for (int s = 0; s < this.freeSpaces.size(); s++) {
+				long[] space = ((long[]) this.freeSpaces.get(s));
+				if (space[1] < length)
+					continue;
+				long pos = space[0];
+				space[0] += length;
+				space[1] -= length;
+				if (space[1] == 0)
+					this.freeSpaces.remove(s);
+				return pos;
+			}
+			
+			//	extend free space at end of file, or append
+			long pos = this.size;
+			if (this.freeSpaces.size() != 0) {
+				long[] space = ((long[]) this.freeSpaces.get(this.freeSpaces.size() - 1));
+				if ((space[0] + space[1]) == this.size) {
+					pos = space[0];
+					this.freeSpaces.remove(this.freeSpaces.size() - 1);
+				}
+			}
+			this.size = (pos + length);
+			return pos;
+		}
+		private void freeSpace(long pos, long length) {
+			
+			//	find insert position
+			int s = 0;
+			while ((s < this.freeSpaces.size()) && (((long[]) this.freeSpaces.get(s))[0] < pos))
+				s++;
+			
+			//	merge with adjacent free spaces
+			if ((s < this.freeSpaces.size()) && ((pos + length) == ((long[]) this.freeSpaces.get(s))[0])) {
+				length += ((long[]) this.freeSpaces.get(s))[1];
+				this.freeSpaces.remove(s);
+			}
+			if (s != 0) {
+				long[] space = ((long[]) this.freeSpaces.get(s - 1));
+				if ((space[0] + space[1]) == pos) {
+					space[1] += length;
+					return;
+				}
+			}
+			long[] space = {pos, length};
+			this.freeSpaces.add(s, space);
+		}
+		synchronized void dispose() {
+			this.pageRecords.clear();
+			this.freeSpaces.clear();
+			try {
+				if (this.channel != null)
+					this.channel.close();
+				if (this.raf != null)
+					this.raf.close();
+			}
+			catch (IOException ioe) {
+				System.out.println("Error closing mapped page image file " + this.file.getAbsolutePath() + ": " + ioe.getMessage());
+			}
+			this.channel = null;
+			this.raf = null;
+			
+			//	mapped buffers are only released on garbage collection, so deletion might fail on some platforms
+			if (!this.file.delete())
+				this.file.deleteOnExit();
+		}
+	}
+	
+	/* a single mapped page image */
+	private static class PageRecord {
+		final int type;
+		final int width;
+		final int height;
+		final int originalWidth;
+		final int originalHeight;
+		final int originalDpi;
+		final int currentDpi;
+		final int leftEdge;
+		final int rightEdge;
+		final int topEdge;
+		final int bottomEdge;
+		final long spacePos;
+		final long spaceLength;
+		private final MappedByteBuffer data;
+		int readers = 0; // guarded by file
+		boolean superseded = false; // guarded by file
+		PageRecord(int type, int width, int height, PageImage pi, long spacePos, long spaceLength, MappedByteBuffer data) {
+			this.type = type;
+			this.width = width;
+			this.height = height;
+			this.originalWidth = pi.originalWidth;
+			this.originalHeight = pi.originalHeight;
+			this.originalDpi = pi.originalDpi;
+			this.currentDpi = pi.currentDpi;
+			this.leftEdge = pi.leftEdge;
+			this.rightEdge = pi.rightEdge;
+			this.topEdge = pi.topEdge;
+			this.bottomEdge = pi.bottomEdge;
+			this.spacePos = spacePos;
+			this.spaceLength = spaceLength;
+			this.data = data;
+		}
+		PageImage getPageImage(PageImageSource pis) {
+			BufferedImage bi = new BufferedImage(this.width, this.height, this.type);
+			ByteBuffer data = this.data.duplicate().order(ByteOrder.nativeOrder()); // independent position for concurrent reads
+			DataBuffer db = bi.getRaster().getDataBuffer();
+			if (db instanceof DataBufferInt)
+				data.asIntBuffer().get(((DataBufferInt) db).getData());
+			else data.get(((DataBufferByte) db).getData());
+			return new PageImage(bi, this.originalWidth, this.originalHeight, this.originalDpi, this.currentDpi, this.leftEdge, this.rightEdge, this.topEdge, this.bottomEdge, pis);
+		}
+	}
+}
@@ -0,0 +1,344 @@
+/*
+ * Copyright (c) 2006-, IPD Boehm, Universitaet Karlsruhe (TH) / KIT, by Guido Sautter
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Universitaet Karlsruhe (TH) / KIT nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY UNIVERSITAET KARLSRUHE (TH) / KIT AND CONTRIBUTORS 
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uka.ipd.idaho.im.util;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import de.uka.ipd.idaho.gamta.util.imaging.PageImage;
+import de.uka.ipd.idaho.gamta.util.imaging.PageImageInputStream;
+import de.uka.ipd.idaho.gamta.util.imaging.PageImageSource;
+
+/**
+ * Check of the memory mapped page image store. This test makes concurrent
+ * requests for a page image that is not mapped yet and checks they load it
+ * from the backing source only once, replaces page images over and over,
+ * also while other threads read them, and checks the mapped file does not
+ * grow beyond the space of the live page images plus what concurrent reads
+ * hold on to, and checks how page image names are split into document ID
+ * and page ID.
+ * 
+ * @author sautter
+ */
+public class MappedPageImageStoreTest {
+	private static final int width = 200;
+	private static final int height = 300;
+	private static final long imageSize = (width * height);
+	
+	/**
+	 * @param args
+	 */
+	public static void main(String[] args) throws Exception {
+		int errors = 0;
+		errors += testNameParsing();
+		errors += testMissDeduplication();
+		errors += testSpaceReuse();
+		errors += testConcurrentReplacement();
+		System.out.println("Checked mapped page image store, " + errors + " errors");
+	}
+	
+	private static int testNameParsing() throws Exception {
+		int errors = 0;
+		
+		//	split names directly
+		String[][] names = {
+			{"doc.0003", "doc", "3"},
+			{"doc.0003.png", "doc", "3"},
+			{"a.b.12.png", "a.b", "12"},
+			{"doc.99999999999.png", "doc", "-1"},
+			{"doc", null, null},
+			{"doc.png", null, null},
+			{".5.png", null, null},
+			{"doc..png", null, null},
+			{"doc.x5", null, null},
+			{"doc.5.jpg", null, null},
+		};
+		for (int n = 0; n < names.length; n++) {
+			String docId = MappedPageImageStore.getDocId(names[n][0]);
+			String pageId = ((docId == null) ? null : ("" + MappedPageImageStore.getPageId(names[n][0])));
+			if (((docId == null) ? (names[n][1] != null) : !docId.equals(names[n][1])) || ((pageId == null) ? (names[n][2] != null) : !pageId.equals(names[n][2]))) {
+				System.out.println("Name '" + names[n][0] + "' parsed as " + docId + "/" + pageId + ", expected " + names[n][1] + "/" + names[n][2]);
+				errors++;
+			}
+		}
+		
+		//	names that don't parse go to backing source as they are, every time
+		CountingSource cs = new CountingSource(0);
+		MappedPageImageStore mpis = new MappedPageImageStore(cs);
+		String[] sourceNames = {"doc.99999999999.png", "doc.x5", "doc.0003.png"};
+		for (int r = 0; r < 2; r++)
+			for (int n = 0; n < sourceNames.length; n++) {
+				if (mpis.getPageImage(sourceNames[n]) == null) {
+					System.out.println("Could not get page image '" + sourceNames[n] + "'");
+					errors++;
+				}
+			}
+		errors += checkLoads(cs, "doc.99999999999.png", 2);
+		errors += checkLoads(cs, "doc.x5", 2);
+		errors += checkLoads(cs, "doc.0003.png", 1);
+		
+		//	mapped page image found under any name for the same page
+		if (!mpis.isPageImageAvailable("doc", 3) || !mpis.isPageImageAvailable("doc.0003"))
+			errors += reportError("Mapped page image not found by page ID");
+		errors += checkPageImage(mpis.getPageImage("doc", 3), getPixelValue("doc", 3, 0), "doc.0003");
+		errors += checkLoads(cs, PageImage.getPageImageName("doc", 3), 0);
+		mpis.dispose();
+		return errors;
+	}
+	
+	private static int testMissDeduplication() throws Exception {
+		CountingSource cs = new CountingSource(100);
+		final MappedPageImageStore mpis = new MappedPageImageStore(cs);
+		final PageImage[] pis = new PageImage[8];
+		Thread[] threads = new Thread[pis.length];
+		for (int t = 0; t < threads.length; t++) {
+			final int index = t;
+			threads[t] = new Thread() {
+				public void run() {
+					try {
+						pis[index] = mpis.getPageImage("dedup", ((index % 2) + 1));
+					}
+					catch (IOException ioe) {
+						ioe.printStackTrace(System.out);
+					}
+				}
+			};
+		}
+		for (int t = 0; t < threads.length; t++)
+			threads[t].start();
+		for (int t = 0; t < threads.length; t++)
+			threads[t].join();
+		
+		int errors = 0;
+		errors += checkLoads(cs, PageImage.getPageImageName("dedup", 1), 1);
+		errors += checkLoads(cs, PageImage.getPageImageName("dedup", 2), 1);
+		for (int p = 0; p < pis.length; p++)
+			errors += checkPageImage(pis[p], getPixelValue("dedup", ((p % 2) + 1), 0), ("concurrent request " + p));
+		mpis.dispose();
+		if (mpis.getCacheFolder().exists())
+			errors += reportError("Cache folder not removed on dispose");
+		return errors;
+	}
+	
+	private static int testSpaceReuse() throws Exception {
+		MappedPageImageStore mpis = new MappedPageImageStore(null);
+		int errors = 0;
+		for (int p = 0; p < 3; p++)
+			mpis.storePageImage("reuse", p, createPageImage("reuse", p, 0));
+		errors += checkFileLength(mpis, (3 * imageSize), "after storing 3 pages");
+		
+		//	first replacement appends, as previous version is only freed after new one is written
+		mpis.storePageImage("reuse", 1, createPageImage("reuse", 1, 1));
+		errors += checkFileLength(mpis, (4 * imageSize), "after first replacement");
+		
+		//	further replacements alternate between the two spaces
+		for (int v = 2; v < 20; v++) {
+			mpis.storePageImage("reuse", 1, createPageImage("reuse", 1, v));
+			errors += checkPageImage(mpis.getPageImage("reuse", 1), getPixelValue("reuse", 1, v), ("version " + v));
+		}
+		errors += checkFileLength(mpis, (4 * imageSize), "after 20 replacements");
+		
+		//	a smaller image goes into the free space, and what remains of that merges with the space it frees, fitting a new page
+		mpis.storePageImage("reuse", 2, createPageImage("reuse", 2, 1, (width / 2), height));
+		errors += checkFileLength(mpis, (4 * imageSize), "after replacement with smaller image");
+		mpis.storePageImage("reuse", 3, createPageImage("reuse", 3, 0));
+		errors += checkFileLength(mpis, (4 * imageSize), "after adding page to merged free space");
+		mpis.storePageImage("reuse", 4, createPageImage("reuse", 4, 0));
+		errors += checkFileLength(mpis, (5 * imageSize), "after adding page with too little free space");
+		for (int p = 0; p < 5; p++)
+			errors += checkPageImage(mpis.getPageImage("reuse", p), getPixelValue("reuse", p, ((p == 1) ? 19 : ((p == 2) ? 1 : 0))), ("page " + p));
+		
+		//	removing document drops mapped file
+		mpis.removeDocument("reuse");
+		if (mpis.isPageImageAvailable("reuse", 0))
+			errors += reportError("Page image available after removing document");
+		errors += checkFileLength(mpis, 0, "after removing document");
+		mpis.dispose();
+		return errors;
+	}
+	
+	private static int testConcurrentReplacement() throws Exception {
+		final MappedPageImageStore mpis = new MappedPageImageStore(null);
+		for (int p = 0; p < 3; p++)
+			mpis.storePageImage("replace", p, createPageImage("replace", p, 0));
+		
+		//	read page images while replacing them
+		final int versions = 50;
+		final int[] readErrors = {0};
+		final boolean[] writing = {true};
+		Thread[] readers = new Thread[4];
+		for (int t = 0; t < readers.length; t++) {
+			readers[t] = new Thread() {
+				public void run() {
+					while (writing[0]) try {
+						for (int p = 0; p < 3; p++) {
+							PageImage pi = mpis.getPageImage("replace", p);
+							byte[] data = ((DataBufferByte) pi.image.getRaster().getDataBuffer()).getData();
+							boolean known = false;
+							for (int v = 0; v < versions; v++)
+								known = (known || (data[0] == getPixelValue("replace", p, v)));
+							for (int d = 1; known && (d < data.length); d++)
+								known = (data[d] == data[0]);
+							if (!known) synchronized (readErrors) {
+								System.out.println("Read torn or unknown version of page " + p);
+								readErrors[0]++;
+							}
+						}
+					}
+					catch (IOException ioe) {
+						ioe.printStackTrace(System.out);
+					}
+				}
+			};
+			readers[t].start();
+		}
+		for (int v = 1; v < versions; v++)
+			for (int p = 0; p < 3; p++)
+				mpis.storePageImage("replace", p, createPageImage("replace", p, v));
+		writing[0] = false;
+		for (int t = 0; t < readers.length; t++)
+			readers[t].join();
+		int errors = readErrors[0];
+		for (int p = 0; p < 3; p++)
+			errors += checkPageImage(mpis.getPageImage("replace", p), getPixelValue("replace", p, (versions - 1)), ("page " + p));
+		
+		//	with readers done, all superseded spaces have to be free, so new pages fill them up without growing the file
+		long length = getFileLength(mpis);
+		if (length > ((3 + 1 + readers.length) * imageSize)) {
+			System.out.println("Mapped file grew to " + length + " bytes for 3 pages and " + readers.length + " readers");
+			errors++;
+		}
+		for (int p = 3; p < (length / imageSize); p++)
+			mpis.storePageImage("replace", p, createPageImage("replace", p, 0));
+		errors += checkFileLength(mpis, length, "after filling free space");
+		System.out.println("Replaced " + (3 * (versions - 1)) + " page images under concurrent reads, mapped file at " + (length / imageSize) + " page images");
+		mpis.dispose();
+		return errors;
+	}
+	
+	private static byte getPixelValue(String docId, int pageId, int version) {
+		return ((byte) ((docId.hashCode() + (pageId * 31) + (version * 7)) & 0x7F));
+	}
+	
+	private static PageImage createPageImage(String docId, int pageId, int version) {
+		return createPageImage(docId, pageId, version, width, height);
+	}
+	
+	private static PageImage createPageImage(String docId, int pageId, int version, int width, int height) {
+		BufferedImage bi = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+		Arrays.fill(((DataBufferByte) bi.getRaster().getDataBuffer()).getData(), getPixelValue(docId, pageId, version));
+		return new PageImage(bi, 300, null);
+	}
+	
+	private static int checkPageImage(PageImage pi, byte value, String label) {
+		if (pi == null)
+			return reportError("Page image missing for " + label);
+		byte[] data = ((DataBufferByte) pi.image.getRaster().getDataBuffer()).getData();
+		for (int d = 0; d < data.length; d++)
+			if (data[d] != value)
+				return reportError("Page image content wrong for " + label + ": " + data[d] + " at " + d + ", expected " + value);
+		if (pi.currentDpi != 300)
+			return reportError("Page image resolution wrong for " + label + ": " + pi.currentDpi);
+		return 0;
+	}
+	
+	private static int checkLoads(CountingSource cs, String name, int expected) {
+		int loads = cs.getLoads(name);
+		if (loads == expected)
+			return 0;
+		return reportError("Page image '" + name + "' loaded " + loads + " times, expected " + expected);
+	}
+	
+	private static long getFileLength(MappedPageImageStore mpis) {
+		long length = 0;
+		File[] files = mpis.getCacheFolder().listFiles();
+		for (int f = 0; (files != null) && (f < files.length); f++)
+			length += files[f].length();
+		return length;
+	}
+	
+	private static int checkFileLength(MappedPageImageStore mpis, long expected, String label) {
+		long length = getFileLength(mpis);
+		if (length == expected)
+			return 0;
+		return reportError("Mapped file length " + length + " " + label + ", expected " + expected);
+	}
+	
+	private static int reportError(String error) {
+		System.out.println(error);
+		return 1;
+	}
+	
+	/* backing source creating page images on the fly, counting the loads
+	 * per name and taking its time to simulate decoding */
+	private static class CountingSource implements PageImageSource {
+		private final int delay;
+		private final HashMap loads = new HashMap();
+		CountingSource(int delay) {
+			this.delay = delay;
+		}
+		synchronized int getLoads(String name) {
+			Integer loads = ((Integer) this.loads.get(name));
+			return ((loads == null) ? 0 : loads.intValue());
+		}
+		public boolean isPageImageAvailable(String name) {
+			return false; // make mapped page images show in availability checks
+		}
+		public boolean isPageImageAvailable(String docId, int pageId) {
+			return false;
+		}
+		public PageImage getPageImage(String name) throws IOException {
+			synchronized (this) {
+				this.loads.put(name, new Integer(this.getLoads(name) + 1));
+			}
+			if (this.delay != 0) try {
+				Thread.sleep(this.delay);
+			} catch (InterruptedException ie) {}
+			
+			//	derive content from document ID and page ID if name parses, from whole name otherwise
+			String docId = MappedPageImageStore.getDocId(name);
+			int pageId = ((docId == null) ? -1 : MappedPageImageStore.getPageId(name));
+			if (pageId == -1)
+				return createPageImage(name, 0, 0);
+			else return createPageImage(docId, pageId, 0);
+		}
+		public PageImage getPageImage(String docId, int pageId) throws IOException {
+			return this.getPageImage(PageImage.getPageImageName(docId, pageId));
+		}
+		public PageImageInputStream getPageImageAsStream(String name) throws IOException {
+			return null;
+		}
+		public PageImageInputStream getPageImageAsStream(String docId, int pageId) throws IOException {
+			return null;
+		}
+	}
+}